@@ -1,10 +1,124 @@
 package it.uniba.ventricellisardone.itss;
 
+import it.uniba.ventricellisardone.itss.cloud.data.HolidayCalendar;
+import it.uniba.ventricellisardone.itss.csv.CSVDataAnalysis;
+import it.uniba.ventricellisardone.itss.etl.ETLPipeline;
+import it.uniba.ventricellisardone.itss.etl.ExtractionCache;
+import it.uniba.ventricellisardone.itss.etl.WatchFolder;
+import it.uniba.ventricellisardone.itss.log.Log;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MainClass {
 
+    private static final String TAG = "MainClass.class";
+    private static final String TABLE_NAME = "datawarehouse";
+    private static final long SETTLE_MILLIS = 5000;
+
+    /**
+     * Con l'opzione --watch il programma resta in esecuzione come demone, elaborando ogni file depositato nella
+     * cartella indicata: --watch cartella_deposito cartella_destinazione [numero_thread] [--dedup] [--cache]
+     * L'opzione --dedup scarta le righe identiche a una riga già letta con la stessa data, l'opzione --cache legge i file
+     * già estratti dalla cache della cartella .itss/cache, che le interfacce grafiche usano con -Ditss.cache=true.
+     * Con l'opzione --rollup le istantanee salvate dall'analisi dei dati vengono unite in un unico report:
+     * --rollup cartella_destinazione nome_report istantanea|cartella_istantanee...
+     * Con l'opzione --check-holidays le festività calcolate localmente vengono confrontate con quelle dell'API remota:
+     * --check-holidays anno...
+     */
     public static void main(String[] args) {
-        System.out.println(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "" + File.separator + "Documents" + File.separator + "etl-authentication.json");
+        if (args.length >= 3 && args[0].equals("--watch")) {
+            List<String> watchArgs = new ArrayList<>(List.of(args));
+            boolean dropDuplicates = watchArgs.remove("--dedup");
+            ExtractionCache extractionCache = watchArgs.remove("--cache") ? ExtractionCache.getDefault() : null;
+            if (watchArgs.size() < 3) {
+                System.err.println("[ERROR] Indicare la cartella di deposito e quella di destinazione");
+                return;
+            }
+            int workers = watchArgs.size() > 3 ? Integer.parseInt(watchArgs.get(3)) : 2;
+            try {
+                startWatchFolder(watchArgs.get(1), watchArgs.get(2), workers, dropDuplicates, extractionCache);
+            } catch (IOException e) {
+                Log.e(TAG, "Watch folder exception", e);
+                System.err.println("[ERROR] Impossibile osservare la cartella: " + e.getMessage());
+            }
+        } else if (args.length >= 4 && args[0].equals("--rollup")) {
+            try {
+                rollUpSnapshots(args[1], args[2], List.of(args).subList(3, args.length));
+            } catch (IOException e) {
+                Log.e(TAG, "Roll-up exception", e);
+                System.err.println("[ERROR] Impossibile unire le istantanee: " + e.getMessage());
+            }
+        } else if (args.length >= 2 && args[0].equals("--check-holidays")) {
+            for (int i = 1; i < args.length; i++)
+                checkHolidays(Integer.parseInt(args[i]));
+        } else
+            System.out.println(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "" + File.separator + "Documents" + File.separator + "etl-authentication.json");
+    }
+
+    /**
+     * Le cartelle indicate vengono sostituite dalle istantanee che contengono, in ordine di nome, così che le analisi
+     * giornaliere salvate in cartelle datate vengano unite in ordine cronologico.
+     */
+    private static void rollUpSnapshots(String destinationDirectory, String reportName, List<String> sources) throws IOException {
+        long start = System.currentTimeMillis();
+        List<Path> snapshotFiles = new ArrayList<>();
+        for (String source : sources) {
+            Path path = Paths.get(source);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    snapshotFiles.addAll(files.filter(file -> file.getFileName().toString().endsWith(CSVDataAnalysis.SNAPSHOT_EXTENSION))
+                            .sorted().collect(Collectors.toList()));
+                }
+            } else
+                snapshotFiles.add(path);
+        }
+        CSVDataAnalysis csvDataAnalysis = CSVDataAnalysis.rollUp(snapshotFiles);
+        csvDataAnalysis.saveReport(null, destinationDirectory, reportName);
+        csvDataAnalysis.saveSnapshot(Paths.get(destinationDirectory, "Analysis", reportName + CSVDataAnalysis.SNAPSHOT_EXTENSION));
+        System.out.println("[INFO] Unite " + snapshotFiles.size() + " istantanee, " + csvDataAnalysis.getRecordCount()
+                + " record, in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static void checkHolidays(int year) {
+        List<String> differences = HolidayCalendar.getDefault().crossCheck(year, HolidayCalendar.getRemote());
+        if (differences.isEmpty())
+            System.out.println("[INFO] " + year + ": festività coincidenti con l'API remota");
+        for (String difference : differences)
+            System.out.println("[INFO] Differenza " + difference);
+    }
+
+    /**
+     * Ogni file viene trasformato in una propria cartella di destinazione, così che più file elaborati
+     * contemporaneamente non sovrascrivano i rispettivi load_data_N.csv e checkpoint. La cartella dipende solo dal nome
+     * del file e non dalla data: un file spostato in failed e depositato di nuovo nei giorni successivi ritrova il
+     * proprio checkpoint e riprende dal punto in cui era stato interrotto.
+     */
+    private static void startWatchFolder(String dropDirectory, String destinationDirectory, int workers,
+                                         boolean dropDuplicates, ExtractionCache extractionCache) throws IOException {
+        WatchFolder watchFolder = new WatchFolder(dropDirectory, workers, SETTLE_MILLIS, (Path file) -> {
+            String destinationPath = destinationDirectory + File.separator + file.getFileName() + File.separator + "Transformed";
+            ETLPipeline etlPipeline = new ETLPipeline(new File[]{file.toFile()}, destinationPath, TABLE_NAME);
+            //  Ogni worker elabora un solo file alla volta e può quindi riutilizzare lo stesso record per tutte le righe.
+            etlPipeline.setReuseRecords(true);
+            etlPipeline.setDropDuplicates(dropDuplicates);
+            etlPipeline.setExtractionCache(extractionCache);
+            etlPipeline.run(block -> System.out.println("[INFO] " + file.getFileName() + " blocchi: " + block));
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watchFolder.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Watch folder close exception", e);
+            }
+        }));
+        watchFolder.start();
     }
 }
@@ -2,35 +2,20 @@
  * Questa classe permette di trasformare le ordinarie date prelevate dal DB OLTP nel formato gg/mm/aa e trasformarle in
  * modo tale da ottenere informazioni su: nome del giorno di riferimento, trimestre, periodo dell'anno, la presenza o la
  * assenza di festività nella data selezionata.
- * Per far ciò la classe fa riferimento a delle API online che fornito un anno restituisce la lista delle festività per
- * quell'anno così da riconoscere se una data cade in una festività
+ * Per riconoscere se una data cade in una festività la classe fa riferimento al calendario di HolidayCalendar, che
+ * calcola localmente le festività italiane di ogni anno.
  */
 
 package it.uniba.ventricellisardone.itss.cloud.data;
 
 import com.google.cloud.Date;
-import com.google.common.io.CharStreams;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import it.uniba.ventricellisardone.itss.log.Log;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.lang.reflect.Type;
+
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.List;
 import java.util.Locale;
 
 public class CloudData{
 
-    private static final String TAG = "Cloud data";
     private static final String NOTHING = "NESSUNO";
 
     private final Date googleData;
@@ -60,7 +45,7 @@ public class CloudData{
         //calendar numera i mesi da 0, aggiungo 1 per evitare ambiguità
         this.monthValue = calendar.get(Calendar.MONTH) + 1;
         this.quarter = setQuarter();
-        this.season = setSeason(date);
+        this.season = setSeason();
         this.seasonYear = setQuarter() + "-" + this.yearValue;
         this.monthYear = this.monthValue + "-" + this.yearValue;
         this.weekday = setWeekday();
@@ -131,49 +116,13 @@ public class CloudData{
     }
 
     /**
-     * Questo metodo avvia una richiesta http all'API su rapidAPI che restituisce la lista di festività e gestisce le
-     * eccezioni di IO e di parsing della data
-     * @param date contiene la data di cui necessitiamo le informazioni
+     * Le festività vengono cercate nel calendario condiviso, che le calcola una sola volta per anno.
      * @return restituisce NESSUNO: se la data non ricade in nessuna festività;
      *                     NOME_FESTIVITA: se la data ricade in una festività;
      */
-    private String setSeason(java.util.Date date) {
-        String stringResponse = NOTHING;
-        try {
-            CloseableHttpClient client = HttpClients.custom().build();
-            HttpUriRequest request = RequestBuilder.get()
-                    .setUri("https://public-holiday.p.rapidapi.com/" + this.yearValue + "/IT")
-                    .addHeader("x-rapidapi-host", "public-holiday.p.rapidapi.com")
-                    .addHeader("x-rapidapi-key", "2ffe94d15fmsh77f096ee6ae83e2p1e6163jsn8d8d6c79a2c2")
-                    .build();
-            CloseableHttpResponse response = client.execute(request);
-            Reader reader = new InputStreamReader(response.getEntity().getContent());
-            stringResponse = CharStreams.toString(reader);
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<HolidaysDate>>() {}.getType();
-            List<HolidaysDate> holidaysDateList = gson.fromJson(stringResponse, listType);
-            stringResponse = NOTHING;
-            stringResponse = matchDate(date, stringResponse, holidaysDateList);
-            response.close();
-            request.abort();
-        } catch (IOException e) {
-            Log.e(TAG, "Eccezione in CloudDate, richesta API: ", e);
-        }
-        return stringResponse;
-    }
-
-    private String matchDate(java.util.Date date, String stringResponse, List<HolidaysDate> holidaysDateList) {
-        try {
-            for (HolidaysDate holidaysDate : holidaysDateList) {
-                if (holidaysDate.getDate().equals(date))
-                    stringResponse = holidaysDate.getLocalName().toUpperCase();
-            }
-        }catch (NullPointerException ex) {
-            System.err.println("Eccezione in CloudDate, vedi log file");
-            Log.e(TAG, "Eccezione in CloudDate, richesta API: " + this.yearValue, ex);
-            throw ex;
-        }
-        return stringResponse;
+    private String setSeason() {
+        String holidayName = HolidayCalendar.getDefault().getHoliday(this.yearValue, this.dateString);
+        return holidayName != null ? holidayName : NOTHING;
     }
 
     private String setWeekday() {
@@ -189,22 +138,4 @@ public class CloudData{
         else
             return "FESTIVO";
     }
-
-    private static class HolidaysDate {
-        private java.util.Date date;
-        private String localName;
-
-        public HolidaysDate() {
-            // Empty method required
-            // necessario per deserializzazione JSON.
-        }
-
-        public java.util.Date getDate() {
-            return date;
-        }
-
-        public String getLocalName() {
-            return localName;
-        }
-    }
 }
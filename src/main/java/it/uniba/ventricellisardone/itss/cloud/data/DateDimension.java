@@ -0,0 +1,125 @@
+/**
+ * Questa classe conserva la dimensione temporale del data warehouse: per ogni giorno distinto le informazioni ricavate
+ * da CloudData, cioè nome del giorno, giorno dell'anno, mese, trimestre, festività e così via, vengono calcolate una sola
+ * volta e memorizzate in un array indicizzato per numero di giorni trascorsi dal 01/01/1970. Insieme ai dati viene
+ * memorizzata anche la porzione del record trasformato che descrive la data, così che la trasformazione di ogni record
+ * si riduca ad una lettura dell'array. Un file contiene poche centinaia di giorni distinti, quindi l'array resta piccolo.
+ */
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import it.uniba.ventricellisardone.itss.csv.OrderDate;
+
+public class DateDimension {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Oltre questa ampiezza, circa tre secoli, le date non vengono memorizzate ma calcolate ad ogni richiesta.
+    private static final int MAX_CAPACITY = 1 << 17;
+
+    private static final DateDimension DEFAULT = new DateDimension();
+
+    //  L'array viene sostituito quando deve essere ampliato; le voci sono immutabili e possono quindi essere lette
+    //  senza sincronizzazione, mentre il calcolo di una voce mancante è sincronizzato.
+    private volatile Entry[] entries = new Entry[0];
+    private volatile int firstDay;
+
+    /**
+     * @return la dimensione temporale condivisa da tutte le trasformazioni.
+     */
+    public static DateDimension getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param epochDay contiene il numero di giorni trascorsi dal 01/01/1970.
+     * @return le informazioni sulla data, calcolate alla prima richiesta del giorno.
+     */
+    public CloudData get(int epochDay) {
+        return entry(epochDay).cloudData;
+    }
+
+    /**
+     * @param epochDay contiene il numero di giorni trascorsi dal 01/01/1970.
+     * @return i campi del record trasformato che descrivono la data, separati da virgole.
+     */
+    public String getColumns(int epochDay) {
+        return entry(epochDay).columns;
+    }
+
+    private Entry entry(int epochDay) {
+        Entry[] current = entries;
+        int index = epochDay - firstDay;
+        if (index >= 0 && index < current.length) {
+            Entry entry = current[index];
+            if (entry != null && entry.epochDay == epochDay)
+                return entry;
+        }
+        return load(epochDay);
+    }
+
+    private synchronized Entry load(int epochDay) {
+        if (!ensureRange(epochDay))
+            return new Entry(epochDay);
+        int index = epochDay - firstDay;
+        Entry entry = entries[index];
+        if (entry == null) {
+            entry = new Entry(epochDay);
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Amplia l'array, raddoppiandone la dimensione, finché comprende il giorno indicato.
+     * @return false se il giorno è troppo lontano da quelli già memorizzati.
+     */
+    private boolean ensureRange(int epochDay) {
+        Entry[] current = entries;
+        if (current.length == 0) {
+            firstDay = epochDay - INITIAL_CAPACITY / 2;
+            entries = new Entry[INITIAL_CAPACITY];
+            return true;
+        }
+        int lastDay = firstDay + current.length - 1;
+        if (epochDay >= firstDay && epochDay <= lastDay)
+            return true;
+        long low = Math.min(firstDay, epochDay);
+        long high = Math.max(lastDay, epochDay);
+        long span = high - low + 1;
+        if (span > MAX_CAPACITY)
+            return false;
+        int capacity = current.length;
+        while (capacity < span)
+            capacity *= 2;
+        int newFirstDay = epochDay < firstDay ? (int) (high - capacity + 1) : firstDay;
+        Entry[] grown = new Entry[capacity];
+        System.arraycopy(current, 0, grown, firstDay - newFirstDay, current.length);
+        //  Le voci conservano il proprio giorno, quindi un lettore che vede il nuovo primo giorno con il vecchio array
+        //  non restituisce una voce sbagliata ma passa per load.
+        entries = grown;
+        firstDay = newFirstDay;
+        return true;
+    }
+
+    private static final class Entry {
+        private final int epochDay;
+        private final CloudData cloudData;
+        private final String columns;
+
+        private Entry(int epochDay) {
+            this.epochDay = epochDay;
+            this.cloudData = new CloudData(OrderDate.toDate(epochDay));
+            this.columns = cloudData.getDateString() + ","
+                    + cloudData.getDayName().toUpperCase() + ","
+                    + cloudData.getDayNumber() + ","
+                    + cloudData.getMonthName().toUpperCase() + ","
+                    + cloudData.getYearValue() + ","
+                    + cloudData.getMonthValue() + ","
+                    + cloudData.getQuarter() + ","
+                    + cloudData.getSeason().toUpperCase() + ","
+                    + cloudData.getSeasonYear() + ","
+                    + cloudData.getMonthYear() + ","
+                    + cloudData.getWeekday() + ","
+                    + cloudData.getHoliday();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Questa classe conserva il calendario delle festività italiane per anno. Le festività di un anno vengono chieste ad un
+ * HolidayProvider una sola volta e mantenute in memoria; se è indicata una cartella, vengono inoltre salvate su disco in
+ * un piccolo file JSON, così che le esecuzioni successive non interroghino di nuovo la sorgente, utile per le sorgenti
+ * remote. Il calendario predefinito calcola le festività localmente con ItalianHolidays, mentre quello remoto, basato
+ * sull'API su rapidAPI, può essere usato per verificarlo.
+ */
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import it.uniba.ventricellisardone.itss.log.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class HolidayCalendar {
+
+    private static final String TAG = "HolidayCalendar.class";
+    private static final String COUNTRY = "IT";
+    private static final String CACHE_EXTENSION = ".json";
+    private static final Type CACHE_TYPE = new TypeToken<TreeMap<String, String>>() {}.getType();
+
+    private static final HolidayCalendar DEFAULT = new HolidayCalendar(new ItalianHolidays());
+    private static final HolidayCalendar REMOTE = new HolidayCalendar(new RemoteHolidays(),
+            Paths.get(System.getProperty("user.home"), ".itss", "holidays").toString());
+
+    private final HolidayProvider provider;
+    private final Path directory;
+    private final Map<Integer, Map<String, String>> years = new ConcurrentHashMap<>();
+
+    /**
+     * @param provider contiene la sorgente delle festività, i calendari vengono mantenuti solo in memoria.
+     */
+    public HolidayCalendar(HolidayProvider provider) {
+        this.provider = provider;
+        this.directory = null;
+    }
+
+    /**
+     * @param provider  contiene la sorgente delle festività.
+     * @param directory contiene la cartella in cui salvare i calendari ottenuti, viene creata alla prima scrittura.
+     */
+    public HolidayCalendar(HolidayProvider provider, String directory) {
+        this.provider = provider;
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * @return il calendario condiviso da tutte le trasformazioni, calcolato localmente senza richieste di rete.
+     */
+    public static HolidayCalendar getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return il calendario ottenuto dall'API su rapidAPI, salvato nella cartella .itss/holidays della home
+     * dell'utente.
+     */
+    public static HolidayCalendar getRemote() {
+        return REMOTE;
+    }
+
+    /**
+     * @param year       contiene l'anno della data.
+     * @param dateString contiene la data nel formato yyyy-MM-dd.
+     * @return il nome della festività in maiuscolo, oppure null se la data non ricade in nessuna festività.
+     */
+    public String getHoliday(int year, String dateString) {
+        return getYear(year).get(dateString);
+    }
+
+    /**
+     * @return le festività dell'anno indicizzate per data nel formato yyyy-MM-dd.
+     */
+    public Map<String, String> getYear(int year) {
+        Map<String, String> holidays = years.get(year);
+        if (holidays == null)
+            holidays = loadYear(year);
+        return holidays;
+    }
+
+    /**
+     * Il caricamento è sincronizzato così che thread diversi che trasformano record dello stesso anno non ripetano la
+     * richiesta. Se la sorgente fallisce l'anno resta in memoria senza festività e non viene salvato su disco, così che
+     * venga richiesto di nuovo alla prossima esecuzione.
+     */
+    private synchronized Map<String, String> loadYear(int year) {
+        Map<String, String> holidays = years.get(year);
+        if (holidays != null)
+            return holidays;
+        holidays = directory != null ? readCache(year) : null;
+        if (holidays == null) {
+            try {
+                holidays = provider.getHolidays(year);
+                if (directory != null)
+                    writeCache(year, holidays);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Eccezione in HolidayCalendar, festività non disponibili: " + year, e);
+                holidays = Collections.emptyMap();
+            }
+        }
+        holidays = Collections.unmodifiableMap(holidays);
+        years.put(year, holidays);
+        return holidays;
+    }
+
+    Path getCacheFile(int year) {
+        return directory.resolve(COUNTRY + "-" + year + CACHE_EXTENSION);
+    }
+
+    private Map<String, String> readCache(int year) {
+        Path cacheFile = getCacheFile(year);
+        if (!Files.isRegularFile(cacheFile))
+            return null;
+        try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, CACHE_TYPE);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Calendario non leggibile: " + cacheFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Il file viene prima scritto in una copia temporanea e poi sostituito, così che un'interruzione durante il
+     * salvataggio non lasci un calendario incompleto.
+     */
+    private void writeCache(int year, Map<String, String> holidays) {
+        Path target = getCacheFile(year);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                new Gson().toJson(holidays, CACHE_TYPE, writer);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.e(TAG, "Impossibile salvare il calendario: " + target, e);
+        }
+    }
+
+    /**
+     * Confronta le festività dell'anno con quelle di un calendario di riferimento, ad esempio quello remoto.
+     * @param year      contiene l'anno da verificare.
+     * @param reference contiene il calendario di riferimento.
+     * @return la lista delle differenze, vuota se i due calendari coincidono.
+     */
+    public List<String> crossCheck(int year, HolidayCalendar reference) {
+        List<String> differences = new ArrayList<>();
+        Map<String, String> holidays = getYear(year);
+        Map<String, String> referenceHolidays = reference.getYear(year);
+        if (referenceHolidays.isEmpty()) {
+            differences.add(year + ": calendario di riferimento non disponibile");
+            return differences;
+        }
+        TreeSet<String> dates = new TreeSet<>(holidays.keySet());
+        dates.addAll(referenceHolidays.keySet());
+        for (String date : dates) {
+            String name = holidays.get(date);
+            String referenceName = referenceHolidays.get(date);
+            if (name == null)
+                differences.add(date + ": mancante, riferimento " + referenceName);
+            else if (referenceName == null)
+                differences.add(date + ": " + name + " assente nel riferimento");
+            else if (!name.equals(referenceName))
+                differences.add(date + ": " + name + ", riferimento " + referenceName);
+        }
+        return differences;
+    }
+}
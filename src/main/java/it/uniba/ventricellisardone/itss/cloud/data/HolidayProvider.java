@@ -0,0 +1,19 @@
+/**
+ * Questa interfaccia rappresenta una sorgente delle festività di un anno, che può calcolarle localmente o richiederle
+ * ad un servizio esterno. Le festività vengono restituite indicizzate per data nel formato yyyy-MM-dd, con il nome in
+ * maiuscolo.
+ */
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import java.io.IOException;
+import java.util.Map;
+
+public interface HolidayProvider {
+
+    /**
+     * @param year contiene l'anno di cui si vogliono le festività.
+     * @return le festività dell'anno indicizzate per data nel formato yyyy-MM-dd.
+     * @throws IOException viene sollevata se non è possibile ottenere le festività.
+     */
+    Map<String, String> getHolidays(int year) throws IOException;
+}
@@ -0,0 +1,83 @@
+/**
+ * Questa classe calcola le festività nazionali italiane di un anno senza alcuna richiesta di rete: le festività a data
+ * fissa vengono aggiunte direttamente, mentre le festività mobili vengono ricavate dalla data della Pasqua calcolata
+ * con l'algoritmo anonimo del calendario gregoriano (Meeus/Jones/Butcher). Le festività sono quelle della legge 260 del
+ * 1949, applicate anche agli anni precedenti, e le modifiche successive: fino al 1976 sono festivi anche San Giuseppe,
+ * l'Ascensione, il Corpus Domini, i Santi Pietro e Paolo e il 4 novembre, aboliti o spostati alla domenica dalla legge
+ * 54 del 1977 insieme all'Epifania, ripristinata dal 1986, e alla Festa della Repubblica, celebrata la prima domenica
+ * di giugno fino al 2000.
+ */
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ItalianHolidays implements HolidayProvider {
+
+    @Override
+    public Map<String, String> getHolidays(int year) {
+        Map<String, String> holidays = new TreeMap<>();
+        boolean before1977 = year < 1977;
+        put(holidays, LocalDate.of(year, Month.JANUARY, 1), "CAPODANNO");
+        if (before1977 || year > 1985)
+            put(holidays, LocalDate.of(year, Month.JANUARY, 6), "EPIFANIA");
+        if (before1977)
+            put(holidays, LocalDate.of(year, Month.MARCH, 19), "SAN GIUSEPPE");
+        LocalDate easter = easterSunday(year);
+        put(holidays, easter, "PASQUA");
+        put(holidays, easter.plusDays(1), "LUNED\u00CC DELL'ANGELO");
+        put(holidays, LocalDate.of(year, Month.APRIL, 25), "FESTA DELLA LIBERAZIONE");
+        put(holidays, LocalDate.of(year, Month.MAY, 1), "FESTA DEL LAVORO");
+        if (before1977) {
+            put(holidays, easter.plusDays(39), "ASCENSIONE");
+            put(holidays, easter.plusDays(60), "CORPUS DOMINI");
+        }
+        if (before1977 || year > 2000)
+            put(holidays, LocalDate.of(year, Month.JUNE, 2), "FESTA DELLA REPUBBLICA");
+        else
+            put(holidays, LocalDate.of(year, Month.JUNE, 1).with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY)), "FESTA DELLA REPUBBLICA");
+        if (before1977)
+            put(holidays, LocalDate.of(year, Month.JUNE, 29), "SANTI PIETRO E PAOLO");
+        put(holidays, LocalDate.of(year, Month.AUGUST, 15), "FERRAGOSTO");
+        put(holidays, LocalDate.of(year, Month.NOVEMBER, 1), "TUTTI I SANTI");
+        if (before1977)
+            put(holidays, LocalDate.of(year, Month.NOVEMBER, 4), "FESTA DELL'UNIT\u00C0 NAZIONALE");
+        put(holidays, LocalDate.of(year, Month.DECEMBER, 8), "IMMACOLATA CONCEZIONE");
+        put(holidays, LocalDate.of(year, Month.DECEMBER, 25), "NATALE");
+        put(holidays, LocalDate.of(year, Month.DECEMBER, 26), "SANTO STEFANO");
+        return holidays;
+    }
+
+    /**
+     * Se due festività cadono nello stesso giorno, ad esempio Pasqua il 25 aprile, viene mantenuta la prima.
+     */
+    private static void put(Map<String, String> holidays, LocalDate date, String name) {
+        holidays.putIfAbsent(date.toString(), name);
+    }
+
+    /**
+     * @param year contiene un anno del calendario gregoriano.
+     * @return la data della domenica di Pasqua.
+     */
+    public static LocalDate easterSunday(int year) {
+        int a = year % 19;
+        int b = year / 100;
+        int c = year % 100;
+        int d = b / 4;
+        int e = b % 4;
+        int f = (b + 8) / 25;
+        int g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4;
+        int k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31;
+        int day = (h + l - 7 * m + 114) % 31 + 1;
+        return LocalDate.of(year, month, day);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Questa classe richiede la lista delle festività italiane di un anno all'API su rapidAPI. Non è più la sorgente
+ * predefinita delle trasformazioni, che usano ItalianHolidays, ma può essere usata per verificare il calendario
+ * calcolato localmente.
+ */
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import com.google.common.io.CharStreams;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RemoteHolidays implements HolidayProvider {
+
+    private static final String COUNTRY = "IT";
+    private static final Type RESPONSE_TYPE = new TypeToken<List<HolidaysDate>>() {}.getType();
+
+    /**
+     * Questo metodo avvia una richiesta http all'API su rapidAPI che restituisce la lista di festività dell'anno.
+     */
+    @Override
+    public Map<String, String> getHolidays(int year) throws IOException {
+        HttpUriRequest request = RequestBuilder.get()
+                .setUri("https://public-holiday.p.rapidapi.com/" + year + "/" + COUNTRY)
+                .addHeader("x-rapidapi-host", "public-holiday.p.rapidapi.com")
+                .addHeader("x-rapidapi-key", "2ffe94d15fmsh77f096ee6ae83e2p1e6163jsn8d8d6c79a2c2")
+                .build();
+        try (CloseableHttpClient client = HttpClients.custom().build();
+             CloseableHttpResponse response = client.execute(request);
+             Reader reader = new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8)) {
+            List<HolidaysDate> holidaysDateList = new Gson().fromJson(CharStreams.toString(reader), RESPONSE_TYPE);
+            if (holidaysDateList == null)
+                throw new IOException("Risposta vuota per l'anno " + year);
+            Map<String, String> holidays = new TreeMap<>();
+            for (HolidaysDate holidaysDate : holidaysDateList)
+                holidays.put(holidaysDate.date, holidaysDate.localName.toUpperCase(Locale.ITALIAN));
+            return holidays;
+        }
+    }
+
+    private static class HolidaysDate {
+        private String date;
+        private String localName;
+
+        public HolidaysDate() {
+            // Empty method required
+            // necessario per deserializzazione JSON.
+        }
+    }
+}
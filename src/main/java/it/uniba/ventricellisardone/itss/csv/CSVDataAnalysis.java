@@ -6,80 +6,1289 @@
  */
 package it.uniba.ventricellisardone.itss.csv;
 
+import it.uniba.ventricellisardone.itss.csv.report.JsonReportWriter;
+import it.uniba.ventricellisardone.itss.csv.report.ReportWriter;
+import it.uniba.ventricellisardone.itss.csv.report.XmlReportWriter;
+import it.uniba.ventricellisardone.itss.csv.sketch.ColumnSketch;
+import it.uniba.ventricellisardone.itss.csv.sketch.Histogram;
+import it.uniba.ventricellisardone.itss.csv.sketch.NumericProfile;
 import it.uniba.ventricellisardone.itss.log.Log;
 import org.apache.commons.io.FileUtils;
 
 import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class CSVDataAnalysis {
 
-    private static final Map<String, Integer> ANALYSIS_HEADER;
-    private final List<CSVRecord> csvRecordList;
+    //  I campi analizzati, con il dizionario e la colonna di RecordBatch da cui vengono letti i loro valori.
+    private static final String[] FIELD_NAMES = {"Colore", "CodStatoFattura", "NomeBrand", "Collezione",
+            "PagamentoOrdine", "NomeCategoria", "MacroCategoria"};
+    private static final ColumnDictionary[] FIELD_DICTIONARIES = {ColumnDictionary.COLOR, ColumnDictionary.COUNTRY_CODE,
+            ColumnDictionary.NOME_BRAND, ColumnDictionary.COLLECTION, ColumnDictionary.PAYMENT_METHOD,
+            ColumnDictionary.CATEGORY, ColumnDictionary.MACRO_CATEGORY};
+    private static final int[] BATCH_COLUMNS = {RecordBatch.COLOR, RecordBatch.COUNTRY_CODE, RecordBatch.NOME_BRAND,
+            RecordBatch.COLLECTION, RecordBatch.PAYMENT_METHOD, RecordBatch.CATEGORY, RecordBatch.MACRO_CATEGORY};
+    //  I campi numerici profilati, con i limiti degli intervalli dei loro istogrammi.
+    private static final String[] NUMERIC_NAMES = {"PrezzoPagato", "Quantita", "Sconto"};
+    private static final double[][] NUMERIC_BOUNDS = {{0, 10, 25, 50, 100, 200, 500, 1000, 2000},
+            {1, 2, 3, 4, 5, 10, 20, 50},
+            {0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100}};
+    //  Numero di bit della chiave di una tabella incrociata riservati all'identificativo del valore di ciascun campo.
+    private static final int DIMENSION_BITS = 21;
+    private static final int MAX_DIMENSIONS = 3;
+    //  Numero di combinazioni seguite da ciascuna tabella incrociata dell'analisi approssimata.
+    static final int APPROXIMATE_CROSS_TAB_VALUES = 1000;
+    //  Numero di record contati da ciascun thread in un'unica operazione.
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Iterable<CSVRecord> csvRecords;
+    private final Iterable<RecordBatch> recordBatches;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Map<String, NumericProfile> numericProfiles;
+    private Counters<?> analysisCounters;
+    private final List<int[]> crossTabDefinitions = new ArrayList<>();
     private static final String TAG = "DataAnalysis.class";
     private static final String XML_EXTENSION = ".xml";
+    private static final String JSON_EXTENSION = ".json";
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+    public static final String DEFAULT_CROSS_TABS = "NomeBrand x NomeCategoria, CodStatoFattura x PagamentoOrdine";
+    private static final int SNAPSHOT_MAGIC = 0x49545341;
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final String APPROXIMATE_COMMENT = "Analisi approssimata: distinctError è l'errore relativo standard "
+            + "del numero di valori distinti, error è l'eccesso massimo del conteggio di ciascun valore";
 
-    static {
-        ANALYSIS_HEADER = Map.of("Colore", 0,
-                "CodStatoFattura", 1,
-                "NomeBrand", 2,
-                "Collezione", 3,
-                "PagamentoOrdine", 4,
-                "NomeCategoria", 5,
-                "MacroCategoria", 6);
+    public CSVDataAnalysis(List<CSVRecord> csvRecordList) {
+        this.csvRecords = csvRecordList;
+        this.recordBatches = null;
     }
 
-    public CSVDataAnalysis(List<CSVRecord> csvRecordList) {
-        this.csvRecordList = csvRecordList;
+    /**
+     * Questo costruttore analizza record memorizzati per colonne: le occorrenze vengono contate per codice di dizionario
+     * in array di interi e convertite nei valori di testo solo al termine di ogni blocco.
+     * @param recordBatches contiene i blocchi di record da analizzare.
+     */
+    public CSVDataAnalysis(Iterable<RecordBatch> recordBatches) {
+        this.csvRecords = null;
+        this.recordBatches = recordBatches;
+    }
+
+    /**
+     * Questo costruttore permette di analizzare i record man mano che vengono letti dal file, senza che debbano essere
+     * tutti presenti in memoria; l'analisi in questo caso può essere effettuata una sola volta.
+     * @param csvRecordIterator contiene l'iteratore dei record da analizzare.
+     */
+    public CSVDataAnalysis(Iterator<CSVRecord> csvRecordIterator) {
+        this.csvRecords = () -> csvRecordIterator;
+        this.recordBatches = null;
+    }
+
+    /**
+     * Costruisce l'analisi a partire da contatori già calcolati, ad esempio quelli uniti da rollUp: il risultato può
+     * essere salvato con saveReport e saveSnapshot.
+     */
+    private CSVDataAnalysis(Counters<?> analysisCounters) {
+        this.csvRecords = Collections.emptyList();
+        this.recordBatches = null;
+        this.analysisCounters = analysisCounters;
+        this.numericProfiles = analysisCounters.toNumericReport();
+    }
+
+    /**
+     * Aggiunge una tabella incrociata tra due o tre dei campi analizzati, ad esempio NomeBrand e NomeCategoria: le
+     * occorrenze di ciascuna combinazione di valori vengono contate nello stesso passaggio dei singoli campi, sia
+     * dall'analisi esatta che da quella approssimata, e riportate da saveReport dopo le categorie dei campi. L'analisi
+     * approssimata segue al massimo APPROXIMATE_CROSS_TAB_VALUES combinazioni per tabella: ogni combinazione con più di
+     * record / (APPROXIMATE_CROSS_TAB_VALUES + 1) occorrenze è riportata, con un conteggio che supera quello reale al
+     * massimo dell'errore indicato nel report.
+     * @param fields contiene i nomi dei campi.
+     * @throws IllegalArgumentException viene sollevata se i campi non sono due o tre campi analizzati distinti.
+     */
+    public void addCrossTab(String... fields) {
+        crossTabDefinitions.add(crossTabDefinition(fields));
+    }
+
+    /**
+     * Interpreta un elenco di tabelle incrociate nella stessa forma dei nomi riportati nel report, ad esempio
+     * "NomeBrand x NomeCategoria, CodStatoFattura x PagamentoOrdine": le tabelle sono separate da virgole o punti e
+     * virgola e i campi di ciascuna tabella da una x tra spazi. Tutte le tabelle vengono verificate prima di essere
+     * restituite, così che possano essere aggiunte con addCrossTab senza errori.
+     * @param definitions contiene l'elenco delle tabelle, un elenco vuoto non contiene tabelle.
+     * @return i campi di ciascuna tabella, nell'ordine dell'elenco.
+     * @throws IllegalArgumentException viene sollevata se una tabella non è composta da due o tre campi analizzati distinti.
+     */
+    public static List<String[]> parseCrossTabs(String definitions) {
+        List<String[]> crossTabList = new ArrayList<>();
+        for (String definition : definitions.split("[,;]")) {
+            if (definition.isBlank())
+                continue;
+            String[] fields = definition.trim().split("\\s+[xX]\\s+");
+            crossTabDefinition(fields);
+            crossTabList.add(fields);
+        }
+        return crossTabList;
+    }
+
+    private static int[] crossTabDefinition(String... fields) {
+        if (fields.length < 2 || fields.length > MAX_DIMENSIONS)
+            throw new IllegalArgumentException("Una tabella incrociata richiede due o tre campi: " + Arrays.toString(fields));
+        int[] definition = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            definition[i] = Arrays.asList(FIELD_NAMES).indexOf(fields[i]);
+            if (definition[i] < 0)
+                throw new IllegalArgumentException("Campo non analizzato: " + fields[i]);
+            for (int j = 0; j < i; j++) {
+                if (definition[j] == definition[i])
+                    throw new IllegalArgumentException("Campo ripetuto: " + fields[i]);
+            }
+        }
+        return definition;
+    }
+
+    /**
+     * @param parallelism contiene il numero di thread con cui contare i record, con valori minori di 2 l'analisi è
+     *                    sequenziale; in assenza di indicazioni vengono utilizzati tutti i processori disponibili.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
     }
 
+    /**
+     * Conta le occorrenze dei valori di ciascun campo in un solo passaggio sui record. I record vengono suddivisi in
+     * porzioni contate in parallelo: ogni thread accumula le occorrenze in propri array di interi indicizzati
+     * dall'identificativo del valore nel ColumnDictionary della colonna, e i contatori dei thread vengono sommati e
+     * convertiti nei valori di testo solo al termine. Leggendo da un iteratore o da blocchi i record continuano ad
+     * essere letti dal thread chiamante, mentre i thread del pool si occupano del conteggio. Nello stesso passaggio
+     * vengono calcolati i profili dei campi numerici, disponibili tramite getNumericProfiles.
+     * @return per ogni campo analizzato, il numero di occorrenze di ciascun valore.
+     * @throws UncheckedIOException viene sollevata se l'analisi viene interrotta, invece di restituire conteggi parziali.
+     */
     public Map<String, Map<String, Integer>> performDataAnalysis(){
-        Map<String, Map<String, Integer>> dataMap = new HashMap<>();
-        for(Map.Entry<String, Integer> entry : ANALYSIS_HEADER.entrySet()){
-            dataMap.put(entry.getKey(), new HashMap<>());
+        FieldCounters fieldCounters = count(() -> new FieldCounters(crossTabs()));
+        analysisCounters = fieldCounters;
+        numericProfiles = fieldCounters.toNumericReport();
+        return fieldCounters.toReport();
+    }
+
+    /**
+     * Versione approssimata di performDataAnalysis per archivi molto grandi, ad esempio le esportazioni di un anno:
+     * per ogni campo vengono stimati in memoria costante il numero di valori distinti, con HyperLogLog, e i valori più
+     * frequenti con il loro conteggio, con Space-Saving e Count-Min, invece di contare esattamente ogni valore. La
+     * lettura avviene in un solo passaggio e può quindi essere effettuata su un iteratore o sui blocchi di un file letto
+     * in streaming, i riassunti dei singoli thread vengono uniti al termine. Anche in questo caso vengono calcolati i
+     * profili dei campi numerici, disponibili tramite getNumericProfiles.
+     * @return per ogni campo analizzato, il riassunto approssimato dei suoi valori.
+     * @throws UncheckedIOException viene sollevata se l'analisi viene interrotta, invece di restituire conteggi parziali.
+     */
+    public Map<String, ColumnSketch> performApproximateAnalysis() {
+        SketchCounters sketchCounters = count(() -> new SketchCounters(crossTabs()));
+        analysisCounters = sketchCounters;
+        numericProfiles = sketchCounters.toNumericReport();
+        return sketchCounters.toReport();
+    }
+
+    /**
+     * Effettua l'analisi esatta o approssimata senza costruire le mappe del report: i contatori vengono conservati e
+     * scritti direttamente da writeReport o saveReport, così che anche i report con milioni di valori non debbano essere
+     * copiati in memoria prima di essere salvati.
+     * @param approximate indica se effettuare l'analisi approssimata di performApproximateAnalysis.
+     * @throws UncheckedIOException viene sollevata se l'analisi viene interrotta, invece di restituire conteggi parziali.
+     */
+    public void performAnalysis(boolean approximate) {
+        analysisCounters = approximate ? count(() -> new SketchCounters(crossTabs())) : count(() -> new FieldCounters(crossTabs()));
+        numericProfiles = analysisCounters.toNumericReport();
+    }
+
+    /**
+     * I profili riportano per i campi PrezzoPagato, Quantita e Sconto numero di valori, minimo, massimo, media, i
+     * quantili stimati con un t-digest e il numero di valori in intervalli prefissati, così da individuare i valori
+     * anomali senza dover conservare tutti i valori.
+     * @return i profili dei campi numerici calcolati dall'ultima analisi, null se non è ancora stata effettuata.
+     */
+    public Map<String, NumericProfile> getNumericProfiles() {
+        return numericProfiles;
+    }
+
+    /**
+     * @return il numero di record contati dall'ultima analisi o dalle istantanee unite, 0 se l'analisi non è stata
+     * ancora effettuata.
+     */
+    public long getRecordCount() {
+        return analysisCounters != null ? analysisCounters.records : 0;
+    }
+
+    private int[][] crossTabs() {
+        return crossTabDefinitions.toArray(new int[0][]);
+    }
+
+    /**
+     * Le combinazioni di ciascuna tabella sono ordinate per numero di occorrenze decrescente, la chiave di ogni
+     * combinazione contiene i valori dei campi separati da " / ".
+     * @return le tabelle incrociate dell'ultima analisi o delle istantanee unite, con chiave i nomi dei campi separati
+     * da " x ", null se l'analisi non è stata effettuata.
+     */
+    public Map<String, Map<String, Integer>> getCrossTabReport() {
+        return analysisCounters != null ? analysisCounters.crossTabs.toReport() : null;
+    }
+
+    /**
+     * @return il report esatto dell'ultima analisi o delle istantanee unite, null se l'analisi non è stata effettuata
+     * o è approssimata.
+     */
+    public Map<String, Map<String, Integer>> getAnalysisReport() {
+        return analysisCounters instanceof FieldCounters ? ((FieldCounters) analysisCounters).toReport() : null;
+    }
+
+    /**
+     * Salva i contatori dell'ultima analisi in un'istantanea binaria: i valori di ciascun campo con le loro occorrenze,
+     * o i riassunti approssimati, e i profili dei campi numerici. Le istantanee di più file, ad esempio le esportazioni
+     * giornaliere di un mese, possono poi essere unite da rollUp senza rileggere i file di origine. Il file viene prima
+     * scritto in una copia temporanea e poi sostituito, così che un'interruzione non lasci un'istantanea incompleta.
+     * @param snapshotFile contiene il file in cui salvare l'istantanea.
+     * @throws IOException viene sollevata se non è possibile scrivere il file.
+     * @throws IllegalStateException viene sollevata se non è stata ancora effettuata nessuna analisi.
+     */
+    public void saveSnapshot(Path snapshotFile) throws IOException {
+        if (analysisCounters == null)
+            throw new IllegalStateException("Nessuna analisi effettuata");
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(snapshotFile.getFileName() + ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            outputStream.writeInt(SNAPSHOT_MAGIC);
+            outputStream.writeInt(SNAPSHOT_VERSION);
+            outputStream.writeBoolean(analysisCounters.isApproximate());
+            int[][] definitions = analysisCounters.crossTabs.definitions;
+            outputStream.writeInt(definitions.length);
+            for (int[] definition : definitions) {
+                outputStream.writeInt(definition.length);
+                for (int field : definition)
+                    outputStream.writeUTF(FIELD_NAMES[field]);
+            }
+            analysisCounters.write(outputStream);
+        }
+        Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Counters<?> readSnapshot(Path snapshotFile) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            if (inputStream.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("Formato dell'istantanea non riconosciuto: " + snapshotFile);
+            //  La versione 1 non contiene le tabelle incrociate.
+            int version = inputStream.readInt();
+            if (version < 1 || version > SNAPSHOT_VERSION)
+                throw new IOException("Versione dell'istantanea non supportata: " + version);
+            boolean approximate = inputStream.readBoolean();
+            List<int[]> definitions = new ArrayList<>();
+            int crossTabs = version > 1 ? inputStream.readInt() : 0;
+            for (int i = 0; i < crossTabs; i++) {
+                int[] definition = new int[inputStream.readInt()];
+                for (int j = 0; j < definition.length; j++)
+                    definition[j] = Arrays.asList(FIELD_NAMES).indexOf(inputStream.readUTF());
+                definitions.add(definition);
+            }
+            int[][] definitionArray = definitions.toArray(new int[0][]);
+            Counters<?> counters = approximate ? new SketchCounters(definitionArray) : new FieldCounters(definitionArray);
+            counters.read(inputStream, version);
+            return counters;
+        }
+    }
+
+    /**
+     * Unisce le istantanee salvate da saveSnapshot, ad esempio quelle di una settimana o di un mese, nell'ordine
+     * indicato: i valori vengono riportati nell'ordine in cui compaiono nei file, come se fossero stati letti uno dopo
+     * l'altro. Se almeno un'istantanea è approssimata il risultato è approssimato, e i conteggi esatti delle altre
+     * vengono aggiunti ai riassunti. Il risultato contiene tutte le tabelle incrociate presenti nelle istantanee.
+     * @param snapshotFiles contiene i file delle istantanee.
+     * @return l'analisi unita, da salvare con saveReport o saveSnapshot.
+     * @throws IOException viene sollevata se un'istantanea non può essere letta.
+     */
+    public static CSVDataAnalysis rollUp(List<Path> snapshotFiles) throws IOException {
+        List<Counters<?>> snapshots = new ArrayList<>(snapshotFiles.size());
+        boolean approximate = false;
+        List<int[]> definitions = new ArrayList<>();
+        for (Path snapshotFile : snapshotFiles) {
+            Counters<?> snapshot = readSnapshot(snapshotFile);
+            approximate |= snapshot.isApproximate();
+            for (int[] definition : snapshot.crossTabs.definitions) {
+                if (definitions.stream().noneMatch(known -> Arrays.equals(known, definition)) && !contains(definition, -1))
+                    definitions.add(definition);
+            }
+            snapshots.add(snapshot);
+        }
+        int[][] definitionArray = definitions.toArray(new int[0][]);
+        Counters<?> total = approximate ? new SketchCounters(definitionArray) : new FieldCounters(definitionArray);
+        for (Counters<?> snapshot : snapshots)
+            total.addSnapshot(snapshot);
+        return new CSVDataAnalysis(total);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int element : values) {
+            if (element == value)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @throws UncheckedIOException viene sollevata, con causa InterruptedIOException, se il thread viene interrotto
+     *                              durante il conteggio parallelo; lo stato di interruzione viene mantenuto.
+     */
+    private <C extends Counters<C>> C count(Supplier<C> counterFactory) {
+        Iterator<Consumer<Counters<?>>> chunks = recordBatches != null ? batchChunks(recordBatches.iterator())
+                : recordChunks(csvRecords);
+        C total = counterFactory.get();
+        if (!chunks.hasNext())
+            return total;
+        Consumer<Counters<?>> firstChunk = chunks.next();
+        if (parallelism < 2 || !chunks.hasNext()) {
+            firstChunk.accept(total);
+            chunks.forEachRemaining(chunk -> chunk.accept(total));
+            return total;
+        }
+        Queue<C> threadCounters = new ConcurrentLinkedQueue<>();
+        ThreadLocal<C> localCounters = ThreadLocal.withInitial(() -> {
+            C counters = counterFactory.get();
+            threadCounters.add(counters);
+            return counters;
+        });
+        //  Limita le porzioni in attesa, così che leggendo un file i record letti non si accumulino in memoria.
+        Semaphore pending = new Semaphore(parallelism * 2);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Consumer<Counters<?>> chunk = firstChunk;
+            while (chunk != null && failure.get() == null) {
+                pending.acquire();
+                Consumer<Counters<?>> task = chunk;
+                pool.execute(() -> {
+                    try {
+                        task.accept(localCounters.get());
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pending.release();
+                    }
+                });
+                chunk = chunks.hasNext() ? chunks.next() : null;
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            //  I contatori dei thread sono parziali: restituirli produrrebbe un report incompleto senza segnalarlo.
+            Log.e(TAG, "Analisi interrotta", e);
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Analisi interrotta"));
+        }
+        if (failure.get() != null)
+            throw failure.get();
+        for (C counters : threadCounters)
+            total.addAll(counters);
+        return total;
+    }
+
+    /**
+     * Suddivide i record in porzioni di CHUNK_SIZE: le liste vengono suddivise tramite subList, mentre i record
+     * forniti da un iteratore vengono raccolti in una nuova lista per ogni porzione.
+     */
+    private static Iterator<Consumer<Counters<?>>> recordChunks(Iterable<CSVRecord> csvRecords) {
+        if (csvRecords instanceof List && csvRecords instanceof RandomAccess) {
+            List<CSVRecord> csvRecordList = (List<CSVRecord>) csvRecords;
+            return new Iterator<>() {
+                private int from;
+
+                @Override
+                public boolean hasNext() {
+                    return from < csvRecordList.size();
+                }
+
+                @Override
+                public Consumer<Counters<?>> next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    List<CSVRecord> chunk = csvRecordList.subList(from, Math.min(from + CHUNK_SIZE, csvRecordList.size()));
+                    int position = from;
+                    from += chunk.size();
+                    return counters -> counters.add(chunk, position);
+                }
+            };
+        }
+        Iterator<CSVRecord> csvRecordIterator = csvRecords.iterator();
+        return new Iterator<>() {
+            private long position;
+
+            @Override
+            public boolean hasNext() {
+                return csvRecordIterator.hasNext();
+            }
+
+            @Override
+            public Consumer<Counters<?>> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                List<CSVRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (chunk.size() < CHUNK_SIZE && csvRecordIterator.hasNext())
+                    chunk.add(csvRecordIterator.next());
+                long chunkPosition = position;
+                position += chunk.size();
+                return counters -> counters.add(chunk, chunkPosition);
+            }
+        };
+    }
+
+    private static Iterator<Consumer<Counters<?>>> batchChunks(Iterator<RecordBatch> batchIterator) {
+        return new Iterator<>() {
+            private long position;
+
+            @Override
+            public boolean hasNext() {
+                return batchIterator.hasNext();
+            }
+
+            @Override
+            public Consumer<Counters<?>> next() {
+                RecordBatch recordBatch = batchIterator.next();
+                long batchPosition = position;
+                position += recordBatch.size();
+                return counters -> counters.add(recordBatch, batchPosition);
+            }
+        };
+    }
+
+    /**
+     * Contatori dei campi analizzati, utilizzati da un solo thread alla volta: le sottoclassi ricevono ogni valore
+     * con il numero delle sue occorrenze e la posizione del primo record che lo contiene, mentre i valori dei campi
+     * numerici vengono aggiunti ai profili comuni a entrambi i tipi di analisi.
+     */
+    private abstract static class Counters<C extends Counters<C>> {
+        private final NumericProfile[] numericProfiles = new NumericProfile[NUMERIC_NAMES.length];
+        private final CrossTabs crossTabs;
+        private long records;
+
+        /**
+         * @param crossTabCapacity contiene il numero di combinazioni seguite da ciascuna tabella incrociata, 0 per
+         *                         contarle tutte esattamente.
+         */
+        Counters(int[][] crossTabDefinitions, int crossTabCapacity) {
+            for (int field = 0; field < NUMERIC_NAMES.length; field++)
+                numericProfiles[field] = new NumericProfile(NUMERIC_BOUNDS[field]);
+            crossTabs = new CrossTabs(crossTabDefinitions, crossTabCapacity);
+        }
+
+        /**
+         * @param position contiene la posizione del primo record della lista tra tutti i record analizzati.
+         */
+        void add(List<? extends RecordView> records, long position) {
+            for (RecordView record : records) {
+                add(0, record.getColor(), 1, position);
+                add(1, record.getCountryCode(), 1, position);
+                add(2, record.getNomeBrand(), 1, position);
+                add(3, record.getCollection(), 1, position);
+                add(4, record.getPaymentMethod(), 1, position);
+                add(5, record.getCategory(), 1, position);
+                add(6, record.getMacroCategory(), 1, position);
+                numericProfiles[0].add(record.getPayedPrice());
+                numericProfiles[1].add(record.getQuantity());
+                numericProfiles[2].add(record.getDiscount());
+                crossTabs.add(record);
+                position++;
+            }
+            this.records += records.size();
+        }
+
+        /**
+         * Le righe del blocco vengono prima contate per codice del dizionario del blocco, così che ogni valore
+         * distinto venga passato una sola volta per blocco. I codici sono assegnati nell'ordine in cui i valori
+         * compaiono nel blocco, la prima riga di ciascun codice viene quindi trovata scorrendo le righe.
+         */
+        void add(RecordBatch recordBatch, long position) {
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                int column = BATCH_COLUMNS[field];
+                StringDictionary dictionary = recordBatch.getDictionary(column);
+                int[] codeCounters = new int[dictionary.size()];
+                int[] firstRows = new int[dictionary.size()];
+                for (int row = 0; row < recordBatch.size(); row++) {
+                    int code = recordBatch.getCode(column, row);
+                    if (codeCounters[code]++ == 0)
+                        firstRows[code] = row;
+                }
+                for (int code = 0; code < codeCounters.length; code++) {
+                    if (codeCounters[code] > 0)
+                        add(field, dictionary.decode(code), codeCounters[code], position + firstRows[code]);
+                }
+            }
+            for (int row = 0; row < recordBatch.size(); row++)
+                numericProfiles[0].add(recordBatch.getPayedPrice(row));
+            for (int row = 0; row < recordBatch.size(); row++)
+                numericProfiles[1].add(recordBatch.getQuantity(row));
+            for (int row = 0; row < recordBatch.size(); row++)
+                numericProfiles[2].add(recordBatch.getDiscount(row));
+            crossTabs.add(recordBatch);
+            records += recordBatch.size();
+        }
+
+        abstract void add(int field, String value, int count, long position);
+
+        void addAll(C counters) {
+            Counters<?> other = counters;
+            for (int field = 0; field < NUMERIC_NAMES.length; field++)
+                numericProfiles[field].merge(other.numericProfiles[field]);
+            records += other.records;
+            crossTabs.addAll(other.crossTabs);
+            addAllFields(counters);
+        }
+
+        abstract void addAllFields(C counters);
+
+        /**
+         * Aggiunge i contatori letti da un'istantanea come se i suoi record seguissero quelli già contati: i riassunti
+         * approssimati vengono uniti, mentre i valori contati esattamente vengono aggiunti uno alla volta.
+         */
+        @SuppressWarnings("unchecked")
+        void addSnapshot(Counters<?> snapshot) {
+            if (snapshot instanceof FieldCounters) {
+                for (int field = 0; field < NUMERIC_NAMES.length; field++)
+                    numericProfiles[field].merge(snapshot.numericProfiles[field]);
+                crossTabs.addAll(snapshot.crossTabs);
+                ((FieldCounters) snapshot).replay(this, records);
+                records += snapshot.records;
+            } else if (getClass() == snapshot.getClass())
+                addAll((C) snapshot);
+            else
+                throw new IllegalArgumentException("Un'istantanea approssimata non può essere aggiunta a un'analisi esatta");
+        }
+
+        void write(DataOutputStream outputStream) throws IOException {
+            outputStream.writeLong(records);
+            outputStream.writeInt(NUMERIC_NAMES.length);
+            for (int field = 0; field < NUMERIC_NAMES.length; field++) {
+                outputStream.writeUTF(NUMERIC_NAMES[field]);
+                numericProfiles[field].write(outputStream);
+            }
+            outputStream.writeInt(FIELD_NAMES.length);
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                outputStream.writeUTF(FIELD_NAMES[field]);
+                writeField(outputStream, field);
+            }
+            crossTabs.write(outputStream);
+        }
+
+        /**
+         * I campi vengono letti per nome, così che un'istantanea resti leggibile anche se l'elenco dei campi cambia.
+         */
+        void read(DataInputStream inputStream, int version) throws IOException {
+            records = inputStream.readLong();
+            int numericFields = inputStream.readInt();
+            for (int i = 0; i < numericFields; i++) {
+                int field = Arrays.asList(NUMERIC_NAMES).indexOf(inputStream.readUTF());
+                NumericProfile profile = NumericProfile.read(inputStream);
+                if (field >= 0)
+                    numericProfiles[field] = profile;
+            }
+            int fields = inputStream.readInt();
+            for (int i = 0; i < fields; i++)
+                readField(inputStream, Arrays.asList(FIELD_NAMES).indexOf(inputStream.readUTF()));
+            if (version > 1)
+                crossTabs.read(inputStream, version);
+        }
+
+        abstract void writeField(DataOutputStream outputStream, int field) throws IOException;
+
+        /**
+         * @param field contiene l'indice del campo, -1 se il campo non è più analizzato e deve essere solo letto.
+         */
+        abstract void readField(DataInputStream inputStream, int field) throws IOException;
+
+        Map<String, NumericProfile> toNumericReport() {
+            Map<String, NumericProfile> numericMap = new LinkedHashMap<>();
+            for (int field = 0; field < NUMERIC_NAMES.length; field++)
+                numericMap.put(NUMERIC_NAMES[field], numericProfiles[field]);
+            return numericMap;
+        }
+
+        abstract boolean isApproximate();
+
+        /**
+         * Scrive una categoria per ogni campo analizzato.
+         */
+        abstract void writeCategories(ReportWriter writer) throws IOException;
+    }
+
+    /**
+     * Contatori delle occorrenze dei campi analizzati, utilizzati da un solo thread alla volta. I valori presenti nel
+     * dizionario della colonna vengono contati in un array indicizzato dal loro identificativo, gli altri, presenti
+     * solo se il dizionario ha raggiunto la dimensione massima, in una mappa. Per ogni valore viene ricordata anche la
+     * posizione del primo record che lo contiene, così che il report elenchi i valori nello stesso ordine di un
+     * conteggio sequenziale indipendentemente da come i record sono stati suddivisi tra i thread.
+     */
+    private static class FieldCounters extends Counters<FieldCounters> {
+        private final int[][] counters = new int[FIELD_NAMES.length][];
+        private final long[][] firstPositions = new long[FIELD_NAMES.length][];
+        private final List<Map<String, long[]>> otherValues = new ArrayList<>(FIELD_NAMES.length);
+
+        FieldCounters(int[][] crossTabDefinitions) {
+            super(crossTabDefinitions, 0);
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                counters[field] = new int[64];
+                firstPositions[field] = new long[64];
+                Arrays.fill(firstPositions[field], Long.MAX_VALUE);
+                otherValues.add(new HashMap<>());
+            }
+        }
+
+        @Override
+        void add(int field, String value, int count, long position) {
+            int id = FIELD_DICTIONARIES[field].id(value);
+            if (id < 0) {
+                long[] other = otherValues.get(field).computeIfAbsent(value, newValue -> new long[]{0, Long.MAX_VALUE});
+                other[0] += count;
+                other[1] = Math.min(other[1], position);
+                return;
+            }
+            if (id >= counters[field].length)
+                grow(field, Math.max(id + 1, counters[field].length * 2));
+            counters[field][id] += count;
+            if (position < firstPositions[field][id])
+                firstPositions[field][id] = position;
+        }
+
+        private void grow(int field, int length) {
+            int oldLength = counters[field].length;
+            counters[field] = Arrays.copyOf(counters[field], length);
+            firstPositions[field] = Arrays.copyOf(firstPositions[field], length);
+            Arrays.fill(firstPositions[field], oldLength, length, Long.MAX_VALUE);
+        }
+
+        @Override
+        void addAllFields(FieldCounters fieldCounters) {
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                int[] otherCounters = fieldCounters.counters[field];
+                if (otherCounters.length > counters[field].length)
+                    grow(field, otherCounters.length);
+                for (int id = 0; id < otherCounters.length; id++) {
+                    counters[field][id] += otherCounters[id];
+                    firstPositions[field][id] = Math.min(firstPositions[field][id], fieldCounters.firstPositions[field][id]);
+                }
+                for (Map.Entry<String, long[]> entry : fieldCounters.otherValues.get(field).entrySet()) {
+                    long[] other = otherValues.get(field).computeIfAbsent(entry.getKey(), newValue -> new long[]{0, Long.MAX_VALUE});
+                    other[0] += entry.getValue()[0];
+                    other[1] = Math.min(other[1], entry.getValue()[1]);
+                }
+            }
+        }
+
+        /**
+         * @return i valori contati del campo, nell'ordine in cui compaiono nei record.
+         */
+        private List<FieldValue> fieldValues(int field) {
+            String[] values = FIELD_DICTIONARIES[field].values();
+            List<FieldValue> fieldValues = new ArrayList<>();
+            for (int id = 0; id < counters[field].length; id++) {
+                if (counters[field][id] > 0)
+                    fieldValues.add(new FieldValue(values[id], counters[field][id], firstPositions[field][id]));
+            }
+            for (Map.Entry<String, long[]> entry : otherValues.get(field).entrySet())
+                fieldValues.add(new FieldValue(entry.getKey(), (int) entry.getValue()[0], entry.getValue()[1]));
+            fieldValues.sort(Comparator.comparingLong(fieldValue -> fieldValue.firstPosition));
+            return fieldValues;
+        }
+
+        /**
+         * I valori vengono inseriti nella mappa di ciascun campo nell'ordine in cui compaiono nei record.
+         */
+        Map<String, Map<String, Integer>> toReport() {
+            Map<String, Map<String, Integer>> dataMap = new HashMap<>();
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                Map<String, Integer> fieldMap = new HashMap<>();
+                for (FieldValue fieldValue : fieldValues(field))
+                    fieldMap.put(fieldValue.value, fieldValue.count);
+                dataMap.put(FIELD_NAMES[field], fieldMap);
+            }
+            return dataMap;
+        }
+
+        @Override
+        boolean isApproximate() {
+            return false;
+        }
+
+        /**
+         * Aggiunge i valori contati ad altri contatori, spostando la posizione del primo record di ciascun valore.
+         */
+        void replay(Counters<?> target, long positionOffset) {
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                for (FieldValue fieldValue : fieldValues(field))
+                    target.add(field, fieldValue.value, fieldValue.count, positionOffset + fieldValue.firstPosition);
+            }
+        }
+
+        @Override
+        void writeField(DataOutputStream outputStream, int field) throws IOException {
+            List<FieldValue> fieldValues = fieldValues(field);
+            outputStream.writeInt(fieldValues.size());
+            for (FieldValue fieldValue : fieldValues) {
+                outputStream.writeUTF(fieldValue.value);
+                outputStream.writeInt(fieldValue.count);
+                outputStream.writeLong(fieldValue.firstPosition);
+            }
         }
-        for(CSVRecord record : csvRecordList){
-            String[] stringsRecord = CSVRecord.reverseCSVRecordForAnalysis(record);
-            dataMap.replaceAll((k, v) -> checkField(stringsRecord[ANALYSIS_HEADER.get(k)], v));
+
+        @Override
+        void readField(DataInputStream inputStream, int field) throws IOException {
+            int size = inputStream.readInt();
+            for (int i = 0; i < size; i++) {
+                String value = inputStream.readUTF();
+                int count = inputStream.readInt();
+                long firstPosition = inputStream.readLong();
+                if (field >= 0)
+                    add(field, value, count, firstPosition);
+            }
+        }
+
+        @Override
+        void writeCategories(ReportWriter writer) throws IOException {
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                writer.startCategory(FIELD_NAMES[field]);
+                for (FieldValue fieldValue : fieldValues(field))
+                    writer.entry(fieldValue.value, fieldValue.count);
+                writer.endCategory();
+            }
         }
-        return dataMap;
     }
 
-    private Map<String, Integer> checkField(String fieldValue, Map<String, Integer> fieldMap){
-        if(fieldMap.containsKey(fieldValue))
-            fieldMap.put(fieldValue, fieldMap.get(fieldValue) + 1);
-        else
-            fieldMap.put(fieldValue, 1);
-        return fieldMap;
+    /**
+     * Riassunti approssimati dei campi analizzati, utilizzati da un solo thread alla volta.
+     */
+    private static class SketchCounters extends Counters<SketchCounters> {
+        private final ColumnSketch[] sketches = new ColumnSketch[FIELD_NAMES.length];
+
+        SketchCounters(int[][] crossTabDefinitions) {
+            super(crossTabDefinitions, APPROXIMATE_CROSS_TAB_VALUES);
+            for (int field = 0; field < FIELD_NAMES.length; field++)
+                sketches[field] = new ColumnSketch();
+        }
+
+        @Override
+        void add(int field, String value, int count, long position) {
+            sketches[field].add(value, count);
+        }
+
+        @Override
+        void addAllFields(SketchCounters sketchCounters) {
+            for (int field = 0; field < FIELD_NAMES.length; field++)
+                sketches[field].merge(sketchCounters.sketches[field]);
+        }
+
+        Map<String, ColumnSketch> toReport() {
+            Map<String, ColumnSketch> sketchMap = new HashMap<>();
+            for (int field = 0; field < FIELD_NAMES.length; field++)
+                sketchMap.put(FIELD_NAMES[field], sketches[field]);
+            return sketchMap;
+        }
+
+        @Override
+        boolean isApproximate() {
+            return true;
+        }
+
+        @Override
+        void writeField(DataOutputStream outputStream, int field) throws IOException {
+            sketches[field].write(outputStream);
+        }
+
+        @Override
+        void readField(DataInputStream inputStream, int field) throws IOException {
+            ColumnSketch sketch = ColumnSketch.read(inputStream);
+            if (field >= 0)
+                sketches[field] = sketch;
+        }
+
+        @Override
+        void writeCategories(ReportWriter writer) throws IOException {
+            for (int field = 0; field < FIELD_NAMES.length; field++)
+                writeSketch(writer, FIELD_NAMES[field], sketches[field]);
+        }
+    }
+
+    /**
+     * Tabelle incrociate tra due o tre campi, utilizzate da un solo thread alla volta. Ogni combinazione di valori è
+     * rappresentata da una chiave long composta dagli identificativi dei valori, DIMENSION_BITS bit per campo, e le sue
+     * occorrenze vengono contate in una LongCounterMap. Gli identificativi sono quelli del ColumnDictionary del campo,
+     * comuni a tutti i thread; i valori assenti dal dizionario, perché ha raggiunto la dimensione massima o perché
+     * letti da un'istantanea, ricevono un identificativo locale a partire da ColumnDictionary.MAX_VALUES, e le tabelle
+     * che ne contengono vengono unite traducendo le chiavi attraverso i valori. Nell'analisi approssimata ogni tabella
+     * viene ridotta con LongCounterMap.reduce quando supera il doppio delle combinazioni seguite, così che la memoria
+     * non dipenda dal numero di combinazioni distinte: le quantità sottratte vengono sommate nell'errore della tabella e
+     * riaggiunte ai conteggi del report, che quindi superano quelli reali al massimo dell'errore come in Space-Saving.
+     */
+    private static class CrossTabs {
+        private final int[][] definitions;
+        private final int capacity;
+        private final LongCounterMap[] counts;
+        private final long[] errors;
+        private final List<Map<String, Integer>> overflowIds = new ArrayList<>(FIELD_NAMES.length);
+        private final List<List<String>> overflowValues = new ArrayList<>(FIELD_NAMES.length);
+
+        /**
+         * @param definitions contiene gli indici dei campi di ciascuna tabella, un indice -1 indica un campo non più
+         *                    analizzato letto da un'istantanea: la tabella viene letta ma non conteggiata.
+         */
+        CrossTabs(int[][] definitions, int capacity) {
+            this.definitions = definitions;
+            this.capacity = capacity;
+            this.counts = new LongCounterMap[definitions.length];
+            this.errors = new long[definitions.length];
+            for (int table = 0; table < definitions.length; table++)
+                counts[table] = new LongCounterMap();
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                overflowIds.add(new HashMap<>());
+                overflowValues.add(new ArrayList<>());
+            }
+        }
+
+        void add(RecordView record) {
+            for (int table = 0; table < definitions.length; table++) {
+                long key = 0;
+                for (int field : definitions[table])
+                    key = key << DIMENSION_BITS | id(field, fieldValue(record, field));
+                counts[table].add(key, 1);
+                bound(table);
+            }
+        }
+
+        /**
+         * Riduce la tabella se l'analisi è approssimata e la tabella supera il doppio delle combinazioni seguite.
+         */
+        private void bound(int table) {
+            if (capacity > 0 && counts[table].size() > capacity * 2)
+                errors[table] += counts[table].reduce(capacity);
+        }
+
+        /**
+         * Gli identificativi vengono calcolati una sola volta per ogni codice del dizionario del blocco.
+         */
+        void add(RecordBatch recordBatch) {
+            if (definitions.length == 0)
+                return;
+            int[][] codeIds = new int[FIELD_NAMES.length][];
+            for (int[] definition : definitions) {
+                for (int field : definition) {
+                    if (codeIds[field] != null)
+                        continue;
+                    StringDictionary dictionary = recordBatch.getDictionary(BATCH_COLUMNS[field]);
+                    codeIds[field] = new int[dictionary.size()];
+                    for (int code = 0; code < dictionary.size(); code++)
+                        codeIds[field][code] = id(field, dictionary.decode(code));
+                }
+            }
+            for (int table = 0; table < definitions.length; table++) {
+                int[] definition = definitions[table];
+                for (int row = 0; row < recordBatch.size(); row++) {
+                    long key = 0;
+                    for (int field : definition)
+                        key = key << DIMENSION_BITS | codeIds[field][recordBatch.getCode(BATCH_COLUMNS[field], row)];
+                    counts[table].add(key, 1);
+                    bound(table);
+                }
+            }
+        }
+
+        /**
+         * Un valore che ha già ricevuto un identificativo locale continua ad utilizzarlo, così che non venga contato
+         * con due chiavi diverse se nel frattempo è stato aggiunto al dizionario.
+         */
+        private int id(int field, String value) {
+            List<String> values = overflowValues.get(field);
+            if (!values.isEmpty()) {
+                Integer overflowId = overflowIds.get(field).get(value);
+                if (overflowId != null)
+                    return overflowId;
+            }
+            int id = FIELD_DICTIONARIES[field].id(value);
+            if (id >= 0)
+                return id;
+            id = ColumnDictionary.MAX_VALUES + values.size();
+            if (id >= 1 << DIMENSION_BITS)
+                throw new IllegalStateException("Troppi valori distinti nel campo " + FIELD_NAMES[field]);
+            values.add(value);
+            overflowIds.get(field).put(value, id);
+            return id;
+        }
+
+        private boolean hasOverflow() {
+            for (List<String> values : overflowValues) {
+                if (!values.isEmpty())
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param dictionaryValues contiene i valori dei dizionari dei campi, letti una sola volta con values().
+         */
+        private String[] decode(int[] definition, long key, String[][] dictionaryValues) {
+            String[] values = new String[definition.length];
+            for (int i = definition.length - 1; i >= 0; i--) {
+                int id = (int) (key & ((1 << DIMENSION_BITS) - 1));
+                int field = definition[i];
+                values[i] = id < ColumnDictionary.MAX_VALUES ? dictionaryValues[field][id]
+                        : overflowValues.get(field).get(id - ColumnDictionary.MAX_VALUES);
+                key >>>= DIMENSION_BITS;
+            }
+            return values;
+        }
+
+        private static String[][] dictionaryValues() {
+            String[][] dictionaryValues = new String[FIELD_NAMES.length][];
+            for (int field = 0; field < FIELD_NAMES.length; field++)
+                dictionaryValues[field] = FIELD_DICTIONARIES[field].values();
+            return dictionaryValues;
+        }
+
+        private int indexOf(int[] definition) {
+            for (int table = 0; table < definitions.length; table++) {
+                if (Arrays.equals(definitions[table], definition))
+                    return table;
+            }
+            return -1;
+        }
+
+        /**
+         * Aggiunge le tabelle di un'altra istanza con gli stessi campi, le altre vengono ignorate. Gli errori delle due
+         * tabelle si sommano, come le quantità sottratte da riduzioni successive.
+         */
+        void addAll(CrossTabs other) {
+            boolean translate = hasOverflow() || other.hasOverflow();
+            String[][] dictionaryValues = translate ? dictionaryValues() : null;
+            for (int otherTable = 0; otherTable < other.definitions.length; otherTable++) {
+                int table = indexOf(other.definitions[otherTable]);
+                if (table < 0)
+                    continue;
+                int[] definition = definitions[table];
+                LongCounterMap tableCounts = counts[table];
+                if (!translate)
+                    other.counts[otherTable].forEach(tableCounts::add);
+                else
+                    other.counts[otherTable].forEach((key, count) -> tableCounts.add(key(definition,
+                            other.decode(definition, key, dictionaryValues)), count));
+                errors[table] += other.errors[otherTable];
+                bound(table);
+            }
+        }
+
+        private long key(int[] definition, String[] values) {
+            long key = 0;
+            for (int i = 0; i < definition.length; i++)
+                key = key << DIMENSION_BITS | id(definition[i], values[i]);
+            return key;
+        }
+
+        /**
+         * @return le combinazioni della tabella ordinate per numero di occorrenze decrescente.
+         */
+        private List<CrossTabValue> values(int table, String[][] dictionaryValues) {
+            List<CrossTabValue> values = new ArrayList<>(counts[table].size());
+            counts[table].forEach((key, count) -> values.add(new CrossTabValue(decode(definitions[table], key, dictionaryValues), count)));
+            values.sort(Comparator.comparingLong((CrossTabValue value) -> value.count).reversed()
+                    .thenComparing(value -> String.join(" / ", value.values)));
+            return values;
+        }
+
+        private static String name(int[] definition) {
+            String[] names = new String[definition.length];
+            for (int i = 0; i < definition.length; i++)
+                names[i] = FIELD_NAMES[definition[i]];
+            return String.join(" x ", names);
+        }
+
+        Map<String, Map<String, Integer>> toReport() {
+            String[][] dictionaryValues = dictionaryValues();
+            Map<String, Map<String, Integer>> crossTabMap = new LinkedHashMap<>();
+            for (int table = 0; table < definitions.length; table++) {
+                Map<String, Integer> tableMap = new LinkedHashMap<>();
+                for (CrossTabValue value : values(table, dictionaryValues))
+                    tableMap.merge(String.join(" / ", value.values), (int) (value.count + errors[table]), Integer::sum);
+                crossTabMap.put(name(definitions[table]), tableMap);
+            }
+            return crossTabMap;
+        }
+
+        /**
+         * Ogni tabella è una categoria di tipo crosstab, ogni combinazione riporta anche il valore di ciascun campo.
+         * Nell'analisi approssimata la categoria riporta l'errore massimo dei conteggi al posto del numero di
+         * combinazioni distinte, che non è noto.
+         */
+        void writeCategories(ReportWriter writer) throws IOException {
+            String[][] dictionaryValues = dictionaryValues();
+            for (int table = 0; table < definitions.length; table++) {
+                int[] definition = definitions[table];
+                if (capacity > 0)
+                    writer.startCategory(name(definition), "type", "crosstab", "error", errors[table]);
+                else
+                    writer.startCategory(name(definition), "type", "crosstab", "distinct", counts[table].size());
+                Object[] attributes = new Object[definition.length * 2];
+                for (CrossTabValue value : values(table, dictionaryValues)) {
+                    for (int i = 0; i < definition.length; i++) {
+                        attributes[i * 2] = FIELD_NAMES[definition[i]];
+                        attributes[i * 2 + 1] = value.values[i];
+                    }
+                    writer.entry(String.join(" / ", value.values), value.count + errors[table], attributes);
+                }
+                writer.endCategory();
+            }
+        }
+
+        /**
+         * Dalla versione 3 ogni tabella è seguita dal proprio errore.
+         */
+        void write(DataOutputStream outputStream) throws IOException {
+            String[][] dictionaryValues = dictionaryValues();
+            for (int table = 0; table < definitions.length; table++) {
+                outputStream.writeInt(counts[table].size());
+                for (CrossTabValue value : values(table, dictionaryValues)) {
+                    for (String fieldValue : value.values)
+                        outputStream.writeUTF(fieldValue);
+                    outputStream.writeLong(value.count);
+                }
+                outputStream.writeLong(errors[table]);
+            }
+        }
+
+        void read(DataInputStream inputStream, int version) throws IOException {
+            for (int table = 0; table < definitions.length; table++) {
+                int[] definition = definitions[table];
+                boolean known = !contains(definition, -1);
+                int size = inputStream.readInt();
+                String[] values = new String[definition.length];
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < values.length; j++)
+                        values[j] = inputStream.readUTF();
+                    long count = inputStream.readLong();
+                    if (known)
+                        counts[table].add(key(definition, values), count);
+                }
+                if (version > 2)
+                    errors[table] = inputStream.readLong();
+            }
+        }
+    }
+
+    private static String fieldValue(RecordView record, int field) {
+        switch (field) {
+            case 0:
+                return record.getColor();
+            case 1:
+                return record.getCountryCode();
+            case 2:
+                return record.getNomeBrand();
+            case 3:
+                return record.getCollection();
+            case 4:
+                return record.getPaymentMethod();
+            case 5:
+                return record.getCategory();
+            case 6:
+                return record.getMacroCategory();
+            default:
+                throw new IllegalArgumentException("Campo non analizzato: " + field);
+        }
+    }
+
+    private static class CrossTabValue {
+        private final String[] values;
+        private final long count;
+
+        CrossTabValue(String[] values, long count) {
+            this.values = values;
+            this.count = count;
+        }
+    }
+
+    private static class FieldValue {
+        private final String value;
+        private final int count;
+        private final long firstPosition;
+
+        FieldValue(String value, int count, long firstPosition) {
+            this.value = value;
+            this.count = count;
+            this.firstPosition = firstPosition;
+        }
     }
 
     public void logDataAnalysis(Map<String, Map<String, Integer>> analysisReport, String pathDirectory, String fileName) throws IOException {
+        logDataAnalysis(analysisReport, null, pathDirectory, fileName);
+    }
+
+    /**
+     * Salva il report di performDataAnalysis seguito dai profili dei campi numerici: ogni profilo è una categoria di
+     * tipo numeric con numero di valori, minimo, massimo e media, seguiti dai quantili e dal numero di valori di ciascun
+     * intervallo dell'istogramma.
+     * @param numericProfiles contiene i profili restituiti da getNumericProfiles, può essere null.
+     */
+    public void logDataAnalysis(Map<String, Map<String, Integer>> analysisReport, Map<String, NumericProfile> numericProfiles,
+                                String pathDirectory, String fileName) throws IOException {
         pathDirectory += "" + File.separator + "Analysis" + File.separator + "";
         pathDirectory = Paths.get(pathDirectory).toString();
         fileName = checkDirectoryAndFileName(pathDirectory, fileName);
-        try {
-            PrintWriter writer = new PrintWriter(new FileOutputStream(pathDirectory + File.separator + fileName, false));
-            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            if(fileName.contains("test"))
-                writer.println("<data type=\"test\">");
-            else
-                writer.println("<data type=\"execution\">");
-            for(Map.Entry<String, Map<String, Integer>> category : analysisReport.entrySet()){
-                writer.println("\t<category key=\"" + category.getKey() + "\">");
-                for(Map.Entry<String, Integer> entry : category.getValue().entrySet())
-                    writer.println("\t\t<entry key=\"" + entry.getKey() + "\" value=\"" + entry.getValue() + "\"/>");
-                writer.println("\t</category>");
-            }
-            writer.println("</data>");
-            writer.close();
+        try (ReportWriter writer = new XmlReportWriter(new FileOutputStream(pathDirectory + File.separator + fileName, false))) {
+            writer.startReport(reportType(fileName), null, null);
+            for (Map.Entry<String, Map<String, Integer>> category : analysisReport.entrySet())
+                writeCategory(writer, category.getKey(), category.getValue());
+            writeNumericProfiles(writer, numericProfiles);
+            writer.endReport();
         } catch (FileNotFoundException e) {
             Log.e(TAG, "Log data analysis", e);
         }
     }
 
+    /**
+     * Salva il risultato di performApproximateAnalysis con la stessa struttura di logDataAnalysis: ogni categoria
+     * riporta anche il numero stimato di valori distinti con il suo errore relativo standard e il numero di occorrenze
+     * contate, mentre ogni valore frequente riporta l'eccesso massimo del suo conteggio.
+     * @param sketchMap contiene i riassunti approssimati dei campi.
+     * @param numericProfiles contiene i profili restituiti da getNumericProfiles, può essere null.
+     * @param exactReport contiene eventuali categorie conteggiate esattamente, ad esempio le righe scartate, può essere null.
+     * @param pathDirectory contiene la cartella in cui salvare il report.
+     * @param fileName contiene il nome del file del report.
+     * @throws IOException viene sollevata se non è possibile creare la cartella del report.
+     */
+    public void logApproximateAnalysis(Map<String, ColumnSketch> sketchMap, Map<String, NumericProfile> numericProfiles,
+                                       Map<String, Map<String, Integer>> exactReport, String pathDirectory,
+                                       String fileName) throws IOException {
+        pathDirectory += "" + File.separator + "Analysis" + File.separator + "";
+        pathDirectory = Paths.get(pathDirectory).toString();
+        fileName = checkDirectoryAndFileName(pathDirectory, fileName);
+        try (ReportWriter writer = new XmlReportWriter(new FileOutputStream(pathDirectory + File.separator + fileName, false))) {
+            writer.startReport(reportType(fileName), "approximate", APPROXIMATE_COMMENT);
+            for (Map.Entry<String, ColumnSketch> category : sketchMap.entrySet())
+                writeSketch(writer, category.getKey(), category.getValue());
+            if (exactReport != null) {
+                for (Map.Entry<String, Map<String, Integer>> category : exactReport.entrySet())
+                    writeCategory(writer, category.getKey(), category.getValue());
+            }
+            writeNumericProfiles(writer, numericProfiles);
+            writer.endReport();
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, "Log data analysis", e);
+        }
+    }
+
+    /**
+     * Scrive il risultato dell'ultima analisi direttamente dai contatori, senza costruire le mappe del report: le
+     * categorie dei campi analizzati, quelle aggiuntive e i profili dei campi numerici.
+     * @param writer contiene il writer del report, XML o JSON.
+     * @param type contiene il tipo del report, test o execution.
+     * @param extraReport contiene eventuali categorie aggiuntive, ad esempio le righe scartate, può essere null.
+     * @throws IllegalStateException viene sollevata se non è stata ancora effettuata nessuna analisi.
+     */
+    public void writeReport(ReportWriter writer, String type, Map<String, Map<String, Integer>> extraReport) throws IOException {
+        if (analysisCounters == null)
+            throw new IllegalStateException("Nessuna analisi effettuata");
+        boolean approximate = analysisCounters.isApproximate();
+        writer.startReport(type, approximate ? "approximate" : null, approximate ? APPROXIMATE_COMMENT : null);
+        analysisCounters.writeCategories(writer);
+        analysisCounters.crossTabs.writeCategories(writer);
+        if (extraReport != null) {
+            for (Map.Entry<String, Map<String, Integer>> category : extraReport.entrySet())
+                writeCategory(writer, category.getKey(), category.getValue());
+        }
+        writeNumericProfiles(writer, numericProfiles);
+        writer.endReport();
+    }
+
+    /**
+     * Salva il risultato dell'ultima analisi nella cartella Analysis in formato XML e JSON, con lo stesso nome di file.
+     * @param extraReport contiene eventuali categorie aggiuntive, ad esempio le righe scartate, può essere null.
+     * @param pathDirectory contiene la cartella in cui salvare il report.
+     * @param fileName contiene il nome dei file del report, senza estensione.
+     * @throws IOException viene sollevata se non è possibile scrivere i report.
+     */
+    public void saveReport(Map<String, Map<String, Integer>> extraReport, String pathDirectory, String fileName) throws IOException {
+        pathDirectory = Paths.get(pathDirectory, "Analysis").toString();
+        fileName = checkDirectoryAndFileName(pathDirectory, fileName);
+        String baseName = fileName.endsWith(XML_EXTENSION) ? fileName.substring(0, fileName.length() - XML_EXTENSION.length())
+                : fileName;
+        try (ReportWriter writer = new XmlReportWriter(new FileOutputStream(pathDirectory + File.separator + fileName, false))) {
+            writeReport(writer, reportType(fileName), extraReport);
+        }
+        try (ReportWriter writer = new JsonReportWriter(new FileOutputStream(pathDirectory + File.separator + baseName + JSON_EXTENSION, false))) {
+            writeReport(writer, reportType(fileName), extraReport);
+        }
+    }
+
+    private static String reportType(String fileName) {
+        return fileName.contains("test") ? "test" : "execution";
+    }
+
+    private static void writeCategory(ReportWriter writer, String key, Map<String, Integer> values) throws IOException {
+        writer.startCategory(key);
+        for (Map.Entry<String, Integer> entry : values.entrySet())
+            writer.entry(entry.getKey(), entry.getValue());
+        writer.endCategory();
+    }
+
+    private static void writeSketch(ReportWriter writer, String key, ColumnSketch sketch) throws IOException {
+        writer.startCategory(key, "distinct", sketch.getDistinctCount(), "distinctError", round(sketch.getDistinctError(), 4),
+                "total", sketch.getTotal());
+        for (ColumnSketch.TopValue topValue : sketch.getTopValues())
+            writer.entry(topValue.getValue(), topValue.getCount(), "error", topValue.getError());
+        writer.endCategory();
+    }
+
+    private static void writeNumericProfiles(ReportWriter writer, Map<String, NumericProfile> numericProfiles) throws IOException {
+        if (numericProfiles == null)
+            return;
+        for (Map.Entry<String, NumericProfile> category : numericProfiles.entrySet()) {
+            NumericProfile profile = category.getValue();
+            if (profile.getCount() == 0) {
+                writer.startCategory(category.getKey(), "type", "numeric", "count", 0);
+                writer.endCategory();
+                continue;
+            }
+            writer.startCategory(category.getKey(), "type", "numeric", "count", profile.getCount(),
+                    "min", round(profile.getMin(), 2), "max", round(profile.getMax(), 2), "mean", round(profile.getMean(), 2));
+            for (double quantile : NumericProfile.REPORT_QUANTILES)
+                writer.quantile(quantile, round(profile.quantile(quantile), 2));
+            Histogram histogram = profile.getHistogram();
+            for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++)
+                writer.entry(histogram.getLabel(bucket), histogram.getCount(bucket));
+            writer.endCategory();
+        }
+    }
+
+    /**
+     * Arrotonda il valore come String.format con il numero di decimali indicato.
+     */
+    private static BigDecimal round(double value, int scale) {
+        return new BigDecimal(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+
     private String checkDirectoryAndFileName(String pathDirectory, String fileName) throws IOException {
         FileUtils.forceMkdir(new File(pathDirectory));
         if (!fileName.contains(CSVDataAnalysis.XML_EXTENSION)) {
@@ -0,0 +1,74 @@
+/**
+ * Questa classe confronta una sola volta l'header di un file .csv con i campi attesi e ne ricava la proiezione delle
+ * colonne del file sui campi del record. Il file può così contenere le colonne in un ordine diverso o colonne aggiuntive,
+ * le quali vengono ignorate, senza che durante la lettura delle righe siano necessarie ricerche per nome di colonna.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class CSVProjection {
+
+    private final int[] columnToField;
+    private final boolean identity;
+
+    private CSVProjection(int[] columnToField, boolean identity) {
+        this.columnToField = columnToField;
+        this.identity = identity;
+    }
+
+    /**
+     * Compila la proiezione a partire dall'header del file.
+     * @param header contiene la riga di header del file.
+     * @param fields contiene i nomi dei campi attesi associati alla loro posizione nel record.
+     * @return la proiezione delle colonne del file sui campi attesi.
+     * @throws CSVParsingException viene sollevata se un campo atteso manca o compare più volte nell'header, l'offset
+     *                             indica la posizione del campo nel record.
+     */
+    public static CSVProjection compile(CSVRow header, Map<String, Integer> fields) throws CSVParsingException {
+        int[] columnToField = new int[header.size()];
+        Arrays.fill(columnToField, -1);
+        boolean[] found = new boolean[fields.size()];
+        for (int column = 0; column < header.size(); column++) {
+            Integer field = fields.get(header.getString(column));
+            if (field == null)
+                continue;
+            if (found[field])
+                throw new CSVParsingException("Colonna duplicata nell'header: " + header.getString(column), field);
+            found[field] = true;
+            columnToField[column] = field;
+        }
+        for (Map.Entry<String, Integer> entry : fields.entrySet()) {
+            if (!found[entry.getValue()])
+                throw new CSVParsingException("Colonna mancante nell'header: " + entry.getKey(), entry.getValue());
+        }
+        boolean identity = columnToField.length == fields.size();
+        for (int column = 0; identity && column < columnToField.length; column++)
+            identity = columnToField[column] == column;
+        return new CSVProjection(columnToField, identity);
+    }
+
+    /**
+     * @return per ogni colonna del file l'indice del campo corrispondente, -1 per le colonne da ignorare.
+     */
+    public int[] getColumnToField() {
+        return columnToField;
+    }
+
+    /**
+     * @return true se le colonne del file coincidono, anche nell'ordine, con i campi attesi e non serve alcuna proiezione.
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return il numero di colonne che ogni riga del file deve avere.
+     */
+    public int getColumnCount() {
+        return columnToField.length;
+    }
+}
@@ -5,18 +5,16 @@
 package it.uniba.ventricellisardone.itss.csv;
 
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVNullFieldsException;
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVNumberFormatException;
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.Locale;
 
-public class CSVRecord {
+public class CSVRecord implements RecordView {
 
     private long idOrder;
-    private Date orderDate;
+    private int orderDay;
     private String countryCode;
     private char customerGender;
     private int quantity;
@@ -31,6 +29,11 @@ public class CSVRecord {
     private String size;
     private String category;
     private String macroCategory;
+    private long fingerprint;
+
+    // Costanti dell'hash FNV-1a a 64 bit utilizzato per l'impronta del record.
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
 
     /**
      * Per prima cosa il costruttore verifica che sia composto dal giusto numero di record, dopo di che avvia i comandi
@@ -42,57 +45,182 @@ public class CSVRecord {
      *                                  magari superfluo.
      */
     public CSVRecord(String[] strings) throws ParseException, CSVNullFieldsException {
-        if (strings.length == 16) {
+        this(CSVRow.of(strings));
+    }
+
+    /**
+     * Questo costruttore legge i campi direttamente dalla riga individuata dal tokenizer, senza che la riga debba
+     * essere prima convertita in un array di stringhe; le verifiche effettuate sono le stesse del costruttore precedente.
+     * @param row contiene la riga del file .csv suddivisa nei suoi campi.
+     * @throws ParseException: viene sollevata se nella creazione del record vengono rilevati valori non concordati nel
+     *                          protocollo di caricamento.
+     * @throws CSVNullFieldsException: viene sollevata se nel conteggio dei campi del record risulta un record assente o
+     *                                  magari superfluo.
+     */
+    public CSVRecord(CSVRow row) throws ParseException, CSVNullFieldsException {
+        fill(row);
+    }
+
+    /**
+     * Questo costruttore copia un record già verificato, ad esempio letto dalla cache delle estrazioni o da un
+     * RecordBatch, senza ripetere il parsing dei campi.
+     * @param record contiene il record da copiare.
+     */
+    public CSVRecord(RecordView record) {
+        fill(record);
+    }
+
+    /**
+     * Crea un record vuoto da riutilizzare per più righe tramite i metodi fill, ad esempio per scorrere un file con il
+     * cursore di Extraction senza creare un oggetto per riga. Il record non va utilizzato prima di essere riempito.
+     */
+    public CSVRecord() {
+    }
+
+    /**
+     * Sostituisce i campi del record con quelli della riga, effettuando le stesse verifiche del costruttore
+     * CSVRecord(CSVRow); se la riga non è valida il contenuto del record non è più significativo.
+     * @param row contiene la riga del file .csv suddivisa nei suoi campi.
+     * @throws ParseException: viene sollevata se nella creazione del record vengono rilevati valori non concordati nel
+     *                          protocollo di caricamento.
+     * @throws CSVNullFieldsException: viene sollevata se nel conteggio dei campi del record risulta un record assente o
+     *                                  magari superfluo.
+     */
+    public void fill(CSVRow row) throws ParseException, CSVNullFieldsException {
+        if (row.size() == 16) {
             for (int i = 0; i < 16; i++) {
-                if(strings[i].isEmpty())
+                if(row.isEmpty(i))
                     throw new CSVParsingException("Valore non impostato correttamente", i);
             }
-            init(strings);
+            init(row);
         } else
-            throw new CSVNullFieldsException("Il numero dei campi non corrisponde a quanto stabilito: " + strings.length);
+            throw new CSVNullFieldsException("Il numero dei campi non corrisponde a quanto stabilito: " + row.size());
+    }
+
+    /**
+     * Sostituisce i campi del record con quelli di un record già verificato, senza ripetere il parsing dei campi.
+     * @param record contiene il record da copiare.
+     */
+    public void fill(RecordView record) {
+        this.idOrder = record.getIdOrder();
+        this.orderDay = record.getOrderDay();
+        this.countryCode = ColumnDictionary.COUNTRY_CODE.canonical(record.getCountryCode());
+        this.customerGender = record.getCustomerGender();
+        this.quantity = record.getQuantity();
+        this.payedPrice = record.getPayedPrice();
+        this.discount = record.getDiscount();
+        this.outlet = record.isOutlet();
+        this.nomeBrand = ColumnDictionary.NOME_BRAND.canonical(record.getNomeBrand());
+        this.collection = ColumnDictionary.COLLECTION.canonical(record.getCollection());
+        this.color = ColumnDictionary.COLOR.canonical(record.getColor());
+        this.itemGender = ColumnDictionary.ITEM_GENDER.canonical(record.getItemGender());
+        this.paymentMethod = ColumnDictionary.PAYMENT_METHOD.canonical(record.getPaymentMethod());
+        this.size = ColumnDictionary.SIZE.canonical(record.getSize());
+        this.category = ColumnDictionary.CATEGORY.canonical(record.getCategory());
+        this.macroCategory = ColumnDictionary.MACRO_CATEGORY.canonical(record.getMacroCategory());
+        this.fingerprint = record.getFingerprint();
     }
 
     /**
      * Questo metodo si occupa della corretta assegnazione e del controllo sui campi del record, verificando che i valori
-     * di tali campi rispettino le direttive.
+     * di tali campi rispettino le direttive. Le eccezioni sollevate indicano il campo che contiene il valore errato.
      */
-    private void init(String[] strings) throws ParseException {
-        this.idOrder = Long.parseLong(strings[0]);
-        this.orderDate = new SimpleDateFormat("dd/MM/yy", Locale.getDefault()).parse(strings[1]);
-        this.countryCode = strings[2];
-        if (strings[3].charAt(0) == 'M')
+    private void init(CSVRow row) throws ParseException {
+        //  I campi numerici vengono letti direttamente dalla riga, senza creare una stringa per ciascun campo.
+        this.idOrder = NumberParser.parseLong(row, 0);
+        try {
+            this.orderDay = OrderDate.parse(row, 1);
+        } catch (ParseException e) {
+            throw new CSVParsingException("La data non è valida: " + row.getString(1), 1);
+        }
+        this.countryCode = ColumnDictionary.COUNTRY_CODE.canonical(row, 2);
+        if (row.charAt(3, 0) == 'M')
             this.customerGender = 'M';
-        else if (strings[3].charAt(0) == 'F')
+        else if (row.charAt(3, 0) == 'F')
             this.customerGender = 'F';
         else
             throw new CSVParsingException("Il sesso inserito non esiste", 3);
-        this.quantity = Integer.parseInt(strings[4]);
-        this.payedPrice = Double.parseDouble(strings[5]);
+        this.quantity = NumberParser.parseInt(row, 4);
+        this.payedPrice = NumberParser.parseDouble(row, 5);
         if (this.payedPrice < 0)
-            throw new IllegalArgumentException("Il prezzo non può essere negativo");
-        this.discount = Integer.parseInt(strings[6]);
-        if (strings[7].equals("0")) {
+            throw new CSVNumberFormatException("Il prezzo non può essere negativo", 5);
+        this.discount = NumberParser.parseInt(row, 6);
+        if (row.length(7) == 1 && row.charAt(7, 0) == '0') {
             this.outlet = false;
-        } else if (strings[7].equals("1")) {
+        } else if (row.length(7) == 1 && row.charAt(7, 0) == '1') {
             this.outlet = true;
         } else
             throw new CSVParsingException("Il valore non è un booleano", 7);
-        this.nomeBrand = strings[8];
-        this.collection = strings[9];
-        this.color = strings[10];
-        this.itemGender = strings[11];
-        this.paymentMethod = strings[12];
-        this.size = strings[13];
-        this.category = strings[14];
-        this.macroCategory = strings[15];
+        //  I campi di testo ripetono pochi valori distinti, i record condividono quindi l'istanza di ciascun valore.
+        this.nomeBrand = ColumnDictionary.NOME_BRAND.canonical(row, 8);
+        this.collection = ColumnDictionary.COLLECTION.canonical(row, 9);
+        this.color = ColumnDictionary.COLOR.canonical(row, 10);
+        this.itemGender = ColumnDictionary.ITEM_GENDER.canonical(row, 11);
+        this.paymentMethod = ColumnDictionary.PAYMENT_METHOD.canonical(row, 12);
+        this.size = ColumnDictionary.SIZE.canonical(row, 13);
+        this.category = ColumnDictionary.CATEGORY.canonical(row, 14);
+        this.macroCategory = ColumnDictionary.MACRO_CATEGORY.canonical(row, 15);
+        this.fingerprint = fingerprint(this);
+    }
+
+    /**
+     * Calcola l'impronta a 64 bit del record a partire da tutti i suoi campi; l'impronta non dipende dall'esecuzione
+     * del programma e può quindi essere confrontata con quella dei record già caricati in precedenza.
+     * @param record contiene il record di cui calcolare l'impronta.
+     * @return l'impronta del record.
+     */
+    static long fingerprint(RecordView record) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, record.getIdOrder());
+        hash = mix(hash, record.getOrderDay());
+        hash = mix(hash, record.getCountryCode());
+        hash = mix(hash, record.getCustomerGender());
+        hash = mix(hash, record.getQuantity());
+        hash = mix(hash, priceBits(record.getPayedPrice()));
+        hash = mix(hash, record.getDiscount());
+        hash = mix(hash, record.isOutlet() ? 1 : 0);
+        hash = mix(hash, record.getNomeBrand());
+        hash = mix(hash, record.getCollection());
+        hash = mix(hash, record.getColor());
+        hash = mix(hash, record.getItemGender());
+        hash = mix(hash, record.getPaymentMethod());
+        hash = mix(hash, record.getSize());
+        hash = mix(hash, record.getCategory());
+        hash = mix(hash, record.getMacroCategory());
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        //  La lunghezza separa i campi, così che "AB","C" e "A","BC" abbiano impronte diverse.
+        return mix(hash, value.length());
+    }
+
+    /**
+     * Restituisce i bit del prezzo trattando 0.0 e -0.0 come lo stesso valore.
+     */
+    private static long priceBits(double price) {
+        return Double.doubleToLongBits(price + 0.0);
     }
 
     public long getIdOrder() {
         return idOrder;
     }
 
-    public Date getOrderDate() {
-        return orderDate;
+    public int getOrderDay() {
+        return orderDay;
     }
 
     public String getCountryCode() {
@@ -110,6 +238,7 @@ public class CSVRecord {
 
     public void setQuantity(int quantity) {
         this.quantity = quantity;
+        this.fingerprint = fingerprint(this);
     }
 
     public double getPayedPrice() {
@@ -122,6 +251,7 @@ public class CSVRecord {
 
     public void setDiscount(int discount) {
         this.discount = discount;
+        this.fingerprint = fingerprint(this);
     }
 
     public boolean isOutlet() {
@@ -130,6 +260,7 @@ public class CSVRecord {
 
     public void setOutlet(boolean outlet) {
         this.outlet = outlet;
+        this.fingerprint = fingerprint(this);
     }
 
     public String getNomeBrand() {
@@ -142,6 +273,7 @@ public class CSVRecord {
 
     public void setCollection(String collection) {
         this.collection = collection;
+        this.fingerprint = fingerprint(this);
     }
 
     public String getColor() {
@@ -168,23 +300,43 @@ public class CSVRecord {
         return macroCategory;
     }
 
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Due record sono uguali quando coincidono tutti i loro campi; le impronte diverse permettono di escludere subito
+     * la maggior parte dei record differenti.
+     */
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof CSVRecord) {
-            CSVRecord record = (CSVRecord) obj;
-            String[] otherRecord = CSVRecord.reverseCSVRecord(record);
-            String[] thisRecord = CSVRecord.reverseCSVRecord(this);
-            boolean result = false;
-            for (int i = 0; i < thisRecord.length; i++)
-                result = otherRecord[i].equals(thisRecord[i]);
-            return result;
-        } else
+        if (this == obj)
+            return true;
+        if (!(obj instanceof CSVRecord))
             return false;
+        CSVRecord record = (CSVRecord) obj;
+        return fingerprint == record.fingerprint
+                && idOrder == record.idOrder
+                && orderDay == record.orderDay
+                && customerGender == record.customerGender
+                && quantity == record.quantity
+                && priceBits(payedPrice) == priceBits(record.payedPrice)
+                && discount == record.discount
+                && outlet == record.outlet
+                && countryCode.equals(record.countryCode)
+                && nomeBrand.equals(record.nomeBrand)
+                && collection.equals(record.collection)
+                && color.equals(record.color)
+                && itemGender.equals(record.itemGender)
+                && paymentMethod.equals(record.paymentMethod)
+                && size.equals(record.size)
+                && category.equals(record.category)
+                && macroCategory.equals(record.macroCategory);
     }
 
     @Override
     public int hashCode() {
-        return (int) this.getIdOrder();
+        return (int) (fingerprint ^ (fingerprint >>> 32));
     }
 
     /**
@@ -214,7 +366,7 @@ public class CSVRecord {
     public static String[] reverseCSVRecord(CSVRecord record) {
         String[] strings = new String[16];
         strings[0] = Long.toString(record.getIdOrder());
-        strings[1] = new SimpleDateFormat("dd/MM/yy", Locale.getDefault()).format(record.getOrderDate());
+        strings[1] = OrderDate.format(record.getOrderDay());
         strings[2] = record.getCountryCode();
         strings[3] = String.valueOf(record.getCustomerGender());
         strings[4] = Integer.toString(record.getQuantity());
@@ -0,0 +1,68 @@
+/**
+ * Questa interfaccia rappresenta una riga del file .csv già suddivisa nei suoi campi, permettendo a CSVRecord di leggere
+ * i valori sia da un array di stringhe che direttamente dalle porzioni di byte individuate da CSVTokenizer, senza dover
+ * creare una stringa per ogni campo.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+public interface CSVRow {
+
+    /**
+     * @return il numero di campi presenti nella riga.
+     */
+    int size();
+
+    /**
+     * @param field contiene l'indice del campo.
+     * @return la lunghezza del campo, in caratteri o in byte a seconda dell'implementazione.
+     */
+    int length(int field);
+
+    /**
+     * Restituisce un singolo carattere del campo, per le implementazioni basate sui byte il valore è significativo
+     * solo per i caratteri ASCII, gli unici utilizzati nei campi numerici e nelle date.
+     * @param field contiene l'indice del campo.
+     * @param index contiene la posizione del carattere all'interno del campo.
+     * @return il carattere richiesto.
+     */
+    char charAt(int field, int index);
+
+    /**
+     * @param field contiene l'indice del campo.
+     * @return il valore del campo convertito in stringa.
+     */
+    String getString(int field);
+
+    default boolean isEmpty(int field) {
+        return length(field) == 0;
+    }
+
+    /**
+     * Adatta un array di stringhe, ad esempio ottenuto tramite split di una riga, all'interfaccia CSVRow.
+     * @param strings contiene i campi della riga.
+     * @return la riga corrispondente all'array.
+     */
+    static CSVRow of(String[] strings) {
+        return new CSVRow() {
+            @Override
+            public int size() {
+                return strings.length;
+            }
+
+            @Override
+            public int length(int field) {
+                return strings[field].length();
+            }
+
+            @Override
+            public char charAt(int field, int index) {
+                return strings[field].charAt(index);
+            }
+
+            @Override
+            public String getString(int field) {
+                return strings[field];
+            }
+        };
+    }
+}
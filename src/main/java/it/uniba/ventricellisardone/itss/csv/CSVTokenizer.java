@@ -0,0 +1,527 @@
+/**
+ * Questa classe legge un file .csv direttamente come sequenza di byte mappata in memoria tramite FileChannel, individuando
+ * i separatori ';' e i fine riga sui byte stessi, senza creare una stringa per la riga o un array di sottostringhe.
+ * In alternativa i byte possono provenire da un InputStream, ad esempio quello di un file compresso, che viene letto in
+ * un buffer riutilizzato.
+ * I campi della riga corrente sono esposti come porzioni del buffer (interfaccia CSVRow) e vengono convertiti in stringa
+ * solo quando richiesto. Sono gestiti i campi racchiusi tra doppi apici secondo RFC-4180, i quali possono contenere ';',
+ * fine riga e doppi apici raddoppiati ("").
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class CSVTokenizer implements CSVRow, Closeable {
+
+    private static final byte SEPARATOR = ';';
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+
+    //  Tipologie di campo: senza apici, tra apici, tra apici e con apici raddoppiati da ripulire.
+    private static final byte PLAIN = 0;
+    private static final byte QUOTED = 1;
+    private static final byte ESCAPED = 2;
+
+    private final FileChannel channel;
+    private final InputStream inputStream;
+    private long fileSize;
+    private long end;
+    private final boolean utf8;
+    private int windowSize;
+    private ByteBuffer window;
+    private ByteBuffer reader;
+    private long windowStart;
+    private int windowLimit;
+
+    private long position;
+    private long rowOffset;
+    private long lineNumber;
+    private long nextLineNumber;
+    private int rowStart;
+    private int rowEnd;
+    private int fieldCount;
+    private int[] projection;
+    private int projectedSize;
+    private int[] fieldStart;
+    private int[] fieldEnd;
+    private byte[] fieldType;
+    private byte[] scratch;
+
+    /**
+     * Apre il file indicato con codifica UTF-8.
+     * @param path contiene il percorso del file da leggere.
+     * @throws IOException viene sollevata se il file non esiste o non è leggibile.
+     */
+    public CSVTokenizer(Path path) throws IOException {
+        this(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path contiene il percorso del file da leggere.
+     * @param charset contiene la codifica del file, sono ammesse solo UTF-8, ISO-8859-1 e US-ASCII perché il
+     *                riconoscimento dei separatori avviene direttamente sui byte.
+     * @throws IOException viene sollevata se il file non esiste o non è leggibile.
+     */
+    public CSVTokenizer(Path path, Charset charset) throws IOException {
+        this(path, charset, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Questo costruttore limita la lettura alle righe che iniziano nell'intervallo di byte indicato, permettendo così
+     * di suddividere un file tra più thread; l'ultima riga dell'intervallo viene comunque letta per intero anche se
+     * termina oltre la fine dell'intervallo. L'inizio deve coincidere con l'inizio di una riga.
+     * @param path contiene il percorso del file da leggere.
+     * @param charset contiene la codifica del file.
+     * @param start contiene la posizione in byte della prima riga da leggere.
+     * @param end contiene la posizione in byte oltre la quale non iniziano più righe da leggere.
+     * @throws IOException viene sollevata se il file non esiste o non è leggibile.
+     */
+    public CSVTokenizer(Path path, Charset charset, long start, long end) throws IOException {
+        this.utf8 = checkCharset(charset);
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.inputStream = null;
+        this.fileSize = channel.size();
+        this.end = Math.min(end, fileSize);
+        this.position = start;
+        this.windowSize = DEFAULT_WINDOW_SIZE;
+        initRow();
+        if (utf8 && start == 0) {
+            ByteBuffer bom = ByteBuffer.allocate(3);
+            channel.read(bom, 0);
+            skipByteOrderMark(bom, bom.position());
+        }
+    }
+
+    /**
+     * Questo costruttore legge i byte da uno stream, il quale viene copiato in un buffer riutilizzato che cresce solo se
+     * una riga non vi è contenuta per intero. Lo stream viene chiuso insieme al tokenizer.
+     * @param inputStream contiene lo stream da cui leggere il contenuto del file.
+     * @param charset contiene la codifica del file.
+     * @throws IOException viene sollevata se non è possibile leggere dallo stream.
+     */
+    public CSVTokenizer(InputStream inputStream, Charset charset) throws IOException {
+        this.utf8 = checkCharset(charset);
+        this.channel = null;
+        this.inputStream = inputStream;
+        this.fileSize = Long.MAX_VALUE;
+        this.end = Long.MAX_VALUE;
+        this.windowSize = DEFAULT_BUFFER_SIZE;
+        initRow();
+        fillWindow(0);
+        if (utf8)
+            skipByteOrderMark(window, windowLimit);
+    }
+
+    private static boolean checkCharset(Charset charset) {
+        if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)
+                && !charset.equals(StandardCharsets.US_ASCII))
+            throw new IllegalArgumentException("Codifica non supportata: " + charset);
+        return charset.equals(StandardCharsets.UTF_8);
+    }
+
+    private void initRow() {
+        this.nextLineNumber = 1;
+        this.fieldStart = new int[16];
+        this.fieldEnd = new int[16];
+        this.fieldType = new byte[16];
+        this.scratch = new byte[256];
+    }
+
+    /**
+     * I file esportati da alcuni applicativi iniziano con il BOM UTF-8, che altrimenti finirebbe nel primo campo
+     * dell'header impedendone il riconoscimento.
+     */
+    private void skipByteOrderMark(ByteBuffer bom, int length) {
+        if (length >= 3 && bom.get(0) == (byte) 0xEF && bom.get(1) == (byte) 0xBB && bom.get(2) == (byte) 0xBF)
+            position = 3;
+    }
+
+    /**
+     * Avanza alla riga successiva del file, i cui campi diventano accessibili tramite i metodi di CSVRow.
+     * @return true se è stata letta una riga, false se il file è terminato.
+     * @throws IOException viene sollevata se non è possibile mappare in memoria la porzione di file successiva.
+     */
+    public boolean nextRow() throws IOException {
+        if (position >= end)
+            return false;
+        while (true) {
+            if (window == null || position < windowStart || position >= windowStart + windowLimit) {
+                fillWindow(position);
+                if (position >= windowStart + windowLimit)
+                    return false;
+            }
+            boolean atEnd = windowStart + windowLimit >= fileSize;
+            int next = scanRow((int) (position - windowStart), atEnd);
+            if (next >= 0) {
+                rowOffset = position;
+                position = windowStart + next;
+                return true;
+            }
+            //  La riga non è contenuta per intero nella finestra: la si rimappa a partire dall'inizio della riga,
+            //  raddoppiandone la dimensione se la riga è più lunga della finestra stessa.
+            if (windowStart == position)
+                windowSize = (int) Math.min((long) windowSize * 2, MAX_WINDOW_SIZE);
+            fillWindow(position);
+        }
+    }
+
+    private void fillWindow(long from) throws IOException {
+        if (channel != null)
+            mapWindow(from);
+        else
+            readWindow(from);
+    }
+
+    /**
+     * Sposta all'inizio del buffer i byte già letti a partire dalla posizione indicata e completa il buffer leggendo
+     * dallo stream; al termine dello stream ne viene fissata la dimensione complessiva.
+     */
+    private void readWindow(long from) throws IOException {
+        byte[] buffer = window == null ? null : window.array();
+        int keep = window == null ? 0 : (int) (windowStart + windowLimit - from);
+        if (buffer == null || buffer.length < windowSize) {
+            byte[] newBuffer = new byte[windowSize];
+            if (keep > 0)
+                System.arraycopy(buffer, (int) (from - windowStart), newBuffer, 0, keep);
+            buffer = newBuffer;
+        } else if (keep > 0)
+            System.arraycopy(buffer, (int) (from - windowStart), buffer, 0, keep);
+        windowStart = from;
+        windowLimit = keep;
+        while (windowLimit < buffer.length && fileSize == Long.MAX_VALUE) {
+            int read = inputStream.read(buffer, windowLimit, buffer.length - windowLimit);
+            if (read < 0) {
+                fileSize = windowStart + windowLimit;
+                end = fileSize;
+            } else
+                windowLimit += read;
+        }
+        window = ByteBuffer.wrap(buffer);
+        reader = window.duplicate();
+    }
+
+    private void mapWindow(long from) throws IOException {
+        long size = Math.min(windowSize, fileSize - from);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, from, size);
+        reader = window.duplicate();
+        windowStart = from;
+        windowLimit = (int) size;
+    }
+
+    /**
+     * Individua i campi della riga che inizia alla posizione indicata della finestra.
+     * @return la posizione d'inizio della riga successiva, oppure -1 se la riga prosegue oltre la finestra.
+     */
+    private int scanRow(int start, boolean atEnd) {
+        final ByteBuffer buffer = window;
+        final int limit = windowLimit;
+        int innerLines = 0;
+        int i = start;
+        fieldCount = 0;
+        while (true) {
+            if (i < limit && buffer.get(i) == QUOTE) {
+                int j = i + 1;
+                byte type = QUOTED;
+                while (j < limit) {
+                    byte b = buffer.get(j);
+                    if (b == QUOTE) {
+                        if (j + 1 >= limit && !atEnd)
+                            return -1;
+                        if (j + 1 < limit && buffer.get(j + 1) == QUOTE) {
+                            type = ESCAPED;
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    } else if (b == LF)
+                        innerLines++;
+                    j++;
+                }
+                if (j >= limit && !atEnd)
+                    return -1;
+                addField(i + 1, j, type);
+                //  Eventuali caratteri tra l'apice di chiusura e il separatore vengono ignorati.
+                i = j + 1;
+                while (i < limit && !isDelimiter(buffer.get(i)))
+                    i++;
+            } else {
+                int j = i;
+                while (j < limit && !isDelimiter(buffer.get(j)))
+                    j++;
+                addField(i, j, PLAIN);
+                i = j;
+            }
+            if (i >= limit) {
+                if (!atEnd)
+                    return -1;
+                return endRow(start, limit, limit, innerLines);
+            }
+            byte b = buffer.get(i);
+            if (b == SEPARATOR) {
+                i++;
+                continue;
+            }
+            if (b == CR) {
+                if (i + 1 < limit)
+                    return endRow(start, i, buffer.get(i + 1) == LF ? i + 2 : i + 1, innerLines);
+                if (!atEnd)
+                    return -1;
+                return endRow(start, i, i + 1, innerLines);
+            }
+            return endRow(start, i, i + 1, innerLines);
+        }
+    }
+
+    private int endRow(int start, int contentEnd, int next, int innerLines) {
+        rowStart = start;
+        rowEnd = contentEnd;
+        lineNumber = nextLineNumber;
+        nextLineNumber += 1 + innerLines;
+        return next;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == SEPARATOR || b == LF || b == CR;
+    }
+
+    private void addField(int start, int stop, byte type) {
+        int slot = fieldCount++;
+        if (projection != null) {
+            //  Le colonne non previste dalla proiezione vengono scorse senza memorizzarne i limiti.
+            if (slot >= projection.length || projection[slot] < 0)
+                return;
+            slot = projection[slot];
+        }
+        if (slot >= fieldStart.length) {
+            int length = Math.max(slot + 1, fieldStart.length * 2);
+            fieldStart = Arrays.copyOf(fieldStart, length);
+            fieldEnd = Arrays.copyOf(fieldEnd, length);
+            fieldType = Arrays.copyOf(fieldType, length);
+        }
+        fieldStart[slot] = start;
+        fieldEnd[slot] = stop;
+        fieldType[slot] = type;
+    }
+
+    /**
+     * Imposta la proiezione delle colonne del file sui campi della riga: la colonna i del file diventa il campo
+     * projection[i], mentre le colonne con valore negativo vengono saltate. In questo modo i campi sono accessibili
+     * nell'ordine atteso indipendentemente dall'ordine delle colonne nel file.
+     * @param projection contiene per ogni colonna del file l'indice del campo corrispondente, null per leggere le
+     *                   colonne così come sono.
+     */
+    public void setProjection(int[] projection) {
+        this.projection = projection;
+        this.projectedSize = 0;
+        if (projection != null) {
+            for (int field : projection)
+                projectedSize = Math.max(projectedSize, field + 1);
+        }
+    }
+
+    /**
+     * @return false se è impostata una proiezione e la riga corrente non ha lo stesso numero di colonne dell'header, in
+     *         tal caso i campi della riga non sono affidabili.
+     */
+    public boolean matchesProjection() {
+        return projection == null || fieldCount == projection.length;
+    }
+
+    /**
+     * @return il numero di colonne della riga corrente così come appaiono nel file.
+     */
+    public int getColumnCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Con una proiezione impostata restituisce il numero di campi proiettati, se la riga contiene tutte le colonne
+     * dell'header, altrimenti il numero di colonne lette.
+     */
+    @Override
+    public int size() {
+        return projection != null && fieldCount == projection.length ? projectedSize : fieldCount;
+    }
+
+    @Override
+    public int length(int field) {
+        return fieldEnd[field] - fieldStart[field];
+    }
+
+    @Override
+    public char charAt(int field, int index) {
+        return (char) (window.get(fieldStart[field] + index) & 0xFF);
+    }
+
+    @Override
+    public String getString(int field) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        byte[] bytes = ensureScratch(length);
+        if (fieldType[field] == ESCAPED) {
+            int n = 0;
+            for (int i = start; i < start + length; i++) {
+                byte b = window.get(i);
+                bytes[n++] = b;
+                if (b == QUOTE)
+                    i++;
+            }
+            length = n;
+        } else
+            copy(start, bytes, length);
+        return decode(bytes, length);
+    }
+
+    /**
+     * Restituisce il testo della riga corrente così come appare nel file, senza il carattere di fine riga; viene usato
+     * per salvare le righe scartate.
+     * @return la riga corrente.
+     */
+    public String getLine() {
+        int length = rowEnd - rowStart;
+        byte[] bytes = ensureScratch(length);
+        copy(rowStart, bytes, length);
+        return decode(bytes, length);
+    }
+
+    private void copy(int start, byte[] bytes, int length) {
+        reader.position(start);
+        reader.get(bytes, 0, length);
+    }
+
+    /**
+     * Conversione in stringa con percorso veloce: in ISO-8859-1, o in UTF-8 quando tutti i byte sono ASCII, ogni byte
+     * corrisponde esattamente ad un carattere e la decodifica si riduce ad una copia.
+     */
+    private String decode(byte[] bytes, int length) {
+        if (utf8) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] < 0)
+                    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] ensureScratch(int length) {
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        return scratch;
+    }
+
+    /**
+     * Individua l'inizio della prima riga che comincia in corrispondenza o dopo la posizione indicata, in modo che un
+     * file possa essere suddiviso in intervalli allineati alle righe.
+     * @param offset contiene la posizione in byte da cui cercare.
+     * @return la posizione d'inizio della riga, oppure la dimensione del file se non ci sono altre righe.
+     * @throws IOException viene sollevata se non è possibile leggere il file.
+     */
+    public long alignToRow(long offset) throws IOException {
+        if (channel == null)
+            throw new IllegalStateException("Operazione possibile solo sui file non compressi");
+        if (offset <= 0)
+            return 0;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long current = offset - 1;
+        while (current < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == LF)
+                    return current + i + 1;
+            }
+            current += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Sposta la lettura all'inizio della riga che si trova nella posizione indicata, ad esempio quella salvata in un
+     * checkpoint, senza leggere le righe precedenti.
+     * @param offset contiene la posizione in byte dell'inizio di una riga, come restituita da getPosition().
+     * @param linesRead contiene il numero di righe del file che precedono la posizione, usato per la numerazione.
+     */
+    public void seek(long offset, long linesRead) {
+        if (channel == null)
+            throw new IllegalStateException("Operazione possibile solo sui file non compressi");
+        if (offset < 0 || offset > fileSize)
+            throw new IllegalArgumentException("Posizione non valida: " + offset);
+        position = offset;
+        nextLineNumber = linesRead + 1;
+    }
+
+    /**
+     * @return la dimensione in byte del file, per gli stream è nota solo una volta terminata la lettura.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @return true se il file è letto tramite mappatura in memoria e può quindi essere suddiviso in intervalli.
+     */
+    public boolean isMemoryMapped() {
+        return channel != null;
+    }
+
+    /**
+     * @return il numero di righe del file consumate dal tokenizer, comprese quelle interne ai campi tra apici.
+     */
+    public long getLinesRead() {
+        return nextLineNumber - 1;
+    }
+
+    /**
+     * @return true se la riga corrente contiene un campo tra apici che si estende su più righe del file.
+     */
+    public boolean isMultiLineRow() {
+        return nextLineNumber - lineNumber > 1;
+    }
+
+    /**
+     * @return il numero della riga (a partire da 1, contando dall'inizio dell'intervallo letto) da cui inizia la riga
+     *         corrente.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return la posizione in byte, all'interno del file, dell'inizio della riga corrente.
+     */
+    public long getRowOffset() {
+        return rowOffset;
+    }
+
+    /**
+     * @return la posizione in byte da cui inizierà la lettura della prossima riga.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        reader = null;
+        if (channel != null)
+            channel.close();
+        else
+            inputStream.close();
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Questa classe raccoglie i valori distinti di una colonna di testo del file .csv, come brand, colori o categorie, così
+ * che tutti i record che contengono lo stesso valore condividano un'unica istanza della stringa. Per ogni valore viene
+ * inoltre memorizzata la forma trasformata, ad esempio in maiuscolo o validata, che viene così calcolata una sola volta
+ * invece che per ogni record. I dizionari delle colonne sono condivisi tra tutte le estrazioni e possono essere usati
+ * da più thread contemporaneamente.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+public class ColumnDictionary {
+
+    // Numero massimo di valori memorizzati da ciascun dizionario, oltre il quale i nuovi valori non vengono condivisi.
+    static final int MAX_VALUES = 1 << 16;
+
+    public static final ColumnDictionary COUNTRY_CODE = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary NOME_BRAND = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary COLLECTION = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary COLOR = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary ITEM_GENDER = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary PAYMENT_METHOD = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary SIZE = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary CATEGORY = new ColumnDictionary(MAX_VALUES);
+    public static final ColumnDictionary MACRO_CATEGORY = new ColumnDictionary(MAX_VALUES);
+
+    private final ConcurrentHashMap<String, Entry> entryMap = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final int maxValues;
+    //  Tabella ad indirizzamento aperto con i valori ASCII del dizionario, consultata confrontando direttamente i
+    //  caratteri della riga. Quando cresce viene sostituita per intero, così che possa essere letta senza lock.
+    private volatile String[] rowTable = new String[16];
+    private int rowTableSize;
+
+    ColumnDictionary(int maxValues) {
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * Restituisce l'istanza condivisa del valore, al primo utilizzo il valore stesso diventa l'istanza condivisa.
+     * @param value contiene il valore letto dal file.
+     * @return un'istanza uguale al valore e condivisa da tutti i record che lo contengono.
+     */
+    public String canonical(String value) {
+        Entry entry = entryMap.get(value);
+        if (entry != null)
+            return entry.value;
+        if (entryMap.size() >= maxValues)
+            return value;
+        //  L'identificativo viene assegnato solo al valore effettivamente inserito, così che restino consecutivi.
+        return entryMap.computeIfAbsent(value, newValue -> new Entry(newValue, nextId.getAndIncrement())).value;
+    }
+
+    /**
+     * Restituisce l'identificativo del valore all'interno del dizionario, utilizzabile come indice di un array di
+     * contatori; gli identificativi partono da 0 e non cambiano durante l'esecuzione del programma.
+     * @param value contiene il valore della colonna.
+     * @return l'identificativo del valore, oppure -1 se il valore non è presente nel dizionario.
+     */
+    public int id(String value) {
+        Entry entry = entryMap.get(value);
+        return entry != null ? entry.id : -1;
+    }
+
+    /**
+     * @return i valori del dizionario, ciascuno nella posizione indicata dal proprio identificativo.
+     */
+    public String[] values() {
+        String[] values = new String[nextId.get()];
+        for (Entry entry : entryMap.values()) {
+            if (entry.id < values.length)
+                values[entry.id] = entry.value;
+        }
+        return values;
+    }
+
+    /**
+     * Come il metodo precedente ma il valore viene cercato confrontando i caratteri del campo, così che per i valori già
+     * presenti nel dizionario non venga creata alcuna stringa; i valori nuovi o non ASCII vengono letti con getString.
+     * @param row contiene la riga del file .csv.
+     * @param field contiene l'indice del campo.
+     * @return un'istanza uguale al valore del campo e condivisa da tutti i record che lo contengono.
+     */
+    public String canonical(CSVRow row, int field) {
+        int length = row.length(field);
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            char c = row.charAt(field, i);
+            if (c >= 0x80)
+                return canonical(row.getString(field));
+            hash = 31 * hash + c;
+        }
+        String[] table = rowTable;
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            String value = table[slot];
+            if (value.hashCode() == hash && matches(value, row, field, length))
+                return value;
+        }
+        String value = canonical(row.getString(field));
+        Entry entry = entryMap.get(value);
+        if (entry != null)
+            addToRowTable(entry.value);
+        return value;
+    }
+
+    private static boolean matches(String value, CSVRow row, int field, int length) {
+        if (value.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != row.charAt(field, i))
+                return false;
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Aggiunge il valore alla tabella consultata da canonical(CSVRow, int). I valori con caratteri non ASCII o con
+     * apici non vengono aggiunti, dato che i loro caratteri nella riga non coincidono con quelli della stringa.
+     */
+    private synchronized void addToRowTable(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80 || value.charAt(i) == '"')
+                return;
+        }
+        String[] table = rowTable;
+        int mask = table.length - 1;
+        int slot = spread(value.hashCode()) & mask;
+        for (; table[slot] != null; slot = (slot + 1) & mask) {
+            if (table[slot].equals(value))
+                return;
+        }
+        if ((rowTableSize + 1) * 2 <= table.length) {
+            table[slot] = value;
+        } else {
+            String[] newTable = new String[table.length * 2];
+            int newMask = newTable.length - 1;
+            for (String tableValue : table) {
+                if (tableValue != null)
+                    newTable[nextFreeSlot(newTable, spread(tableValue.hashCode()) & newMask, newMask)] = tableValue;
+            }
+            newTable[nextFreeSlot(newTable, spread(value.hashCode()) & newMask, newMask)] = value;
+            rowTable = newTable;
+        }
+        rowTableSize++;
+    }
+
+    private static int nextFreeSlot(String[] table, int slot, int mask) {
+        while (table[slot] != null)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Restituisce la forma trasformata del valore, calcolata alla prima richiesta e poi riutilizzata. Ogni dizionario
+     * deve essere usato sempre con la stessa trasformazione, dato che il risultato viene memorizzato insieme al valore.
+     * @param value contiene il valore della colonna.
+     * @param transform contiene la trasformazione da applicare, può restituire null se il valore non è ammesso.
+     * @return il valore trasformato oppure null se la trasformazione non lo ammette.
+     */
+    public String transformed(String value, UnaryOperator<String> transform) {
+        Entry entry = entryMap.get(value);
+        if (entry == null)
+            return transform.apply(value);
+        //  Se due thread calcolano la stessa trasformazione contemporaneamente ottengono lo stesso risultato, quindi non
+        //  è necessario sincronizzare l'assegnazione.
+        if (!entry.transformed) {
+            entry.transformedValue = transform.apply(entry.value);
+            entry.transformed = true;
+        }
+        return entry.transformedValue;
+    }
+
+    /**
+     * @return il numero di valori distinti memorizzati.
+     */
+    public int size() {
+        return entryMap.size();
+    }
+
+    private static class Entry {
+        private final String value;
+        private final int id;
+        private volatile String transformedValue;
+        private volatile boolean transformed;
+
+        Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+}
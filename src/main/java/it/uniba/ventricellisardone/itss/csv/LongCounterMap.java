@@ -0,0 +1,130 @@
+/**
+ * Questa classe conta le occorrenze di chiavi di tipo long in una tabella ad indirizzamento aperto con scansione
+ * lineare, senza creare un oggetto per ogni chiave come farebbe una HashMap<Long, Long>. Le chiavi devono essere non
+ * negative: il valore -1 indica una posizione libera della tabella.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.util.Arrays;
+
+final class LongCounterMap {
+
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private long[] counts;
+    private int size;
+
+    LongCounterMap() {
+        keys = new long[INITIAL_CAPACITY];
+        counts = new long[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @param key contiene la chiave, non negativa.
+     * @param count contiene il numero di occorrenze da aggiungere.
+     */
+    void add(long key, long count) {
+        if (key < 0)
+            throw new IllegalArgumentException("Chiave non ammessa: " + key);
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = count;
+        //  La tabella viene raddoppiata oltre i due terzi di occupazione.
+        if (++size * 3 > keys.length * 2)
+            grow();
+    }
+
+    long get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return counts[slot];
+        }
+        return 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY)
+                continue;
+            int slot = slot(oldKeys[i], mask);
+            while (keys[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+
+    /**
+     * Le chiavi composte hanno i bit più significativi quasi sempre nulli, vengono quindi mescolate prima di essere
+     * ridotte alla dimensione della tabella.
+     */
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Riduce la tabella come l'algoritmo Misra-Gries: il conteggio della chiave in posizione keep + 1, in ordine di
+     * conteggio decrescente, viene sottratto a tutte le chiavi e quelle che si azzerano vengono eliminate, così che ne
+     * restino al più keep. Ogni riduzione elimina almeno keep + 1 volte la quantità sottratta, quindi la somma delle
+     * quantità sottratte non supera il totale dei conteggi diviso keep + 1.
+     * @param keep contiene il numero massimo di chiavi da conservare.
+     * @return la quantità sottratta a ogni chiave, 0 se le chiavi non sono più di keep.
+     */
+    long reduce(int keep) {
+        if (size <= keep)
+            return 0;
+        long[] sorted = new long[size];
+        int index = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY)
+                sorted[index++] = counts[i];
+        }
+        Arrays.sort(sorted);
+        long threshold = sorted[size - keep - 1];
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length];
+        counts = new long[oldKeys.length];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldCounts[i] > threshold)
+                add(oldKeys[i], oldCounts[i] - threshold);
+        }
+        return threshold;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY)
+                consumer.accept(keys[i], counts[i]);
+        }
+    }
+
+    interface EntryConsumer {
+        void accept(long key, long count);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Questa classe legge i campi numerici del record direttamente dai caratteri della riga, senza creare una stringa per
+ * ogni campo. I valori nella forma più comune, come 123 o 123.45, vengono convertiti leggendo le cifre una alla volta,
+ * mentre tutti gli altri vengono passati a Long.parseLong, Integer.parseInt e Double.parseDouble, così che i valori
+ * accettati e gli errori segnalati restino gli stessi.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVNumberFormatException;
+
+final class NumberParser {
+
+    // Numero massimo di cifre che possono essere lette senza rischio di superare il valore massimo del tipo.
+    private static final int LONG_DIGITS = 18;
+    private static final int INT_DIGITS = 9;
+
+    // Le potenze di 10 fino a 10^22 e gli interi fino a 2^53 sono rappresentati esattamente come double, la loro divisione
+    // restituisce quindi lo stesso valore arrotondato calcolato da Double.parseDouble.
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private NumberParser() {
+    }
+
+    /**
+     * @param row contiene la riga del file .csv.
+     * @param field contiene l'indice del campo.
+     * @return il valore del campo.
+     * @throws CSVNumberFormatException viene sollevata se il campo non contiene un intero valido.
+     */
+    static long parseLong(CSVRow row, int field) {
+        int length = row.length(field);
+        int start = length > 0 && row.charAt(field, 0) == '-' ? 1 : 0;
+        if (length > start && length - start <= LONG_DIGITS) {
+            long value = 0;
+            int index = start;
+            for (; index < length; index++) {
+                char c = row.charAt(field, index);
+                if (c < '0' || c > '9')
+                    break;
+                value = value * 10 + (c - '0');
+            }
+            if (index == length)
+                return start == 1 ? -value : value;
+        }
+        try {
+            return Long.parseLong(row.getString(field));
+        } catch (NumberFormatException e) {
+            throw new CSVNumberFormatException(e.getMessage(), field);
+        }
+    }
+
+    /**
+     * @param row contiene la riga del file .csv.
+     * @param field contiene l'indice del campo.
+     * @return il valore del campo.
+     * @throws CSVNumberFormatException viene sollevata se il campo non contiene un intero valido.
+     */
+    static int parseInt(CSVRow row, int field) {
+        int length = row.length(field);
+        int start = length > 0 && row.charAt(field, 0) == '-' ? 1 : 0;
+        if (length > start && length - start <= INT_DIGITS) {
+            int value = 0;
+            int index = start;
+            for (; index < length; index++) {
+                char c = row.charAt(field, index);
+                if (c < '0' || c > '9')
+                    break;
+                value = value * 10 + (c - '0');
+            }
+            if (index == length)
+                return start == 1 ? -value : value;
+        }
+        try {
+            return Integer.parseInt(row.getString(field));
+        } catch (NumberFormatException e) {
+            throw new CSVNumberFormatException(e.getMessage(), field);
+        }
+    }
+
+    /**
+     * @param row contiene la riga del file .csv.
+     * @param field contiene l'indice del campo.
+     * @return il valore del campo.
+     * @throws CSVNumberFormatException viene sollevata se il campo non contiene un numero valido.
+     */
+    static double parseDouble(CSVRow row, int field) {
+        int length = row.length(field);
+        int start = length > 0 && row.charAt(field, 0) == '-' ? 1 : 0;
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        int index = start;
+        for (; index < length; index++) {
+            char c = row.charAt(field, index);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (decimals >= 0)
+                    decimals++;
+                //  Oltre le 16 cifre la mantissa potrebbe non essere più esatta.
+                if (++digits > 16)
+                    break;
+            } else if (c == '.' && decimals < 0)
+                decimals = 0;
+            else
+                break;
+        }
+        if (index == length && digits > 0 && mantissa <= MAX_EXACT_MANTISSA && decimals < POWERS_OF_TEN.length) {
+            double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return start == 1 ? -value : value;
+        }
+        try {
+            return Double.parseDouble(row.getString(field));
+        } catch (NumberFormatException e) {
+            throw new CSVNumberFormatException(e.getMessage(), field);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Questa classe converte la data dell'ordine, nel formato dd/MM/yy, nel numero di giorni trascorsi dal 01/01/1970 senza
+ * creare oggetti intermedi: i caratteri vengono letti direttamente dal campo della riga e il risultato di ogni data già
+ * incontrata viene memorizzato, dato che un file contiene poche migliaia di giorni distinti. Le date che non rispettano
+ * esattamente il formato vengono lette con SimpleDateFormat, così da mantenere lo stesso comportamento del parsing
+ * originale anche nei casi meno comuni.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+
+public final class OrderDate {
+
+    public static final String PATTERN = "dd/MM/yy";
+
+    // Le date sono memorizzate per anno, mese e giorno a due cifre; lo 0 indica una data non ancora calcolata, quindi
+    // ogni valore viene salvato aumentato di uno.
+    private static final int[] MEMO = new int[100 * 13 * 32];
+
+    // Come in SimpleDateFormat l'anno a due cifre viene interpretato nel secolo che inizia 80 anni prima di oggi.
+    private static final LocalDate CENTURY_START = LocalDate.now().minusYears(80);
+
+    private OrderDate() {
+    }
+
+    /**
+     * Legge la data contenuta in un campo della riga.
+     * @param row contiene la riga del file .csv.
+     * @param field contiene l'indice del campo della data.
+     * @return il numero di giorni trascorsi dal 01/01/1970.
+     * @throws ParseException viene sollevata se il campo non contiene una data valida.
+     */
+    public static int parse(CSVRow row, int field) throws ParseException {
+        if (row.length(field) == 8 && row.charAt(field, 2) == '/' && row.charAt(field, 5) == '/') {
+            int day = twoDigits(row, field, 0);
+            int month = twoDigits(row, field, 3);
+            int year = twoDigits(row, field, 6);
+            if (day >= 0 && month >= 1 && month <= 12 && year >= 0) {
+                int key = (year * 13 + month) * 32 + day;
+                int epochDay = MEMO[key] - 1;
+                if (epochDay < 0) {
+                    epochDay = toEpochDay(year, month, day);
+                    MEMO[key] = epochDay + 1;
+                }
+                return epochDay;
+            }
+        }
+        return toEpochDay(new SimpleDateFormat(PATTERN, Locale.getDefault()).parse(row.getString(field)));
+    }
+
+    /**
+     * Restituisce il valore delle due cifre a partire dalla posizione indicata, -1 se i caratteri non sono cifre o se
+     * il giorno supera 31.
+     */
+    private static int twoDigits(CSVRow row, int field, int index) {
+        char tens = row.charAt(field, index);
+        char units = row.charAt(field, index + 1);
+        if (tens < '0' || tens > '9' || units < '0' || units > '9')
+            return -1;
+        int value = (tens - '0') * 10 + (units - '0');
+        return index == 0 && value > 31 ? -1 : value;
+    }
+
+    /**
+     * Calcola la data come farebbe SimpleDateFormat, che non essendo rigoroso riporta i giorni in eccesso o lo 0 al
+     * mese successivo o precedente.
+     */
+    private static int toEpochDay(int year, int month, int day) {
+        LocalDate firstDay = LocalDate.of(CENTURY_START.getYear() / 100 * 100 + year, month, 1);
+        LocalDate date = firstDay.plusDays(day - 1);
+        if (!date.isAfter(CENTURY_START))
+            date = firstDay.plusYears(100).plusDays(day - 1);
+        return (int) date.toEpochDay();
+    }
+
+    /**
+     * Le date create da SimpleDateFormat appartengono al fuso orario di sistema, la conversione avviene quindi nello
+     * stesso fuso.
+     */
+    public static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * @param epochDay contiene il numero di giorni trascorsi dal 01/01/1970.
+     * @return la data corrispondente, alla mezzanotte del fuso orario di sistema.
+     */
+    public static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * @param epochDay contiene il numero di giorni trascorsi dal 01/01/1970.
+     * @return la data nel formato dd/MM/yy.
+     */
+    public static String format(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        char[] chars = {'0', '0', '/', '0', '0', '/', '0', '0'};
+        putTwoDigits(chars, 0, date.getDayOfMonth());
+        putTwoDigits(chars, 3, date.getMonthValue());
+        putTwoDigits(chars, 6, Math.floorMod(date.getYear(), 100));
+        return new String(chars);
+    }
+
+    private static void putTwoDigits(char[] chars, int index, int value) {
+        chars[index] = (char) ('0' + value / 10);
+        chars[index + 1] = (char) ('0' + value % 10);
+    }
+}
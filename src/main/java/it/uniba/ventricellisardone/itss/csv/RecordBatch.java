@@ -0,0 +1,292 @@
+/**
+ * Questa classe memorizza un blocco di record per colonne invece che come singoli oggetti CSVRecord: i campi numerici
+ * sono conservati in array di tipi primitivi, la data dell'ordine come numero di giorni dal 01/01/1970 e i campi di testo
+ * come codici interi di un dizionario per colonna. In questo modo ogni record occupa poche decine di byte, senza
+ * intestazioni di oggetti e riferimenti per ciascun campo. Le righe del blocco sono accessibili come RecordView.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RecordBatch {
+
+    public static final int COUNTRY_CODE = 0;
+    public static final int NOME_BRAND = 1;
+    public static final int COLLECTION = 2;
+    public static final int COLOR = 3;
+    public static final int ITEM_GENDER = 4;
+    public static final int PAYMENT_METHOD = 5;
+    public static final int SIZE = 6;
+    public static final int CATEGORY = 7;
+    public static final int MACRO_CATEGORY = 8;
+    public static final int STRING_COLUMNS = 9;
+
+    private final int capacity;
+    private final StringDictionary[] dictionaries;
+    private int size;
+    private long[] idOrder;
+    private long[] fingerprint;
+    private int[] orderDay;
+    private char[] customerGender;
+    private int[] quantity;
+    private double[] payedPrice;
+    private int[] discount;
+    private boolean[] outlet;
+    private final int[][] stringCodes = new int[STRING_COLUMNS][];
+
+    /**
+     * @param capacity contiene il numero di record oltre il quale il blocco è considerato pieno, il blocco cresce
+     *                 comunque se vengono aggiunti altri record.
+     */
+    public RecordBatch(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.dictionaries = new StringDictionary[STRING_COLUMNS];
+        for (int column = 0; column < STRING_COLUMNS; column++)
+            dictionaries[column] = new StringDictionary();
+        allocate(this.capacity);
+    }
+
+    private void allocate(int length) {
+        idOrder = idOrder == null ? new long[length] : Arrays.copyOf(idOrder, length);
+        fingerprint = fingerprint == null ? new long[length] : Arrays.copyOf(fingerprint, length);
+        orderDay = orderDay == null ? new int[length] : Arrays.copyOf(orderDay, length);
+        customerGender = customerGender == null ? new char[length] : Arrays.copyOf(customerGender, length);
+        quantity = quantity == null ? new int[length] : Arrays.copyOf(quantity, length);
+        payedPrice = payedPrice == null ? new double[length] : Arrays.copyOf(payedPrice, length);
+        discount = discount == null ? new int[length] : Arrays.copyOf(discount, length);
+        outlet = outlet == null ? new boolean[length] : Arrays.copyOf(outlet, length);
+        for (int column = 0; column < STRING_COLUMNS; column++)
+            stringCodes[column] = stringCodes[column] == null ? new int[length] : Arrays.copyOf(stringCodes[column], length);
+    }
+
+    /**
+     * Aggiunge un record al blocco copiandone i campi nelle colonne.
+     * @param record contiene il record da aggiungere.
+     */
+    public void add(RecordView record) {
+        if (size == idOrder.length)
+            allocate(size * 2);
+        idOrder[size] = record.getIdOrder();
+        fingerprint[size] = record.getFingerprint();
+        orderDay[size] = record.getOrderDay();
+        customerGender[size] = record.getCustomerGender();
+        quantity[size] = record.getQuantity();
+        payedPrice[size] = record.getPayedPrice();
+        discount[size] = record.getDiscount();
+        outlet[size] = record.isOutlet();
+        stringCodes[COUNTRY_CODE][size] = dictionaries[COUNTRY_CODE].encode(record.getCountryCode());
+        stringCodes[NOME_BRAND][size] = dictionaries[NOME_BRAND].encode(record.getNomeBrand());
+        stringCodes[COLLECTION][size] = dictionaries[COLLECTION].encode(record.getCollection());
+        stringCodes[COLOR][size] = dictionaries[COLOR].encode(record.getColor());
+        stringCodes[ITEM_GENDER][size] = dictionaries[ITEM_GENDER].encode(record.getItemGender());
+        stringCodes[PAYMENT_METHOD][size] = dictionaries[PAYMENT_METHOD].encode(record.getPaymentMethod());
+        stringCodes[SIZE][size] = dictionaries[SIZE].encode(record.getSize());
+        stringCodes[CATEGORY][size] = dictionaries[CATEGORY].encode(record.getCategory());
+        stringCodes[MACRO_CATEGORY][size] = dictionaries[MACRO_CATEGORY].encode(record.getMacroCategory());
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true se il blocco ha raggiunto la capacità indicata alla creazione.
+     */
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public long getIdOrder(int row) {
+        return idOrder[row];
+    }
+
+    public long getFingerprint(int row) {
+        return fingerprint[row];
+    }
+
+    /**
+     * @return la data dell'ordine come numero di giorni dal 01/01/1970.
+     */
+    public int getOrderDay(int row) {
+        return orderDay[row];
+    }
+
+    public char getCustomerGender(int row) {
+        return customerGender[row];
+    }
+
+    public int getQuantity(int row) {
+        return quantity[row];
+    }
+
+    public double getPayedPrice(int row) {
+        return payedPrice[row];
+    }
+
+    public int getDiscount(int row) {
+        return discount[row];
+    }
+
+    public boolean isOutlet(int row) {
+        return outlet[row];
+    }
+
+    /**
+     * @param column contiene una delle colonne di testo, ad esempio RecordBatch.COLOR.
+     * @return il codice del valore della colonna nella riga indicata.
+     */
+    public int getCode(int column, int row) {
+        return stringCodes[column][row];
+    }
+
+    /**
+     * @param column contiene una delle colonne di testo, ad esempio RecordBatch.COLOR.
+     * @return il dizionario della colonna con cui decodificare i codici.
+     */
+    public StringDictionary getDictionary(int column) {
+        return dictionaries[column];
+    }
+
+    public String getString(int column, int row) {
+        return dictionaries[column].decode(stringCodes[column][row]);
+    }
+
+    /**
+     * @param row contiene l'indice della riga.
+     * @return una vista della riga, i cui campi vengono letti dalle colonne del blocco.
+     */
+    public RecordView get(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Riga " + row + " di " + size);
+        return new Row(row);
+    }
+
+    /**
+     * @return le righe del blocco come lista di RecordView, senza copiarne i campi.
+     */
+    public List<RecordView> asList() {
+        return subList(0, size);
+    }
+
+    /**
+     * @return le righe del blocco comprese tra from (incluso) e to (escluso) come lista di RecordView.
+     */
+    public List<RecordView> subList(int from, int to) {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("Intervallo " + from + "-" + to + " di " + size);
+        return new AbstractList<>() {
+            @Override
+            public RecordView get(int index) {
+                return new Row(from + index);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * Riga del blocco vista come record.
+     */
+    private class Row implements RecordView {
+        private final int row;
+
+        Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public long getIdOrder() {
+            return idOrder[row];
+        }
+
+        @Override
+        public int getOrderDay() {
+            return orderDay[row];
+        }
+
+        @Override
+        public String getCountryCode() {
+            return getString(COUNTRY_CODE, row);
+        }
+
+        @Override
+        public char getCustomerGender() {
+            return customerGender[row];
+        }
+
+        @Override
+        public int getQuantity() {
+            return quantity[row];
+        }
+
+        @Override
+        public double getPayedPrice() {
+            return payedPrice[row];
+        }
+
+        @Override
+        public int getDiscount() {
+            return discount[row];
+        }
+
+        @Override
+        public boolean isOutlet() {
+            return outlet[row];
+        }
+
+        @Override
+        public String getNomeBrand() {
+            return getString(NOME_BRAND, row);
+        }
+
+        @Override
+        public String getCollection() {
+            return getString(COLLECTION, row);
+        }
+
+        @Override
+        public String getColor() {
+            return getString(COLOR, row);
+        }
+
+        @Override
+        public String getItemGender() {
+            return getString(ITEM_GENDER, row);
+        }
+
+        @Override
+        public String getPaymentMethod() {
+            return getString(PAYMENT_METHOD, row);
+        }
+
+        @Override
+        public String getSize() {
+            return getString(SIZE, row);
+        }
+
+        @Override
+        public String getCategory() {
+            return getString(CATEGORY, row);
+        }
+
+        @Override
+        public String getMacroCategory() {
+            return getString(MACRO_CATEGORY, row);
+        }
+
+        @Override
+        public long getFingerprint() {
+            return fingerprint[row];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Questa interfaccia rappresenta i campi di un record in sola lettura, indipendentemente da come il record è memorizzato:
+ * come singolo oggetto CSVRecord oppure come riga di un RecordBatch. Transforming e MatchBigQueryData lavorano su questa
+ * interfaccia e possono quindi elaborare entrambe le rappresentazioni.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+public interface RecordView {
+
+    long getIdOrder();
+
+    /**
+     * @return la data dell'ordine come numero di giorni trascorsi dal 01/01/1970.
+     */
+    int getOrderDay();
+
+    default LocalDate getOrderLocalDate() {
+        return LocalDate.ofEpochDay(getOrderDay());
+    }
+
+    /**
+     * @return una nuova istanza della data dell'ordine, alla mezzanotte del fuso orario di sistema.
+     */
+    default Date getOrderDate() {
+        return OrderDate.toDate(getOrderDay());
+    }
+
+    String getCountryCode();
+
+    char getCustomerGender();
+
+    int getQuantity();
+
+    double getPayedPrice();
+
+    int getDiscount();
+
+    boolean isOutlet();
+
+    String getNomeBrand();
+
+    String getCollection();
+
+    String getColor();
+
+    String getItemGender();
+
+    String getPaymentMethod();
+
+    String getSize();
+
+    String getCategory();
+
+    String getMacroCategory();
+
+    /**
+     * @return l'impronta a 64 bit calcolata su tutti i campi del record.
+     */
+    long getFingerprint();
+}
@@ -0,0 +1,46 @@
+/**
+ * Questa classe assegna un codice intero ad ogni valore distinto di una colonna di testo, così che la colonna possa
+ * essere memorizzata come array di interi; i valori che si ripetono, come brand, colori o categorie, vengono così
+ * conservati una sola volta.
+ */
+package it.uniba.ventricellisardone.itss.csv;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StringDictionary {
+
+    private final Map<String, Integer> codeMap = new HashMap<>();
+    private final List<String> valueList = new ArrayList<>();
+
+    /**
+     * @param value contiene il valore da codificare.
+     * @return il codice del valore, assegnato alla prima occorrenza.
+     */
+    public int encode(String value) {
+        Integer code = codeMap.get(value);
+        if (code == null) {
+            code = valueList.size();
+            codeMap.put(value, code);
+            valueList.add(value);
+        }
+        return code;
+    }
+
+    /**
+     * @param code contiene il codice restituito da encode.
+     * @return il valore corrispondente al codice.
+     */
+    public String decode(int code) {
+        return valueList.get(code);
+    }
+
+    /**
+     * @return il numero di valori distinti codificati.
+     */
+    public int size() {
+        return valueList.size();
+    }
+}
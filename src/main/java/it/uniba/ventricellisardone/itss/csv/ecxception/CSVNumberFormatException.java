@@ -0,0 +1,22 @@
+package it.uniba.ventricellisardone.itss.csv.ecxception;
+
+public class CSVNumberFormatException extends NumberFormatException {
+
+    private final int errorOffset;
+
+    /**
+     * Costruisce una NumberFormatException che indica anche il campo del record in cui è stato trovato il valore errato,
+     * come avviene per CSVParsingException.
+     *
+     * @param s           il messaggio di errore
+     * @param errorOffset l'indice del campo che contiene il valore errato.
+     */
+    public CSVNumberFormatException(String s, int errorOffset) {
+        super(s);
+        this.errorOffset = errorOffset;
+    }
+
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Questa classe scrive il report in formato JSON con lo JsonWriter di Gson: il report è un oggetto con il tipo, la
+ * modalità e l'array categories, ogni categoria un oggetto con la chiave, i propri attributi e gli array quantiles ed
+ * entries.
+ */
+package it.uniba.ventricellisardone.itss.csv.report;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+public class JsonReportWriter implements ReportWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final JsonWriter writer;
+    //  Nome dell'array aperto nella categoria corrente, null se non ne è aperto nessuno.
+    private String openArray;
+
+    /**
+     * @param outputStream contiene il flusso su cui scrivere il report, viene chiuso alla chiusura del writer.
+     */
+    public JsonReportWriter(OutputStream outputStream) {
+        this.writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    @Override
+    public void startReport(String type, String mode, String comment) throws IOException {
+        writer.beginObject();
+        writer.name("type").value(type);
+        if (mode != null)
+            writer.name("mode").value(mode);
+        if (comment != null)
+            writer.name("comment").value(comment);
+        writer.name("categories").beginArray();
+    }
+
+    @Override
+    public void startCategory(String key, Object... attributes) throws IOException {
+        writer.beginObject();
+        writer.name("key").value(key);
+        writeAttributes(attributes);
+    }
+
+    @Override
+    public void quantile(double quantile, Number value) throws IOException {
+        openArray("quantiles");
+        writer.beginObject();
+        writer.name("key").value(quantile);
+        writer.name("value").value(value);
+        writer.endObject();
+    }
+
+    @Override
+    public void entry(String key, long value, Object... attributes) throws IOException {
+        openArray("entries");
+        writer.beginObject();
+        writer.name("key").value(key);
+        writer.name("value").value(value);
+        writeAttributes(attributes);
+        writer.endObject();
+    }
+
+    private void openArray(String name) throws IOException {
+        if (name.equals(openArray))
+            return;
+        if (openArray != null)
+            writer.endArray();
+        writer.name(name).beginArray();
+        openArray = name;
+    }
+
+    @Override
+    public void endCategory() throws IOException {
+        if (openArray != null)
+            writer.endArray();
+        openArray = null;
+        writer.endObject();
+    }
+
+    @Override
+    public void endReport() throws IOException {
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private void writeAttributes(Object[] attributes) throws IOException {
+        for (int i = 0; i + 1 < attributes.length; i += 2) {
+            writer.name(String.valueOf(attributes[i]));
+            if (attributes[i + 1] instanceof Number)
+                writer.value((Number) attributes[i + 1]);
+            else
+                writer.value(String.valueOf(attributes[i + 1]));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
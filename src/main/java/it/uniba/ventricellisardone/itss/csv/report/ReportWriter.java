@@ -0,0 +1,34 @@
+/**
+ * Questa interfaccia descrive la scrittura in streaming di un report di analisi: il report contiene una sequenza di
+ * categorie, ciascuna con i propri attributi, i quantili e i valori con le loro occorrenze. Gli elementi vengono scritti
+ * man mano che vengono ricevuti, senza costruire il report in memoria; le implementazioni si occupano della codifica dei
+ * valori, così che il report sia sempre ben formato qualunque carattere contengano i valori dei campi.
+ * Gli attributi sono passati come coppie nome e valore, i valori di tipo Number vengono scritti come numeri.
+ */
+package it.uniba.ventricellisardone.itss.csv.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface ReportWriter extends Closeable {
+
+    /**
+     * @param type contiene il tipo del report, test o execution.
+     * @param mode contiene la modalità dell'analisi, null per l'analisi esatta.
+     * @param comment contiene una nota sul contenuto del report, può essere null.
+     */
+    void startReport(String type, String mode, String comment) throws IOException;
+
+    void startCategory(String key, Object... attributes) throws IOException;
+
+    /**
+     * I quantili di una categoria devono essere scritti prima dei suoi valori.
+     */
+    void quantile(double quantile, Number value) throws IOException;
+
+    void entry(String key, long value, Object... attributes) throws IOException;
+
+    void endCategory() throws IOException;
+
+    void endReport() throws IOException;
+}
@@ -0,0 +1,168 @@
+/**
+ * Questa classe scrive il report in formato XML tramite le API StAX, con lo stesso formato dei report scritti in
+ * precedenza: un elemento data che contiene un elemento category per ogni categoria e un elemento entry per ogni valore.
+ * I valori degli attributi vengono codificati da StAX, mentre i caratteri non ammessi in XML 1.0 vengono sostituiti.
+ */
+package it.uniba.ventricellisardone.itss.csv.report;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+public class XmlReportWriter implements ReportWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer output;
+    private final XMLStreamWriter writer;
+
+    /**
+     * @param outputStream contiene il flusso su cui scrivere il report, viene chiuso alla chiusura del writer.
+     */
+    public XmlReportWriter(OutputStream outputStream) throws IOException {
+        this.output = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            this.writer = XMLOutputFactory.newFactory().createXMLStreamWriter(output);
+        } catch (XMLStreamException e) {
+            output.close();
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void startReport(String type, String mode, String comment) throws IOException {
+        try {
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters(LINE_SEPARATOR);
+            if (comment != null) {
+                writer.writeComment(" " + clean(comment).replace("--", "- -") + " ");
+                writer.writeCharacters(LINE_SEPARATOR);
+            }
+            writer.writeStartElement("data");
+            writer.writeAttribute("type", clean(type));
+            if (mode != null)
+                writer.writeAttribute("mode", clean(mode));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void startCategory(String key, Object... attributes) throws IOException {
+        try {
+            writer.writeCharacters(LINE_SEPARATOR + "\t");
+            writer.writeStartElement("category");
+            writer.writeAttribute("key", clean(key));
+            writeAttributes(attributes);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void quantile(double quantile, Number value) throws IOException {
+        try {
+            writer.writeCharacters(LINE_SEPARATOR + "\t\t");
+            writer.writeEmptyElement("quantile");
+            writer.writeAttribute("key", String.valueOf(quantile));
+            writer.writeAttribute("value", String.valueOf(value));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void entry(String key, long value, Object... attributes) throws IOException {
+        try {
+            writer.writeCharacters(LINE_SEPARATOR + "\t\t");
+            writer.writeEmptyElement("entry");
+            writer.writeAttribute("key", clean(key));
+            writer.writeAttribute("value", Long.toString(value));
+            writeAttributes(attributes);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void endCategory() throws IOException {
+        try {
+            writer.writeCharacters(LINE_SEPARATOR + "\t");
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void endReport() throws IOException {
+        try {
+            writer.writeCharacters(LINE_SEPARATOR);
+            writer.writeEndDocument();
+            writer.flush();
+            output.write(LINE_SEPARATOR);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writeAttributes(Object[] attributes) throws XMLStreamException {
+        for (int i = 0; i + 1 < attributes.length; i += 2)
+            writer.writeAttribute(String.valueOf(attributes[i]), clean(String.valueOf(attributes[i + 1])));
+    }
+
+    /**
+     * StAX codifica i caratteri speciali come &amp; e &quot;, ma non controlla i caratteri di controllo e i surrogati
+     * isolati, che renderebbero il documento non valido e vengono quindi sostituiti con U+FFFD.
+     */
+    static String clean(String value) {
+        if (value == null)
+            return "null";
+        for (int i = 0; i < value.length(); i++) {
+            if (!isValid(value, i))
+                return replaceInvalid(value);
+        }
+        return value;
+    }
+
+    private static String replaceInvalid(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && isValid(value, i)) {
+                builder.append(c).append(value.charAt(++i));
+            } else
+                builder.append(isValid(value, i) ? c : '\uFFFD');
+        }
+        return builder.toString();
+    }
+
+    private static boolean isValid(String value, int index) {
+        char c = value.charAt(index);
+        if (c < 0x20)
+            return c == '\t' || c == '\n' || c == '\r';
+        if (Character.isHighSurrogate(c))
+            return index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1));
+        if (Character.isLowSurrogate(c))
+            return index > 0 && Character.isHighSurrogate(value.charAt(index - 1));
+        return c != '\uFFFE' && c != '\uFFFF';
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Questa classe riassume i valori di una colonna in memoria costante, indipendentemente dal numero di record letti:
+ * HyperLogLog stima il numero di valori distinti, Space-Saving individua i valori più frequenti e Count-Min ne
+ * restringe il conteggio stimato. Le istanze di thread diversi possono essere unite con merge.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ColumnSketch {
+
+    public static final int DEFAULT_TOP_VALUES = 20;
+    //  Space-Saving segue più valori di quelli riportati, così che l'errore dei valori più frequenti resti basso.
+    private static final int CANDIDATES_PER_VALUE = 10;
+
+    private final int topValues;
+    private final HyperLogLog distinctValues;
+    private final CountMinSketch countMinSketch;
+    private final SpaceSaving spaceSaving;
+
+    public ColumnSketch() {
+        this(DEFAULT_TOP_VALUES);
+    }
+
+    /**
+     * @param topValues contiene il numero di valori più frequenti da riportare.
+     */
+    public ColumnSketch(int topValues) {
+        this(topValues, new HyperLogLog(), new CountMinSketch(), new SpaceSaving(topValues * CANDIDATES_PER_VALUE));
+    }
+
+    private ColumnSketch(int topValues, HyperLogLog distinctValues, CountMinSketch countMinSketch, SpaceSaving spaceSaving) {
+        this.topValues = topValues;
+        this.distinctValues = distinctValues;
+        this.countMinSketch = countMinSketch;
+        this.spaceSaving = spaceSaving;
+    }
+
+    /**
+     * @param value contiene il valore letto.
+     * @param count contiene il numero di occorrenze del valore da aggiungere.
+     */
+    public void add(String value, long count) {
+        long hash = hash(value);
+        distinctValues.add(hash);
+        countMinSketch.add(hash, count);
+        spaceSaving.add(value, count);
+    }
+
+    public void merge(ColumnSketch other) {
+        distinctValues.merge(other.distinctValues);
+        countMinSketch.merge(other.countMinSketch);
+        spaceSaving.merge(other.spaceSaving);
+    }
+
+    /**
+     * @return la stima del numero di valori distinti della colonna.
+     */
+    public long getDistinctCount() {
+        return distinctValues.estimate();
+    }
+
+    /**
+     * @return l'errore relativo standard di getDistinctCount().
+     */
+    public double getDistinctError() {
+        return distinctValues.getRelativeError();
+    }
+
+    /**
+     * @return il numero di occorrenze contate.
+     */
+    public long getTotal() {
+        return countMinSketch.getTotal();
+    }
+
+    /**
+     * Il conteggio di ciascun valore è il minore tra quello di Space-Saving e quello di Count-Min, entrambi mai
+     * inferiori al valore reale, mentre l'errore riportato è quello garantito da Space-Saving, eventualmente ridotto al
+     * limite di Count-Min che vale con probabilità CountMinSketch.getConfidence().
+     * @return i valori più frequenti in ordine decrescente di conteggio.
+     */
+    public List<TopValue> getTopValues() {
+        List<TopValue> topValueList = new ArrayList<>();
+        long countMinError = countMinSketch.getErrorBound();
+        for (SpaceSaving.Counter counter : spaceSaving.top(topValues)) {
+            long count = Math.min(counter.getCount(), countMinSketch.estimate(hash(counter.getValue())));
+            topValueList.add(new TopValue(counter.getValue(), count, Math.min(counter.getError(), countMinError)));
+        }
+        topValueList.sort((first, second) -> Long.compare(second.getCount(), first.getCount()));
+        return topValueList;
+    }
+
+    /**
+     * Hash a 64 bit del valore: FNV-1a sui caratteri seguito dal rimescolamento finale di MurmurHash3, così che anche i
+     * bit più significativi, usati da HyperLogLog, dipendano da tutti i caratteri.
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++)
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Valore frequente con il conteggio stimato, che supera quello reale al massimo di getError().
+     */
+    public static class TopValue {
+        private final String value;
+        private final long count;
+        private final long error;
+
+        TopValue(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(topValues);
+        distinctValues.write(output);
+        countMinSketch.write(output);
+        spaceSaving.write(output);
+    }
+
+    public static ColumnSketch read(DataInput input) throws IOException {
+        return new ColumnSketch(input.readInt(), HyperLogLog.read(input), CountMinSketch.read(input), SpaceSaving.read(input));
+    }
+}
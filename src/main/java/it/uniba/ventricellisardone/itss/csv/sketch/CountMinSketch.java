@@ -0,0 +1,116 @@
+/**
+ * Questa classe stima il numero di occorrenze di ciascun valore in memoria costante: ogni valore incrementa un
+ * contatore in ciascuna delle depth righe e la stima è il minimo dei suoi contatori. La stima non è mai inferiore al
+ * valore reale e, con probabilità 1 - e^-depth, lo supera al massimo di e / width volte il numero totale di occorrenze.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class CountMinSketch {
+
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_WIDTH = 1 << 11;
+
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+    private long total;
+
+    public CountMinSketch() {
+        this(DEFAULT_DEPTH, DEFAULT_WIDTH);
+    }
+
+    /**
+     * @param depth contiene il numero di righe, cioè di funzioni hash.
+     * @param width contiene il numero di contatori per riga, deve essere una potenza di 2.
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1 || Integer.bitCount(width) != 1)
+            throw new IllegalArgumentException("Dimensioni non ammesse: " + depth + "x" + width);
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    /**
+     * @param hash  contiene l'hash a 64 bit del valore.
+     * @param count contiene il numero di occorrenze da aggiungere.
+     */
+    public void add(long hash, long count) {
+        for (int row = 0; row < depth; row++)
+            counters[row * width + column(hash, row)] += count;
+        total += count;
+    }
+
+    /**
+     * @param hash contiene l'hash a 64 bit del valore.
+     * @return la stima delle occorrenze del valore, mai inferiore a quelle reali.
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+            estimate = Math.min(estimate, counters[row * width + column(hash, row)]);
+        return estimate;
+    }
+
+    /**
+     * Le righe utilizzano le combinazioni h1 + row * h2 delle due metà dell'hash, equivalenti a funzioni hash
+     * indipendenti per la precisione della stima.
+     */
+    private int column(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return (h1 + row * h2) & (width - 1);
+    }
+
+    /**
+     * Somma le occorrenze contate da un'altra istanza con le stesse dimensioni.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width)
+            throw new IllegalArgumentException("Dimensioni diverse");
+        for (int i = 0; i < counters.length; i++)
+            counters[i] += other.counters[i];
+        total += other.total;
+    }
+
+    /**
+     * @return il numero totale di occorrenze aggiunte.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return l'errore massimo della stima di un singolo valore, valido con probabilità getConfidence().
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    /**
+     * @return la probabilità che l'errore di una stima non superi getErrorBound().
+     */
+    public double getConfidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(depth);
+        output.writeInt(width);
+        output.writeLong(total);
+        for (long counter : counters)
+            output.writeLong(counter);
+    }
+
+    public static CountMinSketch read(DataInput input) throws IOException {
+        CountMinSketch countMinSketch = new CountMinSketch(input.readInt(), input.readInt());
+        countMinSketch.total = input.readLong();
+        for (int i = 0; i < countMinSketch.counters.length; i++)
+            countMinSketch.counters[i] = input.readLong();
+        return countMinSketch;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Questa classe conta i valori di un campo numerico in intervalli prefissati: con i limiti b0 < b1 < ... < bn il primo
+ * intervallo contiene i valori minori di b0, l'intervallo i-esimo i valori in [b(i-1), bi) e l'ultimo i valori maggiori
+ * o uguali a bn. Gli intervalli sono gli stessi per tutti i file analizzati, così che i report possano essere confrontati
+ * tra loro e gli istogrammi calcolati da thread diversi uniti sommando i contatori.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class Histogram {
+
+    private final double[] bounds;
+    private final long[] counters;
+
+    /**
+     * @param bounds contiene i limiti degli intervalli in ordine crescente.
+     */
+    public Histogram(double... bounds) {
+        if (bounds.length == 0)
+            throw new IllegalArgumentException("Nessun limite per gli intervalli");
+        for (int i = 1; i < bounds.length; i++) {
+            if (!(bounds[i] > bounds[i - 1]))
+                throw new IllegalArgumentException("Limiti non crescenti: " + Arrays.toString(bounds));
+        }
+        this.bounds = bounds.clone();
+        this.counters = new long[bounds.length + 1];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * @param value contiene il valore da contare, i valori NaN vengono ignorati.
+     * @param count contiene il numero di occorrenze del valore.
+     */
+    public void add(double value, long count) {
+        if (Double.isNaN(value))
+            return;
+        counters[bucket(value)] += count;
+    }
+
+    /**
+     * @return l'indice dell'intervallo, trovato con una ricerca binaria sui limiti.
+     */
+    int bucket(double value) {
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (value < bounds[middle])
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+    /**
+     * @param other contiene un istogramma con gli stessi limiti.
+     */
+    public void merge(Histogram other) {
+        if (!Arrays.equals(bounds, other.bounds))
+            throw new IllegalArgumentException("Limiti diversi: " + Arrays.toString(other.bounds));
+        for (int i = 0; i < counters.length; i++)
+            counters[i] += other.counters[i];
+    }
+
+    public int getBucketCount() {
+        return counters.length;
+    }
+
+    public long getCount(int bucket) {
+        return counters[bucket];
+    }
+
+    /**
+     * @return l'etichetta dell'intervallo, ad esempio "<0", "[10, 20)" o ">=100".
+     */
+    public String getLabel(int bucket) {
+        if (bucket == 0)
+            return "<" + format(bounds[0]);
+        if (bucket == bounds.length)
+            return ">=" + format(bounds[bounds.length - 1]);
+        return "[" + format(bounds[bucket - 1]) + ", " + format(bounds[bucket]) + ")";
+    }
+
+    private static String format(double bound) {
+        if (bound == Math.rint(bound) && Math.abs(bound) < 1e15)
+            return Long.toString((long) bound);
+        return String.format(Locale.ROOT, "%s", bound);
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(bounds.length);
+        for (double bound : bounds)
+            output.writeDouble(bound);
+        for (long counter : counters)
+            output.writeLong(counter);
+    }
+
+    public static Histogram read(DataInput input) throws IOException {
+        double[] bounds = new double[input.readInt()];
+        for (int i = 0; i < bounds.length; i++)
+            bounds[i] = input.readDouble();
+        Histogram histogram = new Histogram(bounds);
+        for (int i = 0; i < histogram.counters.length; i++)
+            histogram.counters[i] = input.readLong();
+        return histogram;
+    }
+}
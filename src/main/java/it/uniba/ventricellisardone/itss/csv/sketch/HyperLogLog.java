@@ -0,0 +1,97 @@
+/**
+ * Questa classe stima il numero di valori distinti di una colonna in memoria costante: ogni valore, rappresentato dal
+ * suo hash a 64 bit, aggiorna uno dei 2^precision registri con la lunghezza della sequenza di zeri iniziali, e la
+ * media armonica dei registri fornisce la stima. L'errore relativo standard è 1.04 / sqrt(2^precision), circa lo
+ * 0.8% con la precisione predefinita di 14 bit e 16 KB di registri.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision contiene il numero di bit dell'hash utilizzati per scegliere il registro, tra 4 e 18.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18)
+            throw new IllegalArgumentException("Precisione non ammessa: " + precision);
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @param hash contiene l'hash a 64 bit del valore, aggiungere più volte lo stesso valore non cambia la stima.
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        //  Il bit aggiunto in coda limita la sequenza di zeri quando i bit rimanenti sono tutti nulli.
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index])
+            registers[index] = (byte) rank;
+    }
+
+    /**
+     * Unisce i valori contati da un'altra istanza con la stessa precisione, ad esempio quella di un altro thread.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision)
+            throw new IllegalArgumentException("Precisioni diverse: " + precision + ", " + other.precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i])
+                registers[i] = other.registers[i];
+        }
+    }
+
+    /**
+     * @return la stima del numero di valori distinti aggiunti.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        //  Con pochi valori la stima viene corretta contando i registri ancora vuoti.
+        if (estimate <= 2.5 * m && zeros > 0)
+            estimate = m * Math.log((double) m / zeros);
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return l'errore relativo standard della stima.
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Scrive la precisione e i registri, così che la stima possa essere unita ad altre in un'esecuzione successiva.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeByte(precision);
+        output.write(registers);
+    }
+
+    public static HyperLogLog read(DataInput input) throws IOException {
+        HyperLogLog hyperLogLog = new HyperLogLog(input.readByte());
+        input.readFully(hyperLogLog.registers);
+        return hyperLogLog;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Questa classe riassume la distribuzione di un campo numerico in un solo passaggio: numero di valori, minimo, massimo e
+ * media vengono calcolati esattamente, i quantili vengono stimati con un TDigest e i valori vengono contati anche negli
+ * intervalli prefissati di un Histogram. Come gli altri riassunti del pacchetto, i profili calcolati su porzioni diverse
+ * dei record possono essere uniti.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class NumericProfile {
+
+    //  Quantili riportati nei report.
+    public static final double[] REPORT_QUANTILES = {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+
+    private final TDigest digest;
+    private final Histogram histogram;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param bounds contiene i limiti degli intervalli dell'istogramma, in ordine crescente.
+     */
+    public NumericProfile(double... bounds) {
+        this(new TDigest(), new Histogram(bounds));
+    }
+
+    private NumericProfile(TDigest digest, Histogram histogram) {
+        this.digest = digest;
+        this.histogram = histogram;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value))
+            return;
+        digest.add(value);
+        histogram.add(value);
+        count++;
+        sum += value;
+        if (value < min)
+            min = value;
+        if (value > max)
+            max = value;
+    }
+
+    public void merge(NumericProfile other) {
+        digest.merge(other.digest);
+        histogram.merge(other.histogram);
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @param quantile contiene il quantile cercato, compreso tra 0 e 1.
+     * @return la stima del valore del quantile, NaN se non è stato aggiunto nessun valore.
+     */
+    public double quantile(double quantile) {
+        return digest.quantile(quantile);
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public double getMean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeDouble(sum);
+        output.writeDouble(min);
+        output.writeDouble(max);
+        digest.write(output);
+        histogram.write(output);
+    }
+
+    public static NumericProfile read(DataInput input) throws IOException {
+        long count = input.readLong();
+        double sum = input.readDouble();
+        double min = input.readDouble();
+        double max = input.readDouble();
+        NumericProfile profile = new NumericProfile(TDigest.read(input), Histogram.read(input));
+        profile.count = count;
+        profile.sum = sum;
+        profile.min = min;
+        profile.max = max;
+        return profile;
+    }
+}
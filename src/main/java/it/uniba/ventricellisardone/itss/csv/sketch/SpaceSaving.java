@@ -0,0 +1,204 @@
+/**
+ * Questa classe individua i valori più frequenti di una colonna con l'algoritmo Space-Saving: vengono seguiti al
+ * massimo capacity valori e, quando ne arriva uno nuovo, prende il posto di quello con meno occorrenze ereditandone il
+ * conteggio, che diventa l'errore massimo del nuovo valore. Ogni valore con più di total / capacity occorrenze è
+ * sicuramente tra quelli seguiti e il suo conteggio supera quello reale al massimo del proprio errore.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counterMap;
+    //  Min-heap dei contatori ordinati per conteggio, la radice è il valore da sostituire.
+    private final Counter[] heap;
+    private int size;
+
+    /**
+     * @param capacity contiene il numero massimo di valori seguiti.
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacità non ammessa: " + capacity);
+        this.capacity = capacity;
+        this.counterMap = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * @param value contiene il valore letto.
+     * @param count contiene il numero di occorrenze da aggiungere.
+     */
+    public void add(String value, long count) {
+        Counter counter = counterMap.get(value);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.heapIndex);
+        } else if (size < capacity) {
+            counter = new Counter(value, count, 0);
+            counterMap.put(value, counter);
+            heap[size] = counter;
+            counter.heapIndex = size;
+            siftUp(size++);
+        } else {
+            Counter minimum = heap[0];
+            counterMap.remove(minimum.value);
+            minimum.value = value;
+            minimum.error = minimum.count;
+            minimum.count += count;
+            counterMap.put(value, minimum);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Unisce i valori seguiti da un'altra istanza, ad esempio quella di un altro thread. Un valore assente da una delle
+     * due istanze può avere avuto in essa al massimo tante occorrenze quante il suo contatore minimo, che vengono
+     * quindi aggiunte sia al conteggio che all'errore; restano poi i capacity valori con il conteggio più alto.
+     */
+    public void merge(SpaceSaving other) {
+        long minimum = minimumCount();
+        long otherMinimum = other.minimumCount();
+        Map<String, Counter> merged = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            Counter otherCounter = other.counterMap.get(counter.value);
+            if (otherCounter != null)
+                merged.put(counter.value, new Counter(counter.value, counter.count + otherCounter.count, counter.error + otherCounter.error));
+            else
+                merged.put(counter.value, new Counter(counter.value, counter.count + otherMinimum, counter.error + otherMinimum));
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter otherCounter = other.heap[i];
+            if (!merged.containsKey(otherCounter.value))
+                merged.put(otherCounter.value, new Counter(otherCounter.value, otherCounter.count + minimum, otherCounter.error + minimum));
+        }
+        List<Counter> counters = new ArrayList<>(merged.values());
+        counters.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+        counterMap.clear();
+        size = 0;
+        for (Counter counter : counters.subList(0, Math.min(capacity, counters.size()))) {
+            counterMap.put(counter.value, counter);
+            heap[size] = counter;
+            counter.heapIndex = size;
+            siftUp(size++);
+        }
+    }
+
+    /**
+     * @return il conteggio massimo che un valore non seguito può avere, 0 finché i contatori non sono tutti occupati.
+     */
+    private long minimumCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    /**
+     * @param k contiene il numero di valori richiesti.
+     * @return i k valori con il conteggio più alto, in ordine decrescente di conteggio.
+     */
+    public List<Counter> top(int k) {
+        List<Counter> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            counters.add(heap[i]);
+        counters.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+        return new ArrayList<>(counters.subList(0, Math.min(k, counters.size())));
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count)
+                break;
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count)
+                child++;
+            if (counter.count <= heap[child].count)
+                break;
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    /**
+     * Valore seguito con il suo conteggio, che può superare quello reale al massimo di getError().
+     */
+    public static class Counter {
+        private String value;
+        private long count;
+        private long error;
+        private int heapIndex;
+
+        Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Scrive la capacità e i valori seguiti con il loro conteggio ed errore.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(capacity);
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            output.writeUTF(heap[i].value);
+            output.writeLong(heap[i].count);
+            output.writeLong(heap[i].error);
+        }
+    }
+
+    public static SpaceSaving read(DataInput input) throws IOException {
+        SpaceSaving spaceSaving = new SpaceSaving(input.readInt());
+        int size = input.readInt();
+        if (size > spaceSaving.capacity)
+            throw new IOException("Numero di valori non ammesso: " + size);
+        for (int i = 0; i < size; i++) {
+            Counter counter = new Counter(input.readUTF(), input.readLong(), input.readLong());
+            spaceSaving.counterMap.put(counter.value, counter);
+            spaceSaving.heap[spaceSaving.size] = counter;
+            counter.heapIndex = spaceSaving.size;
+            spaceSaving.siftUp(spaceSaving.size++);
+        }
+        return spaceSaving;
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Questa classe stima i quantili di una distribuzione numerica in memoria limitata con l'algoritmo t-digest: i valori
+ * vengono raggruppati in centroidi, cioè coppie media e peso, piccoli vicino agli estremi della distribuzione e più
+ * grandi al centro, così che i quantili estremi, come il 99-esimo percentile, restino precisi. I valori aggiunti vengono
+ * raccolti in un buffer e uniti ai centroidi ordinandoli ogni volta che il buffer è pieno; due t-digest possono essere
+ * uniti, ad esempio quelli calcolati da thread diversi, con un risultato equivalente a quello di un unico passaggio.
+ */
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class TDigest {
+
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression contiene il parametro di compressione, il numero di centroidi non supera circa il suo doppio.
+     */
+    public TDigest(double compression) {
+        if (compression < 10)
+            throw new IllegalArgumentException("Compressione non ammessa: " + compression);
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 5];
+        this.bufferWeights = new double[capacity * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * @param value  contiene il valore da aggiungere, i valori NaN vengono ignorati.
+     * @param weight contiene il numero di occorrenze del valore.
+     */
+    public void add(double value, double weight) {
+        if (Double.isNaN(value) || weight <= 0)
+            return;
+        if (buffered == bufferMeans.length)
+            compress();
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Aggiunge i centroidi di un altro t-digest come valori pesati.
+     * @param other contiene il t-digest da unire, non viene modificato salvo per l'unione dei suoi valori in attesa.
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++)
+            add(other.means[i], other.weights[i]);
+        if (other.totalWeight > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Unisce i valori in attesa ai centroidi: il buffer viene ordinato e fuso con i centroidi, già ordinati, e i
+     * centroidi adiacenti vengono uniti finché la loro ampiezza, misurata con la funzione di scala
+     * k(q) = compression / 2π · asin(2q - 1), non supera 1.
+     */
+    private void compress() {
+        if (buffered == 0)
+            return;
+        sort(bufferMeans, bufferWeights, 0, buffered - 1);
+        double[] oldMeans = means;
+        double[] oldWeights = weights;
+        int oldCentroids = centroids;
+        means = new double[oldMeans.length];
+        weights = new double[oldWeights.length];
+        int count = 0;
+        double weightSoFar = 0;
+        double currentMean = 0;
+        double currentWeight = 0;
+        double lowerScale = scale(0);
+        int centroid = 0;
+        int buffer = 0;
+        while (centroid < oldCentroids || buffer < buffered) {
+            double mean;
+            double weight;
+            if (buffer == buffered || (centroid < oldCentroids && oldMeans[centroid] <= bufferMeans[buffer])) {
+                mean = oldMeans[centroid];
+                weight = oldWeights[centroid++];
+            } else {
+                mean = bufferMeans[buffer];
+                weight = bufferWeights[buffer++];
+            }
+            if (currentWeight == 0) {
+                currentMean = mean;
+                currentWeight = weight;
+            } else if (scale((weightSoFar + currentWeight + weight) / totalWeight) - lowerScale <= 1) {
+                currentWeight += weight;
+                currentMean += (mean - currentMean) * weight / currentWeight;
+            } else {
+                count = append(count, currentMean, currentWeight);
+                weightSoFar += currentWeight;
+                lowerScale = scale(weightSoFar / totalWeight);
+                currentMean = mean;
+                currentWeight = weight;
+            }
+        }
+        centroids = append(count, currentMean, currentWeight);
+        buffered = 0;
+    }
+
+    /**
+     * Ordina i valori del buffer con i loro pesi, senza creare oggetti.
+     */
+    private static void sort(double[] keys, double[] values, int low, int high) {
+        while (high - low > 16) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot)
+                    i++;
+                while (keys[j] > pivot)
+                    j--;
+                if (i <= j)
+                    swap(keys, values, i++, j--);
+            }
+            //  Ordina ricorsivamente la parte più piccola, così che la profondità della ricorsione resti logaritmica.
+            if (j - low < high - i) {
+                sort(keys, values, low, j);
+                low = i;
+            } else {
+                sort(keys, values, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && keys[j] < keys[j - 1]; j--)
+                swap(keys, values, j, j - 1);
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int first, int second) {
+        double key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+        double value = values[first];
+        values[first] = values[second];
+        values[second] = value;
+    }
+
+    private int append(int count, double mean, double weight) {
+        if (count == means.length) {
+            means = Arrays.copyOf(means, count * 2);
+            weights = Arrays.copyOf(weights, count * 2);
+        }
+        means[count] = mean;
+        weights[count] = weight;
+        return count + 1;
+    }
+
+    private double scale(double quantile) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, quantile)) - 1);
+    }
+
+    /**
+     * Il valore viene interpolato linearmente tra i centri dei due centroidi adiacenti al peso cercato, tra il minimo e
+     * il primo centroide, o tra l'ultimo centroide e il massimo.
+     * @param quantile contiene il quantile cercato, compreso tra 0 e 1.
+     * @return la stima del valore del quantile, NaN se non è stato aggiunto nessun valore.
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("Quantile non ammesso: " + quantile);
+        compress();
+        if (centroids == 0)
+            return Double.NaN;
+        if (quantile == 0)
+            return min;
+        if (quantile == 1)
+            return max;
+        double index = quantile * totalWeight;
+        double previousCenter = 0;
+        double previousMean = min;
+        double cumulative = 0;
+        for (int i = 0; i < centroids; i++) {
+            double center = cumulative + weights[i] / 2;
+            //  Un centroide con un solo valore rappresenta esattamente quel valore.
+            if (weights[i] == 1 && index >= cumulative && index < cumulative + 1)
+                return means[i];
+            if (index < center)
+                return interpolate(index, previousCenter, previousMean, center, means[i]);
+            previousCenter = center;
+            previousMean = means[i];
+            cumulative += weights[i];
+        }
+        return interpolate(index, previousCenter, previousMean, totalWeight, max);
+    }
+
+    private static double interpolate(double index, double fromIndex, double fromValue, double toIndex, double toValue) {
+        if (toIndex <= fromIndex)
+            return toValue;
+        return fromValue + (toValue - fromValue) * (index - fromIndex) / (toIndex - fromIndex);
+    }
+
+    public long getCount() {
+        return (long) totalWeight;
+    }
+
+    public double getMin() {
+        return totalWeight > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return totalWeight > 0 ? max : Double.NaN;
+    }
+
+    public int getCentroidCount() {
+        compress();
+        return centroids;
+    }
+
+    /**
+     * Scrive i centroidi dopo aver unito i valori in attesa, insieme al minimo e al massimo.
+     */
+    public void write(DataOutput output) throws IOException {
+        compress();
+        output.writeDouble(compression);
+        output.writeDouble(totalWeight);
+        output.writeDouble(min);
+        output.writeDouble(max);
+        output.writeInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            output.writeDouble(means[i]);
+            output.writeDouble(weights[i]);
+        }
+    }
+
+    public static TDigest read(DataInput input) throws IOException {
+        TDigest digest = new TDigest(input.readDouble());
+        digest.totalWeight = input.readDouble();
+        digest.min = input.readDouble();
+        digest.max = input.readDouble();
+        int centroids = input.readInt();
+        for (int i = 0; i < centroids; i++)
+            digest.centroids = digest.append(i, input.readDouble(), input.readDouble());
+        return digest;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Questa classe rappresenta il punto a cui è arrivata l'elaborazione di un file: la posizione in byte e il numero di
+ * righe lette dopo l'ultimo record trasformato, insieme al numero del prossimo file load_data_N.csv da generare. Viene
+ * salvata periodicamente da Transforming così che, in caso di interruzione, l'esecuzione possa riprendere da quella
+ * posizione senza rileggere il file dall'inizio. Il numero di file già caricati in BigQuery viene salvato a parte, solo
+ * al termine di ogni caricamento, così che alla ripresa vengano caricati di nuovo i file generati ma non ancora caricati.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+public class Checkpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final String CHECKPOINT_FILE = "checkpoint.dat";
+    private static final String LOADED_FILE = "loaded_files.dat";
+
+    private final String source;
+    private final long fileSize;
+    private final long byteOffset;
+    private final long linesRead;
+    private final int lastFileCreated;
+
+    /**
+     * @param source contiene il nome del file letto.
+     * @param fileSize contiene la dimensione del file letto, per verificare che non sia cambiato prima della ripresa.
+     * @param byteOffset contiene la posizione in byte da cui riprendere la lettura.
+     * @param linesRead contiene il numero di righe lette fino a quella posizione, header compreso.
+     * @param lastFileCreated contiene il numero di file load_data_N.csv già generati.
+     */
+    public Checkpoint(String source, long fileSize, long byteOffset, long linesRead, int lastFileCreated) {
+        this.source = source;
+        this.fileSize = fileSize;
+        this.byteOffset = byteOffset;
+        this.linesRead = linesRead;
+        this.lastFileCreated = lastFileCreated;
+    }
+
+    /**
+     * Salva il checkpoint nella cartella indicata; il file viene prima scritto in una copia temporanea e poi sostituito,
+     * così che un'interruzione durante il salvataggio non lasci un checkpoint incompleto.
+     * @param directory contiene la cartella in cui salvare il checkpoint.
+     * @throws IOException viene sollevata se non è possibile scrivere il file.
+     */
+    public void save(String directory) throws IOException {
+        Path target = Paths.get(directory, CHECKPOINT_FILE);
+        Path temporary = Paths.get(directory, CHECKPOINT_FILE + ".tmp");
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(temporary.toFile()))) {
+            outputStream.writeObject(this);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Salva il numero di file load_data_N.csv caricati in BigQuery, da chiamare solo dopo che il caricamento è terminato
+     * correttamente. Il valore è salvato in un file distinto dal checkpoint perché viene scritto dal thread di
+     * caricamento, mentre il checkpoint viene scritto da quello di trasformazione.
+     * @param directory contiene la cartella in cui salvare il valore.
+     * @param loadedFiles contiene il numero di file caricati, i file da load_data_0.csv a load_data_(loadedFiles-1).csv.
+     * @throws IOException viene sollevata se non è possibile scrivere il file.
+     */
+    public static void saveLoadedFiles(String directory, int loadedFiles) throws IOException {
+        Path target = Paths.get(directory, LOADED_FILE);
+        Path temporary = Paths.get(directory, LOADED_FILE + ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(temporary.toFile()))) {
+            outputStream.writeInt(loadedFiles);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param directory contiene la cartella in cui è stato salvato il valore.
+     * @return il numero di file caricati in BigQuery, 0 se non è stato salvato o non è leggibile.
+     */
+    public static int readLoadedFiles(String directory) {
+        File file = Paths.get(directory, LOADED_FILE).toFile();
+        if (!file.exists())
+            return 0;
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(file))) {
+            return inputStream.readInt();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param directory contiene la cartella in cui è stato salvato il checkpoint.
+     * @return il checkpoint salvato, oppure null se non è presente o non è leggibile.
+     */
+    public static Checkpoint read(String directory) {
+        File file = Paths.get(directory, CHECKPOINT_FILE).toFile();
+        if (!file.exists())
+            return null;
+        try (ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(file))) {
+            return (Checkpoint) inputStream.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Elimina il checkpoint e il numero di file caricati al termine di un'esecuzione completata.
+     * @param directory contiene la cartella in cui è stato salvato il checkpoint.
+     * @throws IOException viene sollevata se non è possibile eliminare il file.
+     */
+    public static void delete(String directory) throws IOException {
+        Files.deleteIfExists(Paths.get(directory, CHECKPOINT_FILE));
+        Files.deleteIfExists(Paths.get(directory, LOADED_FILE));
+    }
+
+    /**
+     * Verifica che il checkpoint si riferisca al file indicato e che questo non sia cambiato dal salvataggio.
+     * @param dataPath contiene il percorso del file da elaborare.
+     * @return true se la lettura del file può riprendere dal checkpoint.
+     * @throws IOException viene sollevata se il file non è accessibile.
+     */
+    public boolean matches(String dataPath) throws IOException {
+        Path path = Paths.get(dataPath);
+        return path.getFileName().toString().equals(source) && Files.size(path) == fileSize;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public int getLastFileCreated() {
+        return lastFileCreated;
+    }
+
+    @Override
+    public String toString() {
+        return source + ";" + byteOffset + ";" + linesRead + ";" + lastFileCreated;
+    }
+}
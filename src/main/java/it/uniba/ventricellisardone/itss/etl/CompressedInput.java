@@ -0,0 +1,91 @@
+/**
+ * Questa classe riconosce i file .csv compressi dai primi byte del file, indipendentemente dall'estensione, e ne
+ * restituisce il contenuto decompresso. Sono supportati i formati gzip, bzip2 e zstd; la decompressione viene eseguita in
+ * un thread separato tramite PipelinedInputStream.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+public class CompressedInput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        NONE, GZIP, BZIP2, ZSTD
+    }
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Individua il formato di compressione del file leggendone i primi quattro byte.
+     * @param path contiene il percorso del file.
+     * @return il formato di compressione, NONE se il file non è compresso.
+     * @throws IOException viene sollevata se il file non è leggibile.
+     */
+    public static Format detect(Path path) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (magic.hasRemaining() && channel.read(magic) > 0) ;
+        }
+        int length = magic.position();
+        if (length >= 2 && magic.get(0) == (byte) 0x1F && magic.get(1) == (byte) 0x8B)
+            return Format.GZIP;
+        if (length >= 3 && magic.get(0) == 'B' && magic.get(1) == 'Z' && magic.get(2) == 'h')
+            return Format.BZIP2;
+        if (length >= 4 && magic.get(0) == (byte) 0x28 && magic.get(1) == (byte) 0xB5 && magic.get(2) == (byte) 0x2F
+                && magic.get(3) == (byte) 0xFD)
+            return Format.ZSTD;
+        return Format.NONE;
+    }
+
+    /**
+     * @param path contiene il percorso del file.
+     * @return true se il file è compresso in uno dei formati supportati.
+     * @throws IOException viene sollevata se il file non è leggibile.
+     */
+    public static boolean isCompressed(Path path) throws IOException {
+        return detect(path) != Format.NONE;
+    }
+
+    /**
+     * Apre il file restituendone il contenuto decompresso.
+     * @param path contiene il percorso del file compresso.
+     * @return lo stream del contenuto decompresso, da chiudere al termine della lettura.
+     * @throws IOException viene sollevata se il file non è leggibile, non è compresso o il formato non è supportato.
+     */
+    public static InputStream open(Path path) throws IOException {
+        Format format = detect(path);
+        InputStream file = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        try {
+            switch (format) {
+                case GZIP:
+                    return new PipelinedInputStream(new GZIPInputStream(file, BUFFER_SIZE));
+                case BZIP2:
+                    return new PipelinedInputStream(new BZip2CompressorInputStream(file, true));
+                case ZSTD:
+                    if (!ZstdUtils.isZstdCompressionAvailable())
+                        throw new IOException("Libreria zstd non disponibile per il file " + path);
+                    return new PipelinedInputStream(new ZstdCompressorInputStream(file));
+                default:
+                    throw new IOException("Il file non è compresso: " + path);
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+}
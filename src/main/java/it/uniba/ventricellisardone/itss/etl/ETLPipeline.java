@@ -0,0 +1,394 @@
+/**
+ * Questa classe esegue l'intero processo ETL su una o più sorgenti: i record vengono estratti in streaming, raccolti in
+ * blocchi di BLOCK_SIZE memorizzati per colonne, trasformati e ogni file generato viene caricato in BigQuery mentre viene trasformato il blocco successivo.
+ * Viene utilizzata sia dall'interfaccia grafica che dalla modalità di acquisizione continua di WatchFolder.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.RecordBatch;
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import it.uniba.ventricellisardone.itss.log.Log;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+public class ETLPipeline {
+
+    private static final String TAG = "ETLPipeline.class";
+    public static final int BLOCK_SIZE = 1000;
+    public static final String INPUT_GLOB = "*.{csv,csv.gz,csv.bz2,csv.zst}";
+
+    private final File[] sources;
+    private final String destinationPath;
+    private final String tableName;
+    private boolean reuseRecords;
+    private boolean dropDuplicates;
+    private ExtractionCache extractionCache;
+    private FileLoader fileLoader;
+
+    /**
+     * @param sources         contiene i file o le cartelle da elaborare.
+     * @param destinationPath contiene la cartella in cui salvare i file trasformati e i log delle righe scartate.
+     * @param tableName       contiene il nome della tabella del datawarehouse in cui caricare i dati.
+     * @throws IOException viene sollevata se non è possibile creare la cartella di destinazione.
+     */
+    public ETLPipeline(File[] sources, String destinationPath, String tableName) throws IOException {
+        this.sources = sources;
+        this.destinationPath = destinationPath;
+        this.tableName = tableName;
+        FileUtils.forceMkdir(new File(destinationPath));
+    }
+
+    /**
+     * Con un singolo file in ingresso i record vengono letti dal cursore di Extraction, che riempie sempre lo stesso
+     * CSVRecord, e trasformati uno alla volta da Transforming.transformRecord senza essere raccolti in blocchi: la
+     * lettura, la trasformazione e la scrittura non creano così oggetti per ogni riga.
+     * @param reuseRecords true per riutilizzare lo stesso record per tutte le righe.
+     */
+    public void setReuseRecords(boolean reuseRecords) {
+        this.reuseRecords = reuseRecords;
+    }
+
+    /**
+     * Le righe identiche a una riga già letta con la stessa data vengono scartate e salvate nel file
+     * duplicate_record.csv insieme alle altre righe scartate. Normalmente le righe duplicate vengono caricate come
+     * tutte le altre.
+     * @param dropDuplicates true per scartare le righe duplicate.
+     */
+    public void setDropDuplicates(boolean dropDuplicates) {
+        this.dropDuplicates = dropDuplicates;
+    }
+
+    /**
+     * Un singolo file in ingresso viene letto dalla cache se già estratto, ad esempio dall'analisi dei dati, altrimenti
+     * il risultato della lettura viene salvato nella cache. Normalmente la cache non viene utilizzata.
+     * @param extractionCache contiene la cache delle estrazioni, null per non utilizzarla.
+     */
+    public void setExtractionCache(ExtractionCache extractionCache) {
+        this.extractionCache = extractionCache;
+    }
+
+    /**
+     * @param fileLoader contiene il caricamento dei file generati, sostituisce quello in BigQuery di Loading.
+     */
+    void setFileLoader(FileLoader fileLoader) {
+        this.fileLoader = fileLoader;
+    }
+
+    /**
+     * Esegue il processo ETL. Quando si legge un singolo file, dopo ogni blocco viene salvato un checkpoint da cui
+     * riprendere la lettura se l'esecuzione viene interrotta; alla ripresa vengono caricati per primi i file generati
+     * prima dell'interruzione ma non ancora caricati.
+     * @param blockListener viene informato del numero di blocchi trasformati dopo ogni blocco.
+     * @throws IOException          viene sollevata in caso di problemi di accesso ai file o al cloud.
+     * @throws CSVParsingException  viene sollevata se l'header del file non coincide con quello stabilito.
+     * @throws ParseException       viene sollevata se un record non può essere trasformato.
+     * @throws InterruptedException viene sollevata se l'esecuzione viene interrotta durante il caricamento.
+     */
+    public void run(IntConsumer blockListener) throws IOException, CSVParsingException, ParseException, InterruptedException {
+        try (RejectSink rejectSink = RejectSink.createTemporary()) {
+            Iterable<CSVRecord> records = openSources(rejectSink);
+            FileLoader loader = fileLoader != null ? fileLoader : new Loading(this.destinationPath, tableName)::startLoad;
+            Checkpoint checkpoint = resumeCheckpoint(records);
+            //  Senza un checkpoint valido vengono eliminati anche i file caricati di un'esecuzione precedente.
+            if (checkpoint == null)
+                Checkpoint.delete(destinationPath);
+            Transforming transforming = checkpoint == null ? new Transforming(destinationPath, tableName)
+                    : new Transforming(destinationPath, tableName, checkpoint);
+            BlockLoader blockLoader = new BlockLoader(loader, destinationPath, Checkpoint.readLoadedFiles(destinationPath), blockListener);
+            if (blockLoader.getLoadedFiles() < transforming.getLastFileCreated()) {
+                System.out.println("[INFO] Carico i file generati prima dell'interruzione: "
+                        + (transforming.getLastFileCreated() - blockLoader.getLoadedFiles()));
+                blockLoader.loadUpTo(transforming.getLastFileCreated());
+            }
+            boolean reuse = reuseRecords && records instanceof Extraction;
+            RecordCursor cursor = reuse ? ((Extraction) records).cursor() : RecordCursor.of(records.iterator());
+            DuplicateFilter duplicateFilter = dropDuplicates ? new DuplicateFilter(!reuse) : null;
+            RecordBatch recordBatch = reuse ? null : new RecordBatch(BLOCK_SIZE);
+            int blockSize = 0;
+            while (cursor.next()) {
+                CSVRecord csvRecord = cursor.get();
+                if (duplicateFilter != null && duplicateFilter.isDuplicate(csvRecord)) {
+                    rejectSink.write(duplicateOf(records, csvRecord));
+                    continue;
+                }
+                if (reuse)
+                    transforming.transformRecord(csvRecord);
+                else
+                    recordBatch.add(csvRecord);
+                if (++blockSize == BLOCK_SIZE) {
+                    endBlock(records, transforming, recordBatch, reuse);
+                    blockLoader.loadUpTo(transforming.getLastFileCreated());
+                    //  Il blocco non viene riutilizzato perché la scrittura su file dei suoi record avviene in modo asincrono.
+                    if (!reuse)
+                        recordBatch = new RecordBatch(BLOCK_SIZE);
+                    blockSize = 0;
+                }
+            }
+            if (blockSize > 0) {
+                endBlock(records, transforming, recordBatch, reuse);
+                blockLoader.loadUpTo(transforming.getLastFileCreated());
+            }
+            blockLoader.join();
+            if (duplicateFilter != null && duplicateFilter.getDuplicateCount() > 0)
+                System.out.println("[INFO] Righe duplicate scartate: " + duplicateFilter.getDuplicateCount());
+            logRejected(records, rejectSink, destinationPath);
+            Checkpoint.delete(destinationPath);
+        }
+    }
+
+    /**
+     * Completa la trasformazione del blocco corrente e, leggendo un singolo file, salva il checkpoint.
+     */
+    private void endBlock(Iterable<CSVRecord> records, Transforming transforming, RecordBatch recordBatch, boolean reuse)
+            throws IOException, ParseException {
+        if (reuse)
+            transforming.endLoadFile();
+        else
+            transforming.transformData(recordBatch);
+        if (records instanceof Extraction) {
+            Extraction extraction = (Extraction) records;
+            transforming.saveCheckpoint(sources[0].getPath(), extraction.getOffset(), extraction.getLinesRead());
+        }
+    }
+
+    /**
+     * Un singolo file viene letto in streaming, o dalla cache se abilitata, scrivendo le righe scartate sul sink man mano
+     * che vengono individuate, mentre più file o una cartella vengono letti contemporaneamente da MultiFileExtraction,
+     * anch'essa in streaming e con le righe scartate scritte sullo stesso sink, e forniti come un unico flusso ordinato
+     * per data.
+     */
+    private Iterable<CSVRecord> openSources(RejectSink rejectSink) throws IOException, CSVParsingException {
+        if (sources.length == 1 && sources[0].isFile())
+            return Extraction.openStream(sources[0].getPath(), rejectSink, extractionCache);
+        List<String> pathList = new ArrayList<>();
+        for (File source : sources) {
+            if (source.isDirectory())
+                pathList.addAll(MultiFileExtraction.listFiles(source.getPath(), INPUT_GLOB));
+            else
+                pathList.add(source.getPath());
+        }
+        MultiFileExtraction extraction = new MultiFileExtraction(pathList, Runtime.getRuntime().availableProcessors(), rejectSink);
+        System.out.println("File letti: " + extraction.getFileCount() + ", scartati: " + extraction.getRejectedFileList().size());
+        return extraction;
+    }
+
+    /**
+     * @return la riga scartata che descrive il record duplicato, con il file e il numero di riga da cui proviene.
+     */
+    private static RejectedRecord duplicateOf(Iterable<CSVRecord> records, CSVRecord csvRecord) {
+        String line = String.join(";", CSVRecord.reverseCSVRecord(csvRecord));
+        if (records instanceof MultiFileExtraction) {
+            MultiFileExtraction extraction = (MultiFileExtraction) records;
+            return new RejectedRecord(extraction.getCurrentSource(), extraction.getCurrentLine(),
+                    RejectedRecord.Reason.DUPLICATE, -1, line);
+        }
+        Extraction extraction = (Extraction) records;
+        return new RejectedRecord(extraction.getSource(), extraction.getLinesRead(), RejectedRecord.Reason.DUPLICATE, -1, line);
+    }
+
+    private static void logRejected(Iterable<CSVRecord> records, RejectSink rejectSink, String destinationPath) throws IOException {
+        if (rejectSink.getDuplicateFile() != null) {
+            String resultsPath = Paths.get(destinationPath + Extraction.RESULTS_DIR).toString();
+            String fileName = Extraction.checkDirectoryAndFileName(resultsPath, "duplicate_record.csv", Extraction.CSV_EXTENSION);
+            rejectSink.copyDuplicates(Paths.get(resultsPath, fileName));
+        }
+        if (records instanceof Extraction) {
+            Extraction extraction = (Extraction) records;
+            extraction.logParseErrorRecord(destinationPath, "parsing_error.csv");
+            extraction.logNullRecord(destinationPath, "field_error.csv");
+            extraction.close();
+        } else if (records instanceof MultiFileExtraction) {
+            MultiFileExtraction extraction = (MultiFileExtraction) records;
+            System.out.println("Record letti: " + extraction.size());
+            extraction.logRejectedRecord(destinationPath, "rejected_records.csv");
+            extraction.close();
+        }
+    }
+
+    /**
+     * Se nella cartella di destinazione è presente il checkpoint di un'esecuzione interrotta sullo stesso file, la
+     * lettura riprende dalla posizione salvata.
+     * @return il checkpoint da cui si riprende, oppure null se la lettura parte dall'inizio del file.
+     */
+    private Checkpoint resumeCheckpoint(Iterable<CSVRecord> records) throws IOException {
+        if (!(records instanceof Extraction))
+            return null;
+        Checkpoint checkpoint = Checkpoint.read(destinationPath);
+        if (checkpoint == null || !checkpoint.matches(sources[0].getPath()))
+            return null;
+        ((Extraction) records).seek(checkpoint.getByteOffset(), checkpoint.getLinesRead());
+        System.out.println("Riprendo l'esecuzione interrotta dalla riga " + (checkpoint.getLinesRead() + 1));
+        return checkpoint;
+    }
+
+    /**
+     * Caricamento dei file load_data_N.csv con indice compreso tra from, incluso, e to, escluso; normalmente è
+     * Loading.startLoad, nei test può essere sostituito per simulare un caricamento interrotto.
+     */
+    interface FileLoader {
+        void load(int from, int to) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Carica i file generati mentre viene trasformato il blocco successivo. Il numero di file caricati viene salvato
+     * solo quando il caricamento è terminato correttamente, così che dopo un'interruzione vengano caricati di nuovo
+     * tutti i file generati ma non ancora caricati; un caricamento non riuscito viene segnalato all'avvio del
+     * caricamento successivo o al termine dell'esecuzione.
+     */
+    private static class BlockLoader {
+        private final FileLoader fileLoader;
+        private final String directory;
+        private final IntConsumer blockListener;
+        private Thread threadLoadData;
+        private Exception failure;
+        private int loadedFiles;
+
+        BlockLoader(FileLoader fileLoader, String directory, int loadedFiles, IntConsumer blockListener) {
+            this.fileLoader = fileLoader;
+            this.directory = directory;
+            this.loadedFiles = loadedFiles;
+            this.blockListener = blockListener;
+        }
+
+        int getLoadedFiles() {
+            return loadedFiles;
+        }
+
+        /**
+         * Attende il caricamento precedente e avvia quello dei file generati successivamente.
+         * @param createdFiles contiene il numero di file generati finora.
+         */
+        void loadUpTo(int createdFiles) throws InterruptedException, IOException {
+            join();
+            if (createdFiles <= loadedFiles)
+                return;
+            int from = loadedFiles;
+            threadLoadData = new Thread(() -> load(from, createdFiles));
+            threadLoadData.start();
+            loadedFiles = createdFiles;
+            blockListener.accept(createdFiles);
+        }
+
+        private void load(int from, int to) {
+            try {
+                fileLoader.load(from, to);
+                Checkpoint.saveLoadedFiles(directory, to);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                failure = e;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void join() throws InterruptedException, IOException {
+            if (threadLoadData != null)
+                threadLoadData.join();
+            if (failure != null) {
+                Log.e(TAG, "Eccezione nel thread di caricamento", failure);
+                throw new IOException("Caricamento non riuscito: " + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    /**
+     * Individua le righe identiche a una riga già letta. Le righe duplicate hanno la stessa data, quindi vengono
+     * ricordati solo i record della data corrente: con i record ordinati per data, come quelli forniti da
+     * MultiFileExtraction o esportati per giorno, la memoria occupata resta limitata a un giorno di ordini.
+     * Quando il record letto viene riutilizzato, i record della data corrente vengono copiati in un RecordBatch e
+     * indicizzati per impronta in una tabella ad indirizzamento aperto, che viene svuotata, e non ricreata, ad ogni
+     * nuova data; due record diversi possono avere la stessa impronta, quindi una riga viene scartata solo se tutti i
+     * suoi campi coincidono con quelli del record già letto.
+     */
+    private static class DuplicateFilter {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final Set<CSVRecord> dayRecords;
+        private RecordBatch dayBatch;
+        //  Ogni posizione contiene l'indice del record nel blocco aumentato di uno, lo zero indica una posizione libera.
+        private int[] slots;
+        private int currentDay = Integer.MIN_VALUE;
+        private int duplicateCount;
+
+        /**
+         * @param keepRecords true se i record letti non vengono riutilizzati e possono quindi essere conservati.
+         */
+        DuplicateFilter(boolean keepRecords) {
+            dayRecords = keepRecords ? new HashSet<>() : null;
+            if (!keepRecords) {
+                dayBatch = new RecordBatch(INITIAL_CAPACITY);
+                slots = new int[INITIAL_CAPACITY * 2];
+            }
+        }
+
+        boolean isDuplicate(CSVRecord csvRecord) {
+            if (csvRecord.getOrderDay() != currentDay) {
+                clear();
+                currentDay = csvRecord.getOrderDay();
+            }
+            if (dayRecords != null ? dayRecords.add(csvRecord) : addRecord(csvRecord))
+                return false;
+            duplicateCount++;
+            return true;
+        }
+
+        private void clear() {
+            if (dayRecords != null)
+                dayRecords.clear();
+            else if (dayBatch.size() > 0) {
+                dayBatch = new RecordBatch(INITIAL_CAPACITY);
+                Arrays.fill(slots, 0);
+            }
+        }
+
+        /**
+         * @return false se un record con gli stessi campi era già presente.
+         */
+        private boolean addRecord(CSVRecord csvRecord) {
+            long fingerprint = csvRecord.getFingerprint();
+            int mask = slots.length - 1;
+            int slot = slotOf(fingerprint, mask);
+            for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int row = slots[slot] - 1;
+                if (dayBatch.getFingerprint(row) == fingerprint && csvRecord.equals(new CSVRecord(dayBatch.get(row))))
+                    return false;
+            }
+            dayBatch.add(csvRecord);
+            slots[slot] = dayBatch.size();
+            if (dayBatch.size() * 2 > slots.length)
+                grow();
+            return true;
+        }
+
+        private void grow() {
+            int[] grown = new int[slots.length * 2];
+            int mask = grown.length - 1;
+            for (int row = 0; row < dayBatch.size(); row++) {
+                int slot = slotOf(dayBatch.getFingerprint(row), mask);
+                while (grown[slot] != 0)
+                    slot = (slot + 1) & mask;
+                grown[slot] = row + 1;
+            }
+            slots = grown;
+        }
+
+        private static int slotOf(long fingerprint, int mask) {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        }
+
+        int getDuplicateCount() {
+            return duplicateCount;
+        }
+    }
+}
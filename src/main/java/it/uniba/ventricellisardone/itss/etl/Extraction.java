@@ -6,23 +6,34 @@
 
 package it.uniba.ventricellisardone.itss.etl;
 
+import it.uniba.ventricellisardone.itss.csv.CSVProjection;
 import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.RecordBatch;
+import it.uniba.ventricellisardone.itss.csv.CSVTokenizer;
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVNullFieldsException;
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVNumberFormatException;
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
 import it.uniba.ventricellisardone.itss.log.Log;
 import org.apache.commons.io.FileUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Extraction {
+public class Extraction implements Iterable<CSVRecord>, Closeable {
 
     protected static final Map<String, Integer> HEADER_FILE;
     private static final String TAG = "CSVFile.class";
-    private static final String CSV_EXTENSION = ".csv";
-    private static final String RESULTS_DIR = "" + File.separator + "Results" + File.separator + "";
+    static final String CSV_EXTENSION = ".csv";
+    static final String RESULTS_DIR = "" + File.separator + "Results" + File.separator + "";
+    private static final long MIN_CHUNK_SIZE = 1024L * 1024L;
 
     //  L'header file che i file in input devono avere per essere ritenuti idonei.
     static {
@@ -46,25 +57,210 @@ public class Extraction {
     }
 
     private Map<String, Integer> headerFile;
-    private Scanner fileScanner;
+    private int[] projection;
+    private String source;
+    private CSVTokenizer tokenizer;
     private List<CSVRecord> csvRecordList;
-    private List<String> nullRecordList;
-    private List<String> parseErrorList;
+    private final RejectedRows rejectedRows = new RejectedRows();
 
+    private boolean consumed;
+    private long offset;
+    private long linesRead;
+
+    private ExtractionCache.Entry cacheEntry;
+    private int cacheIndex;
+
+    /**
+     * Il costruttore legge l'intero file e ne materializza i record in memoria, resta il modo più semplice di utilizzare
+     * la classe per file di dimensioni contenute.
+     * @param dataPath contiene il percorso del file .csv da leggere.
+     * @throws CSVParsingException viene sollevata se l'header del file non coincide con quello stabilito.
+     */
     public Extraction(String dataPath) throws CSVParsingException{
         try {
-            dataPath = Paths.get(dataPath).toString();
-            fileScanner = new Scanner(new File(dataPath));
-            setHeaderFile();
-            if(!this.headerFile.equals(HEADER_FILE))
-                throw new CSVParsingException("Gli header dei file non coincidono", 0);
-            else
+            openFile(dataPath);
+            setCsvRecordList();
+        } catch (IOException e) {
+            Log.e(TAG, "Constructor exception: ", e);
+        }
+    }
+
+    /**
+     * Questo costruttore suddivide il file in intervalli di byte allineati alle righe e li analizza in parallelo su un
+     * ForkJoinPool; i record e le righe scartate dei vari intervalli vengono poi riuniti rispettando l'ordine del file.
+     * Se il file contiene campi tra apici distribuiti su più righe la suddivisione non è affidabile, in tal caso la
+     * lettura viene ripetuta in modo sequenziale, così come avviene per i file compressi.
+     * @param dataPath contiene il percorso del file .csv da leggere.
+     * @param parallelism contiene il numero di thread da utilizzare, con valori minori di 2 la lettura è sequenziale.
+     * @throws CSVParsingException viene sollevata se l'header del file non coincide con quello stabilito.
+     */
+    public Extraction(String dataPath, int parallelism) throws CSVParsingException {
+        try {
+            openFile(dataPath);
+            long start = tokenizer.getPosition();
+            if (parallelism < 2 || !tokenizer.isMemoryMapped() || tokenizer.getFileSize() - start < MIN_CHUNK_SIZE * 2) {
                 setCsvRecordList();
-        } catch (FileNotFoundException e) {
+                return;
+            }
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, (tokenizer.getFileSize() - start) / (parallelism * 4L));
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            List<ChunkResult> chunks;
+            try {
+                chunks = pool.invoke(new ParseChunkTask(Paths.get(dataPath), source, projection, tokenizer, start,
+                        tokenizer.getFileSize(), chunkSize));
+            } finally {
+                pool.shutdown();
+            }
+            close();
+            if (chunks.stream().anyMatch(chunk -> chunk.multiLineRows)) {
+                Log.i(TAG, "Campi su più righe, lettura sequenziale di " + dataPath);
+                openFile(dataPath);
+                setCsvRecordList();
+            } else
+                mergeChunks(chunks);
+        } catch (IOException | UncheckedIOException e) {
             Log.e(TAG, "Constructor exception: ", e);
         }
     }
 
+    private Extraction() {
+        // Utilizzato da openStream(), il file viene aperto senza leggerne i record.
+    }
+
+    /**
+     * Questo metodo apre il file in modalità streaming: viene letto e verificato solo l'header mentre i record vengono
+     * prodotti uno alla volta durante l'iterazione, così che la memoria occupata non dipenda dalla dimensione del file.
+     * I record scartati continuano ad essere raccolti in nullRecordList e parseErrorList.
+     * @param dataPath contiene il percorso del file .csv da leggere.
+     * @return l'istanza di Extraction da iterare, va chiusa al termine della lettura.
+     * @throws CSVParsingException viene sollevata se l'header del file non coincide con quello stabilito.
+     * @throws IOException viene sollevata se il file indicato non esiste o non è leggibile.
+     */
+    public static Extraction openStream(String dataPath) throws CSVParsingException, IOException {
+        Extraction extraction = new Extraction();
+        extraction.openFile(dataPath);
+        return extraction;
+    }
+
+    /**
+     * Come openStream(String) ma le righe scartate vengono scritte sul sink man mano che vengono individuate invece di
+     * essere trattenute in memoria, in questo caso getNullRecordList e getParseErrorList restituiscono null mentre i
+     * contatori restano disponibili tramite getRejectCounters.
+     * @param dataPath contiene il percorso del file .csv da leggere.
+     * @param rejectSink contiene il sink su cui scrivere le righe scartate, non viene chiuso insieme all'estrazione.
+     * @return l'istanza di Extraction da iterare, va chiusa al termine della lettura.
+     * @throws CSVParsingException viene sollevata se l'header del file non coincide con quello stabilito.
+     * @throws IOException viene sollevata se il file indicato non esiste o non è leggibile.
+     */
+    public static Extraction openStream(String dataPath, RejectSink rejectSink) throws CSVParsingException, IOException {
+        Extraction extraction = openStream(dataPath);
+        extraction.rejectedRows.sink = rejectSink;
+        return extraction;
+    }
+
+    /**
+     * Come openStream(String, RejectSink) ma i record vengono letti dalla cache se il file è già stato estratto in
+     * precedenza, in caso contrario il risultato della lettura viene salvato in cache quando l'iterazione termina.
+     * L'header del file viene comunque verificato, mentre il parsing delle righe avviene solo la prima volta.
+     * @param dataPath contiene il percorso del file .csv da leggere.
+     * @param rejectSink contiene il sink su cui scrivere le righe scartate, non viene chiuso insieme all'estrazione.
+     * @param cache contiene la cache in cui cercare e salvare il risultato dell'estrazione, se null il file viene letto
+     *              come con openStream(String, RejectSink).
+     * @return l'istanza di Extraction da iterare, va chiusa al termine della lettura.
+     * @throws CSVParsingException viene sollevata se l'header del file non coincide con quello stabilito.
+     * @throws IOException viene sollevata se il file indicato non esiste o non è leggibile.
+     */
+    public static Extraction openStream(String dataPath, RejectSink rejectSink, ExtractionCache cache) throws CSVParsingException, IOException {
+        Extraction extraction = openStream(dataPath, rejectSink);
+        if (cache == null)
+            return extraction;
+        String key = ExtractionCache.computeKey(Paths.get(dataPath));
+        extraction.cacheEntry = cache.read(key);
+        if (extraction.cacheEntry != null) {
+            Log.i(TAG, "Record letti dalla cache: " + dataPath);
+            extraction.tokenizer.close();
+        } else {
+            try {
+                extraction.rejectedRows.cacheWriter = cache.openWriter(key);
+            } catch (IOException e) {
+                Log.e(TAG, "Cache non disponibile: " + dataPath, e);
+            }
+        }
+        return extraction;
+    }
+
+    /**
+     * @return true se i record vengono letti dalla cache invece che dal file.
+     */
+    public boolean isCached() {
+        return cacheEntry != null;
+    }
+
+    private void openFile(String dataPath) throws CSVParsingException, IOException {
+        Path path = Paths.get(dataPath);
+        source = path.getFileName().toString();
+        //  I file compressi vengono riconosciuti dal contenuto, non dall'estensione, e letti come stream.
+        if (CompressedInput.isCompressed(path))
+            tokenizer = new CSVTokenizer(CompressedInput.open(path), StandardCharsets.UTF_8);
+        else
+            tokenizer = new CSVTokenizer(path);
+        setHeaderFile();
+        try {
+            //  L'header viene confrontato una sola volta, le colonne in più vengono ignorate e quelle in ordine diverso
+            //  vengono riportate nella posizione attesa dal tokenizer stesso.
+            CSVProjection csvProjection = CSVProjection.compile(tokenizer, HEADER_FILE);
+            projection = csvProjection.isIdentity() ? null : csvProjection.getColumnToField();
+        } catch (CSVParsingException e) {
+            tokenizer.close();
+            throw new CSVParsingException("Gli header dei file non coincidono: " + e.getMessage(), 0);
+        }
+        tokenizer.setProjection(projection);
+        offset = tokenizer.getPosition();
+        linesRead = tokenizer.getLinesRead();
+    }
+
+    /**
+     * Riprende la lettura dalla posizione salvata in un checkpoint, le righe precedenti non vengono rilette; per i file
+     * compressi, che non permettono di spostarsi direttamente, le righe precedenti vengono scorse senza essere analizzate.
+     * Va chiamato prima di iniziare l'iterazione dei record.
+     * @param byteOffset contiene la posizione restituita da getOffset().
+     * @param linesRead contiene il numero di righe restituito da getLinesRead().
+     * @throws IOException viene sollevata se non è possibile leggere il file.
+     */
+    public void seek(long byteOffset, long linesRead) throws IOException {
+        if (consumed)
+            throw new IllegalStateException("I record del file sono già stati letti");
+        if (cacheEntry != null) {
+            cacheIndex = cacheEntry.indexAfter(byteOffset);
+            this.offset = byteOffset;
+            this.linesRead = linesRead;
+            return;
+        }
+        //  La lettura non parte dall'inizio del file, il risultato non può quindi essere salvato in cache.
+        rejectedRows.discardCacheWriter();
+        if (tokenizer.isMemoryMapped())
+            tokenizer.seek(byteOffset, linesRead);
+        else {
+            while (tokenizer.getPosition() < byteOffset && tokenizer.nextRow()) ;
+        }
+        this.offset = tokenizer.getPosition();
+        this.linesRead = tokenizer.getLinesRead();
+    }
+
+    /**
+     * @return la posizione in byte del file successiva all'ultimo record restituito dall'iterazione.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return il numero di righe del file lette fino all'ultimo record restituito dall'iterazione, header compreso.
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
     public Map<String, Integer> getHeaderFile() {
         return headerFile;
     }
@@ -73,14 +269,22 @@ public class Extraction {
      * Questo metodo genera una mappa che contiene l'header del file in lettura per consentire il confronto con l'header
      * file standard
      */
-    private void setHeaderFile() {
-        String[] headerString = fileScanner.nextLine().split(";");
+    private void setHeaderFile() throws IOException {
         headerFile = new HashMap<>();
-        for (int i = 0; i < headerString.length; i++)
-            headerFile.put(headerString[i], i);
+        if (tokenizer.nextRow()) {
+            for (int i = 0; i < tokenizer.size(); i++)
+                headerFile.put(tokenizer.getString(i), i);
+        }
     }
 
+    /**
+     * Restituisce la lista dei record del file, se l'istanza è stata aperta in streaming i record non ancora letti
+     * vengono consumati e aggiunti alla lista.
+     * @return la lista dei record idonei.
+     */
     public List<CSVRecord> getCsvRecordList() {
+        if (csvRecordList == null && tokenizer != null)
+            setCsvRecordList();
         return csvRecordList;
     }
 
@@ -90,35 +294,289 @@ public class Extraction {
      */
     private void setCsvRecordList() {
         csvRecordList = new ArrayList<>();
-        while(fileScanner.hasNextLine()){
-            String fileLine = fileScanner.nextLine();
-            String[] stringRecord = fileLine.split(";");
+        for (CSVRecord csvRecord : this)
+            csvRecordList.add(csvRecord);
+    }
+
+    /**
+     * Restituisce un iteratore che legge i record dal file man mano che vengono richiesti, l'iterazione può essere
+     * effettuata una sola volta.
+     * @return l'iteratore sui record idonei del file.
+     */
+    @Override
+    public Iterator<CSVRecord> iterator() {
+        startReading();
+        return new RecordIterator();
+    }
+
+    /**
+     * Restituisce un cursore che riempie sempre lo stesso CSVRecord con la riga successiva del file, così che la
+     * lettura non crei un oggetto per ogni record; il record va quindi copiato se deve essere conservato oltre la riga
+     * corrente. Come per iterator() la lettura può essere effettuata una sola volta.
+     * @return il cursore sui record idonei del file.
+     */
+    public RecordCursor cursor() {
+        startReading();
+        return new ReusableCursor();
+    }
+
+    private void startReading() {
+        if (consumed)
+            throw new IllegalStateException("I record del file sono già stati letti");
+        consumed = true;
+        if (cacheEntry != null) {
+            //  Le righe scartate salvate in cache vengono riportate all'inizio dell'iterazione, escludendo quelle che
+            //  precedono la posizione di ripresa come avviene leggendo il file.
             try {
-                CSVRecord csvRecord = new CSVRecord(stringRecord);
-                csvRecordList.add(csvRecord);
-            }catch (CSVNullFieldsException ex){
-                if(nullRecordList == null)
-                    nullRecordList = new ArrayList<>();
-                nullRecordList.add(fileLine);
-            }catch (ParseException | NumberFormatException ex){
-                if(parseErrorList == null)
-                    parseErrorList = new ArrayList<>();
-                parseErrorList.add(fileLine);
+                for (RejectedRecord rejectedRecord : cacheEntry.getRejectedRecords(source, linesRead))
+                    reject(rejectedRows, rejectedRecord);
+            } catch (IOException e) {
+                Log.e(TAG, "Exception writing rejected rows", e);
             }
         }
     }
 
+    /**
+     * Restituisce i record del file raggruppati in blocchi memorizzati per colonne, ogni blocco viene riempito solo
+     * quando richiesto; come per iterator() la lettura può essere effettuata una sola volta.
+     * @param capacity contiene il numero di record di ciascun blocco.
+     * @return i blocchi di record del file.
+     */
+    public Iterable<RecordBatch> batches(int capacity) {
+        Iterator<CSVRecord> recordIterator = iterator();
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return recordIterator.hasNext();
+            }
+
+            @Override
+            public RecordBatch next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                RecordBatch recordBatch = new RecordBatch(capacity);
+                while (!recordBatch.isFull() && recordIterator.hasNext())
+                    recordBatch.add(recordIterator.next());
+                return recordBatch;
+            }
+        };
+    }
+
+    /**
+     * Espone i record del file come Stream sequenziale, la chiusura dello stream chiude anche il file.
+     * @return lo stream dei record idonei.
+     */
+    public Stream<CSVRecord> stream() {
+        return StreamSupport.stream(spliterator(), false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        //  Un file chiuso prima del termine della lettura non viene salvato in cache.
+        rejectedRows.discardCacheWriter();
+        try {
+            if (tokenizer != null)
+                tokenizer.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Exception closing file", e);
+        }
+    }
+
+    /**
+     * Questo metodo legge le righe del file fino a trovare il prossimo record idoneo, memorizzando nelle liste apposite
+     * le righe scartate.
+     * @param target contiene il record da riempire, se null viene creato un nuovo record.
+     * @return il record letto oppure null se il file è terminato.
+     */
+    private CSVRecord readNextRecord(CSVRecord target) {
+        if (cacheEntry != null) {
+            if (cacheIndex >= cacheEntry.size())
+                return null;
+            return target != null ? cacheEntry.getRecord(cacheIndex++, target) : cacheEntry.getRecord(cacheIndex++);
+        }
+        try {
+            while (tokenizer.nextRow()) {
+                CSVRecord csvRecord = parseRow(tokenizer, source, rejectedRows, target != null ? target : new CSVRecord());
+                if (csvRecord != null) {
+                    ExtractionCache.Writer cacheWriter = rejectedRows.cacheWriter;
+                    if (cacheWriter != null && !cacheWriter.add(csvRecord, tokenizer.getPosition(), tokenizer.getLinesRead()))
+                        rejectedRows.discardCacheWriter();
+                    return csvRecord;
+                }
+            }
+            if (rejectedRows.cacheWriter != null) {
+                rejectedRows.cacheWriter.commit();
+                rejectedRows.cacheWriter = null;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Exception reading file", e);
+        }
+        close();
+        return null;
+    }
+
+    /**
+     * @return la posizione in byte raggiunta dopo l'ultimo record letto, dal file o dalla cache.
+     */
+    private long currentOffset() {
+        if (cacheEntry == null)
+            return tokenizer.getPosition();
+        return cacheIndex > 0 ? cacheEntry.getEndOffset(cacheIndex - 1) : offset;
+    }
+
+    private long currentLinesRead() {
+        if (cacheEntry == null)
+            return tokenizer.getLinesRead();
+        return cacheIndex > 0 ? cacheEntry.getLinesRead(cacheIndex - 1) : linesRead;
+    }
+
+    /**
+     * Riempie il record a partire dalla riga corrente del tokenizer, se la riga non è idonea viene scritta sul sink
+     * oppure, in sua assenza, aggiunta alla lista di scarto corrispondente.
+     * @param target contiene il record da riempire con i campi della riga.
+     * @return il record riempito, oppure null se la riga è stata scartata.
+     * @throws IOException viene sollevata se non è possibile scrivere la riga scartata sul sink.
+     */
+    private static CSVRecord parseRow(CSVTokenizer tokenizer, String source, RejectedRows rejectedRows, CSVRecord target) throws IOException {
+        try {
+            if (!tokenizer.matchesProjection())
+                throw new CSVNullFieldsException("Il numero delle colonne non corrisponde all'header: " + tokenizer.getColumnCount());
+            target.fill(tokenizer);
+            return target;
+        } catch (CSVNullFieldsException ex) {
+            reject(rejectedRows, new RejectedRecord(source, tokenizer.getLineNumber(), RejectedRecord.Reason.FIELD_COUNT,
+                    -1, tokenizer.getLine()));
+        } catch (ParseException | NumberFormatException ex) {
+            int column = -1;
+            if (ex instanceof CSVParsingException)
+                column = ((CSVParsingException) ex).getErrorOffset();
+            else if (ex instanceof CSVNumberFormatException)
+                column = ((CSVNumberFormatException) ex).getErrorOffset();
+            reject(rejectedRows, new RejectedRecord(source, tokenizer.getLineNumber(), getReason(ex, tokenizer, column),
+                    column, tokenizer.getLine()));
+        }
+        return null;
+    }
+
+    private static RejectedRecord.Reason getReason(Exception ex, CSVTokenizer tokenizer, int column) {
+        if (column >= 0 && column < tokenizer.size() && tokenizer.isEmpty(column))
+            return RejectedRecord.Reason.EMPTY_FIELD;
+        if (ex instanceof NumberFormatException)
+            return RejectedRecord.Reason.INVALID_NUMBER;
+        if (column == 1)
+            return RejectedRecord.Reason.INVALID_DATE;
+        return RejectedRecord.Reason.INVALID_VALUE;
+    }
+
+    private static void reject(RejectedRows rejectedRows, RejectedRecord rejectedRecord) throws IOException {
+        rejectedRows.counters[rejectedRecord.getReason().ordinal()]++;
+        if (rejectedRows.cacheWriter != null && !rejectedRows.cacheWriter.addRejected(rejectedRecord))
+            rejectedRows.discardCacheWriter();
+        if (rejectedRows.sink != null)
+            rejectedRows.sink.write(rejectedRecord);
+        else if (rejectedRecord.getReason() == RejectedRecord.Reason.FIELD_COUNT) {
+            if (rejectedRows.nullRecordList == null)
+                rejectedRows.nullRecordList = new ArrayList<>();
+            rejectedRows.nullRecordList.add(rejectedRecord);
+        } else {
+            if (rejectedRows.parseErrorList == null)
+                rejectedRows.parseErrorList = new ArrayList<>();
+            rejectedRows.parseErrorList.add(rejectedRecord);
+        }
+    }
+
+    /**
+     * Riunisce i risultati dei singoli intervalli, già ordinati come nel file, nelle liste dell'istanza; i numeri di
+     * riga delle righe scartate, relativi all'intervallo, vengono riportati alla numerazione del file.
+     */
+    private void mergeChunks(List<ChunkResult> chunks) {
+        int size = 0;
+        for (ChunkResult chunk : chunks)
+            size += chunk.records.size();
+        csvRecordList = new ArrayList<>(size);
+        //  La prima riga del file è l'header.
+        long linesBefore = 1;
+        for (ChunkResult chunk : chunks) {
+            csvRecordList.addAll(chunk.records);
+            rejectedRows.nullRecordList = mergeRejected(rejectedRows.nullRecordList, chunk.rejectedRows.nullRecordList, linesBefore);
+            rejectedRows.parseErrorList = mergeRejected(rejectedRows.parseErrorList, chunk.rejectedRows.parseErrorList, linesBefore);
+            for (int i = 0; i < rejectedRows.counters.length; i++)
+                rejectedRows.counters[i] += chunk.rejectedRows.counters[i];
+            linesBefore += chunk.lines;
+        }
+    }
+
+    private static List<RejectedRecord> mergeRejected(List<RejectedRecord> target, List<RejectedRecord> chunkList, long linesBefore) {
+        if (chunkList == null)
+            return target;
+        if (target == null)
+            target = new ArrayList<>();
+        for (RejectedRecord rejectedRecord : chunkList)
+            target.add(rejectedRecord.shift(linesBefore));
+        return target;
+    }
+
     public List<String> getNullRecordList() {
-        return nullRecordList;
+        return toLines(rejectedRows.nullRecordList);
     }
 
     public List<String> getParseErrorList(){
-        return parseErrorList;
+        return toLines(rejectedRows.parseErrorList);
+    }
+
+    /**
+     * @return le righe scartate per numero di campi errato, con il file e il numero di riga da cui provengono.
+     */
+    public List<RejectedRecord> getNullRecords() {
+        return rejectedRows.nullRecordList;
+    }
+
+    /**
+     * @return le righe scartate per valori non validi, con il file e il numero di riga da cui provengono.
+     */
+    public List<RejectedRecord> getParseErrorRecords() {
+        return rejectedRows.parseErrorList;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Restituisce il numero di righe scartate per ciascun motivo, nella stessa forma delle categorie del report di
+     * analisi dei dati così che possa esservi aggiunto senza dover scorrere le righe scartate.
+     * @return la mappa che associa ad ogni motivo di scarto il numero di righe scartate.
+     */
+    public Map<String, Integer> getRejectCounters() {
+        Map<String, Integer> counterMap = new LinkedHashMap<>();
+        for (RejectedRecord.Reason reason : RejectedRecord.Reason.values()) {
+            if (reason != RejectedRecord.Reason.DUPLICATE)
+                counterMap.put(reason.name(), rejectedRows.counters[reason.ordinal()]);
+        }
+        return counterMap;
+    }
+
+    /**
+     * @param reason contiene il motivo di scarto.
+     * @return il numero di righe scartate per il motivo indicato.
+     */
+    public int getRejectedCount(RejectedRecord.Reason reason) {
+        return rejectedRows.counters[reason.ordinal()];
+    }
+
+    private static List<String> toLines(List<RejectedRecord> rejectedRecords) {
+        if (rejectedRecords == null)
+            return null;
+        List<String> lines = new ArrayList<>(rejectedRecords.size());
+        for (RejectedRecord rejectedRecord : rejectedRecords)
+            lines.add(rejectedRecord.getLine());
+        return lines;
     }
 
     /**
      * Questo metodo permette di salvare su di un file apparte tutti i record che hanno presentato buchi nella loro lista
-     * di attributi e che quindi non possono essere caricati nel datawarehouse.
+     * di attributi e che quindi non possono essere caricati nel datawarehouse. Se l'estrazione scrive su un RejectSink
+     * viene copiato il file già scritto dal sink.
      * @param pathDirectory contiene il percorso in cui si desidera salvare il file di log
      * @param fileName contiene il nome che si vuole dare al file di log
      * @throws IOException viene sollevata se non viene individuato il file o non si riesce a scriverci all'interno.
@@ -128,8 +586,10 @@ public class Extraction {
         pathDirectory = Paths.get(pathDirectory).toString();
         fileName = checkDirectoryAndFileName(pathDirectory, fileName, CSV_EXTENSION);
         try{
-            if(nullRecordList != null)
-                writeLog(pathDirectory, fileName, nullRecordList);
+            if (rejectedRows.sink != null)
+                rejectedRows.sink.copyNullRecords(Paths.get(pathDirectory, fileName));
+            else if(rejectedRows.nullRecordList != null)
+                writeLog(pathDirectory, fileName, getNullRecordList());
         }catch (FileNotFoundException e){
             Log.e(TAG, "Exception log null record", e);
         }
@@ -137,7 +597,7 @@ public class Extraction {
 
     /**
      * Questo metodo permette di salvare su di un file apparte tutti i record che hanno presentato degli errori nei valori
-     * dei loro campi
+     * dei loro campi. Se l'estrazione scrive su un RejectSink viene copiato il file già scritto dal sink.
      * @param pathDirectory contiene il percorso in cui si desidera salvare il file di log
      * @param fileName contiene il nome che si vuole dare al file di log
      * @throws IOException viene sollevata se non viene individuato il file o non si riesce a scriverci all'interno.
@@ -147,8 +607,10 @@ public class Extraction {
         pathDirectory = Paths.get(pathDirectory).toString();
         fileName = checkDirectoryAndFileName(pathDirectory, fileName, CSV_EXTENSION);
         try{
-            if(parseErrorList != null)
-                writeLog(pathDirectory, fileName, parseErrorList);
+            if (rejectedRows.sink != null)
+                rejectedRows.sink.copyParseErrors(Paths.get(pathDirectory, fileName));
+            else if(rejectedRows.parseErrorList != null)
+                writeLog(pathDirectory, fileName, getParseErrorList());
         }catch (FileNotFoundException e){
             Log.e(TAG, "Exception log null record", e);
         }
@@ -163,7 +625,7 @@ public class Extraction {
      * @return ritorna il nome eventualmente modificato per aggiungere le estensioni dei file.
      * @throws IOException può sollevare un eccezione di IO nel caso il percorso non conduca a nessuna directory.
      */
-    private String checkDirectoryAndFileName(String pathDirectory , String fileName, String extension) throws IOException {
+    static String checkDirectoryAndFileName(String pathDirectory , String fileName, String extension) throws IOException {
         Log.i(TAG, "Directory: " + pathDirectory);
         Log.i(TAG, "File name: " + fileName);
         FileUtils.forceMkdir(new File(pathDirectory));
@@ -181,7 +643,7 @@ public class Extraction {
      * @param recordList contiene la lista di record di cui si vuole fare il log: nullRecordList o parseErrorList
      * @throws FileNotFoundException solleva questa eccezione quando ci sono problemi ad accedere alla memoria dell'elaboratore.
      */
-    private static void writeLog(String pathDirectory, String fileName, List<String> recordList) throws FileNotFoundException {
+    static void writeLog(String pathDirectory, String fileName, List<String> recordList) throws FileNotFoundException {
         PrintWriter writer = new PrintWriter(new FileOutputStream(pathDirectory + File.separator + fileName, false));
         Log.i(TAG, "List size: " + recordList.size());
         for (String string : recordList) {
@@ -189,4 +651,146 @@ public class Extraction {
         }
         writer.close();
     }
+
+    /**
+     * Iteratore che legge in anticipo un solo record, in questo modo in memoria è presente al più un record per volta.
+     */
+    private class RecordIterator implements Iterator<CSVRecord> {
+        private CSVRecord nextRecord;
+        private long nextOffset;
+        private long nextLinesRead;
+        private boolean ready;
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                nextRecord = readNextRecord(null);
+                nextOffset = currentOffset();
+                nextLinesRead = currentLinesRead();
+                ready = true;
+            }
+            return nextRecord != null;
+        }
+
+        @Override
+        public CSVRecord next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ready = false;
+            offset = nextOffset;
+            linesRead = nextLinesRead;
+            return nextRecord;
+        }
+    }
+
+    /**
+     * Cursore che riempie lo stesso record per ogni riga; la posizione raggiunta viene aggiornata ad ogni record, senza
+     * dover leggere in anticipo il record successivo come fa RecordIterator.
+     */
+    private class ReusableCursor implements RecordCursor {
+        private final CSVRecord record = new CSVRecord();
+
+        @Override
+        public boolean next() {
+            if (readNextRecord(record) == null)
+                return false;
+            offset = currentOffset();
+            linesRead = currentLinesRead();
+            return true;
+        }
+
+        @Override
+        public CSVRecord get() {
+            return record;
+        }
+    }
+
+    /**
+     * Liste delle righe scartate, create solo alla prima riga scartata.
+     */
+    private static class RejectedRows {
+        private List<RejectedRecord> nullRecordList;
+        private List<RejectedRecord> parseErrorList;
+        private final int[] counters = new int[RejectedRecord.Reason.values().length];
+        private RejectSink sink;
+        private ExtractionCache.Writer cacheWriter;
+
+        private void discardCacheWriter() {
+            if (cacheWriter != null) {
+                cacheWriter.close();
+                cacheWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Risultato dell'analisi di un singolo intervallo del file.
+     */
+    private static class ChunkResult {
+        private final List<CSVRecord> records = new ArrayList<>();
+        private final RejectedRows rejectedRows = new RejectedRows();
+        private boolean multiLineRows;
+        private long lines;
+    }
+
+    /**
+     * Task che divide ricorsivamente l'intervallo assegnato a metà, allineando il punto di divisione all'inizio di una
+     * riga, finché l'intervallo non è abbastanza piccolo da essere analizzato direttamente. La lista restituita contiene
+     * i risultati degli intervalli nell'ordine in cui compaiono nel file.
+     */
+    private static class ParseChunkTask extends RecursiveTask<List<ChunkResult>> {
+        private final Path path;
+        private final String source;
+        private final int[] projection;
+        private final CSVTokenizer aligner;
+        private final long start;
+        private final long end;
+        private final long chunkSize;
+
+        ParseChunkTask(Path path, String source, int[] projection, CSVTokenizer aligner, long start, long end, long chunkSize) {
+            this.path = path;
+            this.source = source;
+            this.projection = projection;
+            this.aligner = aligner;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<ChunkResult> compute() {
+            try {
+                if (end - start > chunkSize) {
+                    long middle = aligner.alignToRow(start + (end - start) / 2);
+                    if (middle > start && middle < end) {
+                        ParseChunkTask left = new ParseChunkTask(path, source, projection, aligner, start, middle, chunkSize);
+                        ParseChunkTask right = new ParseChunkTask(path, source, projection, aligner, middle, end, chunkSize);
+                        left.fork();
+                        List<ChunkResult> results = new ArrayList<>(right.compute());
+                        results.addAll(0, left.join());
+                        return results;
+                    }
+                }
+                return List.of(parseChunk());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ChunkResult parseChunk() throws IOException {
+            ChunkResult result = new ChunkResult();
+            try (CSVTokenizer chunkTokenizer = new CSVTokenizer(path, StandardCharsets.UTF_8, start, end)) {
+                chunkTokenizer.setProjection(projection);
+                while (chunkTokenizer.nextRow()) {
+                    if (chunkTokenizer.isMultiLineRow())
+                        result.multiLineRows = true;
+                    CSVRecord csvRecord = parseRow(chunkTokenizer, source, result.rejectedRows, new CSVRecord());
+                    if (csvRecord != null)
+                        result.records.add(csvRecord);
+                }
+                result.lines = chunkTokenizer.getLinesRead();
+            }
+            return result;
+        }
+    }
 }
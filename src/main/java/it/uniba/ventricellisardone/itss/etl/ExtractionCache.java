@@ -0,0 +1,601 @@
+/**
+ * Questa classe conserva su disco il risultato dell'estrazione di un file, cioè i record idonei e le righe scartate,
+ * così che una seconda lettura dello stesso file, ad esempio l'analisi dei dati seguita dal processo ETL, non debba
+ * ripetere il parsing del testo. Ogni file della cache è individuato dal percorso, dalla dimensione e dalla data di
+ * modifica del file letto, quindi un file modificato non riutilizza una cache precedente. I record sono memorizzati per
+ * colonne in formato binario e il file viene letto tramite memory mapping; durante la lettura i record vengono scritti
+ * su file temporanei, così che la memoria occupata non dipenda dalla dimensione del file. Quando la cartella supera la
+ * dimensione massima vengono eliminati i file usati meno di recente. La cache è facoltativa e va abilitata
+ * esplicitamente, ad esempio con la proprietà di sistema itss.cache.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.RecordBatch;
+import it.uniba.ventricellisardone.itss.csv.RecordView;
+import it.uniba.ventricellisardone.itss.csv.StringDictionary;
+import it.uniba.ventricellisardone.itss.log.Log;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class ExtractionCache {
+
+    private static final String TAG = "ExtractionCache.class";
+    private static final int MAGIC = 0x49545343;
+    private static final int VERSION = 1;
+    private static final String CACHE_EXTENSION = ".bin";
+
+    //  Il file della cache viene mappato in memoria e letto con posizioni intere, quindi non può superare i 2 GB: con
+    //  circa 90 byte per record, oltre questo numero di record il file non viene salvato in cache.
+    static final int MAX_CACHED_RECORDS = 20_000_000;
+    //  Le colonne di testo contengono pochi valori distinti, un dizionario più grande indica un file non adatto alla cache.
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+    private static final int NUMERIC_COLUMNS = 10;
+
+    public static final String ENABLED_PROPERTY = "itss.cache";
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024 * 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory contiene la cartella in cui salvare i file della cache, viene creata alla prima scrittura.
+     */
+    public ExtractionCache(String directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param directory contiene la cartella in cui salvare i file della cache, viene creata alla prima scrittura.
+     * @param maxBytes  contiene la dimensione massima della cartella, superata la quale vengono eliminati i file usati
+     *                  meno di recente.
+     */
+    public ExtractionCache(String directory, long maxBytes) {
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return la cache salvata nella cartella .itss/cache della home dell'utente.
+     */
+    public static ExtractionCache getDefault() {
+        return new ExtractionCache(Paths.get(System.getProperty("user.home"), ".itss", "cache").toString());
+    }
+
+    /**
+     * Le interfacce grafiche utilizzano la cache solo se il programma è avviato con -Ditss.cache=true.
+     * @return la cache predefinita se abilitata dalla proprietà di sistema itss.cache, altrimenti null.
+     */
+    public static ExtractionCache getEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) ? getDefault() : null;
+    }
+
+    /**
+     * Calcola la chiave con cui il file viene memorizzato nella cache senza leggerne il contenuto.
+     * @param dataPath contiene il percorso del file letto.
+     * @return l'impronta SHA-256 del percorso assoluto, della dimensione e della data di modifica del file.
+     * @throws IOException viene sollevata se non è possibile leggere gli attributi del file.
+     */
+    public static String computeKey(Path dataPath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(dataPath, BasicFileAttributes.class);
+        String identity = dataPath.toAbsolutePath().normalize() + "|" + attributes.size() + "|"
+                + attributes.lastModifiedTime().toMillis();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 non disponibile", e);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest(identity.getBytes(StandardCharsets.UTF_8)))
+            key.append(String.format("%02x", b));
+        return key.toString();
+    }
+
+    Path getCacheFile(String key) {
+        return directory.resolve(key + CACHE_EXTENSION);
+    }
+
+    /**
+     * @param key contiene la chiave restituita da computeKey.
+     * @return il contenuto salvato in cache, oppure null se il file non è presente o non è leggibile.
+     */
+    Entry read(String key) {
+        Path cacheFile = getCacheFile(key);
+        if (!Files.isRegularFile(cacheFile))
+            return null;
+        Entry entry;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            entry = new Entry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Cache non leggibile: " + cacheFile, e);
+            return null;
+        }
+        //  La data di modifica indica l'ultimo utilizzo del file, così che venga eliminato per ultimo.
+        try {
+            Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Log.e(TAG, "Exception touching " + cacheFile, e);
+        }
+        return entry;
+    }
+
+    /**
+     * Elimina i file della cache usati meno di recente finché la dimensione complessiva non rientra nel limite.
+     */
+    void evict() {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(CACHE_EXTENSION));
+        if (files == null)
+            return;
+        //  Le date vengono lette una sola volta, così che l'ordinamento non cambi se un altro processo usa la cache.
+        Map<File, Long> lastUsed = new HashMap<>();
+        long total = 0;
+        for (File file : files) {
+            lastUsed.put(file, file.lastModified());
+            total += file.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(lastUsed::get));
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete())
+                total -= length;
+            else
+                Log.i(TAG, "Impossibile eliminare dalla cache: " + files[i]);
+        }
+    }
+
+    /**
+     * @param key contiene la chiave restituita da computeKey.
+     * @return il Writer su cui scrivere i record e le righe scartate durante la lettura del file.
+     * @throws IOException viene sollevata se non è possibile creare i file temporanei.
+     */
+    Writer openWriter(String key) throws IOException {
+        Files.createDirectories(directory);
+        return new Writer(key, Files.createTempDirectory(directory, key + ".tmp"));
+    }
+
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scrive i record e le righe scartate man mano che vengono letti dal file, insieme alla posizione raggiunta dopo ogni
+     * record così che i checkpoint restino validi anche quando il file viene letto dalla cache. Ogni colonna viene
+     * scritta su un proprio file temporaneo e in memoria restano solo i dizionari delle colonne di testo; al termine
+     * della lettura le colonne vengono riunite nel file della cache, che sostituisce quello precedente solo se completo.
+     * Un errore di scrittura non interrompe la lettura del file: il Writer viene abbandonato e il file non viene salvato.
+     */
+    class Writer implements Closeable {
+        private final String key;
+        private final Path temporary;
+        private final DataOutputStream[] columns = new DataOutputStream[NUMERIC_COLUMNS + RecordBatch.STRING_COLUMNS];
+        private final DataOutputStream rejectedStream;
+        private final StringDictionary[] dictionaries = new StringDictionary[RecordBatch.STRING_COLUMNS];
+        private int size;
+        private int rejectedCount;
+
+        private Writer(String key, Path temporary) throws IOException {
+            this.key = key;
+            this.temporary = temporary;
+            try {
+                for (int column = 0; column < columns.length; column++)
+                    columns[column] = openColumn(columnFile(column));
+                rejectedStream = openColumn(temporary.resolve("rejected"));
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            for (int column = 0; column < RecordBatch.STRING_COLUMNS; column++)
+                dictionaries[column] = new StringDictionary();
+        }
+
+        private DataOutputStream openColumn(Path file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 14));
+        }
+
+        private Path columnFile(int column) {
+            return temporary.resolve(Integer.toString(column));
+        }
+
+        /**
+         * @return false se il file non può essere salvato in cache, perché troppo grande o per un errore di scrittura;
+         * in tal caso il Writer va chiuso.
+         */
+        boolean add(RecordView record, long endOffset, long lines) {
+            if (size >= MAX_CACHED_RECORDS)
+                return false;
+            try {
+                columns[0].writeLong(record.getIdOrder());
+                columns[1].writeLong(record.getFingerprint());
+                columns[2].writeLong(endOffset);
+                columns[3].writeLong(lines);
+                columns[4].writeDouble(record.getPayedPrice());
+                columns[5].writeInt(record.getOrderDay());
+                columns[6].writeInt(record.getQuantity());
+                columns[7].writeInt(record.getDiscount());
+                columns[8].writeChar(record.getCustomerGender());
+                columns[9].writeByte(record.isOutlet() ? 1 : 0);
+                for (int column = 0; column < RecordBatch.STRING_COLUMNS; column++) {
+                    int code = dictionaries[column].encode(getString(record, column));
+                    if (code >= MAX_DICTIONARY_SIZE)
+                        return false;
+                    columns[NUMERIC_COLUMNS + column].writeInt(code);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Impossibile scrivere la cache: " + key, e);
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        /**
+         * @return false se la riga non può essere scritta, in tal caso il Writer va chiuso.
+         */
+        boolean addRejected(RejectedRecord rejectedRecord) {
+            try {
+                rejectedStream.writeInt(rejectedRecord.getReason().ordinal());
+                rejectedStream.writeInt(rejectedRecord.getColumn());
+                rejectedStream.writeLong(rejectedRecord.getLineNumber());
+                writeString(rejectedStream, rejectedRecord.getLine());
+            } catch (IOException e) {
+                Log.e(TAG, "Impossibile scrivere la cache: " + key, e);
+                return false;
+            }
+            rejectedCount++;
+            return true;
+        }
+
+        /**
+         * Riunisce le colonne nel file della cache e lo sposta nella cartella della cache, i file temporanei vengono
+         * eliminati in ogni caso.
+         */
+        void commit() {
+            Path assembled = temporary.resolve(key + CACHE_EXTENSION);
+            try {
+                for (DataOutputStream column : columns)
+                    column.close();
+                rejectedStream.close();
+                try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(assembled), 1 << 16))) {
+                    outputStream.writeInt(MAGIC);
+                    outputStream.writeInt(VERSION);
+                    outputStream.writeInt(size);
+                    for (int column = 0; column < NUMERIC_COLUMNS; column++)
+                        Files.copy(columnFile(column), outputStream);
+                    for (int column = 0; column < RecordBatch.STRING_COLUMNS; column++) {
+                        outputStream.writeInt(dictionaries[column].size());
+                        for (int code = 0; code < dictionaries[column].size(); code++)
+                            writeString(outputStream, dictionaries[column].decode(code));
+                        Files.copy(columnFile(NUMERIC_COLUMNS + column), outputStream);
+                    }
+                    outputStream.writeInt(rejectedCount);
+                    Files.copy(temporary.resolve("rejected"), outputStream);
+                }
+                if (Files.size(assembled) > Math.min(Integer.MAX_VALUE, maxBytes))
+                    Log.i(TAG, "File troppo grande per la cache: " + key);
+                else {
+                    Files.move(assembled, getCacheFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    evict();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Impossibile salvare la cache: " + key, e);
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Elimina i file temporanei, se il file non è stato salvato con commit la cache resta invariata.
+         */
+        @Override
+        public void close() {
+            for (Closeable stream : columns)
+                closeQuietly(stream);
+            closeQuietly(rejectedStream);
+            try {
+                FileUtils.deleteDirectory(temporary.toFile());
+            } catch (IOException e) {
+                Log.e(TAG, "Impossibile eliminare i file temporanei: " + temporary, e);
+            }
+        }
+
+        private void closeQuietly(Closeable stream) {
+            try {
+                if (stream != null)
+                    stream.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Exception closing " + temporary, e);
+            }
+        }
+
+        private String getString(RecordView record, int column) {
+            switch (column) {
+                case RecordBatch.COUNTRY_CODE:
+                    return record.getCountryCode();
+                case RecordBatch.NOME_BRAND:
+                    return record.getNomeBrand();
+                case RecordBatch.COLLECTION:
+                    return record.getCollection();
+                case RecordBatch.COLOR:
+                    return record.getColor();
+                case RecordBatch.ITEM_GENDER:
+                    return record.getItemGender();
+                case RecordBatch.PAYMENT_METHOD:
+                    return record.getPaymentMethod();
+                case RecordBatch.SIZE:
+                    return record.getSize();
+                case RecordBatch.CATEGORY:
+                    return record.getCategory();
+                default:
+                    return record.getMacroCategory();
+            }
+        }
+    }
+
+    /**
+     * Contenuto di un file della cache: le colonne numeriche vengono lette direttamente dal file mappato in memoria,
+     * mentre i dizionari delle colonne di testo vengono decodificati all'apertura. Delle righe scartate viene memorizzata
+     * solo la posizione nel file mappato: vengono decodificate una alla volta durante l'iterazione, così che un file con
+     * molte righe scartate non occupi memoria in proporzione al loro numero.
+     */
+    static class Entry {
+        private final ByteBuffer buffer;
+        private final int size;
+        private final int idOrderPosition;
+        private final int fingerprintPosition;
+        private final int endOffsetPosition;
+        private final int linesReadPosition;
+        private final int pricePosition;
+        private final int orderDayPosition;
+        private final int quantityPosition;
+        private final int discountPosition;
+        private final int genderPosition;
+        private final int outletPosition;
+        private final String[][] dictionaries = new String[RecordBatch.STRING_COLUMNS][];
+        private final int[] codePositions = new int[RecordBatch.STRING_COLUMNS];
+        private final int rejectedCount;
+        private final int rejectedPosition;
+        //  Vista riutilizzata da getRecord(int, CSVRecord), l'istanza è letta da una sola estrazione alla volta.
+        private final Row cursorRow = new Row(0);
+
+        Entry(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("Formato della cache non riconosciuto");
+            size = buffer.getInt();
+            idOrderPosition = buffer.position();
+            fingerprintPosition = idOrderPosition + size * Long.BYTES;
+            endOffsetPosition = fingerprintPosition + size * Long.BYTES;
+            linesReadPosition = endOffsetPosition + size * Long.BYTES;
+            pricePosition = linesReadPosition + size * Long.BYTES;
+            orderDayPosition = pricePosition + size * Double.BYTES;
+            quantityPosition = orderDayPosition + size * Integer.BYTES;
+            discountPosition = quantityPosition + size * Integer.BYTES;
+            genderPosition = discountPosition + size * Integer.BYTES;
+            outletPosition = genderPosition + size * Character.BYTES;
+            buffer.position(outletPosition + size);
+            for (int column = 0; column < RecordBatch.STRING_COLUMNS; column++) {
+                dictionaries[column] = new String[buffer.getInt()];
+                for (int code = 0; code < dictionaries[column].length; code++)
+                    dictionaries[column][code] = readString(buffer);
+                codePositions[column] = buffer.position();
+                buffer.position(buffer.position() + size * Integer.BYTES);
+            }
+            rejectedCount = buffer.getInt();
+            rejectedPosition = buffer.position();
+        }
+
+        int size() {
+            return size;
+        }
+
+        CSVRecord getRecord(int row) {
+            return new CSVRecord(new Row(row));
+        }
+
+        /**
+         * Come getRecord(int) ma i campi vengono copiati nel record indicato, senza creare oggetti.
+         */
+        CSVRecord getRecord(int row, CSVRecord target) {
+            cursorRow.row = row;
+            target.fill(cursorRow);
+            return target;
+        }
+
+        long getEndOffset(int row) {
+            return buffer.getLong(endOffsetPosition + row * Long.BYTES);
+        }
+
+        long getLinesRead(int row) {
+            return buffer.getLong(linesReadPosition + row * Long.BYTES);
+        }
+
+        /**
+         * @param byteOffset contiene una posizione restituita da getEndOffset.
+         * @return l'indice del primo record che segue la posizione indicata.
+         */
+        int indexAfter(long byteOffset) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (getEndOffset(middle) <= byteOffset)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * @param source contiene il nome del file letto, che può essere diverso da quello con cui è stata creata la cache.
+         * @param linesRead contiene il numero di righe già lette, le righe scartate precedenti vengono escluse.
+         * @return le righe scartate che seguono la posizione indicata, nell'ordine del file; ogni riga viene decodificata
+         * solo quando viene restituita dall'iteratore, mentre le righe escluse vengono saltate senza decodificarle.
+         */
+        Iterable<RejectedRecord> getRejectedRecords(String source, long linesRead) {
+            return () -> new Iterator<>() {
+                //  Ogni iteratore legge da una propria copia del buffer, la posizione di quello condiviso non cambia.
+                private final ByteBuffer rejected = buffer.duplicate().position(rejectedPosition);
+                private int remaining = rejectedCount;
+                private RejectedRecord next = advance();
+
+                private RejectedRecord advance() {
+                    while (remaining > 0) {
+                        remaining--;
+                        int reason = rejected.getInt();
+                        int column = rejected.getInt();
+                        long lineNumber = rejected.getLong();
+                        if (lineNumber > linesRead)
+                            return new RejectedRecord(source, lineNumber, RejectedRecord.Reason.values()[reason], column,
+                                    readString(rejected));
+                        int length = rejected.getInt();
+                        rejected.position(rejected.position() + length);
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public RejectedRecord next() {
+                    if (next == null)
+                        throw new NoSuchElementException();
+                    RejectedRecord rejectedRecord = next;
+                    next = advance();
+                    return rejectedRecord;
+                }
+            };
+        }
+
+        private String getString(int column, int row) {
+            return dictionaries[column][buffer.getInt(codePositions[column] + row * Integer.BYTES)];
+        }
+
+        /**
+         * Vista su una riga della cache, utilizzata solo per creare il CSVRecord corrispondente.
+         */
+        private class Row implements RecordView {
+            private int row;
+
+            Row(int row) {
+                this.row = row;
+            }
+
+            @Override
+            public long getIdOrder() {
+                return buffer.getLong(idOrderPosition + row * Long.BYTES);
+            }
+
+            @Override
+            public int getOrderDay() {
+                return buffer.getInt(orderDayPosition + row * Integer.BYTES);
+            }
+
+            @Override
+            public String getCountryCode() {
+                return getString(RecordBatch.COUNTRY_CODE, row);
+            }
+
+            @Override
+            public char getCustomerGender() {
+                return buffer.getChar(genderPosition + row * Character.BYTES);
+            }
+
+            @Override
+            public int getQuantity() {
+                return buffer.getInt(quantityPosition + row * Integer.BYTES);
+            }
+
+            @Override
+            public double getPayedPrice() {
+                return buffer.getDouble(pricePosition + row * Double.BYTES);
+            }
+
+            @Override
+            public int getDiscount() {
+                return buffer.getInt(discountPosition + row * Integer.BYTES);
+            }
+
+            @Override
+            public boolean isOutlet() {
+                return buffer.get(outletPosition + row) != 0;
+            }
+
+            @Override
+            public String getNomeBrand() {
+                return getString(RecordBatch.NOME_BRAND, row);
+            }
+
+            @Override
+            public String getCollection() {
+                return getString(RecordBatch.COLLECTION, row);
+            }
+
+            @Override
+            public String getColor() {
+                return getString(RecordBatch.COLOR, row);
+            }
+
+            @Override
+            public String getItemGender() {
+                return getString(RecordBatch.ITEM_GENDER, row);
+            }
+
+            @Override
+            public String getPaymentMethod() {
+                return getString(RecordBatch.PAYMENT_METHOD, row);
+            }
+
+            @Override
+            public String getSize() {
+                return getString(RecordBatch.SIZE, row);
+            }
+
+            @Override
+            public String getCategory() {
+                return getString(RecordBatch.CATEGORY, row);
+            }
+
+            @Override
+            public String getMacroCategory() {
+                return getString(RecordBatch.MACRO_CATEGORY, row);
+            }
+
+            @Override
+            public long getFingerprint() {
+                return buffer.getLong(fingerprintPosition + row * Long.BYTES);
+            }
+        }
+    }
+}
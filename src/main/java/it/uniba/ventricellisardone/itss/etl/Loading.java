@@ -58,11 +58,13 @@ public class Loading {
     /**
      * Questo metodo imposta il thread per il caricamento del file nel cloud, leggendo il file da caricare dalla memoria,
      * inviando al canale di scrittura una copia del file e salvando in un file a parte il punto in cui il caricamento è
-     * arrivato.
+     * arrivato. Il metodo termina solo quando anche l'ultimo job di caricamento è terminato, così che un caricamento non
+     * riuscito venga segnalato al chiamante.
      *
      * @param startFrom contiene il valore intero che contraddistingue il file da caricare da cui iniziare.
      * @param endTo     contiene il valore intero che contraddistingue il file da caricare con cui ultimare
-     * @throws IOException          può essere sollevata in caso di problemi con l'accesso alla memoria dell'elaboratore.
+     * @throws IOException          può essere sollevata in caso di problemi con l'accesso alla memoria dell'elaboratore
+     *                              o se un file non viene caricato in BigQuery.
      * @throws InterruptedException maneggiando thread separati il metodo potrebbe dover gestire interruzioni inaspettate
      *                              del thread di caricamento.
      */
@@ -70,6 +72,7 @@ public class Loading {
         this.actualLoad = startFrom;
         saveOperation();
         Thread thread = null;
+        UploadCSVFile upload = null;
         for (int i = startFrom; i < endTo; i++) {
             String file = dataDirectory + File.separator + "load_data_" + i + ".csv";
             TableDataWriteChannel writer = bigQuery.writer(jobId, writeChannelConfiguration);
@@ -78,14 +81,29 @@ public class Loading {
             } catch (IOException | NullPointerException e) {
                 System.out.println("[EXECUTING] Eccezione path: " + e.getMessage());
                 Log.e(TAG, "ERRORE OUTPUT STREAM", e);
+                waitUpload(thread, upload);
+                throw new IOException("Impossibile inviare il file: " + file, e);
             }
-            if (thread != null)
-                thread.join();
-            thread = new Thread(new UploadCSVFile(writer));
+            waitUpload(thread, upload);
+            upload = new UploadCSVFile(writer, file);
+            thread = new Thread(upload);
             thread.start();
             this.actualLoad = i;
             saveOperation();
         }
+        waitUpload(thread, upload);
+    }
+
+    /**
+     * Attende il termine del job di caricamento avviato per il file precedente.
+     * @throws IOException viene sollevata se il job non è terminato correttamente.
+     */
+    private static void waitUpload(Thread thread, UploadCSVFile upload) throws IOException, InterruptedException {
+        if (thread == null)
+            return;
+        thread.join();
+        if (upload.error != null)
+            throw new IOException("Caricamento non riuscito: " + upload.file + " (" + upload.error + ")");
     }
 
     /**
@@ -126,17 +144,24 @@ public class Loading {
     private static class UploadCSVFile implements Runnable {
 
         private final TableDataWriteChannel writer;
+        private final String file;
+        //  Descrizione dell'errore del job, null se il file è stato caricato; letta dopo il join del thread.
+        private String error;
 
-        public UploadCSVFile(TableDataWriteChannel writer) {
+        public UploadCSVFile(TableDataWriteChannel writer, String file) {
             this.writer = writer;
+            this.file = file;
         }
 
         @Override
         public void run() {
             Job job = writer.getJob();
             try {
-                job = job.waitFor();
-                if (job.getStatus().getError() != null) {
+                job = job == null ? null : job.waitFor();
+                if (job == null)
+                    error = "job non disponibile";
+                else if (job.getStatus().getError() != null) {
+                    error = job.getStatus().getError().toString();
                     System.err.println("[EXECUTING] Eccezione job: " + job.getStatus().getError());
                     JobStatistics.LoadStatistics statistics = job.getStatistics();
                     System.out.println("[EXECUTING] CARICATI: " + statistics.getOutputRows() + " RECORDS");
@@ -144,7 +169,11 @@ public class Loading {
             } catch (InterruptedException e) {
                 Log.e(TAG, "ERRORE IN RUNNABLE", e);
                 System.err.println("[EXECUTING] ERRORE IN RUNNABLE: " + e.getMessage());
+                error = "caricamento interrotto";
                 Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "ERRORE IN RUNNABLE", e);
+                error = e.toString();
             }
         }
     }
@@ -11,19 +11,23 @@ import com.google.cloud.bigquery.BigQueryOptions;
 import com.google.cloud.bigquery.FieldValueList;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.common.collect.Lists;
-import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.RecordBatch;
+import it.uniba.ventricellisardone.itss.csv.RecordView;
 import it.uniba.ventricellisardone.itss.log.Log;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class MatchBigQueryData {
 
@@ -31,7 +35,7 @@ public class MatchBigQueryData {
     private static final String TAG = "MatchingBigQueryData";
 
     private String bigQueryDate;
-    private final List<CSVRecord> recordList;
+    private final List<? extends RecordView> recordList;
     private final String targetTable;
 
     static {
@@ -57,23 +61,64 @@ public class MatchBigQueryData {
      * @throws InterruptedException viene sollevata quando il thread che esegue la query subisce un iterruzione non prevista
      * @throws SQLException viene sollevata quando il risultato della query non è quello atteso
      */
-    public MatchBigQueryData(List<CSVRecord> recordList, String targetTable) throws InterruptedException, SQLException {
+    public MatchBigQueryData(List<? extends RecordView> recordList, String targetTable) throws InterruptedException, SQLException {
         this.recordList = recordList;
         this.targetTable = targetTable;
+        this.bigQueryDate = queryLastDate(targetTable);
+    }
+
+    /**
+     * Preleva dal cloud la data di valore più elevato presente nella tabella.
+     * @param targetTable contiene la tabella su cui effettuare la query.
+     * @return la data nel formato yyyy-MM-dd, oppure null se non è stato possibile interrogare il cloud.
+     * @throws InterruptedException viene sollevata quando il thread che esegue la query subisce un iterruzione non prevista
+     * @throws SQLException viene sollevata quando il risultato della query non è quello atteso
+     */
+    static String queryLastDate(String targetTable) throws InterruptedException, SQLException {
+        String lastDate = null;
         QueryJobConfiguration jobConfiguration = QueryJobConfiguration
                 .newBuilder("SELECT MAX(ordine_data) AS ordine_ultima_data FROM `biproject-itss.dataset."
-                        + this.targetTable +"`").build();
+                        + targetTable +"`").build();
         try {
             for (FieldValueList row : BIG_QUERY.query(jobConfiguration).iterateAll()) {
                 if (row.size() > 1)
                     throw new SQLException("Errore nel selezionare il massimo dalla tabella.");
                 else
-                    this.bigQueryDate = row.get(0).getStringValue();
+                    lastDate = row.get(0).getStringValue();
             }
         }catch (NullPointerException ex){
             Log.e(TAG, "Eccezione sollevata, provo a non interrompere il programma", ex);
-            this.bigQueryDate = null;
+            lastDate = null;
         }
+        return lastDate;
+    }
+
+    /**
+     * Restituisce il primo giorno per cui isDateMatching() risulta vero, così che i record possano essere confrontati
+     * con la data del cloud senza essere raccolti in un pacchetto.
+     * @param bigQueryDate contiene la data restituita da queryLastDate.
+     * @return il giorno, contato dal 01/01/1970, da cui i record vanno verificati con il cloud.
+     */
+    static int firstMatchingDay(String bigQueryDate) {
+        if (bigQueryDate == null)
+            return Integer.MAX_VALUE;
+        try {
+            return (int) LocalDate.parse(bigQueryDate).toEpochDay();
+        } catch (DateTimeParseException e) {
+            Log.e(TAG, "Eccezione sollevata: ", e);
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Questo costruttore verifica direttamente le righe di un blocco di record memorizzato per colonne.
+     * @param recordBatch contiene il blocco di record da controllare.
+     * @param targetTable contiene la tabella su cui effettuare le query.
+     * @throws InterruptedException viene sollevata quando il thread che esegue la query subisce un iterruzione non prevista
+     * @throws SQLException viene sollevata quando il risultato della query non è quello atteso
+     */
+    public MatchBigQueryData(RecordBatch recordBatch, String targetTable) throws InterruptedException, SQLException {
+        this(recordBatch.asList(), targetTable);
     }
 
     /**
@@ -83,11 +128,10 @@ public class MatchBigQueryData {
     public boolean isDateMatching() {
         if(this.bigQueryDate != null)
             try {
-                Date parseGoogleDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
-                        .parse(this.bigQueryDate);
-                Date recordDate = recordList.get(0).getOrderDate();
-                return parseGoogleDate.before(recordDate) || parseGoogleDate.equals(recordDate);
-            } catch (ParseException e) {
+                LocalDate parseGoogleDate = LocalDate.parse(this.bigQueryDate);
+                LocalDate recordDate = recordList.get(0).getOrderLocalDate();
+                return !parseGoogleDate.isAfter(recordDate);
+            } catch (DateTimeParseException e) {
                 Log.e(TAG, "Eccezione sollevata: ", e);
                 return true;
             }
@@ -109,13 +153,13 @@ public class MatchBigQueryData {
             QueryJobConfiguration jobConfiguration = QueryJobConfiguration
                     .newBuilder("SELECT * FROM `biproject-itss.dataset."
                             + this.targetTable +"` WHERE ordine_data = '" + this.bigQueryDate + "'").build();
-            List<String> transformedRecord = Transforming.getTransformedRecord(this.recordList);
-            for(FieldValueList row : BIG_QUERY.query(jobConfiguration).iterateAll()){
-                for(String record : transformedRecord){
-                    if(record.equals(buildStringFromFieldValueList(row)))
-                        rowCounter++;
-                }
-            }
+            //  I record trasformati vengono contati per valore, così che ogni riga del cloud venga confrontata con una
+            //  sola ricerca invece che con tutti i record.
+            Map<String, Integer> transformedRecord = new HashMap<>();
+            for(String record : Transforming.getTransformedRecord(this.recordList))
+                transformedRecord.merge(record, 1, Integer::sum);
+            for(FieldValueList row : BIG_QUERY.query(jobConfiguration).iterateAll())
+                rowCounter += transformedRecord.getOrDefault(buildStringFromFieldValueList(row), 0);
         }
         return rowCounter;
     }
@@ -135,15 +179,10 @@ public class MatchBigQueryData {
             QueryJobConfiguration jobConfiguration = QueryJobConfiguration
                     .newBuilder("SELECT * FROM `biproject-itss.dataset."
                             + this.targetTable +"` WHERE ordine_data = '" + this.bigQueryDate + "'").build();
+            Set<String> transformedRecord = new HashSet<>(Transforming.getTransformedRecord(this.recordList));
             Iterator<FieldValueList> resultSet = BIG_QUERY.query(jobConfiguration).iterateAll().iterator();
-            while(resultSet.hasNext() && !match){
-                Iterator<String> transformedRecord = Transforming.getTransformedRecord(this.recordList).iterator();
-                String cloudRecord = buildStringFromFieldValueList(resultSet.next());
-                while(transformedRecord.hasNext() && !match){
-                    if(transformedRecord.next().equals(cloudRecord))
-                        match = true;
-                }
-            }
+            while(resultSet.hasNext() && !match)
+                match = transformedRecord.contains(buildStringFromFieldValueList(resultSet.next()));
         }
         return match;
     }
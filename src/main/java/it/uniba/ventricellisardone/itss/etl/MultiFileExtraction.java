@@ -0,0 +1,397 @@
+/**
+ * Questa classe permette di estrarre i record da più file .csv contemporaneamente, ad esempio da una cartella che contiene
+ * un'esportazione per ogni negozio e per ogni giorno. Ogni file viene aperto in streaming come in Extraction, verificandone
+ * l'header, e i record dei vari file vengono riuniti in un unico flusso ordinato per data da fornire a Transforming con
+ * una fusione a k vie: di ogni file viene mantenuto in memoria solo un piccolo blocco di record, mentre il blocco
+ * successivo viene letto in anticipo da un pool di thread, così che la memoria occupata non dipenda dalla dimensione dei
+ * file. Le righe scartate mantengono il riferimento al file e alla riga da cui provengono e, se è indicato un
+ * RejectSink, vengono scritte su di esso man mano che vengono individuate.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import it.uniba.ventricellisardone.itss.log.Log;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MultiFileExtraction implements Iterable<CSVRecord>, Closeable {
+
+    private static final String TAG = "MultiFileExtraction.class";
+    //  Numero di record letti in anticipo per ogni file: in memoria restano al più due blocchi per file.
+    static final int CHUNK_SIZE = 256;
+
+    private final List<Extraction> extractionList;
+    private final List<String> rejectedFileList;
+    private final RejectSink rejectSink;
+    private final ExecutorService executor;
+    private boolean consumed;
+    private int size;
+    private String currentSource;
+    private long currentLine;
+
+    /**
+     * Il costruttore apre tutti i file della cartella il cui nome corrisponde al pattern indicato; le righe scartate
+     * vengono raccolte in memoria.
+     * @param directory contiene il percorso della cartella da leggere.
+     * @param glob contiene il pattern dei nomi dei file, ad esempio "*.csv".
+     * @param threads contiene il numero di file da leggere contemporaneamente.
+     * @throws IOException viene sollevata se la cartella non è leggibile o se la lettura viene interrotta.
+     */
+    public MultiFileExtraction(String directory, String glob, int threads) throws IOException {
+        this(listFiles(directory, glob), threads);
+    }
+
+    /**
+     * @param dataPaths contiene i percorsi dei file .csv da leggere.
+     * @param threads contiene il numero di file da leggere contemporaneamente.
+     * @throws IOException viene sollevata se la lettura viene interrotta.
+     */
+    public MultiFileExtraction(List<String> dataPaths, int threads) throws IOException {
+        this(dataPaths, threads, null);
+    }
+
+    /**
+     * Apre i file verificandone l'header, i record vengono letti solo durante l'iterazione.
+     * @param dataPaths contiene i percorsi dei file .csv da leggere.
+     * @param threads contiene il numero di file da leggere contemporaneamente.
+     * @param rejectSink contiene il sink condiviso su cui scrivere le righe scartate di tutti i file, se null le righe
+     *                   scartate vengono raccolte in memoria; non viene chiuso insieme all'estrazione.
+     * @throws IOException viene sollevata se la lettura viene interrotta.
+     */
+    public MultiFileExtraction(List<String> dataPaths, int threads, RejectSink rejectSink) throws IOException {
+        this.extractionList = new ArrayList<>();
+        this.rejectedFileList = new ArrayList<>();
+        this.rejectSink = rejectSink;
+        //  I thread di lettura non devono impedire la chiusura del programma se l'iterazione non viene completata.
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "MultiFileExtraction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Extraction>> futureList = new ArrayList<>();
+            for (String dataPath : dataPaths)
+                futureList.add(executor.submit(() -> Extraction.openStream(dataPath, rejectSink)));
+            for (int i = 0; i < futureList.size(); i++)
+                collect(dataPaths.get(i), futureList.get(i));
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Estrazione interrotta");
+        }
+    }
+
+    /**
+     * Memorizza il file aperto, i file con header errato o non leggibili vengono scartati per intero senza interrompere
+     * la lettura degli altri.
+     */
+    private void collect(String dataPath, Future<Extraction> future) throws InterruptedException {
+        try {
+            extractionList.add(future.get());
+        } catch (ExecutionException e) {
+            //  Qualunque sia la causa il file viene scartato per intero, così che i suoi record non vengano persi senza
+            //  che il file compaia tra quelli scartati.
+            rejectedFileList.add(dataPath);
+            if (e.getCause() instanceof CSVParsingException)
+                System.err.println("[ERROR] Header non valido: " + dataPath);
+            else
+                System.err.println("[ERROR] File non leggibile: " + dataPath + " (" + e.getCause() + ")");
+            Log.e(TAG, "Eccezione nella lettura di " + dataPath, e);
+        }
+    }
+
+    /**
+     * Restituisce i file della cartella che corrispondono al pattern, in ordine alfabetico.
+     * @param directory contiene il percorso della cartella.
+     * @param glob contiene il pattern dei nomi dei file.
+     * @return la lista dei percorsi dei file.
+     * @throws IOException viene sollevata se la cartella non esiste o non è leggibile.
+     */
+    public static List<String> listFiles(String directory, String glob) throws IOException {
+        List<String> fileList = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(directory), glob)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path))
+                    fileList.add(path.toString());
+            }
+        }
+        Collections.sort(fileList);
+        return fileList;
+    }
+
+    /**
+     * Restituisce un iteratore che fonde i record dei vari file in ordine di data; a parità di data i record mantengono
+     * l'ordine dei file e l'ordine all'interno di ciascun file. I file non vengono ordinati: come le esportazioni
+     * giornaliere devono già essere in ordine di data, altrimenti i loro record vengono forniti nell'ordine del file.
+     * L'iterazione può essere effettuata una sola volta.
+     * @return l'iteratore sui record di tutti i file.
+     */
+    @Override
+    public Iterator<CSVRecord> iterator() {
+        if (consumed)
+            throw new IllegalStateException("I record dei file sono già stati letti");
+        consumed = true;
+        List<FileCursor> cursorList = new ArrayList<>();
+        for (int i = 0; i < extractionList.size(); i++)
+            cursorList.add(new FileCursor(i, extractionList.get(i)));
+        PriorityQueue<FileCursor> queue = new PriorityQueue<>();
+        for (FileCursor cursor : cursorList) {
+            if (cursor.advance())
+                queue.add(cursor);
+        }
+        if (queue.isEmpty())
+            executor.shutdown();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public CSVRecord next() {
+                FileCursor cursor = queue.poll();
+                if (cursor == null)
+                    throw new NoSuchElementException();
+                CSVRecord csvRecord = cursor.current;
+                currentSource = cursor.extraction.getSource();
+                currentLine = cursor.currentLine;
+                size++;
+                if (cursor.advance())
+                    queue.add(cursor);
+                else if (queue.isEmpty())
+                    executor.shutdown();
+                return csvRecord;
+            }
+        };
+    }
+
+    /**
+     * @return il numero complessivo di record idonei restituiti finora dall'iterazione.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return il file da cui proviene l'ultimo record restituito dall'iterazione.
+     */
+    public String getCurrentSource() {
+        return currentSource;
+    }
+
+    /**
+     * @return il numero di riga, nel proprio file, dell'ultimo record restituito dall'iterazione.
+     */
+    public long getCurrentLine() {
+        return currentLine;
+    }
+
+    /**
+     * @return il numero di file aperti correttamente.
+     */
+    public int getFileCount() {
+        return extractionList.size();
+    }
+
+    /**
+     * Come in Extraction le righe scartate di un file sono disponibili man mano che il file viene letto.
+     * @return le righe di tutti i file scartate per numero di campi errato, null se vengono scritte su un RejectSink.
+     */
+    public List<RejectedRecord> getNullRecords() {
+        if (rejectSink != null)
+            return null;
+        List<RejectedRecord> rejectedList = new ArrayList<>();
+        for (Extraction extraction : extractionList) {
+            if (extraction.getNullRecords() != null)
+                rejectedList.addAll(extraction.getNullRecords());
+        }
+        return rejectedList;
+    }
+
+    /**
+     * @return le righe di tutti i file scartate per valori non validi, null se vengono scritte su un RejectSink.
+     */
+    public List<RejectedRecord> getParseErrorRecords() {
+        if (rejectSink != null)
+            return null;
+        List<RejectedRecord> rejectedList = new ArrayList<>();
+        for (Extraction extraction : extractionList) {
+            if (extraction.getParseErrorRecords() != null)
+                rejectedList.addAll(extraction.getParseErrorRecords());
+        }
+        return rejectedList;
+    }
+
+    /**
+     * @return il numero di righe scartate per ciascun motivo, sommato su tutti i file.
+     */
+    public Map<String, Integer> getRejectCounters() {
+        Map<String, Integer> counterMap = new LinkedHashMap<>();
+        for (Extraction extraction : extractionList)
+            extraction.getRejectCounters().forEach((reason, count) -> counterMap.merge(reason, count, Integer::sum));
+        return counterMap;
+    }
+
+    /**
+     * @return i file scartati per intero perché non leggibili o con un header non valido, e quelli la cui lettura si è
+     * interrotta per un errore: di questi ultimi sono stati forniti solo i record letti prima dell'errore.
+     */
+    public List<String> getRejectedFileList() {
+        return rejectedFileList;
+    }
+
+    /**
+     * Salva le righe scartate di tutti i file, ogni riga è preceduta dal nome del file e dal numero di riga. Se le righe
+     * vengono scritte su un RejectSink vengono copiati in un unico file quelli già scritti dal sink.
+     * @param pathDirectory contiene il percorso in cui si desidera salvare il file di log
+     * @param fileName contiene il nome che si vuole dare al file di log
+     * @throws IOException viene sollevata se non viene individuato il file o non si riesce a scriverci all'interno.
+     */
+    public void logRejectedRecord(String pathDirectory, String fileName) throws IOException {
+        pathDirectory += Extraction.RESULTS_DIR;
+        pathDirectory = Paths.get(pathDirectory).toString();
+        fileName = Extraction.checkDirectoryAndFileName(pathDirectory, fileName, Extraction.CSV_EXTENSION);
+        if (rejectSink != null) {
+            rejectSink.flush();
+            Path target = Paths.get(pathDirectory, fileName);
+            Files.deleteIfExists(target);
+            for (Path rejectFile : new Path[]{rejectSink.getNullRecordFile(), rejectSink.getParseErrorFile()}) {
+                if (rejectFile == null)
+                    continue;
+                //  I file del sink possono essere grandi quanto i dati letti: vengono copiati in streaming.
+                try (OutputStream outputStream = Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    Files.copy(rejectFile, outputStream);
+                }
+            }
+            return;
+        }
+        List<String> lineList = new ArrayList<>();
+        for (RejectedRecord rejectedRecord : getNullRecords())
+            lineList.add(rejectedRecord.toString());
+        for (RejectedRecord rejectedRecord : getParseErrorRecords())
+            lineList.add(rejectedRecord.toString());
+        try {
+            if (!lineList.isEmpty())
+                Extraction.writeLog(pathDirectory, fileName, lineList);
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, "Exception log rejected record", e);
+        }
+    }
+
+    /**
+     * Chiude i file non ancora letti per intero e arresta i thread di lettura.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Extraction extraction : extractionList)
+            extraction.close();
+    }
+
+    /**
+     * Posizione di lettura all'interno dei record di un file, ordinabile per data del record corrente e indice del file.
+     * Mentre vengono forniti i record di un blocco, il blocco successivo viene letto da un thread del pool; per ogni
+     * file è in lettura al più un blocco alla volta, quindi l'estrazione non viene mai usata da due thread insieme.
+     */
+    private class FileCursor implements Comparable<FileCursor> {
+        private final int fileIndex;
+        private final Extraction extraction;
+        private final Iterator<CSVRecord> iterator;
+        private Future<Chunk> nextChunk;
+        private Chunk chunk = new Chunk(0);
+        private int position;
+        private CSVRecord current;
+        private long currentLine;
+
+        FileCursor(int fileIndex, Extraction extraction) {
+            this.fileIndex = fileIndex;
+            this.extraction = extraction;
+            this.iterator = extraction.iterator();
+            this.nextChunk = executor.submit(this::readChunk);
+        }
+
+        private Chunk readChunk() {
+            Chunk records = new Chunk(CHUNK_SIZE);
+            while (records.size() < CHUNK_SIZE && iterator.hasNext())
+                records.add(iterator.next(), extraction.getLinesRead());
+            return records;
+        }
+
+        boolean advance() {
+            if (position == chunk.size()) {
+                chunk = nextChunk == null ? new Chunk(0) : waitChunk();
+                position = 0;
+                //  Un blocco incompleto indica che il file è terminato.
+                nextChunk = chunk.size() == CHUNK_SIZE ? executor.submit(this::readChunk) : null;
+            }
+            if (position == chunk.size()) {
+                current = null;
+                return false;
+            }
+            currentLine = chunk.lines[position];
+            current = chunk.records.get(position++);
+            return true;
+        }
+
+        private Chunk waitChunk() {
+            try {
+                return nextChunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Estrazione interrotta"));
+            } catch (ExecutionException e) {
+                //  I record già forniti restano validi, il resto del file viene ignorato e il file compare tra quelli
+                //  scartati, così che la perdita delle righe restanti non passi inosservata.
+                rejectedFileList.add(extraction.getSource());
+                Log.e(TAG, "Eccezione nella lettura di " + extraction.getSource(), e);
+                System.err.println("[ERROR] Lettura interrotta: " + extraction.getSource() + " (" + e.getCause() + ")");
+                extraction.close();
+                return new Chunk(0);
+            }
+        }
+
+        @Override
+        public int compareTo(FileCursor other) {
+            int result = Integer.compare(current.getOrderDay(), other.current.getOrderDay());
+            return result != 0 ? result : Integer.compare(fileIndex, other.fileIndex);
+        }
+    }
+
+    /**
+     * Blocco di record letti in anticipo, ognuno con il numero di riga da cui proviene.
+     */
+    private static class Chunk {
+        private final List<CSVRecord> records;
+        private final long[] lines;
+
+        Chunk(int capacity) {
+            records = new ArrayList<>(capacity);
+            lines = new long[capacity];
+        }
+
+        void add(CSVRecord csvRecord, long line) {
+            lines[records.size()] = line;
+            records.add(csvRecord);
+        }
+
+        int size() {
+            return records.size();
+        }
+    }
+}
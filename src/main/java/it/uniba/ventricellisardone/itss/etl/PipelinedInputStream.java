@@ -0,0 +1,120 @@
+/**
+ * Questa classe separa la decompressione di un file dalla sua lettura: un thread dedicato legge blocchi dallo stream
+ * sottostante e li accoda in una coda di dimensione limitata, da cui il thread dell'estrazione li consuma. In questo modo
+ * la decompressione del blocco successivo avviene mentre viene eseguito il parsing del blocco corrente, mentre la coda
+ * limitata evita che il file decompresso venga caricato per intero in memoria.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class PipelinedInputStream extends InputStream {
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final int QUEUE_SIZE = 8;
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> queue;
+    private final Thread producer;
+    private volatile IOException failure;
+    private byte[] block;
+    private int blockPosition;
+    private boolean finished;
+
+    /**
+     * @param source contiene lo stream da leggere in un thread separato, viene chiuso alla chiusura di questo stream.
+     */
+    public PipelinedInputStream(InputStream source) {
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        this.producer = new Thread(this::produce, "PipelinedInputStream");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    /**
+     * Legge lo stream sottostante finché non termina. Qualunque errore, anche non di I/O come quelli del decompressore,
+     * viene memorizzato e sollevato al consumatore dopo gli ultimi blocchi letti; la fine dello stream viene accodata in
+     * ogni caso, così che il consumatore non resti in attesa di un blocco che non arriverà mai.
+     */
+    private void produce() {
+        try {
+            while (true) {
+                byte[] buffer = new byte[BLOCK_SIZE];
+                int length = source.readNBytes(buffer, 0, BLOCK_SIZE);
+                if (length == 0)
+                    break;
+                queue.put(length == BLOCK_SIZE ? buffer : Arrays.copyOf(buffer, length));
+                if (length < BLOCK_SIZE)
+                    break;
+            }
+        } catch (InterruptedException e) {
+            //  Lo stream è stato chiuso: l'interruzione viene ripristinata così che l'accodamento finale non resti bloccato.
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        } catch (Throwable e) {
+            failure = new IOException("Errore nella lettura dello stream: " + e, e);
+        } finally {
+            try {
+                queue.put(END_OF_STREAM);
+            } catch (InterruptedException ignored) {
+                //  Lo stream è stato chiuso, il consumatore non attende più alcun blocco.
+            }
+        }
+    }
+
+    /**
+     * Passa al blocco successivo quando quello corrente è esaurito.
+     * @return false se lo stream è terminato.
+     */
+    private boolean nextBlock() throws IOException {
+        while (!finished && (block == null || blockPosition >= block.length)) {
+            try {
+                block = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lettura interrotta");
+            }
+            blockPosition = 0;
+            if (block == END_OF_STREAM) {
+                finished = true;
+                if (failure != null)
+                    throw failure;
+            }
+        }
+        return !finished;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock())
+            return -1;
+        return block[blockPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        if (!nextBlock())
+            return -1;
+        int count = Math.min(length, block.length - blockPosition);
+        System.arraycopy(block, blockPosition, buffer, offset, count);
+        blockPosition += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        producer.interrupt();
+        source.close();
+    }
+}
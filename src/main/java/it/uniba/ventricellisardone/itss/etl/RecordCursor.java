@@ -0,0 +1,48 @@
+/**
+ * Questa interfaccia permette di scorrere i record di una sorgente uno alla volta. A differenza di un Iterator il record
+ * restituito da get() può essere lo stesso oggetto riempito di nuovo ad ogni chiamata di next(), come avviene con il
+ * cursore di Extraction: chi ha bisogno di conservare un record oltre la riga corrente deve quindi copiarlo.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+
+import java.util.Iterator;
+
+public interface RecordCursor {
+
+    /**
+     * Passa al record successivo.
+     * @return true se è disponibile un nuovo record, false se la sorgente è terminata.
+     */
+    boolean next();
+
+    /**
+     * @return il record corrente, valido fino alla successiva chiamata di next().
+     */
+    CSVRecord get();
+
+    /**
+     * Adatta un iteratore all'interfaccia RecordCursor, in questo caso ogni record è un oggetto distinto.
+     * @param iterator contiene l'iteratore dei record.
+     * @return il cursore sui record dell'iteratore.
+     */
+    static RecordCursor of(Iterator<CSVRecord> iterator) {
+        return new RecordCursor() {
+            private CSVRecord current;
+
+            @Override
+            public boolean next() {
+                if (!iterator.hasNext())
+                    return false;
+                current = iterator.next();
+                return true;
+            }
+
+            @Override
+            public CSVRecord get() {
+                return current;
+            }
+        };
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Questa classe scrive le righe scartate durante l'estrazione su file nel momento stesso in cui vengono individuate,
+ * così che un file con molte righe errate non debba essere trattenuto in memoria fino al salvataggio dei log. Le righe
+ * con campi mancanti, quelle con valori non validi e quelle duplicate vengono scritte su tre file distinti, creati solo
+ * alla prima riga scartata, e per ogni motivo di scarto viene mantenuto un contatore.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.log.Log;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+public class RejectSink implements Closeable {
+
+    private static final String TAG = "RejectSink.class";
+    private static final String NULL_RECORD_FILE = "null_record.csv";
+    private static final String PARSE_ERROR_FILE = "parse_error.csv";
+    private static final String DUPLICATE_RECORD_FILE = "duplicate_record.csv";
+
+    private final Path directory;
+    private final boolean temporary;
+    private final long[] counters = new long[RejectedRecord.Reason.values().length];
+    private BufferedWriter nullRecordWriter;
+    private BufferedWriter parseErrorWriter;
+    private BufferedWriter duplicateWriter;
+
+    /**
+     * @param directory contiene la cartella in cui scrivere i file delle righe scartate, viene creata se non esiste.
+     * @throws IOException viene sollevata se non è possibile creare la cartella.
+     */
+    public RejectSink(String directory) throws IOException {
+        this(Paths.get(directory), false);
+        FileUtils.forceMkdir(this.directory.toFile());
+    }
+
+    private RejectSink(Path directory, boolean temporary) {
+        this.directory = directory;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Crea un sink che scrive in una cartella temporanea, eliminata alla chiusura; è utile quando la cartella di
+     * destinazione dei log viene scelta solo al termine dell'estrazione, i file vengono poi copiati con copyNullRecords
+     * e copyParseErrors.
+     * @return il sink creato.
+     * @throws IOException viene sollevata se non è possibile creare la cartella temporanea.
+     */
+    public static RejectSink createTemporary() throws IOException {
+        return new RejectSink(Files.createTempDirectory("etl_reject"), true);
+    }
+
+    /**
+     * Scrive la riga scartata sul file corrispondente al motivo dello scarto.
+     * @param rejectedRecord contiene la riga scartata.
+     * @throws IOException viene sollevata se non è possibile scrivere sul file.
+     */
+    public synchronized void write(RejectedRecord rejectedRecord) throws IOException {
+        counters[rejectedRecord.getReason().ordinal()]++;
+        BufferedWriter writer;
+        if (rejectedRecord.getReason() == RejectedRecord.Reason.FIELD_COUNT) {
+            if (nullRecordWriter == null)
+                nullRecordWriter = Files.newBufferedWriter(directory.resolve(NULL_RECORD_FILE), StandardCharsets.UTF_8);
+            writer = nullRecordWriter;
+        } else if (rejectedRecord.getReason() == RejectedRecord.Reason.DUPLICATE) {
+            if (duplicateWriter == null)
+                duplicateWriter = Files.newBufferedWriter(directory.resolve(DUPLICATE_RECORD_FILE), StandardCharsets.UTF_8);
+            writer = duplicateWriter;
+        } else {
+            if (parseErrorWriter == null)
+                parseErrorWriter = Files.newBufferedWriter(directory.resolve(PARSE_ERROR_FILE), StandardCharsets.UTF_8);
+            writer = parseErrorWriter;
+        }
+        writer.write(rejectedRecord.toString());
+        writer.newLine();
+    }
+
+    /**
+     * @param reason contiene il motivo di scarto.
+     * @return il numero di righe scartate per il motivo indicato.
+     */
+    public synchronized long getCount(RejectedRecord.Reason reason) {
+        return counters[reason.ordinal()];
+    }
+
+    public synchronized void flush() throws IOException {
+        if (nullRecordWriter != null)
+            nullRecordWriter.flush();
+        if (parseErrorWriter != null)
+            parseErrorWriter.flush();
+        if (duplicateWriter != null)
+            duplicateWriter.flush();
+    }
+
+    /**
+     * @return il file delle righe con campi mancanti, null se non ne sono state scartate.
+     */
+    public Path getNullRecordFile() {
+        return nullRecordWriter == null ? null : directory.resolve(NULL_RECORD_FILE);
+    }
+
+    /**
+     * @return il file delle righe con valori non validi, null se non ne sono state scartate.
+     */
+    public Path getParseErrorFile() {
+        return parseErrorWriter == null ? null : directory.resolve(PARSE_ERROR_FILE);
+    }
+
+    /**
+     * @return il file delle righe duplicate, null se non ne sono state scartate.
+     */
+    public Path getDuplicateFile() {
+        return duplicateWriter == null ? null : directory.resolve(DUPLICATE_RECORD_FILE);
+    }
+
+    /**
+     * Copia il file delle righe con campi mancanti nel percorso indicato, se sono state scartate delle righe.
+     * @param target contiene il percorso del file di destinazione.
+     * @throws IOException viene sollevata se non è possibile copiare il file.
+     */
+    public void copyNullRecords(Path target) throws IOException {
+        flush();
+        if (getNullRecordFile() != null)
+            Files.copy(getNullRecordFile(), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Copia il file delle righe con valori non validi nel percorso indicato, se sono state scartate delle righe.
+     * @param target contiene il percorso del file di destinazione.
+     * @throws IOException viene sollevata se non è possibile copiare il file.
+     */
+    public void copyParseErrors(Path target) throws IOException {
+        flush();
+        if (getParseErrorFile() != null)
+            Files.copy(getParseErrorFile(), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Copia il file delle righe duplicate nel percorso indicato, se sono state scartate delle righe.
+     * @param target contiene il percorso del file di destinazione.
+     * @throws IOException viene sollevata se non è possibile copiare il file.
+     */
+    public void copyDuplicates(Path target) throws IOException {
+        flush();
+        if (getDuplicateFile() != null)
+            Files.copy(getDuplicateFile(), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (nullRecordWriter != null)
+            nullRecordWriter.close();
+        if (parseErrorWriter != null)
+            parseErrorWriter.close();
+        if (duplicateWriter != null)
+            duplicateWriter.close();
+        if (temporary) {
+            try {
+                FileUtils.deleteDirectory(directory.toFile());
+            } catch (IOException e) {
+                Log.e(TAG, "Exception deleting " + directory, e);
+            }
+        }
+    }
+}
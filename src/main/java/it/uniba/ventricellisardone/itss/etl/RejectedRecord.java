@@ -0,0 +1,68 @@
+/**
+ * Questa classe rappresenta una riga scartata durante l'estrazione, insieme al file e al numero di riga da cui proviene
+ * così da poterla individuare e correggere anche quando vengono letti più file contemporaneamente. Ogni riga riporta
+ * anche il motivo dello scarto e, quando noto, l'indice del campo che contiene il valore errato.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+public class RejectedRecord {
+
+    /**
+     * Motivi per cui una riga può essere scartata, solo FIELD_COUNT corrisponde ai record con campi mancanti mentre gli
+     * altri corrispondono ai record con valori non validi. DUPLICATE non viene prodotto dall'estrazione ma da ETLPipeline
+     * per le righe identiche a una riga già letta.
+     */
+    public enum Reason {
+        FIELD_COUNT, EMPTY_FIELD, INVALID_NUMBER, INVALID_DATE, INVALID_VALUE, DUPLICATE
+    }
+
+    private final String source;
+    private final long lineNumber;
+    private final Reason reason;
+    private final int column;
+    private final String line;
+
+    public RejectedRecord(String source, long lineNumber, Reason reason, int column, String line) {
+        this.source = source;
+        this.lineNumber = lineNumber;
+        this.reason = reason;
+        this.column = column;
+        this.line = line;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return l'indice del campo con il valore errato, -1 se lo scarto riguarda l'intera riga.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Restituisce una copia della riga scartata con il numero di riga spostato in avanti, utilizzato quando la riga è
+     * stata letta da un intervallo del file che non inizia dalla prima riga.
+     */
+    RejectedRecord shift(long lines) {
+        return new RejectedRecord(source, lineNumber + lines, reason, column, line);
+    }
+
+    @Override
+    public String toString() {
+        return source + ";" + lineNumber + ";" + reason + ";" + column + ";" + line;
+    }
+}
@@ -4,8 +4,11 @@
  */
 package it.uniba.ventricellisardone.itss.etl;
 
-import it.uniba.ventricellisardone.itss.cloud.data.CloudData;
+import it.uniba.ventricellisardone.itss.cloud.data.DateDimension;
 import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.ColumnDictionary;
+import it.uniba.ventricellisardone.itss.csv.RecordBatch;
+import it.uniba.ventricellisardone.itss.csv.RecordView;
 import it.uniba.ventricellisardone.itss.log.Log;
 import org.apache.commons.io.FileUtils;
 
@@ -14,7 +17,7 @@ import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
@@ -38,10 +41,19 @@ public class Transforming {
                 "ARANCIONE", "FANTASIA");
     }
 
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private final String savingPath;
     private Integer lastFileCreated;
     private final String targetTable;
 
+    //  Stato della trasformazione di un record alla volta, utilizzato da transformRecord ed endLoadFile.
+    private PrintWriter streamFile;
+    private int firstMatchingDay;
+    private List<RecordView> streamPackage = new ArrayList<>();
+    private final StringBuilder lineBuilder = new StringBuilder();
+    private char[] lineBuffer = new char[256];
+
     /**
      * Il costruttore crea la directory dove salvare i file .csv generati.
      *
@@ -55,6 +67,38 @@ public class Transforming {
         this.targetTable = targetTable;
     }
 
+    /**
+     * Questo costruttore riprende un'esecuzione interrotta: la numerazione dei file generati prosegue da quella salvata
+     * nel checkpoint, così che i file load_data_N.csv già creati non vengano sovrascritti.
+     *
+     * @param savingPath  contiene il percorso della cartella nella quale andranno salvati i file creati.
+     * @param targetTable contiene il nome della tabella di destinazione.
+     * @param checkpoint  contiene il checkpoint da cui riprendere.
+     * @throws IOException viene sollevata se il metodo non riesce ad accedere alla memoria del calcolatore.
+     */
+    public Transforming(String savingPath, String targetTable, Checkpoint checkpoint) throws IOException {
+        this(savingPath, targetTable);
+        this.lastFileCreated = checkpoint.getLastFileCreated();
+    }
+
+    /**
+     * Salva un checkpoint con la posizione raggiunta nel file in lettura e il numero di file già generati, da chiamare
+     * dopo la trasformazione di ogni blocco di record.
+     *
+     * @param dataPath   contiene il percorso del file in lettura.
+     * @param byteOffset contiene la posizione in byte successiva all'ultimo record trasformato.
+     * @param linesRead  contiene il numero di righe lette fino a quella posizione.
+     * @throws IOException viene sollevata se non è possibile scrivere il checkpoint.
+     */
+    public void saveCheckpoint(String dataPath, long byteOffset, long linesRead) throws IOException {
+        File file = new File(dataPath);
+        new Checkpoint(file.getName(), file.length(), byteOffset, linesRead, lastFileCreated).save(savingPath);
+    }
+
+    public int getLastFileCreated() {
+        return lastFileCreated;
+    }
+
     /**
      * Questo metodo seleziona record per record i valori ottenuti da Extraction e avvia così la trasformazione sui dati e la
      * aggiunta dei record necessari alle analisi successive.
@@ -64,31 +108,140 @@ public class Transforming {
      * @throws ParseException viene sollevata se si cerca di trasformare un record non trasformabile.
      * @throws IOException    viene sollevata se il sistema ha problemi ad accedere alla memoria del calcolatore.
      */
-    public void transformData(List<CSVRecord> csvRecordList) throws ParseException, IOException {
+    public void transformData(List<? extends RecordView> csvRecordList) throws ParseException, IOException {
+        transformData(csvRecordList.iterator());
+    }
+
+    /**
+     * Versione in streaming del metodo precedente: i record vengono letti dall'iteratore uno alla volta e in memoria
+     * viene mantenuto solo il pacchetto di record relativo alla data corrente, poiché i record arrivano ordinati per data.
+     *
+     * @param csvRecordIterator contiene l'iteratore dei record da trasformare, ad esempio quello di Extraction.
+     * @throws ParseException viene sollevata se si cerca di trasformare un record non trasformabile.
+     * @throws IOException    viene sollevata se il sistema ha problemi ad accedere alla memoria del calcolatore.
+     */
+    public void transformData(Iterator<? extends RecordView> csvRecordIterator) throws ParseException, IOException {
+        PrintWriter csvFile = openLoadFile();
+        List<RecordView> datePackage = new ArrayList<>();
+        while (csvRecordIterator.hasNext()) {
+            RecordView csvRecord = csvRecordIterator.next();
+            if (!datePackage.isEmpty() && datePackage.get(0).getOrderDay() != csvRecord.getOrderDay()) {
+                writeDatePackage(csvFile, datePackage);
+                datePackage = new ArrayList<>();
+            }
+            datePackage.add(csvRecord);
+        }
+        if (!datePackage.isEmpty())
+            writeDatePackage(csvFile, datePackage);
+        closeLoadFile(csvFile);
+    }
+
+    /**
+     * Versione a colonne del metodo precedente: i record del blocco vengono raggruppati per data confrontando
+     * direttamente i giorni memorizzati nel blocco e ogni pacchetto viene passato come vista sulle righe del blocco,
+     * senza creare un oggetto per record.
+     *
+     * @param recordBatch contiene il blocco di record da trasformare, ordinati per data.
+     * @throws ParseException viene sollevata se si cerca di trasformare un record non trasformabile.
+     * @throws IOException    viene sollevata se il sistema ha problemi ad accedere alla memoria del calcolatore.
+     */
+    public void transformData(RecordBatch recordBatch) throws ParseException, IOException {
+        PrintWriter csvFile = openLoadFile();
+        int packageStart = 0;
+        for (int i = 1; i <= recordBatch.size(); i++) {
+            if (i == recordBatch.size() || recordBatch.getOrderDay(i) != recordBatch.getOrderDay(packageStart)) {
+                writeDatePackage(csvFile, recordBatch.subList(packageStart, i));
+                packageStart = i;
+            }
+        }
+        closeLoadFile(csvFile);
+    }
+
+    /**
+     * Trasforma un record alla volta scrivendolo sul file di caricamento corrente, che viene creato al primo record e
+     * chiuso da endLoadFile. Il record non viene conservato, il chiamante può quindi riempirlo di nuovo con la riga
+     * successiva come avviene con il cursore di Extraction: i record con data precedente all'ultima presente nel cloud
+     * non possono essere in conflitto con esso e vengono scritti subito riutilizzando le stesse strutture, mentre solo
+     * quelli da verificare vengono copiati e raccolti nel pacchetto della loro data come in transformData.
+     *
+     * @param record contiene il record da trasformare, i record vanno forniti ordinati per data.
+     * @throws ParseException viene sollevata se si cerca di trasformare un record non trasformabile.
+     * @throws IOException    viene sollevata se il sistema ha problemi ad accedere alla memoria del calcolatore.
+     */
+    public void transformRecord(RecordView record) throws ParseException, IOException {
+        if (streamFile == null) {
+            streamFile = openLoadFile();
+            firstMatchingDay = queryFirstMatchingDay();
+        }
+        if (!streamPackage.isEmpty() && streamPackage.get(0).getOrderDay() != record.getOrderDay()) {
+            writeDatePackage(streamFile, streamPackage, false);
+            streamPackage = new ArrayList<>();
+        }
+        if (record.getOrderDay() < firstMatchingDay)
+            writeRecord(streamFile, record);
+        else
+            streamPackage.add(new CSVRecord(record));
+    }
+
+    /**
+     * Completa il file di caricamento creato da transformRecord, scrivendo l'eventuale pacchetto ancora da verificare.
+     * Se non è stato trasformato alcun record dall'ultima chiamata il metodo non ha effetto.
+     *
+     * @throws ParseException viene sollevata se si cerca di trasformare un record non trasformabile.
+     * @throws IOException    viene sollevata se il sistema ha problemi ad accedere alla memoria del calcolatore.
+     */
+    public void endLoadFile() throws ParseException, IOException {
+        if (streamFile == null)
+            return;
+        if (!streamPackage.isEmpty()) {
+            writeDatePackage(streamFile, streamPackage, false);
+            streamPackage = new ArrayList<>();
+        }
+        closeLoadFile(streamFile);
+        streamFile = null;
+    }
+
+    /**
+     * La data del cloud viene letta una sola volta per ogni file di caricamento invece che per ogni pacchetto.
+     */
+    private int queryFirstMatchingDay() {
+        try {
+            return MatchBigQueryData.firstMatchingDay(MatchBigQueryData.queryLastDate(this.targetTable));
+        } catch (SQLException | InterruptedException ex) {
+            Log.e(TAG, "Exception in transforming", ex);
+            //  Senza la data del cloud tutti i record passano per la verifica dei pacchetti.
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Scrive direttamente il record trasformato, riutilizzando lo stesso buffer per ogni riga.
+     */
+    private void writeRecord(PrintWriter csvFile, RecordView record) {
+        try {
+            lineBuilder.setLength(0);
+            appendCloudRecord(lineBuilder, record);
+        } catch (ParseException e) {
+            Log.e(TAG, "Eccezione sollevata", e);
+            return;
+        }
+        int length = lineBuilder.length();
+        if (lineBuffer.length < length)
+            lineBuffer = new char[length * 2];
+        lineBuilder.getChars(0, length, lineBuffer, 0);
+        csvFile.write(lineBuffer, 0, length);
+        //  A differenza di println() il separatore non forza lo svuotamento del buffer ad ogni riga.
+        csvFile.write(LINE_SEPARATOR);
+    }
+
+    private PrintWriter openLoadFile() throws FileNotFoundException {
         PrintWriter csvFile = new PrintWriter(new FileOutputStream(savingPath + File.separator + "load_data_" + lastFileCreated
                 + CSV_EXTENSION), true, StandardCharsets.UTF_8);
         csvFile.println(HEADER);
-        int i = 0;
-        Date checkingDate = null;
-        if (csvRecordList.size() > 0)
-            checkingDate = csvRecordList.get(i).getOrderDate();
-        List<CSVRecord> datePackage = new ArrayList<>();
-        while (i < csvRecordList.size()) {
-            try {
-                if (!checkingDate.equals(csvRecordList.get(i).getOrderDate()) || i == (csvRecordList.size() - 1)) {
-                    if ((csvRecordList.size() - 1) == i)
-                        datePackage.add(csvRecordList.get(i));
-                    MatchBigQueryData matchBigQueryData = new MatchBigQueryData(datePackage, this.targetTable);
-                    checkMatching(csvFile, datePackage, matchBigQueryData);
-                    datePackage = new ArrayList<>();
-                } else
-                    datePackage.add(csvRecordList.get(i));
-                checkingDate = csvRecordList.get(i).getOrderDate();
-                i++;
-            } catch (NullPointerException | SQLException | InterruptedException ex) {
-                Log.e(TAG, "Exception in transforming", ex);
-            }
-        }
+        return csvFile;
+    }
+
+    private void closeLoadFile(PrintWriter csvFile) throws FileNotFoundException {
         csvFile.close();
         lastFileCreated++;
         PrintWriter logTransform = new PrintWriter(savingPath + File.separator + "log_transform.log");
@@ -96,6 +249,26 @@ public class Transforming {
         logTransform.close();
     }
 
+    /**
+     * Verifica il pacchetto di record di una stessa data con BigQuery e lo scrive sul file appropriato.
+     */
+    private void writeDatePackage(PrintWriter csvFile, List<? extends RecordView> datePackage) throws ParseException, FileNotFoundException {
+        writeDatePackage(csvFile, datePackage, true);
+    }
+
+    /**
+     * @param async indica se il pacchetto può essere scritto da un thread separato, non è possibile quando altri record
+     *              vengono scritti contemporaneamente sullo stesso file.
+     */
+    private void writeDatePackage(PrintWriter csvFile, List<? extends RecordView> datePackage, boolean async) throws ParseException, FileNotFoundException {
+        try {
+            MatchBigQueryData matchBigQueryData = new MatchBigQueryData(datePackage, this.targetTable);
+            checkMatching(csvFile, datePackage, matchBigQueryData, async);
+        } catch (NullPointerException | SQLException | InterruptedException ex) {
+            Log.e(TAG, "Exception in transforming", ex);
+        }
+    }
+
     /**
      * Questo è il metodo delegato alla verifica della conflittualità del record
      *
@@ -106,15 +279,15 @@ public class Transforming {
      * @throws InterruptedException  può essere sollevata quando si verifica online la genuinità del record.
      * @throws FileNotFoundException può essere sollevata quando il calcolatore ha difficoltà ad accedere alla macchina.
      */
-    private void checkMatching(PrintWriter csvFile, List<CSVRecord> datePackage, MatchBigQueryData matchBigQueryData)
-            throws ParseException, InterruptedException, FileNotFoundException {
+    private void checkMatching(PrintWriter csvFile, List<? extends RecordView> datePackage, MatchBigQueryData matchBigQueryData,
+                               boolean async) throws ParseException, InterruptedException, FileNotFoundException {
         if (!matchBigQueryData.isRecordMatching()) {
             System.out.println("Scrivo su file pacchetto di record ammesso");
-            writeOnFile(csvFile, datePackage, false);
+            writeOnFile(csvFile, datePackage, false, async);
         } else {
             System.out.println("Salvo pacchetto di record non ammesso");
             PrintWriter duplicateRecords = saveDuplicateRecords();
-            writeOnFile(duplicateRecords, datePackage, true);
+            writeOnFile(duplicateRecords, datePackage, true, async);
         }
     }
 
@@ -141,7 +314,11 @@ public class Transforming {
      * @param csvFile contiene il riferimento al file che si sta scrivendo.
      * @param records contiene il package di record da trasformare e scrivere.
      */
-    private void writeOnFile(PrintWriter csvFile, List<CSVRecord> records, boolean duplicate) {
+    private void writeOnFile(PrintWriter csvFile, List<? extends RecordView> records, boolean duplicate, boolean async) {
+        if (!async) {
+            new WritePackageOnFile(csvFile, records, duplicate).run();
+            return;
+        }
         Thread writer = new Thread(new WritePackageOnFile(csvFile, records, duplicate));
         writer.start();
         try {
@@ -160,103 +337,115 @@ public class Transforming {
      * @return lista di stringhe che rappresentano i nuovi record
      * @throws ParseException vine sollevata quando si cerca di trasformare un record non trasformabile.
      */
-    public static List<String> getTransformedRecord(List<CSVRecord> recordList) throws ParseException {
+    public static List<String> getTransformedRecord(List<? extends RecordView> recordList) throws ParseException {
         ArrayList<String> stringRecordList = new ArrayList<>();
-        for (CSVRecord csvRecord : recordList) {
-            CloudData cloudData = new CloudData(csvRecord.getOrderDate());
-            stringRecordList.add(buildCloudRecord(csvRecord, cloudData).toString());
-        }
+        for (RecordView csvRecord : recordList)
+            stringRecordList.add(buildCloudRecord(csvRecord).toString());
         return stringRecordList;
     }
 
     /**
      * Questo metodo si occupa della creazione della stringa che rappresenta il nuovo record.
      *
-     * @param record    contiene il record da scrivere.
-     * @param cloudData contiene le informazioni aggiuntive sulla data calcolate.
+     * @param record contiene il record da scrivere.
      * @return uno stringBuilder contenente la stringa generata trasformando il record CSV da OLTP a OLAP.
      * @throws ParseException vine sollevata se si cerca di trasformare un record non trasformabile.
      */
-    private static StringBuilder buildCloudRecord(CSVRecord record, CloudData cloudData) throws ParseException {
-        StringBuilder bigQueryRecord = new StringBuilder();
+    private static StringBuilder buildCloudRecord(RecordView record) throws ParseException {
+        return appendCloudRecord(new StringBuilder(), record);
+    }
+
+    /**
+     * Come buildCloudRecord ma il nuovo record viene aggiunto allo stringBuilder indicato, che può così essere
+     * riutilizzato per più record.
+     */
+    private static StringBuilder appendCloudRecord(StringBuilder bigQueryRecord, RecordView record) throws ParseException {
         bigQueryRecord.append(record.getIdOrder());
         bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getDateString());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getDayName().toUpperCase());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getDayNumber());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getMonthName().toUpperCase());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getYearValue());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getMonthValue());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getQuarter());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getSeason().toUpperCase());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getSeasonYear());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getMonthYear());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getWeekday());
-        bigQueryRecord.append(",");
-        bigQueryRecord.append(cloudData.getHoliday());
+        //  I campi che descrivono la data vengono calcolati una sola volta per ogni giorno distinto.
+        bigQueryRecord.append(DateDimension.getDefault().getColumns(record.getOrderDay()));
         bigQueryRecord.append(",");
         bigQueryRecord.append(record.getCountryCode());
         bigQueryRecord.append(",");
-        bigQueryRecord.append(new Locale("IT", record.getCountryCode()).getDisplayCountry().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.COUNTRY_CODE.transformed(record.getCountryCode(), Transforming::countryName));
         bigQueryRecord.append(",");
         bigQueryRecord.append(record.getCustomerGender());
         bigQueryRecord.append(",");
         bigQueryRecord.append(record.getQuantity());
         bigQueryRecord.append(",");
-        bigQueryRecord.append(String.format(Locale.ROOT, "%.1f", record.getPayedPrice()));
+        appendPrice(bigQueryRecord, record.getPayedPrice());
         bigQueryRecord.append(",");
         bigQueryRecord.append(record.getDiscount());
         bigQueryRecord.append(",");
         bigQueryRecord.append(record.isOutlet() ? "OUTLET" : "NON OUTLET");
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getNomeBrand().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.NOME_BRAND.transformed(record.getNomeBrand(), String::toUpperCase));
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getCollection().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.COLLECTION.transformed(record.getCollection(), String::toUpperCase));
         bigQueryRecord.append(",");
         bigQueryRecord.append(checkColor(record.getColor()));
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getItemGender().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.ITEM_GENDER.transformed(record.getItemGender(), String::toUpperCase));
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getPaymentMethod().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.PAYMENT_METHOD.transformed(record.getPaymentMethod(), String::toUpperCase));
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getSize().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.SIZE.transformed(record.getSize(), String::toUpperCase));
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getCategory().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.CATEGORY.transformed(record.getCategory(), String::toUpperCase));
         bigQueryRecord.append(",");
-        bigQueryRecord.append(record.getMacroCategory().toUpperCase());
+        bigQueryRecord.append(ColumnDictionary.MACRO_CATEGORY.transformed(record.getMacroCategory(), String::toUpperCase));
         return bigQueryRecord;
     }
 
+    /**
+     * Aggiunge il prezzo con una cifra decimale, come String.format(Locale.ROOT, "%.1f", price). I prezzi che sono già
+     * multipli di 0.1, cioè quasi tutti, vengono scritti senza passare da String.format.
+     */
+    static void appendPrice(StringBuilder builder, double price) {
+        double tenths = price * 10;
+        if (Double.doubleToRawLongBits(price) >= 0 && tenths < 1e15 && tenths == Math.rint(tenths)) {
+            long value = (long) tenths;
+            builder.append(value / 10).append('.').append((char) ('0' + value % 10));
+        } else
+            builder.append(String.format(Locale.ROOT, "%.1f", price));
+    }
+
     /**
      * Verifica che i colore riportato nel record sia ammesso.
      */
     private static String checkColor(String color) throws ParseException {
-        if (COLOR.contains(color.toUpperCase()))
-            return color.toUpperCase();
+        String upperColor = ColumnDictionary.COLOR.transformed(color, Transforming::validColor);
+        if (upperColor != null)
+            return upperColor;
         else
             throw new ParseException("Colore " + color + " non ammesso", color.length());
     }
 
+    /**
+     * Trasformazione memorizzata nel dizionario dei colori: il colore in maiuscolo oppure null se non è ammesso.
+     */
+    private static String validColor(String color) {
+        String upperColor = color.toUpperCase();
+        return COLOR.contains(upperColor) ? upperColor : null;
+    }
+
+    /**
+     * Trasformazione memorizzata nel dizionario dei codici nazione: il nome della nazione in maiuscolo.
+     */
+    private static String countryName(String countryCode) {
+        return new Locale("IT", countryCode).getDisplayCountry().toUpperCase();
+    }
+
     /**
      * Questa classe permette di salvare in maniera asincrona i record che devono essere trasformati, siano essi in
      * conflitto o meno, infatti grazie al paramentro PrintWriter riesce a differenziare la scrittura dei record.
      */
     private static class WritePackageOnFile implements Runnable {
         private final PrintWriter csvFile;
-        private final List<CSVRecord> records;
+        private final List<? extends RecordView> records;
         private final boolean duplicate;
 
-        public WritePackageOnFile(PrintWriter csvFile, List<CSVRecord> records, boolean duplicate) {
+        public WritePackageOnFile(PrintWriter csvFile, List<? extends RecordView> records, boolean duplicate) {
             this.csvFile = csvFile;
             this.records = records;
             this.duplicate = duplicate;
@@ -264,10 +453,9 @@ public class Transforming {
 
         @Override
         public void run() {
-            for (CSVRecord record : records) {
+            for (RecordView record : records) {
                 try {
-                    CloudData cloudData = new CloudData(record.getOrderDate());
-                    StringBuilder bigQueryRecord = buildCloudRecord(record, cloudData);
+                    StringBuilder bigQueryRecord = buildCloudRecord(record);
                     csvFile.println(bigQueryRecord.toString());
                 } catch (ParseException e) {
                     Log.e(TAG, "Eccezione sollevata", e);
@@ -0,0 +1,198 @@
+/**
+ * Questa classe implementa la modalità di acquisizione continua: una cartella di deposito viene osservata tramite
+ * WatchService e ogni nuova esportazione viene elaborata non appena la sua scrittura è terminata, senza che l'esecuzione
+ * debba essere avviata a mano. Un file è considerato completo quando dimensione e data di modifica restano invariate per
+ * un intervallo di assestamento; i file completi vengono elaborati da un numero limitato di thread e al termine spostati
+ * nella sottocartella processed, oppure failed in caso di errore, così da non essere elaborati una seconda volta.
+ */
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.log.Log;
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class WatchFolder implements Closeable {
+
+    private static final String TAG = "WatchFolder.class";
+    private static final String PROCESSED_DIR = "processed";
+    private static final String FAILED_DIR = "failed";
+
+    /**
+     * Operazione eseguita su ogni file completo trovato nella cartella di deposito.
+     */
+    @FunctionalInterface
+    public interface FileProcessor {
+        void process(Path file) throws Exception;
+    }
+
+    private final Path dropDirectory;
+    private final long settleMillis;
+    private final FileProcessor processor;
+    private final PathMatcher matcher;
+    private final WatchService watchService;
+    private final ThreadPoolExecutor workerPool;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Path, PendingFile> pendingFiles = new ConcurrentHashMap<>();
+    private final Set<Path> runningFiles = ConcurrentHashMap.newKeySet();
+    private Thread watchThread;
+
+    /**
+     * @param dropDirectory contiene la cartella di deposito da osservare, viene creata se non esiste.
+     * @param workers       contiene il numero massimo di file elaborati contemporaneamente.
+     * @param settleMillis  contiene l'intervallo, in millisecondi, in cui un file non deve cambiare per essere completo.
+     * @param processor     contiene l'operazione da eseguire su ogni file completo.
+     * @throws IOException viene sollevata se non è possibile creare o osservare la cartella.
+     */
+    public WatchFolder(String dropDirectory, int workers, long settleMillis, FileProcessor processor) throws IOException {
+        this.dropDirectory = Paths.get(dropDirectory);
+        this.settleMillis = settleMillis;
+        this.processor = processor;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + ETLPipeline.INPUT_GLOB);
+        FileUtils.forceMkdir(this.dropDirectory.toFile());
+        FileUtils.forceMkdir(this.dropDirectory.resolve(PROCESSED_DIR).toFile());
+        FileUtils.forceMkdir(this.dropDirectory.resolve(FAILED_DIR).toFile());
+        this.watchService = FileSystems.getDefault().newWatchService();
+        //  La coda dei file in attesa di un thread è limitata: quando è piena i file completi restano tra quelli in
+        //  osservazione e vengono riproposti al controllo successivo.
+        this.workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Avvia l'osservazione della cartella; i file già presenti vengono considerati come appena depositati.
+     * @throws IOException viene sollevata se non è possibile leggere la cartella.
+     */
+    public void start() throws IOException {
+        dropDirectory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        scanDirectory();
+        watchThread = new Thread(this::watch, "WatchFolder");
+        watchThread.start();
+        scheduler.scheduleWithFixedDelay(this::checkPendingFiles, settleMillis, Math.max(1, settleMillis / 2),
+                TimeUnit.MILLISECONDS);
+        System.out.println("[INFO] Osservo la cartella: " + dropDirectory);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW)
+                        scanDirectory();
+                    else
+                        track(dropDirectory.resolve((Path) event.context()));
+                }
+                if (!key.reset())
+                    break;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Log.e(TAG, "Exception scanning " + dropDirectory, e);
+        }
+    }
+
+    private void scanDirectory() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dropDirectory)) {
+            for (Path path : stream)
+                track(path);
+        }
+    }
+
+    private void track(Path path) {
+        if (Files.isRegularFile(path) && matcher.matches(path.getFileName()) && !runningFiles.contains(path))
+            pendingFiles.putIfAbsent(path, new PendingFile());
+    }
+
+    /**
+     * Controlla i file in osservazione: quelli rimasti invariati per l'intervallo di assestamento vengono affidati ai
+     * thread di elaborazione, se c'è posto nella coda.
+     */
+    private void checkPendingFiles() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, PendingFile> entry : pendingFiles.entrySet()) {
+            Path path = entry.getKey();
+            PendingFile pendingFile = entry.getValue();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                long modified = attributes.lastModifiedTime().toMillis();
+                if (attributes.size() != pendingFile.size || modified != pendingFile.modified) {
+                    pendingFile.size = attributes.size();
+                    pendingFile.modified = modified;
+                    pendingFile.stableSince = now;
+                } else if (now - pendingFile.stableSince >= settleMillis)
+                    submit(path);
+            } catch (NoSuchFileException e) {
+                pendingFiles.remove(path);
+            } catch (IOException e) {
+                Log.e(TAG, "Exception reading " + path, e);
+            }
+        }
+    }
+
+    private void submit(Path path) {
+        runningFiles.add(path);
+        try {
+            workerPool.execute(() -> process(path));
+            pendingFiles.remove(path);
+        } catch (RejectedExecutionException e) {
+            runningFiles.remove(path);
+        }
+    }
+
+    private void process(Path path) {
+        Path target = dropDirectory.resolve(PROCESSED_DIR);
+        try {
+            System.out.println("[INFO] Elaboro il file: " + path.getFileName());
+            processor.process(path);
+        } catch (Exception e) {
+            Log.e(TAG, "Exception processing " + path, e);
+            System.err.println("[ERROR] Elaborazione non riuscita: " + path.getFileName());
+            target = dropDirectory.resolve(FAILED_DIR);
+        }
+        try {
+            Files.move(path, target.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.e(TAG, "Exception moving " + path, e);
+        } finally {
+            runningFiles.remove(path);
+        }
+    }
+
+    /**
+     * Interrompe l'osservazione della cartella e attende la fine dei file in elaborazione.
+     * @throws IOException viene sollevata se non è possibile chiudere il WatchService.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        watchService.close();
+        if (watchThread != null)
+            watchThread.interrupt();
+        workerPool.shutdown();
+        try {
+            workerPool.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ultima dimensione e data di modifica osservate per un file in attesa di essere completo.
+     */
+    private static class PendingFile {
+        private long size = -1;
+        private long modified = -1;
+        private long stableSince;
+    }
+}
@@ -3,21 +3,33 @@ package it.uniba.ventricellisardone.itss.ui;
 import it.uniba.ventricellisardone.itss.csv.CSVDataAnalysis;
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
 import it.uniba.ventricellisardone.itss.etl.Extraction;
+import it.uniba.ventricellisardone.itss.etl.ExtractionCache;
+import it.uniba.ventricellisardone.itss.etl.RejectSink;
 import it.uniba.ventricellisardone.itss.log.Log;
 
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 public class DataAnalysisForm {
 
     private static final String TAG = "DataAnalysisForm.java";
+    private static final int ANALYSIS_BATCH_SIZE = 10000;
+    //  Oltre questa dimensione il file viene analizzato in modo approssimato, in memoria costante.
+    private static final long APPROXIMATE_ANALYSIS_SIZE = 2L * 1024 * 1024 * 1024;
+    //  Le tabelle incrociate proposte all'apertura possono essere indicate all'avvio con -Ditss.crossTabs="...".
+    private static final String CROSS_TABS_PROPERTY = "itss.crossTabs";
     private JButton chooseButton;
+    private JTextField crossTabField;
     private JTextArea console;
     private JPanel dataAnalysisPanel;
 
@@ -26,6 +38,7 @@ public class DataAnalysisForm {
         JTextAreaOutputStream out = new JTextAreaOutputStream (console);
         System.setOut (new PrintStream(out));
         System.setErr(new PrintStream(out));
+        crossTabField.setText(System.getProperty(CROSS_TABS_PROPERTY, CSVDataAnalysis.DEFAULT_CROSS_TABS));
 
         chooseButton.addActionListener(e -> {
             console.setText("");
@@ -46,20 +59,37 @@ public class DataAnalysisForm {
 
     private void approvedOption(JFileChooser chooser) throws CSVParsingException {
         System.out.println("File selezionato: " + chooser.getSelectedFile().getName() + "");
-        System.out.println("Estraggo i record dal file");
-        Extraction extraction = new Extraction(chooser.getSelectedFile().getPath());
-        System.out.println("Avvio analisi dati...");
-        CSVDataAnalysis csvDataAnalysis = new CSVDataAnalysis(extraction.getCsvRecordList());
-        Map<String, Map<String, Integer>> dataMap = csvDataAnalysis.performDataAnalysis();
-        System.out.println("Salvo analisi...");
+        List<String[]> crossTabList;
         try {
-            savingAnalysis(csvDataAnalysis, dataMap, extraction);
+            crossTabList = CSVDataAnalysis.parseCrossTabs(crossTabField.getText());
+        } catch (IllegalArgumentException ex) {
+            System.err.println("[ERROR] Tabelle incrociate non valide: " + ex.getMessage());
+            return;
+        }
+        System.out.println("Estraggo i record dal file");
+        try (RejectSink rejectSink = RejectSink.createTemporary();
+             Extraction extraction = Extraction.openStream(chooser.getSelectedFile().getPath(), rejectSink, ExtractionCache.getEnabled())) {
+            System.out.println("Avvio analisi dati...");
+            CSVDataAnalysis csvDataAnalysis = new CSVDataAnalysis(extraction.batches(ANALYSIS_BATCH_SIZE));
+            for (String[] fields : crossTabList)
+                csvDataAnalysis.addCrossTab(fields);
+            boolean approximate = chooser.getSelectedFile().length() > APPROXIMATE_ANALYSIS_SIZE;
+            if (approximate)
+                System.out.println("[INFO] File di grandi dimensioni, analisi approssimata dei valori più frequenti");
+            csvDataAnalysis.performAnalysis(approximate);
+            Map<String, Map<String, Integer>> rejectMap = new HashMap<>();
+            rejectMap.put("RigheScartate", extraction.getRejectCounters());
+            System.out.println("Salvo analisi...");
+            savingAnalysis(csvDataAnalysis, rejectMap, extraction, chooser.getSelectedFile().getName());
         }catch (IOException ex){
             System.err.println(ex.getMessage());
+        } catch (UncheckedIOException ex) {
+            System.err.println("[ERROR] " + ex.getCause().getMessage());
         }
     }
 
-    private void savingAnalysis(CSVDataAnalysis csvDataAnalysis, Map<String, Map<String, Integer>> dataMap, Extraction extraction) throws IOException {
+    private void savingAnalysis(CSVDataAnalysis csvDataAnalysis, Map<String, Map<String, Integer>> rejectMap,
+                                Extraction extraction, String fileName) throws IOException {
         JFileChooser chooser = new JFileChooser();
         chooser.setDialogTitle("Seleziona cartella salvataggio");
         chooser.setAcceptAllFileFilterUsed(false);
@@ -68,7 +98,9 @@ public class DataAnalysisForm {
         if (savingPath == JFileChooser.APPROVE_OPTION) {
             String pathDirectory = chooser.getSelectedFile().getPath() + File.separator + new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(Calendar.getInstance().getTime());
             System.out.println("Cartella selezionata: " + pathDirectory);
-            csvDataAnalysis.logDataAnalysis(dataMap, pathDirectory,"Data analysis");
+            csvDataAnalysis.saveReport(rejectMap, pathDirectory, "Data analysis");
+            //  L'istantanea permette di unire in seguito le analisi di più giorni con l'opzione --rollup.
+            csvDataAnalysis.saveSnapshot(Paths.get(pathDirectory, "Analysis", fileName + CSVDataAnalysis.SNAPSHOT_EXTENSION));
             extraction.logNullRecord(pathDirectory, "Null record");
             extraction.logParseErrorRecord(pathDirectory, "Parsing error");
         }else{
@@ -1,11 +1,7 @@
 package it.uniba.ventricellisardone.itss.ui;
 
-import it.uniba.ventricellisardone.itss.csv.CSVRecord;
-import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
-import it.uniba.ventricellisardone.itss.etl.Extraction;
-import it.uniba.ventricellisardone.itss.etl.Loading;
-import it.uniba.ventricellisardone.itss.etl.MatchBigQueryData;
-import it.uniba.ventricellisardone.itss.etl.Transforming;
+import it.uniba.ventricellisardone.itss.etl.ETLPipeline;
+import it.uniba.ventricellisardone.itss.etl.ExtractionCache;
 import it.uniba.ventricellisardone.itss.log.Log;
 import org.apache.commons.io.FileUtils;
 
@@ -15,7 +11,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
@@ -40,12 +35,14 @@ public class ETLForm {
         chooseButton.addActionListener(e -> {
             console.setText("");
             JFileChooser chooser = new JFileChooser();
-            chooser.setDialogTitle("Seleziona file da analizzare");
+            chooser.setDialogTitle("Seleziona file o cartelle da analizzare");
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+            chooser.setMultiSelectionEnabled(true);
             int filePath = chooser.showOpenDialog(etlPanel);
             if (filePath == JFileChooser.APPROVE_OPTION) {
                 try {
                     approvedOption(chooser);
-                } catch (IOException | CSVParsingException ex) {
+                } catch (IOException ex) {
                     Log.e(TAG, "Eccezione sollevata: ", ex);
                 }
             } else {
@@ -54,7 +51,7 @@ public class ETLForm {
         });
     }
 
-    private void approvedOption(JFileChooser fileSource) throws IOException, CSVParsingException {
+    private void approvedOption(JFileChooser fileSource) throws IOException {
         JFileChooser destinationChooser = new JFileChooser();
         destinationChooser.setDialogTitle("Seleziona cartella di destinazione");
         destinationChooser.setAcceptAllFileFilterUsed(false);
@@ -67,8 +64,9 @@ public class ETLForm {
         }
     }
 
-    private void transformMethod(JFileChooser destinationChooser, JFileChooser sourceChooser) throws IOException, CSVParsingException {
-        System.out.println("Hai selezionato il file: " + sourceChooser.getSelectedFile().getPath());
+    private void transformMethod(JFileChooser destinationChooser, JFileChooser sourceChooser) throws IOException {
+        for (File source : sourceChooser.getSelectedFiles())
+            System.out.println("Hai selezionato: " + source.getPath());
         String destinationPath = destinationChooser.getSelectedFile().getPath() + File.separator
                 + new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(Calendar.getInstance().getTime())
                 + File.separator + "Transformed";
@@ -76,13 +74,8 @@ public class ETLForm {
         File destinationFile = new File(destinationPath);
         if (!destinationFile.exists())
             FileUtils.forceMkdir(destinationFile);
-        Extraction extraction = new Extraction(sourceChooser.getSelectedFile().getPath());
-        List<CSVRecord> csvRecordList = extraction.getCsvRecordList();
-        extraction.logParseErrorRecord(destinationPath, "parsing_error.csv");
-        extraction.logNullRecord(destinationPath, "field_error.csv");
-        MatchBigQueryData matchBigQueryData = null;
         System.out.println("Non ho trovato possibili duplicati");
-        ExecuteTransform executeTransform = new ExecuteTransform(csvRecordList, destinationPath);
+        ExecuteTransform executeTransform = new ExecuteTransform(sourceChooser.getSelectedFiles(), destinationPath);
         executeTransform.execute();
     }
 
@@ -92,39 +85,24 @@ public class ETLForm {
 
     private class ExecuteTransform extends SwingWorker<Boolean, Integer> {
 
-        private final List<CSVRecord> csvRecordList;
+        private final File[] sources;
         private final String destinationPath;
 
 
-        public ExecuteTransform(List<CSVRecord> csvRecordList, String destinationPath) {
-            this.csvRecordList = csvRecordList;
+        public ExecuteTransform(File[] sources, String destinationPath) {
+            this.sources = sources;
             this.destinationPath = destinationPath;
         }
 
+        /**
+         * Il processo ETL viene eseguito da ETLPipeline, a ogni blocco trasformato viene aggiornato l'avanzamento.
+         */
         @Override
         protected Boolean doInBackground() {
-            int transformedBlock = 0;
-            ArrayList<CSVRecord> subList = new ArrayList<>();
             try {
-                Loading loading = new Loading(this.destinationPath, TABLE_NAME);
-                LoadData loadData = new LoadData(loading);
-                Thread threadLoadData = new Thread(loadData);
-                Transforming transforming = new Transforming(destinationPath, TABLE_NAME);
-                for (int i = 0; i < csvRecordList.size(); i++) {
-                    subList.add(csvRecordList.get(i));
-                    System.out.println("I: " + i);
-                    if (((i % 1000) == 0 || (i == (csvRecordList.size() - 1))) && (i != 0)) {
-                        transforming.transformData(subList);
-                        if (threadLoadData.isAlive())
-                            threadLoadData.join();
-                        loadData.setFileToLoad(transformedBlock);
-                        threadLoadData = new Thread(loadData);
-                        threadLoadData.start();
-                        transformedBlock++;
-                        publish(transformedBlock);
-                        subList = new ArrayList<>();
-                    }
-                }
+                ETLPipeline etlPipeline = new ETLPipeline(sources, destinationPath, TABLE_NAME);
+                etlPipeline.setExtractionCache(ExtractionCache.getEnabled());
+                etlPipeline.run(this::publish);
             } catch (Exception e) {
                 System.err.println("Errore: " + e.getMessage());
             }
@@ -134,7 +112,7 @@ public class ETLForm {
         @Override
         protected void process(List<Integer> chunks) {
             uploadProgress.setValue(chunks.get(chunks.size() - 1));
-            progressValue.setText((chunks.get(chunks.size() - 1) + File.separator + csvRecordList.size() / 1000));
+            progressValue.setText("Blocchi: " + chunks.get(chunks.size() - 1));
         }
 
         @Override
@@ -143,34 +121,4 @@ public class ETLForm {
             System.out.println("Primo file generato");
         }
     }
-
-    private static class LoadData implements Runnable {
-
-        private int fileToLoad;
-        private final Loading loadingInstance;
-        private static final String TAG = "LoadDataRunnable";
-
-        public LoadData(Loading loadingInstance) {
-            fileToLoad = -1;
-            this.loadingInstance = loadingInstance;
-        }
-
-        public void setFileToLoad(int fileToLoad) {
-            this.fileToLoad = fileToLoad;
-        }
-
-        @Override
-        public void run() {
-            if (fileToLoad != -1) {
-                try {
-                    loadingInstance.startLoad(fileToLoad, (fileToLoad + 1));
-                    Thread.currentThread().interrupt();
-                } catch (IOException | InterruptedException e) {
-                    Log.e(TAG, "Eccezione nel thread di caricamento", e);
-                    System.err.println("Eccezione nel caricamento, verifica file di log");
-                    Thread.currentThread().interrupt();
-                }
-            }
-        }
-    }
 }
@@ -0,0 +1,41 @@
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import it.uniba.ventricellisardone.itss.csv.OrderDate;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+public class DateDimensionTest {
+
+    @Test
+    public void columnsTest() {
+        System.out.println("[INFO] ColumnsTest");
+        DateDimension dateDimension = new DateDimension();
+        int mayDay = (int) LocalDate.of(2020, 5, 1).toEpochDay();
+        String columns = dateDimension.getColumns(mayDay);
+        assert (columns.startsWith("2020-05-01,")) : "[ERROR] Columns: " + columns;
+        assert (columns.endsWith(",T2,FESTA DEL LAVORO,T2-2020,5-2020,NON FERIALE,FESTIVO")) : "[ERROR] Columns: " + columns;
+        assert (dateDimension.get(mayDay) == dateDimension.get(mayDay)) : "[ERROR] Entry not cached";
+        assert (dateDimension.get(mayDay + 1).getHoliday().equals("NON FESTIVO")) : "[ERROR] 2020-05-02";
+    }
+
+    @Test
+    public void rangeTest() {
+        System.out.println("[INFO] RangeTest");
+        DateDimension dateDimension = new DateDimension();
+        //  Giorni sparsi in entrambe le direzioni, così che l'array venga ampliato più volte.
+        int[] days = {18383, 18384, 16000, 20000, 14000, 18383, 22000, 11000};
+        CloudData[] first = new CloudData[days.length];
+        for (int i = 0; i < days.length; i++) {
+            first[i] = dateDimension.get(days[i]);
+            CloudData expected = new CloudData(OrderDate.toDate(days[i]));
+            assert (first[i].getDateString().equals(expected.getDateString())) : "[ERROR] Day " + days[i];
+            assert (first[i].getSeason().equals(expected.getSeason())) : "[ERROR] Season " + days[i];
+        }
+        for (int i = 0; i < days.length; i++)
+            assert (dateDimension.get(days[i]) == first[i]) : "[ERROR] Entry lost for day " + days[i];
+        //  Un giorno troppo lontano viene calcolato senza essere memorizzato.
+        int farDay = 11000 + (1 << 18);
+        assert (dateDimension.get(farDay).getDateString().equals(LocalDate.ofEpochDay(farDay).toString())) : "[ERROR] Far day";
+    }
+}
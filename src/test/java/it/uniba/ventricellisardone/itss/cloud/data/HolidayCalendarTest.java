@@ -0,0 +1,66 @@
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+public class HolidayCalendarTest {
+
+    private static HolidayCalendar createCalendar() throws IOException {
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/holidays");
+        FileUtils.deleteDirectory(directory.toFile());
+        Files.createDirectories(directory);
+        return new HolidayCalendar(new RemoteHolidays(), directory.toString());
+    }
+
+    @Test
+    public void cachedYearTest() throws IOException {
+        System.out.println("[INFO] CachedYearTest");
+        HolidayCalendar calendar = createCalendar();
+        Files.write(calendar.getCacheFile(2020),
+                "{\"2020-01-01\":\"CAPODANNO\",\"2020-05-01\":\"FESTA DEL LAVORO\"}".getBytes(StandardCharsets.UTF_8));
+        assert (calendar.getHoliday(2020, "2020-05-01").equals("FESTA DEL LAVORO")) : "[ERROR] Holiday 2020-05-01";
+        assert (calendar.getHoliday(2020, "2020-05-02") == null) : "[ERROR] Holiday 2020-05-02";
+        //  L'anno resta in memoria anche se il file viene eliminato.
+        Files.delete(calendar.getCacheFile(2020));
+        Map<String, String> holidays = calendar.getYear(2020);
+        assert (holidays.size() == 2) : "[ERROR] Holidays: " + holidays;
+        assert (calendar.getHoliday(2020, "2020-01-01").equals("CAPODANNO")) : "[ERROR] Holiday 2020-01-01";
+    }
+
+    @Test
+    public void corruptedCacheTest() throws IOException {
+        System.out.println("[INFO] CorruptedCacheTest");
+        HolidayCalendar calendar = createCalendar();
+        Path cacheFile = calendar.getCacheFile(1999);
+        Files.write(cacheFile, "[non json".getBytes(StandardCharsets.UTF_8));
+        //  Un file non leggibile viene ignorato: l'anno viene richiesto all'API e, in assenza di rete, resta vuoto.
+        Map<String, String> holidays = calendar.getYear(1999);
+        assert (holidays != null) : "[ERROR] Null holidays";
+        assert (calendar.getYear(1999) == holidays) : "[ERROR] Year not kept in memory";
+    }
+
+    @Test
+    public void crossCheckTest() {
+        System.out.println("[INFO] CrossCheckTest");
+        HolidayCalendar calendar = new HolidayCalendar(new ItalianHolidays());
+        Map<String, String> reference = new ItalianHolidays().getHolidays(2020);
+        reference.put("2020-04-13", "LUNEDÌ DI PASQUA");
+        reference.remove("2020-12-26");
+        reference.put("2020-06-24", "SAN GIOVANNI");
+        List<String> differences = calendar.crossCheck(2020, new HolidayCalendar(year -> reference));
+        assert (differences.size() == 3) : "[ERROR] Differences: " + differences;
+        assert (calendar.crossCheck(2020, new HolidayCalendar(new ItalianHolidays())).isEmpty()) : "[ERROR] Self check";
+        List<String> unavailable = calendar.crossCheck(2020, new HolidayCalendar(year -> {
+            throw new IOException("Rete non disponibile");
+        }));
+        assert (unavailable.size() == 1) : "[ERROR] Unavailable: " + unavailable;
+    }
+}
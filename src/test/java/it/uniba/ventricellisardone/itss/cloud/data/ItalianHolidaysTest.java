@@ -0,0 +1,46 @@
+package it.uniba.ventricellisardone.itss.cloud.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+public class ItalianHolidaysTest {
+
+    @Test
+    public void easterTest() {
+        System.out.println("[INFO] EasterTest");
+        String[] easterDates = {"1961-04-02", "1995-04-16", "2000-04-23", "2008-03-23", "2011-04-24", "2019-04-21",
+                "2020-04-12", "2024-03-31", "2038-04-25"};
+        for (String easterDate : easterDates) {
+            LocalDate expected = LocalDate.parse(easterDate);
+            LocalDate easter = ItalianHolidays.easterSunday(expected.getYear());
+            assert (easter.equals(expected)) : "[ERROR] Easter " + expected.getYear() + ": " + easter;
+        }
+    }
+
+    @Test
+    public void holidaysTest() {
+        System.out.println("[INFO] HolidaysTest");
+        Map<String, String> holidays = new ItalianHolidays().getHolidays(2020);
+        assert (holidays.size() == 12) : "[ERROR] Holidays: " + holidays;
+        assert (holidays.get("2020-05-01").equals("FESTA DEL LAVORO")) : "[ERROR] 2020-05-01";
+        assert (holidays.get("2020-04-13").equals("LUNEDÌ DELL'ANGELO")) : "[ERROR] 2020-04-13";
+        assert (holidays.get("2020-06-02").equals("FESTA DELLA REPUBBLICA")) : "[ERROR] 2020-06-02";
+        assert (!holidays.containsKey("2020-05-02")) : "[ERROR] 2020-05-02";
+        //  Nel 2038 Pasqua cade il 25 aprile.
+        assert (new ItalianHolidays().getHolidays(2038).size() == 11) : "[ERROR] Holidays 2038";
+        Map<String, String> holidays1980 = new ItalianHolidays().getHolidays(1980);
+        assert (!holidays1980.containsKey("1980-01-06")) : "[ERROR] Epifania 1980";
+        assert (holidays1980.get("1980-06-01").equals("FESTA DELLA REPUBBLICA")) : "[ERROR] Repubblica 1980";
+        //  Nel 1961 Pasqua cade il 2 aprile: Ascensione l'11 maggio e Corpus Domini il 1 giugno.
+        Map<String, String> holidays1961 = new ItalianHolidays().getHolidays(1961);
+        assert (holidays1961.size() == 17) : "[ERROR] Holidays 1961: " + holidays1961;
+        assert (holidays1961.get("1961-03-19").equals("SAN GIUSEPPE")) : "[ERROR] San Giuseppe 1961";
+        assert (holidays1961.get("1961-05-11").equals("ASCENSIONE")) : "[ERROR] Ascensione 1961";
+        assert (holidays1961.get("1961-06-01").equals("CORPUS DOMINI")) : "[ERROR] Corpus Domini 1961";
+        assert (holidays1961.get("1961-06-29").equals("SANTI PIETRO E PAOLO")) : "[ERROR] Santi Pietro e Paolo 1961";
+        assert (holidays1961.containsKey("1961-11-04")) : "[ERROR] 4 novembre 1961";
+        assert (!holidays1980.containsKey("1980-03-19") && !holidays1980.containsKey("1980-11-04")) : "[ERROR] Abolished holidays 1980";
+    }
+}
@@ -1,14 +1,29 @@
 package it.uniba.ventricellisardone.itss.csv;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import it.uniba.ventricellisardone.itss.csv.sketch.ColumnSketch;
+import it.uniba.ventricellisardone.itss.csv.sketch.Histogram;
+import it.uniba.ventricellisardone.itss.csv.sketch.NumericProfile;
 import it.uniba.ventricellisardone.itss.etl.Extraction;
 import it.uniba.ventricellisardone.itss.etl.ExtractionTest;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
@@ -35,4 +50,250 @@ public class CSVDataAnalysisTest {
         }
     }
 
+    @Test
+    public void parallelAnalysisTest() throws CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] ParallelAnalysisTest");
+        Extraction extraction = new Extraction(Paths.get(Objects.requireNonNull(CSVDataAnalysisTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString());
+        List<CSVRecord> csvRecordList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            csvRecordList.addAll(extraction.getCsvRecordList());
+        CSVDataAnalysis sequential = new CSVDataAnalysis(csvRecordList);
+        sequential.setParallelism(1);
+        Map<String, Map<String, Integer>> expected = sequential.performDataAnalysis();
+        for (Map.Entry<String, Integer> entry : CSVStaticTestModel.getTestMap().get("Colore").entrySet())
+            assert (expected.get("Colore").get(entry.getKey()) == entry.getValue() * 1000) : "[ERROR] Count of " + entry.getKey();
+        CSVDataAnalysis parallel = new CSVDataAnalysis(csvRecordList);
+        parallel.setParallelism(4);
+        assert (parallel.performDataAnalysis().equals(expected)) : "[ERROR] Incorrect parallel data analysis";
+        CSVDataAnalysis streaming = new CSVDataAnalysis(csvRecordList.iterator());
+        streaming.setParallelism(4);
+        assert (streaming.performDataAnalysis().equals(expected)) : "[ERROR] Incorrect streaming data analysis";
+        //  Un'analisi interrotta non deve restituire conteggi parziali.
+        CSVDataAnalysis interrupted = new CSVDataAnalysis(csvRecordList);
+        interrupted.setParallelism(4);
+        Thread.currentThread().interrupt();
+        UncheckedIOException exception = Assertions.assertThrows(UncheckedIOException.class, interrupted::performDataAnalysis);
+        assert (Thread.interrupted()) : "[ERROR] Interrupt status not restored";
+        assert (exception.getCause() instanceof InterruptedIOException) : "[ERROR] Cause: " + exception.getCause();
+        assert (interrupted.getRecordCount() == 0) : "[ERROR] Partial counts kept";
+    }
+
+    @Test
+    public void approximateAnalysisTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] ApproximateAnalysisTest");
+        Extraction extraction = new Extraction(Paths.get(Objects.requireNonNull(CSVDataAnalysisTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString());
+        CSVDataAnalysis csvDataAnalysis = new CSVDataAnalysis(extraction.getCsvRecordList());
+        Map<String, ColumnSketch> sketchMap = csvDataAnalysis.performApproximateAnalysis();
+        //  Con pochi valori distinti i conteggi dei valori più frequenti sono esatti.
+        for (Map.Entry<String, Map<String, Integer>> category : CSVStaticTestModel.getTestMap().entrySet()) {
+            ColumnSketch sketch = sketchMap.get(category.getKey());
+            assert (sketch.getDistinctCount() == category.getValue().size()) : "[ERROR] Distinct values of " + category.getKey();
+            for (ColumnSketch.TopValue topValue : sketch.getTopValues())
+                assert (category.getValue().get(topValue.getValue()) == topValue.getCount()) : "[ERROR] Count of " + topValue.getValue();
+        }
+        csvDataAnalysis.logApproximateAnalysis(sketchMap, csvDataAnalysis.getNumericProfiles(), null, javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST", "test_approximate_analysis.xml");
+        String resultPath = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/Analysis/test_approximate_analysis.xml";
+        assert (new String(Files.readAllBytes(Paths.get(resultPath))).contains("<data type=\"test\" mode=\"approximate\">")) : "[ERROR] Report header";
+    }
+
+    @Test
+    public void numericProfileTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] NumericProfileTest");
+        Extraction extraction = new Extraction(Paths.get(Objects.requireNonNull(CSVDataAnalysisTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString());
+        List<CSVRecord> csvRecordList = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            csvRecordList.addAll(extraction.getCsvRecordList());
+        double minPrice = Double.MAX_VALUE;
+        double maxPrice = -Double.MAX_VALUE;
+        long discounted = 0;
+        for (CSVRecord csvRecord : csvRecordList) {
+            minPrice = Math.min(minPrice, csvRecord.getPayedPrice());
+            maxPrice = Math.max(maxPrice, csvRecord.getPayedPrice());
+            if (csvRecord.getDiscount() > 0)
+                discounted++;
+        }
+        CSVDataAnalysis sequential = new CSVDataAnalysis(csvRecordList);
+        sequential.setParallelism(1);
+        sequential.performDataAnalysis();
+        CSVDataAnalysis parallel = new CSVDataAnalysis(csvRecordList);
+        parallel.setParallelism(4);
+        parallel.performApproximateAnalysis();
+        for (CSVDataAnalysis csvDataAnalysis : new CSVDataAnalysis[]{sequential, parallel}) {
+            NumericProfile price = csvDataAnalysis.getNumericProfiles().get("PrezzoPagato");
+            assert (price.getCount() == csvRecordList.size()) : "[ERROR] Price count: " + price.getCount();
+            assert (price.getMin() == minPrice && price.getMax() == maxPrice) : "[ERROR] Price bounds";
+            assert (price.quantile(0.5) >= minPrice && price.quantile(0.5) <= maxPrice) : "[ERROR] Price median";
+            Histogram discount = csvDataAnalysis.getNumericProfiles().get("Sconto").getHistogram();
+            long counted = 0;
+            for (int bucket = 2; bucket < discount.getBucketCount(); bucket++)
+                counted += discount.getCount(bucket);
+            assert (counted == discounted) : "[ERROR] Discounted records: " + counted;
+        }
+        String pathDirectory = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST";
+        sequential.logDataAnalysis(new HashMap<>(), sequential.getNumericProfiles(), pathDirectory, "test_numeric_analysis.xml");
+        String report = new String(Files.readAllBytes(Paths.get(pathDirectory + "/Analysis/test_numeric_analysis.xml")));
+        assert (report.contains("<category key=\"Quantita\" type=\"numeric\" count=\"" + csvRecordList.size() + "\"")) : "[ERROR] Quantity profile";
+        assert (report.contains("<quantile key=\"0.99\"")) : "[ERROR] Quantiles";
+    }
+
+    @Test
+    public void saveReportTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] SaveReportTest");
+        Extraction extraction = new Extraction(Paths.get(Objects.requireNonNull(CSVDataAnalysisTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString());
+        CSVDataAnalysis csvDataAnalysis = new CSVDataAnalysis(extraction.getCsvRecordList());
+        csvDataAnalysis.performAnalysis(false);
+        Map<String, Map<String, Integer>> rejectMap = new HashMap<>();
+        rejectMap.put("RigheScartate", Map.of("Totale", 0));
+        String pathDirectory = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST";
+        csvDataAnalysis.saveReport(rejectMap, pathDirectory, "test_saved_analysis");
+        JsonObject report = new Gson().fromJson(Files.readString(Paths.get(pathDirectory, "Analysis", "test_saved_analysis.json")), JsonObject.class);
+        Map<String, Map<String, Integer>> savedMap = new HashMap<>();
+        for (JsonElement category : report.getAsJsonArray("categories")) {
+            JsonObject categoryObject = category.getAsJsonObject();
+            if (categoryObject.has("type"))
+                continue;
+            Map<String, Integer> values = new HashMap<>();
+            for (JsonElement entry : categoryObject.getAsJsonArray("entries"))
+                values.put(entry.getAsJsonObject().get("key").getAsString(), entry.getAsJsonObject().get("value").getAsInt());
+            savedMap.put(categoryObject.get("key").getAsString(), values);
+        }
+        Map<String, Map<String, Integer>> expected = new HashMap<>(CSVStaticTestModel.getTestMap());
+        expected.putAll(rejectMap);
+        assert (savedMap.equals(expected)) : "[ERROR] Saved report";
+        String xmlReport = Files.readString(Paths.get(pathDirectory, "Analysis", "test_saved_analysis.xml"));
+        assert (xmlReport.contains("<category key=\"RigheScartate\">")) : "[ERROR] XML report";
+    }
+
+    @Test
+    public void snapshotRollUpTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] SnapshotRollUpTest");
+        Extraction extraction = new Extraction(Paths.get(Objects.requireNonNull(CSVDataAnalysisTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString());
+        List<CSVRecord> csvRecordList = extraction.getCsvRecordList();
+        CSVDataAnalysis complete = new CSVDataAnalysis(csvRecordList);
+        Map<String, Map<String, Integer>> expected = complete.performDataAnalysis();
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/snapshot");
+        List<Path> snapshotFiles = new ArrayList<>();
+        int[] bounds = {0, 7, 12, csvRecordList.size()};
+        for (int day = 0; day < 3; day++) {
+            CSVDataAnalysis daily = new CSVDataAnalysis(csvRecordList.subList(bounds[day], bounds[day + 1]));
+            daily.performAnalysis(false);
+            Path snapshotFile = directory.resolve("day_" + day + CSVDataAnalysis.SNAPSHOT_EXTENSION);
+            daily.saveSnapshot(snapshotFile);
+            snapshotFiles.add(snapshotFile);
+        }
+        CSVDataAnalysis rolledUp = CSVDataAnalysis.rollUp(snapshotFiles);
+        assert (rolledUp.getAnalysisReport().equals(expected)) : "[ERROR] Rolled up report";
+        assert (rolledUp.getRecordCount() == csvRecordList.size()) : "[ERROR] Record count: " + rolledUp.getRecordCount();
+        NumericProfile price = rolledUp.getNumericProfiles().get("PrezzoPagato");
+        NumericProfile expectedPrice = complete.getNumericProfiles().get("PrezzoPagato");
+        assert (price.getCount() == expectedPrice.getCount() && price.getMax() == expectedPrice.getMax()
+                && price.getMean() == expectedPrice.getMean()) : "[ERROR] Rolled up price profile";
+        //  Il report unito riporta i valori nello stesso ordine dell'analisi completa.
+        String reportDirectory = directory.toString();
+        complete.saveReport(null, reportDirectory, "complete");
+        rolledUp.saveReport(null, reportDirectory, "rolled_up");
+        assert (Files.readString(Paths.get(reportDirectory, "Analysis", "complete.json"))
+                .equals(Files.readString(Paths.get(reportDirectory, "Analysis", "rolled_up.json")))) : "[ERROR] Rolled up value order";
+
+        CSVDataAnalysis approximate = new CSVDataAnalysis(csvRecordList);
+        approximate.performAnalysis(true);
+        Path approximateFile = directory.resolve("approximate" + CSVDataAnalysis.SNAPSHOT_EXTENSION);
+        approximate.saveSnapshot(approximateFile);
+        snapshotFiles.add(approximateFile);
+        CSVDataAnalysis mixed = CSVDataAnalysis.rollUp(snapshotFiles);
+        assert (mixed.getAnalysisReport() == null) : "[ERROR] Mixed roll-up should be approximate";
+        assert (mixed.getRecordCount() == 2L * csvRecordList.size()) : "[ERROR] Mixed record count: " + mixed.getRecordCount();
+        assert (mixed.getNumericProfiles().get("Sconto").getCount() == 2L * csvRecordList.size()) : "[ERROR] Mixed discount profile";
+    }
+
+    @Test
+    public void crossTabTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] CrossTabTest");
+        String dataPath = Paths.get(Objects.requireNonNull(CSVDataAnalysisTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString();
+        List<CSVRecord> recordList = new Extraction(dataPath).getCsvRecordList();
+        List<CSVRecord> csvRecordList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            csvRecordList.addAll(recordList);
+        Map<String, Integer> expectedBrandCategory = new HashMap<>();
+        Map<String, Integer> expectedTriple = new HashMap<>();
+        for (CSVRecord csvRecord : csvRecordList) {
+            expectedBrandCategory.merge(csvRecord.getNomeBrand() + " / " + csvRecord.getCategory(), 1, Integer::sum);
+            expectedTriple.merge(csvRecord.getCountryCode() + " / " + csvRecord.getPaymentMethod() + " / " + csvRecord.getColor(), 1, Integer::sum);
+        }
+        List<RecordBatch> batchList = new ArrayList<>();
+        try (Extraction extraction = Extraction.openStream(dataPath)) {
+            for (RecordBatch recordBatch : extraction.batches(7))
+                batchList.add(recordBatch);
+        }
+        CSVDataAnalysis sequential = new CSVDataAnalysis(csvRecordList);
+        sequential.setParallelism(1);
+        CSVDataAnalysis parallel = new CSVDataAnalysis(csvRecordList);
+        parallel.setParallelism(4);
+        for (CSVDataAnalysis csvDataAnalysis : new CSVDataAnalysis[]{sequential, parallel}) {
+            csvDataAnalysis.addCrossTab("NomeBrand", "NomeCategoria");
+            csvDataAnalysis.addCrossTab("CodStatoFattura", "PagamentoOrdine", "Colore");
+            csvDataAnalysis.performAnalysis(csvDataAnalysis == parallel);
+            Map<String, Map<String, Integer>> crossTabReport = csvDataAnalysis.getCrossTabReport();
+            assert (crossTabReport.get("NomeBrand x NomeCategoria").equals(expectedBrandCategory)) : "[ERROR] Brand x category";
+            assert (crossTabReport.get("CodStatoFattura x PagamentoOrdine x Colore").equals(expectedTriple)) : "[ERROR] Triple cross-tab";
+            int previous = Integer.MAX_VALUE;
+            for (int count : crossTabReport.get("NomeBrand x NomeCategoria").values()) {
+                assert (count <= previous) : "[ERROR] Cross-tab order";
+                previous = count;
+            }
+        }
+        CSVDataAnalysis batchAnalysis = new CSVDataAnalysis(batchList);
+        batchAnalysis.addCrossTab("NomeBrand", "NomeCategoria");
+        batchAnalysis.performAnalysis(false);
+        for (Map.Entry<String, Integer> entry : batchAnalysis.getCrossTabReport().get("NomeBrand x NomeCategoria").entrySet())
+            assert (entry.getValue() * 1000 == expectedBrandCategory.get(entry.getKey())) : "[ERROR] Batch cross-tab " + entry.getKey();
+        Path snapshotFile = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/snapshot/cross_tab" + CSVDataAnalysis.SNAPSHOT_EXTENSION);
+        sequential.saveSnapshot(snapshotFile);
+        CSVDataAnalysis rolledUp = CSVDataAnalysis.rollUp(List.of(snapshotFile, snapshotFile));
+        for (Map.Entry<String, Integer> entry : rolledUp.getCrossTabReport().get("NomeBrand x NomeCategoria").entrySet())
+            assert (entry.getValue() == 2 * expectedBrandCategory.get(entry.getKey())) : "[ERROR] Rolled up cross-tab " + entry.getKey();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sequential.addCrossTab("NomeBrand"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sequential.addCrossTab("NomeBrand", "Taglia"));
+    }
+
+    @Test
+    public void approximateCrossTabTest() throws Exception {
+        System.out.println("[INFO] ApproximateCrossTabTest");
+        //  Una combinazione frequente seguita da molte combinazioni distinte, più di quelle seguite dall'analisi approssimata.
+        List<CSVRecord> csvRecordList = new ArrayList<>();
+        int frequent = 20000;
+        int distinct = CSVDataAnalysis.APPROXIMATE_CROSS_TAB_VALUES * 5;
+        for (int i = 0; i < frequent + distinct; i++) {
+            String brand = i % 5 == 0 && i / 5 < distinct ? "BRAND_" + i / 5 : "FAY";
+            csvRecordList.add(new CSVRecord(new String[]{Integer.toString(i), "07/09/10", "IT", "M", "1", "89", "0", "0",
+                    brand, "Primavera - Estate 2011", "Blu", "Uomo", "PayPal", "UNICA", "Orologi", "Gioielli Moda"}));
+        }
+        CSVDataAnalysis csvDataAnalysis = new CSVDataAnalysis(csvRecordList);
+        csvDataAnalysis.setParallelism(4);
+        csvDataAnalysis.addCrossTab("NomeBrand", "NomeCategoria");
+        csvDataAnalysis.performAnalysis(true);
+        Map<String, Integer> crossTab = csvDataAnalysis.getCrossTabReport().get("NomeBrand x NomeCategoria");
+        assert (crossTab.size() <= CSVDataAnalysis.APPROXIMATE_CROSS_TAB_VALUES * 2) : "[ERROR] Unbounded cross-tab: " + crossTab.size();
+        int count = crossTab.get("FAY / Orologi");
+        int maxError = csvRecordList.size() / (CSVDataAnalysis.APPROXIMATE_CROSS_TAB_VALUES + 1);
+        assert (count >= frequent && count <= frequent + maxError) : "[ERROR] Frequent combination: " + count;
+        Path snapshotFile = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/snapshot/approximate_cross_tab" + CSVDataAnalysis.SNAPSHOT_EXTENSION);
+        csvDataAnalysis.saveSnapshot(snapshotFile);
+        int rolledUp = CSVDataAnalysis.rollUp(List.of(snapshotFile, snapshotFile)).getCrossTabReport().get("NomeBrand x NomeCategoria").get("FAY / Orologi");
+        assert (rolledUp >= frequent * 2 && rolledUp <= (frequent + maxError) * 2) : "[ERROR] Rolled up combination: " + rolledUp;
+    }
+
+    @Test
+    public void parseCrossTabsTest() {
+        System.out.println("[INFO] ParseCrossTabsTest");
+        List<String[]> defaultList = CSVDataAnalysis.parseCrossTabs(CSVDataAnalysis.DEFAULT_CROSS_TABS);
+        assert (defaultList.size() == 2) : "[ERROR] Default cross-tabs: " + defaultList.size();
+        assert (Arrays.equals(defaultList.get(0), new String[]{"NomeBrand", "NomeCategoria"})) : "[ERROR] First cross-tab";
+        assert (Arrays.equals(defaultList.get(1), new String[]{"CodStatoFattura", "PagamentoOrdine"})) : "[ERROR] Second cross-tab";
+        List<String[]> tripleList = CSVDataAnalysis.parseCrossTabs(" CodStatoFattura X PagamentoOrdine x Colore ;");
+        assert (tripleList.size() == 1 && tripleList.get(0).length == 3) : "[ERROR] Triple cross-tab";
+        assert (CSVDataAnalysis.parseCrossTabs("  ").isEmpty()) : "[ERROR] Empty cross-tabs";
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CSVDataAnalysis.parseCrossTabs("NomeBrand x NomeCategoria, Colore"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CSVDataAnalysis.parseCrossTabs("NomeBrand x Taglia"));
+    }
 }
@@ -7,7 +7,9 @@ import org.junit.jupiter.api.Test;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class CSVRecordTest {
 
@@ -83,4 +85,34 @@ public class CSVRecordTest {
                 "Celeste", "Uomo", "PayPal", "UNICA", "Orologi"};
         Assertions.assertThrows(CSVNullFieldsException.class, () -> new CSVRecord(strings));
     }
+
+    @Test
+    public void equalityTest() throws ParseException, CSVNullFieldsException {
+        System.out.println("[INFO] EqualityTest");
+        String[] strings = {"11", "07/09/10", "IT", "M", "1", "89", "0", "0","FRECCE TRICOLORI", "Primavera - Estate 2011",
+                "Celeste", "Uomo", "PayPal", "UNICA", "Orologi", "Gioielli Moda"};
+        CSVRecord csvRecord = new CSVRecord(strings);
+        CSVRecord sameRecord = new CSVRecord(strings.clone());
+        assert (csvRecord.equals(sameRecord) && csvRecord.hashCode() == sameRecord.hashCode()) : "[ERROR] Equal records differ";
+        assert (csvRecord.getFingerprint() == sameRecord.getFingerprint());
+
+        Set<CSVRecord> recordSet = new HashSet<>();
+        recordSet.add(csvRecord);
+        for (int field = 0; field < strings.length; field++) {
+            if (field == 3 || field == 7)
+                continue;
+            String[] changed = strings.clone();
+            changed[field] = field <= 6 && field != 2 ? "2" : strings[field] + "X";
+            if (field == 1)
+                changed[field] = "08/09/10";
+            CSVRecord otherRecord = new CSVRecord(changed);
+            assert (!csvRecord.equals(otherRecord)) : "[ERROR] Records equal with different field " + field;
+            assert (csvRecord.getFingerprint() != otherRecord.getFingerprint()) : "[ERROR] Same fingerprint, field " + field;
+            assert (recordSet.add(otherRecord)) : "[ERROR] Different record not added, field " + field;
+        }
+        assert (!recordSet.add(sameRecord)) : "[ERROR] Duplicate record added";
+
+        sameRecord.setQuantity(3);
+        assert (!csvRecord.equals(sameRecord) && csvRecord.getFingerprint() != sameRecord.getFingerprint()) : "[ERROR] Fingerprint not updated";
+    }
 }
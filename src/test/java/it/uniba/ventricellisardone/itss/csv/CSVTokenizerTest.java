@@ -0,0 +1,61 @@
+package it.uniba.ventricellisardone.itss.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+public class CSVTokenizerTest {
+
+    private static Path getResource(String name) throws URISyntaxException {
+        return Paths.get(Objects.requireNonNull(CSVTokenizerTest.class.getClassLoader().getResource(name)).toURI());
+    }
+
+    @Test
+    public void quotedFieldTest() throws IOException, URISyntaxException {
+        System.out.println("[INFO] QuotedFieldTest");
+        try (CSVTokenizer tokenizer = new CSVTokenizer(getResource("csv/tokenizer/quoted_data.csv"))) {
+            assert (tokenizer.nextRow()) : "[ERROR] Header not read";
+            assert (tokenizer.size() == 16) : "[ERROR] Header fields: " + tokenizer.size();
+            assert (tokenizer.getString(15).equals("MacroCategoria")) : "[ERROR] CRLF not removed from last field";
+
+            assert (tokenizer.nextRow());
+            assert (tokenizer.size() == 16) : "[ERROR] Separator inside quotes split the row";
+            assert (tokenizer.getString(8).equals("DOLCE; GABBANA")) : "[ERROR] Quoted field: " + tokenizer.getString(8);
+            assert (tokenizer.getLineNumber() == 2);
+
+            assert (tokenizer.nextRow());
+            assert (tokenizer.size() == 16);
+            assert (tokenizer.getString(8).equals("MARC \"O\" POLO")) : "[ERROR] Escaped quotes: " + tokenizer.getString(8);
+            assert (tokenizer.getString(9).equals("Autunno\nInverno")) : "[ERROR] New line inside quotes";
+            assert (tokenizer.getLineNumber() == 3);
+
+            assert (tokenizer.nextRow());
+            assert (tokenizer.size() == 15);
+            assert (tokenizer.getLineNumber() == 5) : "[ERROR] Line number: " + tokenizer.getLineNumber();
+            assert (tokenizer.getLine().equals("13;08/09/10;IT;F;1;62;50;1;FAY;Primavera - Estate 2011;Blu;Donna;PayPal;L;Maglieria"));
+
+            assert (tokenizer.nextRow()) : "[ERROR] Last row without new line not read";
+            assert (tokenizer.getString(5).equals("45.5"));
+            assert (tokenizer.getString(15).equals("Abbigliamento"));
+            assert (!tokenizer.nextRow());
+        }
+    }
+
+    @Test
+    public void recordFromRowTest() throws Exception {
+        System.out.println("[INFO] RecordFromRowTest");
+        try (CSVTokenizer tokenizer = new CSVTokenizer(getResource("csv/tokenizer/quoted_data.csv"))) {
+            tokenizer.nextRow();
+            tokenizer.nextRow();
+            CSVRecord record = new CSVRecord(tokenizer);
+            String[] strings = {"11", "07/09/10", "IT", "M", "1", "89", "0", "0", "DOLCE; GABBANA", "Primavera - Estate 2011",
+                    "Celeste", "Uomo", "PayPal", "UNICA", "Orologi", "Gioielli Moda"};
+            assert (record.equals(new CSVRecord(strings))) : "[ERROR] Record from tokenizer differs";
+            assert (record.getNomeBrand().equals("DOLCE; GABBANA"));
+        }
+    }
+}
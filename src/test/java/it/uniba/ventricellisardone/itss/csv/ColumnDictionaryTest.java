@@ -0,0 +1,78 @@
+package it.uniba.ventricellisardone.itss.csv;
+
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import it.uniba.ventricellisardone.itss.etl.Extraction;
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ColumnDictionaryTest {
+
+    @Test
+    public void canonicalTest() {
+        System.out.println("[INFO] CanonicalTest");
+        ColumnDictionary dictionary = new ColumnDictionary(2);
+        String first = dictionary.canonical(new String("Nero"));
+        assert (dictionary.canonical(new String("Nero")) == first) : "[ERROR] Value not shared";
+        dictionary.canonical("Blu");
+        String overflow = new String("Rosso");
+        assert (dictionary.canonical(overflow) == overflow) : "[ERROR] Value stored beyond the limit";
+        assert (dictionary.size() == 2) : "[ERROR] Dictionary size: " + dictionary.size();
+    }
+
+    @Test
+    public void rowCanonicalTest() {
+        System.out.println("[INFO] RowCanonicalTest");
+        ColumnDictionary dictionary = new ColumnDictionary(1000);
+        String[] values = {"Nero", "Blu", "", "Però", "Rosso \"scuro\""};
+        for (int run = 0; run < 2; run++) {
+            for (int i = 0; i < 40; i++) {
+                for (String value : values) {
+                    String field = new String(value + (value.isEmpty() ? "" : i));
+                    String canonical = dictionary.canonical(CSVRow.of(new String[]{field}), 0);
+                    assert (canonical.equals(field)) : "[ERROR] Value: " + canonical;
+                    assert (canonical == dictionary.canonical(new String(field))) : "[ERROR] Value not shared: " + field;
+                }
+            }
+        }
+        assert (dictionary.size() == 161) : "[ERROR] Dictionary size: " + dictionary.size();
+    }
+
+    @Test
+    public void transformedTest() {
+        System.out.println("[INFO] TransformedTest");
+        ColumnDictionary dictionary = new ColumnDictionary(10);
+        AtomicInteger calls = new AtomicInteger();
+        String value = dictionary.canonical("Nero");
+        for (int i = 0; i < 5; i++) {
+            String transformed = dictionary.transformed(value, color -> {
+                calls.incrementAndGet();
+                return color.equals("Nero") ? color.toUpperCase() : null;
+            });
+            assert (transformed.equals("NERO")) : "[ERROR] Transformed value: " + transformed;
+        }
+        assert (calls.get() == 1) : "[ERROR] Transformation computed " + calls.get() + " times";
+        dictionary.canonical("Porpora");
+        assert (dictionary.transformed("Porpora", color -> null) == null) : "[ERROR] Rejected value transformed";
+        assert (dictionary.transformed("Ocra", String::toUpperCase).equals("OCRA")) : "[ERROR] Value outside dictionary";
+    }
+
+    @Test
+    public void sharedRecordTest() throws CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] SharedRecordTest");
+        String dataPath = Paths.get(Objects.requireNonNull(ColumnDictionaryTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString();
+        List<CSVRecord> recordList = new Extraction(dataPath).getCsvRecordList();
+        for (CSVRecord first : recordList) {
+            for (CSVRecord second : recordList) {
+                if (first.getNomeBrand().equals(second.getNomeBrand()))
+                    assert (first.getNomeBrand() == second.getNomeBrand()) : "[ERROR] Brand not shared";
+                if (first.getCountryCode().equals(second.getCountryCode()))
+                    assert (first.getCountryCode() == second.getCountryCode()) : "[ERROR] Country code not shared";
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package it.uniba.ventricellisardone.itss.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongCounterMapTest {
+
+    @Test
+    public void countTest() {
+        System.out.println("[INFO] CountTest");
+        Random random = new Random(42);
+        LongCounterMap counterMap = new LongCounterMap();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            //  Chiavi composte come quelle delle tabelle incrociate, compresa la chiave 0.
+            long key = ((long) random.nextInt(300) << 21) | random.nextInt(50);
+            counterMap.add(key, 2);
+            expected.merge(key, 2L, Long::sum);
+        }
+        assert (counterMap.size() == expected.size()) : "[ERROR] Size: " + counterMap.size();
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+            assert (counterMap.get(entry.getKey()) == entry.getValue()) : "[ERROR] Count of " + entry.getKey();
+        Map<Long, Long> iterated = new HashMap<>();
+        counterMap.forEach(iterated::put);
+        assert (iterated.equals(expected)) : "[ERROR] Iterated entries";
+        assert (counterMap.get(Long.MAX_VALUE) == 0) : "[ERROR] Missing key";
+    }
+
+    @Test
+    public void reduceTest() {
+        System.out.println("[INFO] ReduceTest");
+        LongCounterMap counterMap = new LongCounterMap();
+        for (long key = 0; key < 100; key++)
+            counterMap.add(key, key + 1);
+        assert (counterMap.reduce(100) == 0 && counterMap.size() == 100) : "[ERROR] Reduced below the limit";
+        //  L'undicesimo conteggio più alto è 90: restano le chiavi da 90 a 99, diminuite di 90.
+        assert (counterMap.reduce(10) == 90) : "[ERROR] Threshold";
+        assert (counterMap.size() == 10) : "[ERROR] Size: " + counterMap.size();
+        for (long key = 90; key < 100; key++)
+            assert (counterMap.get(key) == key + 1 - 90) : "[ERROR] Count of " + key;
+        assert (counterMap.get(89) == 0) : "[ERROR] Key not removed";
+    }
+}
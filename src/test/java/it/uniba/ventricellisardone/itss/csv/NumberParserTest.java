@@ -0,0 +1,64 @@
+package it.uniba.ventricellisardone.itss.csv;
+
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVNumberFormatException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class NumberParserTest {
+
+    private static CSVRow rowOf(String value) {
+        return CSVRow.of(new String[]{"", value});
+    }
+
+    @Test
+    public void sameAsJdkTest() {
+        System.out.println("[INFO] SameAsJdkTest");
+        String[] values = {"0", "7", "-12", "+12", "123456789", "1234567890", "-2147483648", "9223372036854775807",
+                "0.1", "89", "45.5", "-0", "-0.0", ".5", "12.", "1e3", " 12 ", "12.345678901234567", "0.30000000000000004",
+                "99999999999999999999", "NaN", "Infinity"};
+        for (String value : values) {
+            assert (same(() -> Long.parseLong(value), () -> NumberParser.parseLong(rowOf(value), 1))) : "[ERROR] Long " + value;
+            assert (same(() -> Integer.parseInt(value), () -> NumberParser.parseInt(rowOf(value), 1))) : "[ERROR] Int " + value;
+            assert (same(() -> Double.parseDouble(value), () -> NumberParser.parseDouble(rowOf(value), 1))) : "[ERROR] Double " + value;
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            String value = random.nextInt(100000) + "." + random.nextInt(1000);
+            assert (Double.parseDouble(value) == NumberParser.parseDouble(rowOf(value), 1)) : "[ERROR] Price " + value;
+        }
+    }
+
+    @Test
+    public void errorFieldTest() {
+        System.out.println("[INFO] ErrorFieldTest");
+        for (String value : new String[]{"", "-", ".", "1.2.3", "ciccio", "12a"}) {
+            CSVNumberFormatException e = Assertions.assertThrows(CSVNumberFormatException.class,
+                    () -> NumberParser.parseDouble(rowOf(value), 1));
+            assert (e.getErrorOffset() == 1) : "[ERROR] Error offset: " + e.getErrorOffset();
+            Assertions.assertThrows(CSVNumberFormatException.class, () -> NumberParser.parseLong(rowOf(value), 1));
+        }
+    }
+
+    private static boolean same(Parser expected, Parser actual) {
+        Object expectedValue;
+        try {
+            expectedValue = expected.parse();
+        } catch (NumberFormatException e) {
+            try {
+                actual.parse();
+                return false;
+            } catch (CSVNumberFormatException csvException) {
+                return csvException.getMessage().equals(e.getMessage());
+            }
+        }
+        Object actualValue = actual.parse();
+        //  Il confronto tra Double distingue anche -0.0 da 0.0.
+        return expectedValue.equals(actualValue);
+    }
+
+    private interface Parser {
+        Object parse();
+    }
+}
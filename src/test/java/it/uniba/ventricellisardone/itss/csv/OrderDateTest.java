@@ -0,0 +1,52 @@
+package it.uniba.ventricellisardone.itss.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.Locale;
+
+public class OrderDateTest {
+
+    private static int parse(String date) throws ParseException {
+        return OrderDate.parse(CSVRow.of(new String[]{date}), 0);
+    }
+
+    private static int parseWithFormat(String date) throws ParseException {
+        return OrderDate.toEpochDay(new SimpleDateFormat(OrderDate.PATTERN, Locale.getDefault()).parse(date));
+    }
+
+    @Test
+    public void sameAsFormatTest() throws ParseException {
+        System.out.println("[INFO] SameAsFormatTest");
+        for (int year = 0; year < 100; year++) {
+            for (int month = 1; month <= 12; month++) {
+                for (int day = 0; day <= 31; day++) {
+                    String date = String.format("%02d/%02d/%02d", day, month, year);
+                    assert (parse(date) == parseWithFormat(date)) : "[ERROR] Date " + date + ": " + parse(date);
+                    assert (parse(date) == parse(date)) : "[ERROR] Memo " + date;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fallbackTest() throws ParseException {
+        System.out.println("[INFO] FallbackTest");
+        for (String date : new String[]{"7/9/10", "07/09/2010", "32/01/10", "07/13/10", "07/09/10 "})
+            assert (parse(date) == parseWithFormat(date)) : "[ERROR] Date " + date;
+        Assertions.assertThrows(ParseException.class, () -> parse("ciccio"));
+        Assertions.assertThrows(ParseException.class, () -> parse("aa/09/10"));
+    }
+
+    @Test
+    public void formatTest() throws ParseException {
+        System.out.println("[INFO] FormatTest");
+        int epochDay = parse("07/09/10");
+        assert (LocalDate.ofEpochDay(epochDay).equals(LocalDate.of(2010, 9, 7))) : "[ERROR] Date: " + LocalDate.ofEpochDay(epochDay);
+        assert (OrderDate.format(epochDay).equals("07/09/10")) : "[ERROR] Format: " + OrderDate.format(epochDay);
+        assert (OrderDate.toEpochDay(OrderDate.toDate(epochDay)) == epochDay);
+    }
+}
@@ -0,0 +1,66 @@
+package it.uniba.ventricellisardone.itss.csv;
+
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import it.uniba.ventricellisardone.itss.etl.Extraction;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class RecordBatchTest {
+
+    private static String getDataPath() throws URISyntaxException {
+        return Paths.get(Objects.requireNonNull(RecordBatchTest.class.getClassLoader().getResource("data_analysis/right_data.csv")).toURI()).toString();
+    }
+
+    @Test
+    public void columnTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] ColumnTest");
+        List<CSVRecord> recordList = new Extraction(getDataPath()).getCsvRecordList();
+        RecordBatch recordBatch = new RecordBatch(4);
+        for (CSVRecord csvRecord : recordList)
+            recordBatch.add(csvRecord);
+        assert (recordBatch.size() == recordList.size()) : "[ERROR] Batch size: " + recordBatch.size();
+        assert (recordBatch.isFull());
+
+        List<RecordView> viewList = recordBatch.asList();
+        for (int i = 0; i < recordList.size(); i++) {
+            CSVRecord csvRecord = recordList.get(i);
+            RecordView view = viewList.get(i);
+            assert (view.getIdOrder() == csvRecord.getIdOrder()) : "[ERROR] Id order row " + i;
+            assert (view.getOrderDate().equals(csvRecord.getOrderDate())) : "[ERROR] Order date row " + i;
+            assert (view.getCountryCode().equals(csvRecord.getCountryCode()));
+            assert (view.getCustomerGender() == csvRecord.getCustomerGender());
+            assert (view.getQuantity() == csvRecord.getQuantity());
+            assert (view.getPayedPrice() == csvRecord.getPayedPrice());
+            assert (view.getDiscount() == csvRecord.getDiscount());
+            assert (view.isOutlet() == csvRecord.isOutlet());
+            assert (view.getNomeBrand().equals(csvRecord.getNomeBrand()));
+            assert (view.getCollection().equals(csvRecord.getCollection()));
+            assert (view.getColor().equals(csvRecord.getColor()));
+            assert (view.getItemGender().equals(csvRecord.getItemGender()));
+            assert (view.getPaymentMethod().equals(csvRecord.getPaymentMethod()));
+            assert (view.getSize().equals(csvRecord.getSize()));
+            assert (view.getCategory().equals(csvRecord.getCategory()));
+            assert (view.getMacroCategory().equals(csvRecord.getMacroCategory()));
+        }
+        assert (recordBatch.getDictionary(RecordBatch.COUNTRY_CODE).size() < recordList.size()) : "[ERROR] Strings not shared";
+    }
+
+    @Test
+    public void batchAnalysisTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] BatchAnalysisTest");
+        List<CSVRecord> recordList = new Extraction(getDataPath()).getCsvRecordList();
+        List<RecordBatch> batchList = new ArrayList<>();
+        try (Extraction extraction = Extraction.openStream(getDataPath())) {
+            for (RecordBatch recordBatch : extraction.batches(7))
+                batchList.add(recordBatch);
+        }
+        assert (batchList.size() == (recordList.size() + 6) / 7) : "[ERROR] Batch count: " + batchList.size();
+        assert (new CSVDataAnalysis(batchList).performDataAnalysis().equals(CSVStaticTestModel.getTestMap())) : "[ERROR] Incorrect batch data analysis";
+    }
+}
@@ -0,0 +1,77 @@
+package it.uniba.ventricellisardone.itss.csv.report;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+public class ReportWriterTest {
+
+    private static final String SPECIAL_VALUE = "Dolce & Gabbana \"Uomo\" <Limited> l'edizione è 😀";
+
+    private static void writeReport(ReportWriter writer) throws IOException {
+        writer.startReport("test", null, "Nota -- con caratteri & speciali");
+        writer.startCategory("NomeBrand", "total", 3);
+        writer.entry(SPECIAL_VALUE, 2);
+        writer.entry("Controllo\u0001\uD800", 1);
+        writer.endCategory();
+        writer.startCategory("PrezzoPagato", "type", "numeric", "mean", new BigDecimal("12.50"));
+        writer.quantile(0.5, new BigDecimal("10.00"));
+        writer.entry("<0", 0);
+        writer.entry(">=100", 4);
+        writer.endCategory();
+        writer.endReport();
+    }
+
+    @Test
+    public void xmlWriterTest() throws IOException, ParserConfigurationException, SAXException {
+        System.out.println("[INFO] XmlWriterTest");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ReportWriter writer = new XmlReportWriter(outputStream)) {
+            writeReport(writer);
+        }
+        String report = outputStream.toString(StandardCharsets.UTF_8);
+        assert (report.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")) : "[ERROR] Declaration: " + report;
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(outputStream.toByteArray()));
+        Element data = document.getDocumentElement();
+        assert (data.getAttribute("type").equals("test")) : "[ERROR] Report type";
+        Element first = (Element) data.getElementsByTagName("entry").item(0);
+        assert (first.getAttribute("key").equals(SPECIAL_VALUE)) : "[ERROR] Escaped value: " + first.getAttribute("key");
+        assert (first.getAttribute("value").equals("2")) : "[ERROR] Entry value";
+        Element second = (Element) data.getElementsByTagName("entry").item(1);
+        assert (second.getAttribute("key").equals("Controllo��")) : "[ERROR] Invalid characters: " + second.getAttribute("key");
+        Element quantile = (Element) data.getElementsByTagName("quantile").item(0);
+        assert (quantile.getAttribute("key").equals("0.5") && quantile.getAttribute("value").equals("10.00")) : "[ERROR] Quantile";
+        assert (((Element) data.getElementsByTagName("category").item(1)).getAttribute("mean").equals("12.50")) : "[ERROR] Attribute";
+    }
+
+    @Test
+    public void jsonWriterTest() throws IOException {
+        System.out.println("[INFO] JsonWriterTest");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ReportWriter writer = new JsonReportWriter(outputStream)) {
+            writeReport(writer);
+        }
+        JsonObject report = new Gson().fromJson(outputStream.toString(StandardCharsets.UTF_8), JsonObject.class);
+        assert (report.get("type").getAsString().equals("test")) : "[ERROR] Report type";
+        JsonObject brand = report.getAsJsonArray("categories").get(0).getAsJsonObject();
+        assert (brand.get("total").getAsInt() == 3) : "[ERROR] Category attribute";
+        JsonObject entry = brand.getAsJsonArray("entries").get(0).getAsJsonObject();
+        assert (entry.get("key").getAsString().equals(SPECIAL_VALUE) && entry.get("value").getAsLong() == 2) : "[ERROR] Entry";
+        JsonObject price = report.getAsJsonArray("categories").get(1).getAsJsonObject();
+        assert (price.get("mean").getAsBigDecimal().equals(new BigDecimal("12.50"))) : "[ERROR] Numeric attribute";
+        assert (price.getAsJsonArray("quantiles").size() == 1) : "[ERROR] Quantiles";
+        assert (price.getAsJsonArray("entries").size() == 2) : "[ERROR] Histogram entries";
+    }
+}
@@ -0,0 +1,64 @@
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ColumnSketchTest {
+
+    @Test
+    public void distinctCountTest() {
+        System.out.println("[INFO] DistinctCountTest");
+        for (int distinct : new int[]{10, 1000, 200000}) {
+            HyperLogLog hyperLogLog = new HyperLogLog();
+            for (int i = 0; i < distinct * 3; i++)
+                hyperLogLog.add(ColumnSketch.hash("valore-" + (i % distinct)));
+            double error = Math.abs(hyperLogLog.estimate() - distinct) / (double) distinct;
+            assert (error < 4 * hyperLogLog.getRelativeError()) : "[ERROR] Distinct " + distinct + ": " + hyperLogLog.estimate();
+        }
+    }
+
+    @Test
+    public void topValuesTest() {
+        System.out.println("[INFO] TopValuesTest");
+        Random random = new Random(42);
+        Map<String, Long> exact = new HashMap<>();
+        ColumnSketch first = new ColumnSketch(5);
+        ColumnSketch second = new ColumnSketch(5);
+        for (int i = 0; i < 200000; i++) {
+            //  Pochi valori molto frequenti e molti valori rari.
+            String value = random.nextInt(4) == 0 ? "frequente-" + random.nextInt(5) : "raro-" + random.nextInt(50000);
+            exact.merge(value, 1L, Long::sum);
+            (i % 2 == 0 ? first : second).add(value, 1);
+        }
+        first.merge(second);
+        List<ColumnSketch.TopValue> topValues = first.getTopValues();
+        assert (topValues.size() == 5) : "[ERROR] Top values: " + topValues.size();
+        assert (first.getTotal() == 200000) : "[ERROR] Total: " + first.getTotal();
+        for (ColumnSketch.TopValue topValue : topValues) {
+            assert (topValue.getValue().startsWith("frequente-")) : "[ERROR] Not a frequent value: " + topValue.getValue();
+            long count = exact.get(topValue.getValue());
+            assert (topValue.getCount() >= count && topValue.getCount() - topValue.getError() <= count)
+                    : "[ERROR] Count of " + topValue.getValue() + ": " + topValue.getCount() + " - " + topValue.getError() + ", " + count;
+        }
+    }
+
+    @Test
+    public void countMinTest() {
+        System.out.println("[INFO] CountMinTest");
+        CountMinSketch countMinSketch = new CountMinSketch();
+        for (int i = 0; i < 100000; i++)
+            countMinSketch.add(ColumnSketch.hash("valore-" + (i % 5000)), 1);
+        int exceeded = 0;
+        for (int i = 0; i < 5000; i++) {
+            long estimate = countMinSketch.estimate(ColumnSketch.hash("valore-" + i));
+            assert (estimate >= 20) : "[ERROR] Estimate below the real count: " + estimate;
+            if (estimate - 20 > countMinSketch.getErrorBound())
+                exceeded++;
+        }
+        assert (exceeded <= 5000 * (1 - countMinSketch.getConfidence())) : "[ERROR] Estimates above the bound: " + exceeded;
+    }
+}
@@ -0,0 +1,108 @@
+package it.uniba.ventricellisardone.itss.csv.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class NumericProfileTest {
+
+    @Test
+    public void quantileTest() {
+        System.out.println("[INFO] QuantileTest");
+        Random random = new Random(42);
+        int size = 200000;
+        double[] values = new double[size];
+        TDigest first = new TDigest();
+        TDigest second = new TDigest();
+        for (int i = 0; i < size; i++) {
+            //  Distribuzione asimmetrica come quella dei prezzi, con una coda di valori molto alti.
+            values[i] = Math.exp(random.nextGaussian() + 4);
+            (i % 2 == 0 ? first : second).add(values[i]);
+        }
+        first.merge(second);
+        Arrays.sort(values);
+        assert (first.getCount() == size) : "[ERROR] Count: " + first.getCount();
+        assert (first.getCentroidCount() <= 2 * TDigest.DEFAULT_COMPRESSION) : "[ERROR] Centroids: " + first.getCentroidCount();
+        for (double quantile : new double[]{0.001, 0.01, 0.25, 0.5, 0.75, 0.99, 0.999}) {
+            //  L'errore viene misurato sul rango del valore stimato, come è consuetudine per i riassunti dei quantili.
+            double estimate = first.quantile(quantile);
+            int rank = Arrays.binarySearch(values, estimate);
+            rank = rank < 0 ? -rank - 1 : rank;
+            double rankError = Math.abs(rank / (double) size - quantile);
+            assert (rankError < 0.005) : "[ERROR] Quantile " + quantile + ": " + estimate + " rank error " + rankError;
+        }
+        assert (first.quantile(0) == values[0] && first.quantile(1) == values[size - 1]) : "[ERROR] Min and max";
+        assert (Double.isNaN(new TDigest().quantile(0.5))) : "[ERROR] Empty digest";
+    }
+
+    @Test
+    public void smallDigestTest() {
+        System.out.println("[INFO] SmallDigestTest");
+        TDigest digest = new TDigest();
+        for (int value = 1; value <= 9; value++)
+            digest.add(value);
+        assert (digest.quantile(0.5) == 5) : "[ERROR] Median: " + digest.quantile(0.5);
+        assert (digest.quantile(0.05) == 1) : "[ERROR] First value: " + digest.quantile(0.05);
+    }
+
+    @Test
+    public void histogramTest() {
+        System.out.println("[INFO] HistogramTest");
+        NumericProfile first = new NumericProfile(0, 10, 100);
+        NumericProfile second = new NumericProfile(0, 10, 100);
+        for (double value : new double[]{-5, 0, 9.99, 10})
+            first.add(value);
+        for (double value : new double[]{99, 100, 1000})
+            second.add(value);
+        first.merge(second);
+        Histogram histogram = first.getHistogram();
+        long[] expected = {1, 2, 2, 2};
+        String[] labels = {"<0", "[0, 10)", "[10, 100)", ">=100"};
+        for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+            assert (histogram.getCount(bucket) == expected[bucket]) : "[ERROR] Bucket " + bucket + ": " + histogram.getCount(bucket);
+            assert (histogram.getLabel(bucket).equals(labels[bucket])) : "[ERROR] Label " + histogram.getLabel(bucket);
+        }
+        assert (first.getCount() == 7 && first.getMin() == -5 && first.getMax() == 1000) : "[ERROR] Profile bounds";
+        assert (Math.abs(first.getMean() - 1213.99 / 7) < 1e-9) : "[ERROR] Mean: " + first.getMean();
+    }
+
+    @Test
+    public void serializationTest() throws IOException {
+        System.out.println("[INFO] SerializationTest");
+        Random random = new Random(7);
+        NumericProfile profile = new NumericProfile(0, 10, 100);
+        ColumnSketch sketch = new ColumnSketch(5);
+        for (int i = 0; i < 50000; i++) {
+            profile.add(random.nextDouble() * 200);
+            sketch.add("valore-" + random.nextInt(i % 3 == 0 ? 10 : 5000), 1);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(bytes)) {
+            profile.write(outputStream);
+            sketch.write(outputStream);
+        }
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        NumericProfile readProfile = NumericProfile.read(inputStream);
+        ColumnSketch readSketch = ColumnSketch.read(inputStream);
+        assert (readProfile.getCount() == profile.getCount() && readProfile.getMean() == profile.getMean()) : "[ERROR] Profile";
+        for (double quantile : NumericProfile.REPORT_QUANTILES)
+            assert (readProfile.quantile(quantile) == profile.quantile(quantile)) : "[ERROR] Quantile " + quantile;
+        for (int bucket = 0; bucket < profile.getHistogram().getBucketCount(); bucket++)
+            assert (readProfile.getHistogram().getCount(bucket) == profile.getHistogram().getCount(bucket)) : "[ERROR] Bucket " + bucket;
+        assert (readSketch.getDistinctCount() == sketch.getDistinctCount() && readSketch.getTotal() == sketch.getTotal()) : "[ERROR] Sketch";
+        List<ColumnSketch.TopValue> expected = sketch.getTopValues();
+        List<ColumnSketch.TopValue> actual = readSketch.getTopValues();
+        for (int i = 0; i < expected.size(); i++)
+            assert (expected.get(i).getValue().equals(actual.get(i).getValue()) && expected.get(i).getCount() == actual.get(i).getCount()) : "[ERROR] Top value " + i;
+        //  Unendo i riassunti letti il totale deve raddoppiare.
+        readSketch.merge(sketch);
+        assert (readSketch.getTotal() == 2 * sketch.getTotal()) : "[ERROR] Merged total";
+    }
+}
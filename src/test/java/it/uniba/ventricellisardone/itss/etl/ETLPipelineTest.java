@@ -0,0 +1,64 @@
+package it.uniba.ventricellisardone.itss.etl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ETLPipelineTest {
+
+    private static final String TABLE_NAME = "test_tabella";
+
+    private static Path createDataFile(Path directory, int rows) throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+        Files.createDirectories(directory);
+        List<String> lines = new ArrayList<>();
+        lines.add("IdOrdine;DataOrdine;CodStatoFattura;SexAcquirente;Quantita;PrezzoPagato;Sconto;Outlet;NomeBrand;"
+                + "Collezione;Colore;SexArticolo;PagamentoOrdine;ValoreTagliaEffettivo;NomeCategoria;MacroCategoria");
+        for (int i = 0; i < rows; i++)
+            lines.add(i + ";" + String.format("%02d", 1 + i * 28 / rows) + "/09/10;IT;M;1;89;0;0;FAY;"
+                    + "Primavera - Estate 2011;Blu;Uomo;PayPal;UNICA;Orologi;Gioielli Moda");
+        Path dataFile = directory.resolve("orders.csv");
+        Files.write(dataFile, lines);
+        return dataFile;
+    }
+
+    @Test
+    public void interruptedLoadTest() throws Exception {
+        System.out.println("[INFO] InterruptedLoadTest");
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/pipeline_resume");
+        Path dataFile = createDataFile(directory, ETLPipeline.BLOCK_SIZE * 2 + ETLPipeline.BLOCK_SIZE / 2);
+        String destinationPath = directory.resolve("Transformed").toString();
+        List<Integer> loadedList = Collections.synchronizedList(new ArrayList<>());
+        //  Il caricamento del secondo file fallisce mentre la trasformazione prosegue: i file 1 e 2 vengono generati ma
+        //  non caricati.
+        ETLPipeline interrupted = new ETLPipeline(new File[]{dataFile.toFile()}, destinationPath, TABLE_NAME);
+        interrupted.setFileLoader((from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (i == 1)
+                    throw new IOException("Connessione interrotta");
+                loadedList.add(i);
+            }
+        });
+        Assertions.assertThrows(IOException.class, () -> interrupted.run(block -> { }));
+        assert (loadedList.equals(List.of(0))) : "[ERROR] Loaded before the interruption: " + loadedList;
+        assert (Checkpoint.read(destinationPath) != null) : "[ERROR] Checkpoint deleted";
+        assert (Checkpoint.readLoadedFiles(destinationPath) == 1) : "[ERROR] Loaded files: " + Checkpoint.readLoadedFiles(destinationPath);
+        ETLPipeline resumed = new ETLPipeline(new File[]{dataFile.toFile()}, destinationPath, TABLE_NAME);
+        resumed.setFileLoader((from, to) -> {
+            for (int i = from; i < to; i++)
+                loadedList.add(i);
+        });
+        resumed.run(block -> { });
+        assert (loadedList.equals(List.of(0, 1, 2))) : "[ERROR] Loaded files: " + loadedList;
+        assert (Checkpoint.read(destinationPath) == null) : "[ERROR] Checkpoint not deleted";
+    }
+}
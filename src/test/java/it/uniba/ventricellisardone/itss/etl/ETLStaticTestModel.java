@@ -63,7 +63,7 @@ public class ETLStaticTestModel {
             strings = new String[]{"82", "21/09/10", "LU", "M", "1", "77", "50", "1", "AERONAUTICA MILITARE", "Autunno - Inverno 2012", "Blu", "Uomo", "PayPal", "S", "Maglieria", "Abbigliamento"};
             csvRecord = new CSVRecord(strings);
             list.add(csvRecord);
-            strings = new String[]{"88", "23/09/10", "GB", "F", "12", "195.0", "50", "0", "HOGAN", "Autunno - Inverno 2012", "Testa di moro", "Donna", "Carta di Credito", "UNICA", "Shopper", "Borse"};
+            strings = new String[]{"88", "23/09/10", "GB", "F", "1", "195.0", "50", "0", "HOGAN", "Autunno - Inverno 2012", "Testa di moro", "Donna", "Carta di Credito", "UNICA", "Shopper", "Borse"};
             csvRecord = new CSVRecord(strings);
             list.add(csvRecord);
             strings = new String[]{"89", "23/09/10", "FR", "F", "1", "145", "50", "1", "FAY", "Autunno - Inverno 2012", "Blu scuro", "Kids Girl", "Carta di Credito", "4", "Capispalla", "Abbigliamento"};
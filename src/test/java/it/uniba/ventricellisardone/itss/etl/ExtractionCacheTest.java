@@ -0,0 +1,161 @@
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+public class ExtractionCacheTest {
+
+    private static Path getDataFile() throws URISyntaxException {
+        return Paths.get(Objects.requireNonNull(ExtractionCacheTest.class.getClassLoader().getResource("etl/extraction/parsing_error_data.csv")).toURI());
+    }
+
+    private static ExtractionCache createCache() throws IOException {
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/cache");
+        FileUtils.deleteDirectory(directory.toFile());
+        return new ExtractionCache(directory.toString());
+    }
+
+    @Test
+    public void cachedReadTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] CachedReadTest");
+        Path dataFile = getDataFile();
+        ExtractionCache cache = createCache();
+        Extraction complete = new Extraction(dataFile.toString());
+        for (int run = 0; run < 2; run++) {
+            try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+                assert (extraction.isCached() == (run == 1)) : "[ERROR] Cached at run " + run;
+                List<CSVRecord> recordList = new ArrayList<>();
+                for (CSVRecord csvRecord : extraction)
+                    recordList.add(csvRecord);
+                assert (recordList.equals(complete.getCsvRecordList())) : "[ERROR] Records at run " + run;
+                assert (extraction.getParseErrorRecords().toString().equals(complete.getParseErrorRecords().toString())) : "[ERROR] Parse errors at run " + run;
+                assert (Objects.equals(extraction.getNullRecordList(), complete.getNullRecordList())) : "[ERROR] Null records at run " + run;
+                assert (extraction.getRejectCounters().equals(complete.getRejectCounters())) : "[ERROR] Counters at run " + run;
+                assert (extraction.getLinesRead() == 21) : "[ERROR] Line count: " + extraction.getLinesRead();
+            }
+            assert (Files.isRegularFile(cache.getCacheFile(ExtractionCache.computeKey(dataFile)))) : "[ERROR] Cache not written";
+        }
+    }
+
+    @Test
+    public void cachedCheckpointTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] CachedCheckpointTest");
+        Path dataFile = getDataFile();
+        ExtractionCache cache = createCache();
+        List<CSVRecord> completeList = new Extraction(dataFile.toString()).getCsvRecordList();
+        long offset;
+        long linesRead;
+        List<CSVRecord> recordList = new ArrayList<>();
+        try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+            Iterator<CSVRecord> iterator = extraction.iterator();
+            for (int i = 0; i < 5; i++)
+                iterator.next();
+            offset = extraction.getOffset();
+            linesRead = extraction.getLinesRead();
+            iterator.forEachRemaining(csvRecord -> { });
+        }
+        try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+            assert (extraction.isCached()) : "[ERROR] Cache not used";
+            extraction.seek(offset, linesRead);
+            for (CSVRecord csvRecord : extraction)
+                recordList.add(csvRecord);
+            assert (recordList.equals(completeList.subList(5, completeList.size()))) : "[ERROR] Resumed cached records";
+            assert (extraction.getParseErrorRecords() == null) : "[ERROR] Rows before the checkpoint read again";
+        }
+    }
+
+    @Test
+    public void abandonedReadTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] AbandonedReadTest");
+        Path dataFile = getDataFile();
+        ExtractionCache cache = createCache();
+        try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+            Iterator<CSVRecord> iterator = extraction.iterator();
+            for (int i = 0; i < 3; i++)
+                iterator.next();
+        }
+        //  La lettura interrotta non salva la cache e non lascia file temporanei nella cartella.
+        Path cacheFile = cache.getCacheFile(ExtractionCache.computeKey(dataFile));
+        assert (!Files.exists(cacheFile)) : "[ERROR] Incomplete cache written";
+        try (Stream<Path> files = Files.list(cacheFile.getParent())) {
+            assert (files.count() == 0) : "[ERROR] Temporary files left";
+        }
+        try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+            assert (!extraction.isCached()) : "[ERROR] Cache used after an interrupted read";
+            extraction.getCsvRecordList();
+        }
+        try (Stream<Path> files = Files.list(cacheFile.getParent())) {
+            assert (files.count() == 1) : "[ERROR] Temporary files left";
+        }
+    }
+
+    @Test
+    public void evictionTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] EvictionTest");
+        createCache();
+        Path cacheDirectory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/cache");
+        Path[] dataFiles = new Path[3];
+        for (int i = 0; i < dataFiles.length; i++) {
+            dataFiles[i] = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/cache_data_" + i + ".csv");
+            Files.copy(getDataFile(), dataFiles[i], StandardCopyOption.REPLACE_EXISTING);
+        }
+        ExtractionCache unbounded = new ExtractionCache(cacheDirectory.toString());
+        try (Extraction extraction = Extraction.openStream(dataFiles[0].toString(), null, unbounded)) {
+            extraction.getCsvRecordList();
+        }
+        Path firstCache = unbounded.getCacheFile(ExtractionCache.computeKey(dataFiles[0]));
+        long cacheSize = Files.size(firstCache);
+        //  La cache può contenere due file: aggiungendo il terzo viene eliminato quello usato meno di recente, cioè il
+        //  secondo, dato che il primo viene letto dopo la creazione del secondo.
+        ExtractionCache cache = new ExtractionCache(cacheDirectory.toString(), cacheSize * 2 + cacheSize / 2);
+        try (Extraction extraction = Extraction.openStream(dataFiles[1].toString(), null, cache)) {
+            extraction.getCsvRecordList();
+        }
+        Path secondCache = cache.getCacheFile(ExtractionCache.computeKey(dataFiles[1]));
+        Files.setLastModifiedTime(firstCache, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        Files.setLastModifiedTime(secondCache, FileTime.fromMillis(System.currentTimeMillis() - 30000));
+        try (Extraction extraction = Extraction.openStream(dataFiles[0].toString(), null, cache)) {
+            assert (extraction.isCached()) : "[ERROR] Cache not used";
+        }
+        try (Extraction extraction = Extraction.openStream(dataFiles[2].toString(), null, cache)) {
+            extraction.getCsvRecordList();
+        }
+        assert (Files.exists(firstCache)) : "[ERROR] Recently used file evicted";
+        assert (!Files.exists(secondCache)) : "[ERROR] Least recently used file kept";
+        assert (Files.exists(cache.getCacheFile(ExtractionCache.computeKey(dataFiles[2])))) : "[ERROR] New file not cached";
+    }
+
+    @Test
+    public void changedFileTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] ChangedFileTest");
+        ExtractionCache cache = createCache();
+        Path dataFile = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/cache_data.csv");
+        Files.copy(getDataFile(), dataFile, StandardCopyOption.REPLACE_EXISTING);
+        try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+            extraction.getCsvRecordList();
+        }
+        Files.writeString(dataFile, "\n99;08/09/10;IT;M;1;89;0;0;FAY;Primavera - Estate 2011;Blu;Uomo;PayPal;UNICA;Orologi;Gioielli Moda\n",
+                StandardOpenOption.APPEND);
+        try (Extraction extraction = Extraction.openStream(dataFile.toString(), null, cache)) {
+            assert (!extraction.isCached()) : "[ERROR] Cache used for a changed file";
+            List<CSVRecord> recordList = extraction.getCsvRecordList();
+            assert (recordList.get(recordList.size() - 1).getIdOrder() == 99) : "[ERROR] Appended record not read";
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package it.uniba.ventricellisardone.itss.etl;
 
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
 import it.uniba.ventricellisardone.itss.csv.ecxception.CSVParsingException;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.zip.GZIPOutputStream;
 
 public class ExtractionTest {
 
@@ -23,6 +35,39 @@ public class ExtractionTest {
         assert (extraction.getCsvRecordList().equals(ETLStaticTestModel.getTestList())) : "[ERROR] Incorrect list of record";
     }
 
+    @Test
+    public void streamTest() throws CSVParsingException, URISyntaxException, IOException {
+        System.out.println("[INFO] StreamTest");
+        try (Extraction extraction = Extraction.openStream(Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/right_data.csv")).toURI()).toString())) {
+            List<CSVRecord> streamList = new ArrayList<>();
+            extraction.iterator().forEachRemaining(streamList::add);
+            assert (streamList.equals(ETLStaticTestModel.getTestList())) : "[ERROR] Incorrect list of streamed record";
+            Assertions.assertThrows(IllegalStateException.class, extraction::iterator, "Iterazione ripetuta");
+        }
+    }
+
+    @Test
+    public void cursorTest() throws CSVParsingException, URISyntaxException, IOException {
+        System.out.println("[INFO] CursorTest");
+        String dataPath = Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/parsing_error_data.csv")).toURI()).toString();
+        Extraction complete = new Extraction(dataPath);
+        try (Extraction extraction = Extraction.openStream(dataPath)) {
+            RecordCursor cursor = extraction.cursor();
+            List<CSVRecord> recordList = new ArrayList<>();
+            CSVRecord first = null;
+            while (cursor.next()) {
+                if (first == null)
+                    first = cursor.get();
+                assert (cursor.get() == first) : "[ERROR] Record not reused";
+                recordList.add(new CSVRecord(cursor.get()));
+            }
+            assert (recordList.equals(complete.getCsvRecordList())) : "[ERROR] Incorrect list of record";
+            assert (extraction.getParseErrorRecords().toString().equals(complete.getParseErrorRecords().toString())) : "[ERROR] Parse errors";
+            assert (extraction.getLinesRead() == 21) : "[ERROR] Line count: " + extraction.getLinesRead();
+            Assertions.assertThrows(IllegalStateException.class, extraction::iterator);
+        }
+    }
+
     @Test
     public void missingFieldTest() throws IOException, CSVParsingException, URISyntaxException {
         System.out.println("[INFO] MissingFieldTest");
@@ -53,6 +98,133 @@ public class ExtractionTest {
         }
     }
 
+    @Test
+    public void parallelTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] ParallelTest");
+        List<String> lines = Files.readAllLines(Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/parsing_error_data.csv")).toURI()));
+        String directory = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST";
+        Files.createDirectories(Paths.get(directory));
+        Path bigFile = Paths.get(directory, "parallel_data.csv");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(bigFile))) {
+            writer.println(lines.get(0));
+            for (int i = 0; i < 20000; i++)
+                writer.println(lines.get(1 + (i % (lines.size() - 1))));
+        }
+        Extraction sequential = new Extraction(bigFile.toString());
+        Extraction parallel = new Extraction(bigFile.toString(), 4);
+        assert (parallel.getCsvRecordList().size() == sequential.getCsvRecordList().size()) : "[ERROR] Parallel record count";
+        assert (parallel.getCsvRecordList().equals(sequential.getCsvRecordList())) : "[ERROR] Parallel record order";
+        assert (parallel.getParseErrorList().equals(sequential.getParseErrorList())) : "[ERROR] Parallel parse errors";
+        assert (parallel.getNullRecordList() == null && sequential.getNullRecordList() == null);
+        for (int i = 0; i < sequential.getParseErrorRecords().size(); i++)
+            assert (parallel.getParseErrorRecords().get(i).getLineNumber() == sequential.getParseErrorRecords().get(i).getLineNumber()) : "[ERROR] Parallel line number " + i;
+    }
+
+    @Test
+    public void compressedTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] CompressedTest");
+        Path dataFile = Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/parsing_error_data.csv")).toURI());
+        String directory = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST";
+        Files.createDirectories(Paths.get(directory));
+        Path gzipFile = Paths.get(directory, "compressed_data.csv.gz");
+        Path bzip2File = Paths.get(directory, "compressed_data.csv.bz2");
+        Path zstdFile = Paths.get(directory, "compressed_data.csv.zst");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+            Files.copy(dataFile, outputStream);
+        }
+        try (OutputStream outputStream = new BZip2CompressorOutputStream(Files.newOutputStream(bzip2File))) {
+            Files.copy(dataFile, outputStream);
+        }
+        try (OutputStream outputStream = new ZstdCompressorOutputStream(Files.newOutputStream(zstdFile))) {
+            Files.copy(dataFile, outputStream);
+        }
+        Extraction plain = new Extraction(dataFile.toString());
+        for (Path compressedFile : List.of(gzipFile, bzip2File, zstdFile)) {
+            assert (CompressedInput.isCompressed(compressedFile)) : "[ERROR] Format not detected: " + compressedFile;
+            Extraction compressed = new Extraction(compressedFile.toString(), 4);
+            assert (compressed.getCsvRecordList().equals(plain.getCsvRecordList())) : "[ERROR] Compressed records: " + compressedFile;
+            assert (compressed.getParseErrorList().equals(plain.getParseErrorList())) : "[ERROR] Compressed parse errors: " + compressedFile;
+        }
+        assert (!CompressedInput.isCompressed(dataFile));
+    }
+
+    @Test
+    public void rejectSinkTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] RejectSinkTest");
+        String dataPath = Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/parsing_error_data.csv")).toURI()).toString();
+        String directory = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/reject_sink";
+        List<String> sinkLines;
+        try (RejectSink rejectSink = new RejectSink(directory);
+             Extraction extraction = Extraction.openStream(dataPath, rejectSink)) {
+            int records = 0;
+            for (CSVRecord ignored : extraction)
+                records++;
+            assert (records == 13) : "[ERROR] Records: " + records;
+            assert (extraction.getParseErrorList() == null) : "[ERROR] Rejected rows kept in memory";
+            assert (extraction.getRejectedCount(RejectedRecord.Reason.INVALID_NUMBER) == 4);
+            assert (extraction.getRejectedCount(RejectedRecord.Reason.INVALID_DATE) == 1);
+            assert (extraction.getRejectedCount(RejectedRecord.Reason.INVALID_VALUE) == 2);
+            assert (extraction.getRejectCounters().get("FIELD_COUNT") == 0);
+            assert (rejectSink.getNullRecordFile() == null);
+            rejectSink.flush();
+            sinkLines = Files.readAllLines(rejectSink.getParseErrorFile());
+        }
+        List<String> expected = new ArrayList<>();
+        String[] reasons = {"INVALID_NUMBER", "INVALID_DATE", "INVALID_NUMBER", "INVALID_NUMBER", "INVALID_NUMBER", "INVALID_VALUE", "INVALID_VALUE"};
+        int[] columns = {0, 1, 4, 5, 6, 7, 3};
+        List<String> parsingErrorList = ETLStaticTestModel.getParsingErrorList();
+        for (int i = 0; i < reasons.length; i++)
+            expected.add("parsing_error_data.csv;" + (i + 2) + ";" + reasons[i] + ";" + columns[i] + ";" + parsingErrorList.get(i));
+        assert (sinkLines.equals(expected)) : "[ERROR] Sink content: " + sinkLines;
+    }
+
+    @Test
+    public void checkpointTest() throws IOException, CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] CheckpointTest");
+        Path dataFile = Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/parsing_error_data.csv")).toURI());
+        String directory = javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST";
+        Files.createDirectories(Paths.get(directory));
+        Path gzipFile = Paths.get(directory, "checkpoint_data.csv.gz");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+            Files.copy(dataFile, outputStream);
+        }
+        Extraction complete = new Extraction(dataFile.toString());
+        for (Path path : List.of(dataFile, gzipFile)) {
+            List<CSVRecord> recordList = new ArrayList<>();
+            try (Extraction extraction = Extraction.openStream(path.toString())) {
+                Iterator<CSVRecord> iterator = extraction.iterator();
+                for (int i = 0; i < 5; i++)
+                    recordList.add(iterator.next());
+                new Checkpoint(path.getFileName().toString(), Files.size(path), extraction.getOffset(),
+                        extraction.getLinesRead(), 3).save(directory);
+            }
+            Checkpoint checkpoint = Checkpoint.read(directory);
+            assert (checkpoint != null && checkpoint.matches(path.toString())) : "[ERROR] Checkpoint not saved";
+            assert (checkpoint.getLastFileCreated() == 3);
+            try (Extraction extraction = Extraction.openStream(path.toString())) {
+                extraction.seek(checkpoint.getByteOffset(), checkpoint.getLinesRead());
+                for (CSVRecord csvRecord : extraction)
+                    recordList.add(csvRecord);
+                assert (recordList.equals(complete.getCsvRecordList())) : "[ERROR] Resumed records: " + path;
+                assert (extraction.getParseErrorRecords() == null) : "[ERROR] Rows before the checkpoint read again";
+                assert (extraction.getLinesRead() == 21) : "[ERROR] Resumed line count: " + extraction.getLinesRead();
+            }
+            Checkpoint.delete(directory);
+            assert (Checkpoint.read(directory) == null);
+        }
+    }
+
+    @Test
+    public void projectionTest() throws CSVParsingException, URISyntaxException {
+        System.out.println("[INFO] ProjectionTest");
+        Extraction extraction = new Extraction(Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader().getResource("etl/extraction/projection_data.csv")).toURI()).toString());
+        assert (extraction.getCsvRecordList().equals(ETLStaticTestModel.getTestList())) : "[ERROR] Reordered columns not projected";
+        assert (extraction.getCsvRecordList().get(0).getMacroCategory().equals("Gioielli Moda"));
+        assert (extraction.getCsvRecordList().get(0).getIdOrder() == 11 && extraction.getCsvRecordList().get(0).getCategory().equals("Orologi"));
+        assert (extraction.getParseErrorList() == null) : "[ERROR] Empty extra column rejected";
+        assert (extraction.getNullRecordList().equals(List.of("99;IT;08/09/10"))) : "[ERROR] Short row not rejected";
+    }
+
     @Test
     public void headerErrorTest(){
         System.out.println("[INFO] HeaderErrorTest");
@@ -60,4 +232,22 @@ public class ExtractionTest {
                 () -> new Extraction(Paths.get(Objects.requireNonNull(ExtractionTest.class.getClassLoader()
                         .getResource("etl/extraction/header_error_data.csv")).toURI()).toString()), "Eccezione non sollevata");
     }
+
+    @Test
+    public void pipelinedFailureTest() {
+        System.out.println("[INFO] PipelinedFailureTest");
+        //  Un errore non di I/O del decompressore deve arrivare al lettore invece di lasciarlo in attesa.
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("Blocco compresso non valido");
+            }
+        };
+        Assertions.assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> {
+            try (PipelinedInputStream stream = new PipelinedInputStream(failing)) {
+                IOException exception = Assertions.assertThrows(IOException.class, stream::read);
+                assert (exception.getCause() instanceof IllegalStateException) : "[ERROR] Cause: " + exception.getCause();
+            }
+        });
+    }
 }
@@ -0,0 +1,101 @@
+package it.uniba.ventricellisardone.itss.etl;
+
+import it.uniba.ventricellisardone.itss.csv.CSVRecord;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class MultiFileExtractionTest {
+
+    private static String getDirectory() throws URISyntaxException {
+        return Paths.get(Objects.requireNonNull(MultiFileExtractionTest.class.getClassLoader().getResource("etl/multifile")).toURI()).toString();
+    }
+
+    @Test
+    public void mergeTest() throws IOException, URISyntaxException {
+        System.out.println("[INFO] MergeTest");
+        MultiFileExtraction extraction = new MultiFileExtraction(getDirectory(), "*.csv", 3);
+        List<Long> idList = new ArrayList<>();
+        for (CSVRecord csvRecord : extraction)
+            idList.add(csvRecord.getIdOrder());
+        assert (idList.equals(List.of(11L, 15L, 46L, 47L, 48L))) : "[ERROR] Merge order: " + idList;
+        assert (extraction.size() == 5);
+    }
+
+    @Test
+    public void rejectedTest() throws IOException, URISyntaxException {
+        System.out.println("[INFO] RejectedTest");
+        MultiFileExtraction extraction = new MultiFileExtraction(getDirectory(), "*.csv", 2);
+        assert (extraction.getRejectedFileList().size() == 1) : "[ERROR] Rejected files: " + extraction.getRejectedFileList();
+        //  Le righe scartate vengono individuate durante la lettura dei record.
+        extraction.forEach(csvRecord -> { });
+        assert (extraction.getRejectedFileList().get(0).endsWith("shop_3.csv"));
+        assert (extraction.getNullRecords().isEmpty());
+        List<RejectedRecord> parseErrorList = extraction.getParseErrorRecords();
+        assert (parseErrorList.size() == 1);
+        assert (parseErrorList.get(0).getSource().equals("shop_2.csv")) : "[ERROR] Source: " + parseErrorList.get(0).getSource();
+        assert (parseErrorList.get(0).getLineNumber() == 3) : "[ERROR] Line: " + parseErrorList.get(0).getLineNumber();
+        assert (parseErrorList.get(0).getLine().startsWith("16;ciccio;"));
+    }
+
+    @Test
+    public void rejectSinkTest() throws IOException, URISyntaxException {
+        System.out.println("[INFO] RejectSinkTest");
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/multifile_reject");
+        try (RejectSink rejectSink = new RejectSink(directory.toString());
+             MultiFileExtraction extraction = new MultiFileExtraction(MultiFileExtraction.listFiles(getDirectory(), "*.csv"), 2, rejectSink)) {
+            int count = 0;
+            for (CSVRecord ignored : extraction)
+                count++;
+            assert (count == 5 && extraction.size() == 5) : "[ERROR] Records: " + count;
+            assert (extraction.getParseErrorRecords() == null) : "[ERROR] Rejected rows kept in memory";
+            assert (rejectSink.getCount(RejectedRecord.Reason.INVALID_DATE) == 1) : "[ERROR] Sink count";
+            extraction.logRejectedRecord(directory.toString(), "rejected_records.csv");
+            List<String> lines = Files.readAllLines(directory.resolve("Results").resolve("rejected_records.csv"));
+            assert (lines.size() == 1 && lines.get(0).startsWith("shop_2.csv;3;")) : "[ERROR] Log: " + lines;
+        }
+    }
+
+    @Test
+    public void chunkedMergeTest() throws IOException {
+        System.out.println("[INFO] ChunkedMergeTest");
+        //  File più grandi di un blocco, così che la fusione attraversi più blocchi letti in anticipo.
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/multifile_chunks");
+        FileUtils.deleteDirectory(directory.toFile());
+        Files.createDirectories(directory);
+        String header = "IdOrdine;DataOrdine;CodStatoFattura;SexAcquirente;Quantita;PrezzoPagato;Sconto;Outlet;NomeBrand;"
+                + "Collezione;Colore;SexArticolo;PagamentoOrdine;ValoreTagliaEffettivo;NomeCategoria;MacroCategoria";
+        int rows = MultiFileExtraction.CHUNK_SIZE * 3 + 7;
+        for (int file = 0; file < 3; file++) {
+            List<String> lines = new ArrayList<>();
+            lines.add(header);
+            for (int i = 0; i < rows; i++)
+                lines.add((file * 100000 + i) + ";" + String.format("%02d", 1 + i * 28 / rows) + "/09/10;IT;M;1;89;0;0;FAY;"
+                        + "Primavera - Estate 2011;Blu;Uomo;PayPal;UNICA;Orologi;Gioielli Moda");
+            Files.write(directory.resolve("shop_" + file + ".csv"), lines);
+        }
+        try (MultiFileExtraction extraction = new MultiFileExtraction(directory.toString(), "*.csv", 2)) {
+            int previousDay = Integer.MIN_VALUE;
+            int count = 0;
+            for (CSVRecord csvRecord : extraction) {
+                assert (csvRecord.getOrderDay() >= previousDay) : "[ERROR] Merge order at " + csvRecord.getIdOrder();
+                previousDay = csvRecord.getOrderDay();
+                //  L'identificativo dell'ordine riporta il file e la posizione della riga, dopo l'header.
+                long line = csvRecord.getIdOrder() % 100000 + 2;
+                assert (extraction.getCurrentLine() == line) : "[ERROR] Line of " + csvRecord.getIdOrder();
+                assert (extraction.getCurrentSource().endsWith("shop_" + csvRecord.getIdOrder() / 100000 + ".csv"))
+                        : "[ERROR] Source of " + csvRecord.getIdOrder();
+                count++;
+            }
+            assert (count == rows * 3) : "[ERROR] Records: " + count;
+        }
+    }
+}
@@ -9,7 +9,9 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
 import java.text.ParseException;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Scanner;
 
 public class TransformingTest {
@@ -31,6 +33,43 @@ public class TransformingTest {
         }
     }
 
+    @Test
+    public void transformRecordTest() throws IOException, ParseException, URISyntaxException {
+        System.out.println("[INFO] TransformRecordTest");
+        Transforming transforming = new Transforming(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/transform_record", TABLE_NAME);
+        try (Extraction extraction = Extraction.openStream(Paths.get(Objects.requireNonNull(TransformingTest.class.getClassLoader().getResource("etl/transforming/transform_data.csv")).toURI()).toString())) {
+            RecordCursor cursor = extraction.cursor();
+            while (cursor.next())
+                transforming.transformRecord(cursor.get());
+        }
+        transforming.endLoadFile();
+        transforming.endLoadFile();
+        assert (transforming.getLastFileCreated() == 1) : "[ERROR] Files created: " + transforming.getLastFileCreated();
+        Scanner transformedFile = new Scanner(new File(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/transform_record/load_data_0.csv"));
+        Scanner testFile = new Scanner(new File(Objects.requireNonNull(TransformingTest.class.getClassLoader().getResource("etl/transforming/transformed_data.csv")).getPath()));
+        int i = 0;
+        while (testFile.hasNextLine()) {
+            assert (transformedFile.hasNextLine()) : "Linea mancante: " + i;
+            assert (testFile.nextLine().trim().equals(transformedFile.nextLine().trim())) : "Errore alla linea: " + i;
+            i++;
+        }
+        assert (!transformedFile.hasNextLine()) : "[ERROR] Extra lines";
+    }
+
+    @Test
+    public void appendPriceTest() {
+        System.out.println("[INFO] AppendPriceTest");
+        Random random = new Random(42);
+        double[] prices = {0, -0.0, 0.05, 0.15, 0.25, 1.45, 89, 45.5, 0.1, 1e15, 1e20, Double.NaN, Double.POSITIVE_INFINITY};
+        for (int i = 0; i < 100000 + prices.length; i++) {
+            double price = i < prices.length ? prices[i] : random.nextInt(100000) / (random.nextBoolean() ? 10.0 : 100.0);
+            StringBuilder builder = new StringBuilder();
+            Transforming.appendPrice(builder, price);
+            String expected = String.format(Locale.ROOT, "%.1f", price);
+            assert (builder.toString().equals(expected)) : "[ERROR] Price " + price + ": " + builder;
+        }
+    }
+
     @Test
     public void parseErrorTest() throws IOException, CSVParsingException, URISyntaxException {
         System.out.println("[INFO] ParseErrorTest");
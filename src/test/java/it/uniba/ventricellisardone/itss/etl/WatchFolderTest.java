@@ -0,0 +1,54 @@
+package it.uniba.ventricellisardone.itss.etl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class WatchFolderTest {
+
+    @Test
+    public void watchTest() throws IOException, InterruptedException {
+        System.out.println("[INFO] WatchTest");
+        Path directory = Paths.get(javax.swing.filechooser.FileSystemView.getFileSystemView().getHomeDirectory() + "/TEST/watch");
+        FileUtils.deleteDirectory(directory.toFile());
+        List<String> processed = new CopyOnWriteArrayList<>();
+        List<Long> sizes = new CopyOnWriteArrayList<>();
+        try (WatchFolder watchFolder = new WatchFolder(directory.toString(), 2, 300, file -> {
+            processed.add(file.getFileName().toString());
+            sizes.add(Files.size(file));
+            if (file.getFileName().toString().startsWith("broken"))
+                throw new IOException("File non valido");
+        })) {
+            Files.writeString(directory.resolve("existing.csv"), "IdOrdine\n");
+            watchFolder.start();
+            Files.writeString(directory.resolve("readme.txt"), "non elaborare");
+            try (OutputStream outputStream = Files.newOutputStream(directory.resolve("export.csv.gz"), StandardOpenOption.CREATE)) {
+                for (int i = 0; i < 5; i++) {
+                    outputStream.write("riga;di;prova\n".getBytes(StandardCharsets.UTF_8));
+                    outputStream.flush();
+                    Thread.sleep(100);
+                }
+            }
+            Files.writeString(directory.resolve("broken.csv"), "IdOrdine\n");
+            for (int i = 0; i < 100 && processed.size() < 3; i++)
+                Thread.sleep(100);
+            Thread.sleep(500);
+        }
+        assert (processed.size() == 3) : "[ERROR] Processed files: " + processed;
+        assert (processed.containsAll(List.of("existing.csv", "export.csv.gz", "broken.csv")));
+        assert (sizes.get(processed.indexOf("export.csv.gz")) == 70) : "[ERROR] File processed before it was complete";
+        assert (Files.exists(directory.resolve("processed").resolve("export.csv.gz")));
+        assert (Files.exists(directory.resolve("processed").resolve("existing.csv")));
+        assert (Files.exists(directory.resolve("failed").resolve("broken.csv")));
+        assert (Files.exists(directory.resolve("readme.txt")));
+    }
+}